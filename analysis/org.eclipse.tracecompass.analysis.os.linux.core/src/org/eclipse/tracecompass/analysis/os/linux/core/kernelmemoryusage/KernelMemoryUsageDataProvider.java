@@ -109,29 +109,42 @@ public class KernelMemoryUsageDataProvider extends AbstractTreeXyDataProvider<Ke
         double[] totalKernelMemoryValues = new double[xValues.length];
         Map<Integer, double[]> selectedSeries = initSeries(filter);
 
-        for (int i = 0; i < xValues.length; i++) {
-            if (monitor != null && monitor.isCanceled()) {
-                return null;
-            }
-
-            long time = xValues[i];
-            if (time >= ss.getStartTime() && time <= currentEnd) {
-                /* The subattributes of the root are the different threads */
-                List<Integer> threadQuarkList = ss.getSubAttributes(-1, false);
-                List<ITmfStateInterval> kernelState = ss.queryFullState(time);
-
-                for (Integer threadQuark : threadQuarkList) {
-                    long value = extractValue(kernelState.get(threadQuark).getValue());
+        if (monitor != null && monitor.isCanceled()) {
+            return null;
+        }
 
-                    /* We add the value of each thread to the total quantity */
-                    totalKernelMemoryValues[i] += value;
+        /* Only query the requested times that are in the state system */
+        int first = 0;
+        while (first < xValues.length && xValues[first] < ss.getStartTime()) {
+            first++;
+        }
+        int last = first;
+        while (last < xValues.length && xValues[last] <= currentEnd) {
+            last++;
+        }
 
-                    double[] selectedThreadValues = selectedSeries.get(threadQuark);
-                    if (selectedThreadValues != null) {
-                        selectedThreadValues[i] = value;
-                    }
-                }
+        /*
+         * The subattributes of the root are the different threads, get all their
+         * values in one sweep of the state system, which stops if the monitor is
+         * cancelled
+         */
+        List<Integer> threadQuarkList = ss.getSubAttributes(-1, false);
+        int offset = first;
+        ss.queryStates(threadQuarkList, Arrays.copyOfRange(xValues, first, last), (interval, index) -> {
+            int i = offset + index;
+            long value = extractValue(interval.getValue());
+
+            /* We add the value of each thread to the total quantity */
+            totalKernelMemoryValues[i] += value;
+
+            double[] selectedThreadValues = selectedSeries.get(interval.getAttribute());
+            if (selectedThreadValues != null) {
+                selectedThreadValues[i] = value;
             }
+        }, monitor);
+
+        if (monitor != null && monitor.isCanceled()) {
+            return null;
         }
 
         /**
@@ -15,7 +15,6 @@ import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.Attribute
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
-import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 
 /**
@@ -64,8 +63,7 @@ public class SchedMigrateTaskHandler extends KernelEventHandler {
 
         /* Update the thread's running queue to the new one indicated by the event */
         int quark = ss.getQuarkRelativeAndAdd(threadNode, Attributes.CURRENT_CPU_RQ);
-        value = TmfStateValue.newValueInt(destCpu.intValue());
-        ss.modifyAttribute(t, value, quark);
+        ss.modifyAttributeInt(t, destCpu.intValue(), quark);
     }
 
 }
@@ -80,8 +80,7 @@ public class SchedSwitchHandler extends KernelEventHandler {
          * it here too.
          */
         int quark = ss.getQuarkRelativeAndAdd(newCurrentThreadNode, Attributes.CURRENT_CPU_RQ);
-        ITmfStateValue value = TmfStateValue.newValueInt(cpu);
-        ss.modifyAttribute(timestamp, value, quark);
+        ss.modifyAttributeInt(timestamp, cpu, quark);
 
         /* Set the exec name of the former process */
         setProcessExecName(ss, prevProcessName, formerThreadNode, timestamp);
@@ -116,11 +115,10 @@ public class SchedSwitchHandler extends KernelEventHandler {
              * previous events, but it may be the first time we see the
              * information too.
              */
-            value = TmfStateValue.newValueInt(cpu);
+            ss.modifyAttributeInt(timestamp, cpu, quark);
         } else {
-            value = TmfStateValue.nullValue();
+            ss.modifyAttribute(timestamp, TmfStateValue.nullValue(), quark);
         }
-        ss.modifyAttribute(timestamp, value, quark);
     }
 
     private static void setCpuStatus(ITmfStateSystemBuilder ss, Integer nextTid, Integer newCurrentThreadNode, long timestamp, int currentCPUNode, int cpu) {
@@ -140,20 +138,14 @@ public class SchedSwitchHandler extends KernelEventHandler {
         }
     }
 
-    private static void setCpuProcess(ITmfStateSystemBuilder ss, Integer nextTid, long timestamp, int currentCPUNode) {
-        int quark;
-        ITmfStateValue value;
-        quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.CURRENT_THREAD);
-        value = TmfStateValue.newValueInt(nextTid);
-        ss.modifyAttribute(timestamp, value, quark);
+    private static void setCpuProcess(ITmfStateSystemBuilder ss, int nextTid, long timestamp, int currentCPUNode) {
+        int quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.CURRENT_THREAD);
+        ss.modifyAttributeInt(timestamp, nextTid, quark);
     }
 
-    private static void setProcessPrio(ITmfStateSystemBuilder ss, Integer prio, Integer threadNode, long timestamp) {
-        int quark;
-        ITmfStateValue value;
-        quark = ss.getQuarkRelativeAndAdd(threadNode, Attributes.PRIO);
-        value = TmfStateValue.newValueInt(prio);
-        ss.modifyAttribute(timestamp, value, quark);
+    private static void setProcessPrio(ITmfStateSystemBuilder ss, int prio, int threadNode, long timestamp) {
+        int quark = ss.getQuarkRelativeAndAdd(threadNode, Attributes.PRIO);
+        ss.modifyAttributeInt(timestamp, prio, quark);
     }
 
     private static void setProcessExecName(ITmfStateSystemBuilder ss, String processName, Integer threadNode, long timestamp) {
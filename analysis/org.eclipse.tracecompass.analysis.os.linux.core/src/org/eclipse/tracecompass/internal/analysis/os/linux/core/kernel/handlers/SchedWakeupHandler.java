@@ -18,7 +18,6 @@ import org.eclipse.tracecompass.internal.analysis.os.linux.core.kernel.Attribute
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
-import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 
 /**
@@ -68,15 +67,13 @@ public class SchedWakeupHandler extends KernelEventHandler {
 
         /* Set the thread's target run queue */
         int quark = ss.getQuarkRelativeAndAdd(threadNode, Attributes.CURRENT_CPU_RQ);
-        value = TmfStateValue.newValueInt(targetCpu.intValue());
-        ss.modifyAttribute(timestamp, value, quark);
+        ss.modifyAttributeInt(timestamp, targetCpu.intValue(), quark);
 
         /*
          * When a user changes a threads prio (e.g. with pthread_setschedparam),
          * it shows in ftrace with a sched_wakeup.
          */
         quark = ss.getQuarkRelativeAndAdd(threadNode, Attributes.PRIO);
-        value = TmfStateValue.newValueInt(prio);
-        ss.modifyAttribute(timestamp, value, quark);
+        ss.modifyAttributeInt(timestamp, prio, quark);
     }
 }
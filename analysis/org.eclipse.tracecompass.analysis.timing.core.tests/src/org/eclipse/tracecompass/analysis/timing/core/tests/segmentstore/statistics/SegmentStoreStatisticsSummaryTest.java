@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.timing.core.tests.segmentstore.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.analysis.timing.core.segmentstore.statistics.SegmentStoreStatisticsSummary;
+import org.eclipse.tracecompass.analysis.timing.core.statistics.IStatistics;
+import org.eclipse.tracecompass.analysis.timing.core.statistics.Statistics;
+import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentStoreFactory;
+import org.junit.Test;
+
+/**
+ * Test the {@link SegmentStoreStatisticsSummary} against statistics computed
+ * on all the segments of the ranges
+ */
+public class SegmentStoreStatisticsSummaryTest {
+
+    private static final double DELTA = 1e-6;
+
+    private static String getType(ISegment segment) {
+        return (segment.getLength() % 2 == 0) ? "even" : "odd";
+    }
+
+    /**
+     * Test the statistics of many ranges, with enough segments for the
+     * buckets to be merged many times
+     */
+    @Test
+    public void testRanges() {
+        Random random = new Random(7);
+        ISegmentStore<@NonNull ISegment> store = SegmentStoreFactory.createSegmentStore();
+        SegmentStoreStatisticsSummary summary = new SegmentStoreStatisticsSummary(SegmentStoreStatisticsSummaryTest::getType, true);
+        List<@NonNull ISegment> segments = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            long start = random.nextInt(1000000);
+            long duration = (i % 100 == 0) ? random.nextInt(200000) : random.nextInt(1000);
+            ISegment segment = new BasicSegment(start, start + duration);
+            segments.add(segment);
+            store.add(segment);
+            summary.update(segment);
+        }
+        assertEquals(segments.size(), summary.getNbElements());
+
+        for (int i = 0; i < 100; i++) {
+            long start = random.nextInt(1100000) - 50000;
+            long end = start + random.nextInt(500000);
+            IStatistics<@NonNull ISegment> expected = new Statistics<>(ISegment::getLength, true);
+            Map<String, IStatistics<@NonNull ISegment>> expectedPerType = new HashMap<>();
+            for (ISegment segment : segments) {
+                if (segment.getStart() <= end && segment.getEnd() >= start) {
+                    expected.update(segment);
+                    expectedPerType.computeIfAbsent(getType(segment), t -> new Statistics<>(ISegment::getLength, true)).update(segment);
+                }
+            }
+
+            IStatistics<@NonNull ISegment> actual = summary.getStatistics(store, start, end, new NullProgressMonitor());
+            assertNotNull(actual);
+            assertStatsEqual(expected, actual);
+
+            Map<String, IStatistics<@NonNull ISegment>> actualPerType = summary.getStatisticsPerType(store, start, end, new NullProgressMonitor());
+            assertNotNull(actualPerType);
+            assertEquals(expectedPerType.keySet(), actualPerType.keySet());
+            for (String type : expectedPerType.keySet()) {
+                IStatistics<@NonNull ISegment> typeStats = actualPerType.get(type);
+                assertNotNull(typeStats);
+                assertStatsEqual(expectedPerType.get(type), typeStats);
+            }
+        }
+    }
+
+    private static void assertStatsEqual(IStatistics<@NonNull ISegment> expected, IStatistics<@NonNull ISegment> actual) {
+        assertEquals(expected.getNbElements(), actual.getNbElements());
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.getMax(), actual.getMax());
+        assertEquals(expected.getTotal(), actual.getTotal(), DELTA);
+        assertEquals(expected.getMean(), actual.getMean(), DELTA);
+        if (expected.getNbElements() > 2) {
+            assertEquals(expected.getStdDev(), actual.getStdDev(), expected.getStdDev() * 1e-6);
+        }
+        /* The histograms of the merged buckets are the same */
+        for (double percentile : new double[] { 1, 50, 90, 99 }) {
+            assertEquals(expected.getPercentile(percentile), actual.getPercentile(percentile));
+        }
+    }
+}
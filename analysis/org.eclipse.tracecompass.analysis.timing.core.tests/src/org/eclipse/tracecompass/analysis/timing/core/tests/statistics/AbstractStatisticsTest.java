@@ -58,6 +58,9 @@ public abstract class AbstractStatisticsTest<@NonNull E> {
 
     private static final double ERROR = 0.000001;
     private static final double APPROX_ERROR = 0.0001;
+    /* The percentiles are estimated within the width of a histogram bin */
+    private static final double PERCENTILE_ERROR = 1.0 / 16;
+    private static final double[] PERCENTILES = { 0, 1, 25, 50, 90, 99, 99.9, 100 };
 
     private final @Nullable Function<@NonNull E, @NonNull Long> fMapper;
 
@@ -109,6 +112,10 @@ public abstract class AbstractStatisticsTest<@NonNull E> {
         assertEquals("Min Element", expected.getMinObject(), toBeTested.getMinObject());
         assertEquals("Max Element", expected.getMaxObject(), toBeTested.getMaxObject());
         assertEquals("Standard Deviation", expected.getStdDev(), toBeTested.getStdDev(), APPROX_ERROR * expected.getStdDev());
+        for (double percentile : PERCENTILES) {
+            double expectedValue = expected.getPercentile(percentile);
+            assertEquals("Percentile " + percentile, expectedValue, toBeTested.getPercentile(percentile), PERCENTILE_ERROR * Math.abs(expectedValue) + 1);
+        }
     }
 
     /**
@@ -117,9 +124,9 @@ public abstract class AbstractStatisticsTest<@NonNull E> {
     private @NonNull Statistics<E> createStatistics() {
         Function<@NonNull E, @NonNull Long> mapper = fMapper;
         if (mapper == null) {
-            return new Statistics<>();
+            return new Statistics<>(true);
         }
-        return new Statistics<>(mapper);
+        return new Statistics<>(mapper, true);
     }
 
     /**
@@ -150,6 +157,7 @@ public abstract class AbstractStatisticsTest<@NonNull E> {
         assertNull(stats.getMaxObject());
         assertEquals("Nb objects", 0, stats.getNbElements());
         assertEquals("Total", 0, stats.getTotal(), ERROR);
+        assertEquals("Percentile", Long.MIN_VALUE, stats.getPercentile(50));
     }
 
     /**
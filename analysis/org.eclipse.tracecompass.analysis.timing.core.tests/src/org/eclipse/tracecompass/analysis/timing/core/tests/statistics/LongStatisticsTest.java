@@ -9,9 +9,18 @@
 
 package org.eclipse.tracecompass.analysis.timing.core.tests.statistics;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Random;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.timing.core.statistics.IStatistics;
+import org.eclipse.tracecompass.analysis.timing.core.statistics.Statistics;
+import org.junit.Test;
 
 /**
  * Statistics test with values of Long type
@@ -32,4 +41,120 @@ public class LongStatisticsTest extends AbstractStatisticsTest<@NonNull Long> {
         return longFixture;
     }
 
+    /**
+     * Test the percentiles estimated by the default method of
+     * {@link IStatistics}, from the mean and standard deviation
+     */
+    @Test
+    public void testDefaultPercentile() {
+        Random rnd = new Random(0);
+        List<@NonNull Long> values = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            values.add(Math.round(100000 + rnd.nextGaussian() * 1000));
+        }
+        IStatistics<@NonNull Long> stats = new SummaryStatistics();
+        values.forEach(stats::update);
+        IStatistics<@NonNull Long> expected = new OfflineStatisticsCalculator<>(values, e -> e);
+
+        assertEquals(expected.getPercentile(0), stats.getPercentile(0));
+        assertEquals(expected.getPercentile(100), stats.getPercentile(100));
+        for (double percentile : new double[] { 1, 10, 25, 50, 75, 90, 99 }) {
+            assertEquals("Percentile " + percentile, expected.getPercentile(percentile), stats.getPercentile(percentile), 50);
+        }
+
+        /* With 2 values, the nearest rank is the min or max */
+        IStatistics<@NonNull Long> small = new SummaryStatistics();
+        small.update(10L);
+        small.update(20L);
+        assertEquals(10L, small.getPercentile(50));
+        assertEquals(20L, small.getPercentile(51));
+
+        assertEquals(Long.MIN_VALUE, new SummaryStatistics().getPercentile(50));
+    }
+
+    /**
+     * Test that the statistics without the percentiles enabled, or merged with
+     * such statistics, estimate the percentiles like the default method
+     */
+    @Test
+    public void testPercentilesDisabled() {
+        Random rnd = new Random(0);
+        IStatistics<@NonNull Long> expected = new SummaryStatistics();
+        IStatistics<@NonNull Long> withoutHistogram = new Statistics<>();
+        IStatistics<@NonNull Long> withHistogram = new Statistics<>(true);
+        IStatistics<@NonNull Long> other = new Statistics<>();
+        for (int i = 0; i < 1000; i++) {
+            long value = Math.round(100000 + rnd.nextGaussian() * 1000);
+            expected.update(value);
+            withoutHistogram.update(value);
+            if (i % 2 == 0) {
+                withHistogram.update(value);
+            } else {
+                other.update(value);
+            }
+        }
+        withHistogram.merge(other);
+        for (double percentile : new double[] { 0, 1, 50, 99, 100 }) {
+            assertEquals("Percentile " + percentile, expected.getPercentile(percentile), withoutHistogram.getPercentile(percentile));
+            assertEquals("Percentile " + percentile, expected.getPercentile(percentile), withHistogram.getPercentile(percentile), 1);
+        }
+    }
+
+    /**
+     * Statistics that do not override {@link IStatistics#getPercentile(double)}
+     */
+    private static class SummaryStatistics implements IStatistics<@NonNull Long> {
+        private final Statistics<@NonNull Long> fStats = new Statistics<>();
+
+        @Override
+        public long getMin() {
+            return fStats.getMin();
+        }
+
+        @Override
+        public long getMax() {
+            return fStats.getMax();
+        }
+
+        @Override
+        public @Nullable Long getMinObject() {
+            return fStats.getMinObject();
+        }
+
+        @Override
+        public @Nullable Long getMaxObject() {
+            return fStats.getMaxObject();
+        }
+
+        @Override
+        public long getNbElements() {
+            return fStats.getNbElements();
+        }
+
+        @Override
+        public double getMean() {
+            return fStats.getMean();
+        }
+
+        @Override
+        public double getStdDev() {
+            return fStats.getStdDev();
+        }
+
+        @Override
+        public double getTotal() {
+            return fStats.getTotal();
+        }
+
+        @Override
+        public void update(@NonNull Long object) {
+            fStats.update(object);
+        }
+
+        @Override
+        public void merge(IStatistics<@NonNull Long> other) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
 }
@@ -159,6 +159,23 @@ public class OfflineStatisticsCalculator<@NonNull E> implements IStatistics<E> {
         return total;
     }
 
+    /**
+     * Get the exact value of a percentile, the value whose rank is the
+     * percentile of the number of elements, rounded up
+     *
+     * @return the value of the percentile
+     */
+    @Override
+    public long getPercentile(double percentile) {
+        if (fElements.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+        long[] values = fElements.stream().mapToLong(e -> fMapper.apply(e)).sorted().toArray();
+        double ratio = Math.min(100.0, Math.max(0.0, percentile)) / 100.0;
+        long rank = Math.max(1, (long) Math.ceil(ratio * values.length));
+        return values[(int) Math.min(rank, values.length) - 1];
+    }
+
     @Override
     public long getNbElements() {
         return fElements.size();
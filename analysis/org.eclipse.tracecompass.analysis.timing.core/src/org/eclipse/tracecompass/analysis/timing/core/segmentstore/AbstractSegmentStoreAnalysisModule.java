@@ -32,6 +32,7 @@ import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
 import org.eclipse.tracecompass.segmentstore.core.SegmentStoreFactory;
 import org.eclipse.tracecompass.segmentstore.core.SegmentStoreFactory.SegmentStoreType;
+import org.eclipse.tracecompass.segmentstore.core.SegmentStoreSerializer;
 import org.eclipse.tracecompass.tmf.core.analysis.TmfAbstractAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.segment.ISegmentAspect;
@@ -104,7 +105,9 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
      * @throws IOException
      *             - Any of the usual Input/Output related exceptions.
      * @deprecated The segment store analysis modules are either on disk or all
-     *             in memory, no in between anymore
+     *             in memory, no in between anymore. In-memory segment stores
+     *             are saved without Java serialization, see
+     *             {@link #isInMemoryStorePersistent()}
      */
     @Deprecated
     protected Object[] readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
@@ -132,7 +135,8 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
 
     /**
      * Get the reader for the segments on disk. If the segment store is not on
-     * disk, this method can return null.
+     * disk, and not persistent (see {@link #isInMemoryStorePersistent()}),
+     * this method can return null.
      *
      * @return The segment reader
      * @since 3.0
@@ -152,6 +156,21 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
         return SegmentStoreType.Fast;
     }
 
+    /**
+     * Whether an in-memory segment store should be saved to the supplementary
+     * files once built, and read from there the next time the trace is
+     * opened. The segments are written with their
+     * {@link ISegment#writeSegment} method and read with the
+     * {@link #getSegmentReader()}, which must be implemented. By default, the
+     * in-memory segment stores are not saved.
+     *
+     * @return Whether the in-memory segment store is saved
+     * @since 3.2
+     */
+    protected boolean isInMemoryStorePersistent() {
+        return false;
+    }
+
     @Override
     public @Nullable ISegmentStore<ISegment> getSegmentStore() {
         return fSegmentStore;
@@ -176,6 +195,8 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
         case Fast:
             // Fall-through
         case Stable:
+            // Fall-through
+        case Concurrent:
             store = buildInMemorySegmentStore(type, monitor);
             break;
         case OnDisk:
@@ -239,11 +260,39 @@ public abstract class AbstractSegmentStoreAnalysisModule extends TmfAbstractAnal
 
     private @Nullable ISegmentStore<@NonNull ISegment> buildInMemorySegmentStore(SegmentStoreType type, IProgressMonitor monitor) throws TmfAnalysisException {
         ISegmentStore<ISegment> segmentStore = SegmentStoreFactory.createSegmentStore(type);
+        @Nullable Path file = null;
+        if (isInMemoryStorePersistent()) {
+            String dir = TmfTraceManager.getSupplementaryFileDir(checkNotNull(getTrace()));
+            file = Paths.get(dir, getDataFileName());
+            /* See if the segments were saved by a previous analysis */
+            if (Files.exists(file)) {
+                try {
+                    SegmentStoreSerializer.read(file, getSegmentReader(), segmentStore);
+                    return segmentStore;
+                } catch (IOException e) {
+                    Activator.getInstance().logWarning("Error reading the segment store file, it will be rebuilt", e); //$NON-NLS-1$
+                    segmentStore.clear();
+                }
+            }
+        }
+
         boolean completed = buildAnalysisSegments(segmentStore, monitor);
         if (!completed) {
             return null;
         }
 
+        if (file != null) {
+            try {
+                SegmentStoreSerializer.write(file, segmentStore);
+            } catch (IOException e) {
+                Activator.getInstance().logError("Error saving the segment store", e); //$NON-NLS-1$
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e1) {
+                    // Ignore
+                }
+            }
+        }
         return segmentStore;
     }
 
@@ -46,6 +46,8 @@ public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnaly
 
     private Map<String, IStatistics<ISegment>> fPerSegmentTypeStats = new HashMap<>();
 
+    private @Nullable SegmentStoreStatisticsSummary fSummary;
+
     @Override
     protected Iterable<IAnalysisModule> getDependentAnalyses() {
         ITmfTrace trace = getTrace();
@@ -65,19 +67,42 @@ public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnaly
             return false;
         }
 
-        IStatistics<ISegment> totalStats = getTotalStats(TmfTimeRange.ETERNITY.getStartTime().toNanos(), TmfTimeRange.ETERNITY.getEndTime().toNanos(), monitor);
-        if (totalStats == null) {
+        Iterable<@NonNull ISegment> store = getSegmentStore(TmfTimeRange.ETERNITY.getStartTime().toNanos(), TmfTimeRange.ETERNITY.getEndTime().toNanos());
+        if (store == null) {
             return false;
         }
 
-        Map<String, IStatistics<ISegment>> perTypeStats = getPerTypeStats(TmfTimeRange.ETERNITY.getStartTime().toNanos(), TmfTimeRange.ETERNITY.getEndTime().toNanos(), monitor);
+        /*
+         * Compute the statistics of the whole store and the summary used for
+         * the time ranges in a single pass
+         */
+        IStatistics<ISegment> totalStats = new Statistics<>(FCT_LENGTH, true);
+        Map<String, IStatistics<ISegment>> perTypeStats = new HashMap<>();
+        SegmentStoreStatisticsSummary summary = new SegmentStoreStatisticsSummary(this::getSegmentType, true);
+        for (ISegment segment : store) {
+            if (monitor.isCanceled()) {
+                return false;
+            }
+            totalStats.update(segment);
+            String segmentType = getSegmentType(segment);
+            if (segmentType != null) {
+                perTypeStats.computeIfAbsent(segmentType, type -> new Statistics<>(FCT_LENGTH, true)).update(segment);
+            }
+            summary.update(segment);
+        }
         fTotalStats = totalStats;
         fPerSegmentTypeStats = perTypeStats;
+        fSummary = summary;
 
         return true;
     }
 
     private @Nullable IStatistics<ISegment> getTotalStats(long start, long end, IProgressMonitor monitor) {
+        ISegmentStore<@NonNull ISegment> segmentStore = getProviderSegmentStore();
+        SegmentStoreStatisticsSummary summary = fSummary;
+        if (segmentStore != null && summary != null) {
+            return summary.getStatistics(segmentStore, start, end, monitor);
+        }
         Iterable<@NonNull ISegment> store = getSegmentStore(start, end);
         if (store == null) {
             return null;
@@ -114,6 +139,12 @@ public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnaly
     }
 
     private Map<@NonNull String, org.eclipse.tracecompass.analysis.timing.core.statistics.IStatistics<ISegment>> getPerTypeStats(long start, long end, IProgressMonitor monitor) {
+        ISegmentStore<@NonNull ISegment> segmentStore = getProviderSegmentStore();
+        SegmentStoreStatisticsSummary summary = fSummary;
+        if (segmentStore != null && summary != null) {
+            Map<String, IStatistics<ISegment>> perTypeStats = summary.getStatisticsPerType(segmentStore, start, end, monitor);
+            return perTypeStats != null ? perTypeStats : Collections.EMPTY_MAP;
+        }
         Iterable<@NonNull ISegment> store = getSegmentStore(start, end);
         if (monitor.isCanceled() || store == null) {
             return Collections.EMPTY_MAP;
@@ -152,27 +183,37 @@ public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnaly
      * @return The segment store
      */
     private @Nullable Iterable<@NonNull ISegment> getSegmentStore(long start, long end) {
-        ISegmentStoreProvider segmentStoreProviderModule = fSegmentStoreProviderModule;
-        if (segmentStoreProviderModule == null) {
+        if (fSegmentStoreProviderModule == null) {
             return null;
         }
-        if (segmentStoreProviderModule instanceof IAnalysisModule) {
-            ((IAnalysisModule) segmentStoreProviderModule).waitForCompletion();
-        }
         long t0 = start;
         long t1 = end;
         if (end < start) {
             t0 = end;
             t1 = start;
         }
-        ISegmentStore<@NonNull ISegment> segmentStore = segmentStoreProviderModule.getSegmentStore();
+        ISegmentStore<@NonNull ISegment> segmentStore = getProviderSegmentStore();
         return segmentStore != null ? t0 != TmfTimeRange.ETERNITY.getStartTime().toNanos() || t1 != TmfTimeRange.ETERNITY.getEndTime().toNanos() ?
                 (Iterable<@NonNull ISegment>) segmentStore.getIntersectingElements(t0, t1) : segmentStore
                 : Collections.emptyList();
     }
 
+    /**
+     * Get the segment store of the provider, once it is complete
+     */
+    private @Nullable ISegmentStore<@NonNull ISegment> getProviderSegmentStore() {
+        ISegmentStoreProvider segmentStoreProviderModule = fSegmentStoreProviderModule;
+        if (segmentStoreProviderModule == null) {
+            return null;
+        }
+        if (segmentStoreProviderModule instanceof IAnalysisModule) {
+            ((IAnalysisModule) segmentStoreProviderModule).waitForCompletion();
+        }
+        return segmentStoreProviderModule.getSegmentStore();
+    }
+
     private static @Nullable IStatistics<ISegment> calculateTotalManual(Iterable<@NonNull ISegment> segments, IProgressMonitor monitor) {
-        IStatistics<ISegment> total = new Statistics<>(FCT_LENGTH);
+        IStatistics<ISegment> total = new Statistics<>(FCT_LENGTH, true);
         Iterator<@NonNull ISegment> iter = segments.iterator();
         while (iter.hasNext()) {
             if (monitor.isCanceled()) {
@@ -197,7 +238,7 @@ public abstract class AbstractSegmentStatisticsAnalysis extends TmfAbstractAnaly
             if (segmentType != null) {
                 IStatistics<ISegment> values = perSegmentTypeStats.get(segmentType);
                 if (values == null) {
-                    values = new Statistics<>(FCT_LENGTH);
+                    values = new Statistics<>(FCT_LENGTH, true);
                 }
                 values.update(segment);
                 perSegmentTypeStats.put(segmentType, values);
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.tracecompass.analysis.timing.core.segmentstore.statistics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.analysis.timing.core.statistics.IStatistics;
+import org.eclipse.tracecompass.analysis.timing.core.statistics.Statistics;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+
+/**
+ * Summary of the durations of the segments of a segment store, by time bucket,
+ * to compute the statistics of any time range without reading all the
+ * segments of the range.
+ *
+ * The segments are put in the bucket of their start time. Each bucket has the
+ * statistics of its segments, total and per type. If the summary is created
+ * with the percentiles enabled, these statistics include the histograms used
+ * to estimate the percentiles of the durations, which take a few kilobytes per
+ * bucket and type. The buckets all have the same width,
+ * which doubles whenever there are more than {@value #MAX_BUCKETS} buckets, so the
+ * summary has a bounded size whatever the duration of the trace.
+ *
+ * A query merges the buckets entirely inside the time range, then reads from
+ * the segment store only the segments at the edges of the range: those that
+ * start in the partial buckets, and those that start before the range and end
+ * in it.
+ *
+ * The summary is filled by {@link #update(ISegment)}, it is not thread-safe
+ * while being filled.
+ *
+ * @since 3.2
+ */
+public class SegmentStoreStatisticsSummary {
+
+    private static final int MAX_BUCKETS = 1024;
+
+    private static final Function<ISegment, Long> FCT_LENGTH = s -> s.getLength();
+
+    private final Function<ISegment, @Nullable String> fTypeMapper;
+    private final boolean fPercentiles;
+    private final NavigableMap<Long, Bucket> fBuckets = new TreeMap<>();
+    private long fBucketWidth = 1;
+    private long fNbElements = 0;
+
+    /**
+     * Segments starting in a time bucket
+     */
+    private static final class Bucket {
+        private final boolean fPercentiles;
+        private final IStatistics<ISegment> fTotal;
+        private final Map<String, IStatistics<ISegment>> fPerType = new HashMap<>();
+
+        public Bucket(boolean percentiles) {
+            fPercentiles = percentiles;
+            fTotal = new Statistics<>(FCT_LENGTH, percentiles);
+        }
+
+        public void update(ISegment segment, @Nullable String type) {
+            fTotal.update(segment);
+            if (type != null) {
+                fPerType.computeIfAbsent(type, t -> new Statistics<>(FCT_LENGTH, fPercentiles)).update(segment);
+            }
+        }
+
+        public void merge(Bucket other) {
+            fTotal.merge(other.fTotal);
+            for (Entry<String, IStatistics<ISegment>> entry : other.fPerType.entrySet()) {
+                fPerType.computeIfAbsent(entry.getKey(), t -> new Statistics<>(FCT_LENGTH, fPercentiles)).merge(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Constructor, for statistics per type of segment
+     *
+     * @param typeMapper
+     *            Function returning the type of a segment, or null if the
+     *            segment should not be in the statistics per type
+     * @param percentiles
+     *            Whether to keep the histograms estimating the percentiles of
+     *            the durations
+     */
+    public SegmentStoreStatisticsSummary(Function<ISegment, @Nullable String> typeMapper, boolean percentiles) {
+        fTypeMapper = typeMapper;
+        fPercentiles = percentiles;
+    }
+
+    /**
+     * Constructor, for statistics per type of segment, without the
+     * histograms estimating the percentiles
+     *
+     * @param typeMapper
+     *            Function returning the type of a segment, or null if the
+     *            segment should not be in the statistics per type
+     */
+    public SegmentStoreStatisticsSummary(Function<ISegment, @Nullable String> typeMapper) {
+        this(typeMapper, false);
+    }
+
+    /**
+     * Constructor, without statistics per type of segment
+     */
+    public SegmentStoreStatisticsSummary() {
+        this(s -> null);
+    }
+
+    /**
+     * Add a segment to the summary. It must also be in the segment store that
+     * will be used for the queries.
+     *
+     * @param segment
+     *            The segment
+     */
+    public void update(ISegment segment) {
+        long key = Math.floorDiv(segment.getStart(), fBucketWidth);
+        Bucket bucket = fBuckets.get(key);
+        if (bucket == null) {
+            if (fBuckets.size() >= MAX_BUCKETS) {
+                while (fBuckets.size() >= MAX_BUCKETS) {
+                    doubleBucketWidth();
+                }
+                key = Math.floorDiv(segment.getStart(), fBucketWidth);
+                bucket = fBuckets.get(key);
+            }
+            if (bucket == null) {
+                bucket = new Bucket(fPercentiles);
+                fBuckets.put(key, bucket);
+            }
+        }
+        bucket.update(segment, fTypeMapper.apply(segment));
+        fNbElements++;
+    }
+
+    private void doubleBucketWidth() {
+        fBucketWidth *= 2;
+        NavigableMap<Long, Bucket> old = new TreeMap<>(fBuckets);
+        fBuckets.clear();
+        for (Entry<Long, Bucket> entry : old.entrySet()) {
+            long key = Math.floorDiv(entry.getKey(), 2L);
+            Bucket bucket = fBuckets.get(key);
+            if (bucket == null) {
+                fBuckets.put(key, entry.getValue());
+            } else {
+                bucket.merge(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Get the number of segments in the summary
+     *
+     * @return The number of segments
+     */
+    public long getNbElements() {
+        return fNbElements;
+    }
+
+    /**
+     * Get the statistics of the durations of the segments intersecting a time
+     * range
+     *
+     * @param store
+     *            The segment store containing the segments of this summary
+     * @param start
+     *            The start time of the range
+     * @param end
+     *            The end time of the range
+     * @param monitor
+     *            The progress monitor
+     * @return The statistics, or null if the monitor was canceled
+     */
+    public @Nullable IStatistics<ISegment> getStatistics(ISegmentStore<@NonNull ISegment> store, long start, long end, IProgressMonitor monitor) {
+        IStatistics<ISegment> total = new Statistics<>(FCT_LENGTH, fPercentiles);
+        boolean completed = query(store, start, end, monitor,
+                bucket -> total.merge(bucket.fTotal),
+                total::update);
+        return completed ? total : null;
+    }
+
+    /**
+     * Get the statistics of the durations of the segments intersecting a time
+     * range, per type of segment
+     *
+     * @param store
+     *            The segment store containing the segments of this summary
+     * @param start
+     *            The start time of the range
+     * @param end
+     *            The end time of the range
+     * @param monitor
+     *            The progress monitor
+     * @return The statistics per type, or null if the monitor was canceled
+     */
+    public @Nullable Map<String, IStatistics<ISegment>> getStatisticsPerType(ISegmentStore<@NonNull ISegment> store, long start, long end, IProgressMonitor monitor) {
+        Map<String, IStatistics<ISegment>> perType = new HashMap<>();
+        boolean completed = query(store, start, end, monitor,
+                bucket -> {
+                    for (Entry<String, IStatistics<ISegment>> entry : bucket.fPerType.entrySet()) {
+                        perType.computeIfAbsent(entry.getKey(), t -> new Statistics<>(FCT_LENGTH, fPercentiles)).merge(entry.getValue());
+                    }
+                },
+                segment -> {
+                    String type = fTypeMapper.apply(segment);
+                    if (type != null) {
+                        perType.computeIfAbsent(type, t -> new Statistics<>(FCT_LENGTH, fPercentiles)).update(segment);
+                    }
+                });
+        return completed ? perType : null;
+    }
+
+    /**
+     * Visit the buckets entirely inside a range, then the segments
+     * intersecting the range that are not in those buckets
+     *
+     * @return false if the monitor was canceled
+     */
+    private boolean query(ISegmentStore<@NonNull ISegment> store, long start, long end, IProgressMonitor monitor,
+            Consumer<Bucket> bucketAction, Consumer<ISegment> segmentAction) {
+        long t0 = Math.min(start, end);
+        long t1 = Math.max(start, end);
+        long width = fBucketWidth;
+
+        /* The buckets whose start times are all in the range */
+        long firstKey = Math.floorDiv(t0, width);
+        if (Math.floorMod(t0, width) != 0) {
+            firstKey++;
+        }
+        long lastKey = Math.floorDiv(t1, width);
+        if (Math.floorMod(t1, width) != width - 1) {
+            lastKey--;
+        }
+        if (firstKey > lastKey) {
+            /* No complete bucket, read all the segments */
+            return forEach(store.getIntersectingElements(t0, t1), s -> true, segmentAction, monitor);
+        }
+        for (Bucket bucket : fBuckets.subMap(firstKey, true, lastKey, true).values()) {
+            if (monitor.isCanceled()) {
+                return false;
+            }
+            bucketAction.accept(bucket);
+        }
+
+        /* The segments starting before the first complete bucket */
+        long bucketsStart = firstKey * width;
+        if (bucketsStart != Long.MIN_VALUE && !forEach(store.getIntersectingElements(t0, Math.max(t0, bucketsStart - 1)),
+                s -> s.getStart() < bucketsStart, segmentAction, monitor)) {
+            return false;
+        }
+        /* The segments starting after the last complete bucket */
+        long bucketsEnd = lastKey * width + (width - 1);
+        if (bucketsEnd < t1) {
+            return forEach(store.getIntersectingElements(bucketsEnd + 1, t1),
+                    s -> s.getStart() > bucketsEnd, segmentAction, monitor);
+        }
+        return true;
+    }
+
+    private static boolean forEach(Iterable<@NonNull ISegment> segments, Predicate<ISegment> filter,
+            Consumer<ISegment> segmentAction, IProgressMonitor monitor) {
+        for (ISegment segment : segments) {
+            if (monitor.isCanceled()) {
+                return false;
+            }
+            if (filter.test(segment)) {
+                segmentAction.accept(segment);
+            }
+        }
+        return true;
+    }
+
+}
@@ -85,6 +85,51 @@ public interface IStatistics<@NonNull E> {
      */
     double getTotal();
 
+    /**
+     * Get a percentile of the values, the value below which a percentage of
+     * the values fall. Implementations may return an estimate to avoid
+     * keeping all the values, see {@link Statistics#getPercentile(double)}.
+     *
+     * The default implementation only has the summary statistics to work
+     * with: the 0th and 100th percentiles are the exact minimum and maximum,
+     * and the others are estimated from the mean and standard deviation as
+     * if the values were normally distributed, bounded by the minimum and
+     * maximum. Implementations that can do better should override it.
+     *
+     * @param percentile
+     *            The percentile, between 0 and 100
+     * @return The value of the percentile, or {@link Long#MIN_VALUE} if
+     *         {@link #getNbElements()} is 0.
+     * @since 3.2
+     */
+    default long getPercentile(double percentile) {
+        if (getNbElements() == 0) {
+            return Long.MIN_VALUE;
+        }
+        double ratio = Math.min(100.0, Math.max(0.0, percentile)) / 100.0;
+        double stdDev = getStdDev();
+        if (ratio == 0.0 || (Double.isNaN(stdDev) && ratio <= 0.5)) {
+            return getMin();
+        }
+        if (ratio == 1.0 || Double.isNaN(stdDev)) {
+            /* With less than 3 values, the nearest rank is the min or max */
+            return getMax();
+        }
+        /*
+         * Quantile of the standard normal distribution, rational
+         * approximation 26.2.23 of Abramowitz and Stegun, with an error below
+         * 4.5e-4 standard deviations
+         */
+        double p = Math.min(ratio, 1.0 - ratio);
+        double t = Math.sqrt(-2.0 * Math.log(p));
+        double z = t - (2.515517 + 0.802853 * t + 0.010328 * t * t) / (1.0 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+        if (ratio < 0.5) {
+            z = -z;
+        }
+        double value = getMean() + z * stdDev;
+        return Math.max(getMin(), Math.min(getMax(), Math.round(value)));
+    }
+
     /**
      * Update the statistics based on a given object
      * <p>
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.timing.core.statistics;
+
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Histogram of long values with bins of logarithmic width, to estimate the
+ * quantiles of the values in bounded memory. The values from 0 to 15 each have
+ * their own bin, then each power of 2 is split in 16 bins, so a bin spans at
+ * most 1/16th of its values, whatever their magnitude. Negative values are
+ * counted in a second histogram, on their absolute value.
+ *
+ * The bins do not depend on the values, so two histograms are merged by
+ * adding their counts, and the merge of histograms is identical to the
+ * histogram of all the values. Only the range of bins between the smallest and
+ * largest values is allocated, 16 counts of 8 bytes per power of 2. Durations
+ * from 1 µs to 1 s in nanoseconds take 320 bins, about 2.6 KB, and the
+ * histogram never exceeds 960 bins per sign, about 7.7 KB. The counts of the
+ * negative values are only allocated with the first negative value.
+ */
+final class LogHistogram {
+
+    private static final int SUB_BIN_BITS = 4;
+    private static final int NB_SUB_BINS = 1 << SUB_BIN_BITS;
+    private static final int MAX_BIN = getBin(Long.MAX_VALUE);
+
+    private final Bins fPositive = new Bins();
+    private @Nullable Bins fNegative = null;
+
+    /**
+     * Counts of a range of bins
+     */
+    private static final class Bins {
+        private long[] fCounts = new long[0];
+        private int fFirstBin = 0;
+        private long fTotal = 0;
+
+        public void add(int bin, long count) {
+            if (fCounts.length == 0) {
+                fCounts = new long[1];
+                fFirstBin = bin;
+            } else if (bin < fFirstBin) {
+                long[] counts = new long[fCounts.length + fFirstBin - bin];
+                System.arraycopy(fCounts, 0, counts, fFirstBin - bin, fCounts.length);
+                fCounts = counts;
+                fFirstBin = bin;
+            } else if (bin >= fFirstBin + fCounts.length) {
+                fCounts = Arrays.copyOf(fCounts, bin - fFirstBin + 1);
+            }
+            fCounts[bin - fFirstBin] += count;
+            fTotal += count;
+        }
+
+        public void addAll(Bins other) {
+            for (int i = 0; i < other.fCounts.length; i++) {
+                if (other.fCounts[i] != 0) {
+                    add(other.fFirstBin + i, other.fCounts[i]);
+                }
+            }
+        }
+
+        public void copy(Bins other) {
+            fCounts = other.fCounts.clone();
+            fFirstBin = other.fFirstBin;
+            fTotal = other.fTotal;
+        }
+
+        /**
+         * Get the value at a rank, the smallest value having rank 1
+         */
+        public long getValue(long rank) {
+            long cumulative = 0;
+            for (int i = 0; i < fCounts.length; i++) {
+                long count = fCounts[i];
+                if (count > 0 && cumulative + count >= rank) {
+                    int bin = fFirstBin + i;
+                    long binStart = getBinStart(bin);
+                    long binEnd = (bin == MAX_BIN) ? Long.MAX_VALUE : getBinStart(bin + 1) - 1;
+                    long width = binEnd - binStart;
+                    double fraction = (double) (rank - cumulative) / count;
+                    /* The rounding of the double may exceed the width */
+                    return binStart + Math.min(width, (long) (width * fraction));
+                }
+                cumulative += count;
+            }
+            throw new IllegalArgumentException("Rank " + rank + " larger than the number of values " + fTotal); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    /**
+     * Add a value to the histogram
+     *
+     * @param value
+     *            The value
+     */
+    public void add(long value) {
+        if (value >= 0) {
+            fPositive.add(getBin(value), 1);
+        } else {
+            /* -(value + 1) does not overflow for Long.MIN_VALUE */
+            getNegative().add(getBin(-(value + 1)), 1);
+        }
+    }
+
+    private Bins getNegative() {
+        Bins negative = fNegative;
+        if (negative == null) {
+            negative = new Bins();
+            fNegative = negative;
+        }
+        return negative;
+    }
+
+    /**
+     * Add the values of another histogram to this one
+     *
+     * @param other
+     *            The other histogram
+     */
+    public void merge(LogHistogram other) {
+        fPositive.addAll(other.fPositive);
+        Bins otherNegative = other.fNegative;
+        if (otherNegative != null) {
+            getNegative().addAll(otherNegative);
+        }
+    }
+
+    /**
+     * Replace the values of this histogram by those of another one
+     *
+     * @param other
+     *            The other histogram
+     */
+    public void copy(LogHistogram other) {
+        fPositive.copy(other.fPositive);
+        Bins otherNegative = other.fNegative;
+        if (otherNegative != null) {
+            getNegative().copy(otherNegative);
+        } else {
+            fNegative = null;
+        }
+    }
+
+    /**
+     * Estimate the value at a rank in the sorted values, by interpolating in
+     * its bin
+     *
+     * @param rank
+     *            The rank, the smallest value has rank 1
+     * @return The estimated value
+     */
+    public long getValue(long rank) {
+        Bins negative = fNegative;
+        long nbNegative = (negative == null) ? 0 : negative.fTotal;
+        if (negative != null && rank <= nbNegative) {
+            /* The largest absolute values are the smallest values */
+            return -negative.getValue(nbNegative - rank + 1) - 1;
+        }
+        return fPositive.getValue(rank - nbNegative);
+    }
+
+    /**
+     * Get the bin of a positive value
+     *
+     * @param value
+     *            The value, positive or 0
+     * @return The index of the bin
+     */
+    static int getBin(long value) {
+        if (value < NB_SUB_BINS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBin = (int) (value >>> (exponent - SUB_BIN_BITS)) & (NB_SUB_BINS - 1);
+        return (exponent - SUB_BIN_BITS + 1) * NB_SUB_BINS + subBin;
+    }
+
+    /**
+     * Get the smallest value of a bin
+     *
+     * @param bin
+     *            The index of the bin
+     * @return The smallest value in the bin
+     */
+    static long getBinStart(int bin) {
+        if (bin < NB_SUB_BINS) {
+            return bin;
+        }
+        int exponent = bin / NB_SUB_BINS + SUB_BIN_BITS - 1;
+        long subBin = bin % NB_SUB_BINS;
+        return (NB_SUB_BINS + subBin) << (exponent - SUB_BIN_BITS);
+    }
+}
@@ -20,6 +20,15 @@ import org.eclipse.tracecompass.common.core.NonNullUtils;
  * is not a {@link Long}, a mapper function should be passed in the constructor
  * to retrieve the long value to make statistics on from an object.
  *
+ * By default, the percentiles are estimated from the mean and standard
+ * deviation, see {@link IStatistics#getPercentile(double)}. Statistics created
+ * with the percentiles enabled estimate them instead from a histogram of the
+ * values with bins of logarithmic width, which takes bounded memory and can be
+ * merged like the other statistics. These estimates are within about 6% of the
+ * exact values, but the histogram takes a few kilobytes, see
+ * {@link LogHistogram} for its size, so it should only be enabled for the
+ * statistics whose percentiles are read.
+ *
  * @author Bernd Hufmann
  * @author Geneviève Bastien
  *
@@ -40,17 +49,35 @@ public class Statistics<@NonNull E> implements IStatistics<E> {
      */
     private double fVariance;
     private double fTotal;
+    /*
+     * Whether the histogram is kept. It is allocated with the first value, and
+     * dropped if statistics without histogram are merged in.
+     */
+    private boolean fPercentiles;
+    private @Nullable LogHistogram fHistogram = null;
 
     /**
      * Constructor
      */
     public Statistics() {
+        this(false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param percentiles
+     *            Whether to keep a histogram of the values to estimate the
+     *            percentiles
+     * @since 3.2
+     */
+    public Statistics(boolean percentiles) {
         this(e -> {
             if (!(e instanceof Long)) {
                 throw new IllegalStateException("The object " + e + " is not a number"); //$NON-NLS-1$//$NON-NLS-2$
             }
             return (Long) e;
-        });
+        }, percentiles);
     }
 
     /**
@@ -61,11 +88,27 @@ public class Statistics<@NonNull E> implements IStatistics<E> {
      *            for and returns the value to use for the statistics
      */
     public Statistics(Function<E, Long> mapper) {
+        this(mapper, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param mapper
+     *            A mapper function that takes an object to computes statistics
+     *            for and returns the value to use for the statistics
+     * @param percentiles
+     *            Whether to keep a histogram of the values to estimate the
+     *            percentiles
+     * @since 3.2
+     */
+    public Statistics(Function<E, Long> mapper, boolean percentiles) {
         fNbElements = 0;
         fMean = 0.0;
         fVariance = 0.0;
         fTotal = 0.0;
         fMapper = mapper;
+        fPercentiles = percentiles;
     }
 
     @Override
@@ -127,6 +170,30 @@ public class Statistics<@NonNull E> implements IStatistics<E> {
         return fTotal;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * If the percentiles are enabled, the value is estimated from the
+     * histogram of the values, and is within about 1/16th of the exact value.
+     * Otherwise, it is estimated from the mean and standard deviation. The 0th
+     * and 100th percentiles are the exact minimum and maximum.
+     *
+     * @since 3.2
+     */
+    @Override
+    public long getPercentile(double percentile) {
+        LogHistogram histogram = fHistogram;
+        if (fNbElements == 0 || histogram == null) {
+            return IStatistics.super.getPercentile(percentile);
+        }
+        /* Nearest rank, the smallest value has rank 1 */
+        double ratio = Math.min(100.0, Math.max(0.0, percentile)) / 100.0;
+        long rank = Math.max(1, (long) Math.ceil(ratio * fNbElements));
+        long value = histogram.getValue(Math.min(rank, fNbElements));
+        /* The minimum and maximum are exact */
+        return Math.max(getMin(), Math.min(getMax(), value));
+    }
+
     @Override
     public void update(E object) {
         Long value = NonNullUtils.checkNotNull(fMapper.apply(object));
@@ -146,6 +213,27 @@ public class Statistics<@NonNull E> implements IStatistics<E> {
         fMean += delta / fNbElements;
         fVariance += delta * (value - fMean);
         fTotal += value;
+        if (fPercentiles) {
+            getHistogram().add(value);
+        }
+    }
+
+    private LogHistogram getHistogram() {
+        LogHistogram histogram = fHistogram;
+        if (histogram == null) {
+            histogram = new LogHistogram();
+            fHistogram = histogram;
+        }
+        return histogram;
+    }
+
+    /**
+     * Stop estimating the percentiles from the histogram, when the histogram
+     * does not have all the values
+     */
+    private void dropHistogram() {
+        fPercentiles = false;
+        fHistogram = null;
     }
 
     @Override
@@ -161,7 +249,7 @@ public class Statistics<@NonNull E> implements IStatistics<E> {
         } else if (other.fNbElements == 1) {
             update(NonNullUtils.checkNotNull(other.getMaxObject()));
         } else if (fNbElements == 1) {
-            Statistics<E> copyOther = new Statistics<>(fMapper);
+            Statistics<E> copyOther = new Statistics<>(fMapper, fPercentiles);
             copyOther.copy(other);
             copyOther.update(NonNullUtils.checkNotNull(getMaxObject()));
             copy(copyOther);
@@ -187,6 +275,13 @@ public class Statistics<@NonNull E> implements IStatistics<E> {
         double otherAverage = other.getMean();
         fNbElements += otherSegments;
         fTotal += other.getTotal();
+        LogHistogram histogram = fHistogram;
+        LogHistogram otherHistogram = other.fHistogram;
+        if (histogram != null && otherHistogram != null) {
+            histogram.merge(otherHistogram);
+        } else {
+            dropHistogram();
+        }
 
         /*
          * Average is a weighted average
@@ -194,25 +289,13 @@ public class Statistics<@NonNull E> implements IStatistics<E> {
         fMean = ((oldNbSeg * oldAverage) + (otherAverage * otherSegments)) / fNbElements;
 
         /*
-         * This one is a bit tricky.
-         *
-         * The variance is the sum of the deltas from a mean squared.
-         *
-         * So if we add the old mean squared back to to variance and remove the
-         * new mean, the standard deviation can be easily calculated.
-         */
-        double avg1Sq = oldAverage * oldAverage;
-        double avg2sq = otherAverage * otherAverage;
-        double avgtSq = fMean * fMean;
-        /*
-         * This is a tricky part, bear in mind that the set is not continuous
-         * but discrete, Therefore, we have for n elements, n-1 intervals
-         * between them. Ergo, n-1 intervals are used for divisions and
-         * multiplications.
+         * The variance field is the sum of the squared deltas from the mean.
+         * The sums of both sets are added, with the correction for the
+         * difference between their means (Chan et al.), which is exact so the
+         * merge of many partial statistics does not accumulate errors.
          */
-        double variance1 = fVariance / (oldNbSeg - 1);
-        double variance2 = other.fVariance / (otherSegments - 1);
-        fVariance = ((variance1 + avg1Sq - avgtSq) * (oldNbSeg - 1) + (variance2 + avg2sq - avgtSq) * (otherSegments - 1));
+        double delta = otherAverage - oldAverage;
+        fVariance += other.fVariance + delta * delta * ((double) oldNbSeg * otherSegments / fNbElements);
     }
 
     private void copy(Statistics<E> copyOther) {
@@ -221,6 +304,12 @@ public class Statistics<@NonNull E> implements IStatistics<E> {
         fMin = copyOther.fMin;
         fNbElements = copyOther.fNbElements;
         fTotal = copyOther.fTotal;
+        LogHistogram otherHistogram = copyOther.fHistogram;
+        if (fPercentiles && otherHistogram != null) {
+            getHistogram().copy(otherHistogram);
+        } else {
+            dropHistogram();
+        }
         fVariance = copyOther.fVariance;
     }
 
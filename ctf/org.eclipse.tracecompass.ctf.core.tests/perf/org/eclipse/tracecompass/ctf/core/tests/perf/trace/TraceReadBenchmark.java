@@ -13,6 +13,7 @@
 
 package org.eclipse.tracecompass.ctf.core.tests.perf.trace;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import static org.junit.Assert.fail;
 
 import org.eclipse.test.performance.Dimension;
@@ -21,8 +22,13 @@ import org.eclipse.test.performance.PerformanceMeter;
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDefinition;
 import org.eclipse.tracecompass.ctf.core.tests.shared.CtfTestTraceUtils;
+import org.eclipse.tracecompass.ctf.core.trace.CTFResponse;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInput;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventCursor;
 import org.eclipse.tracecompass.testtraces.ctf.CtfTestTrace;
 import org.junit.Test;
 
@@ -36,6 +42,10 @@ public class TraceReadBenchmark {
 
     private static final String TEST_SUITE_NAME = "CTF Read Benchmark";
     private static final String TEST_ID = "org.eclipse.linuxtools#" + TEST_SUITE_NAME;
+    private static final String CURSOR_TEST_SUITE_NAME = "CTF Cursor Read Benchmark";
+    private static final String CURSOR_TEST_ID = "org.eclipse.linuxtools#" + CURSOR_TEST_SUITE_NAME;
+    private static final String OPEN_TEST_SUITE_NAME = "CTF Open Benchmark";
+    private static final String OPEN_TEST_ID = "org.eclipse.linuxtools#" + OPEN_TEST_SUITE_NAME;
     private static final int LOOP_COUNT = 100;
 
     /**
@@ -54,6 +64,65 @@ public class TraceReadBenchmark {
         readTrace(CtfTestTrace.KERNEL_VM, "trace-kernel-vm", false);
     }
 
+    /**
+     * Benchmark reading the trace "kernel" with event cursors, to compare
+     * with {@link #testKernelTrace()}
+     */
+    @Test
+    public void testKernelTraceCursor() {
+        readTraceWithCursor(CtfTestTrace.KERNEL, "trace-kernel");
+    }
+
+    /**
+     * Benchmark reading the bigger trace "kernel_vm" with event cursors
+     */
+    @Test
+    public void testKernelVmTraceCursor() {
+        readTraceWithCursor(CtfTestTrace.KERNEL_VM, "trace-kernel-vm");
+    }
+
+    /**
+     * Benchmark opening the trace "kernel", up to knowing its end time
+     */
+    @Test
+    public void testKernelTraceOpen() {
+        openTrace(CtfTestTrace.KERNEL, "trace-kernel");
+    }
+
+    /**
+     * Benchmark opening the bigger trace "kernel_vm", up to knowing its end
+     * time
+     */
+    @Test
+    public void testKernelVmTraceOpen() {
+        openTrace(CtfTestTrace.KERNEL_VM, "trace-kernel-vm");
+    }
+
+    /**
+     * Open a trace like a trace type does: parse the metadata, create a
+     * reader, then go to the last event to get the end time, which indexes the
+     * packets of all the stream files.
+     */
+    private static void openTrace(CtfTestTrace testTrace, String testName) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(OPEN_TEST_ID + '#' + testName);
+        perf.tagAsSummary(pm, OPEN_TEST_SUITE_NAME + ':' + testName, Dimension.ELAPSED_PROCESS);
+
+        for (int loop = 0; loop < LOOP_COUNT; loop++) {
+            pm.start();
+            try {
+                CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+                try (CTFTraceReader traceReader = new CTFTraceReader(trace);) {
+                    traceReader.goToLastEvent();
+                }
+            } catch (CTFException e) {
+                fail("Test failed at iteration " + loop + ':' + e.getMessage());
+            }
+            pm.stop();
+        }
+        pm.commit();
+    }
+
     private static void readTrace(CtfTestTrace testTrace, String testName, boolean inGlobalSummary) {
         Performance perf = Performance.getDefault();
         PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
@@ -84,4 +153,36 @@ public class TraceReadBenchmark {
         }
         pm.commit();
     }
+
+    /**
+     * Decode all the events of each stream file in a reused cursor, without
+     * creating their definitions or sorting them by timestamp.
+     */
+    private static void readTraceWithCursor(CtfTestTrace testTrace, String testName) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(CURSOR_TEST_ID + '#' + testName);
+        perf.tagAsSummary(pm, CURSOR_TEST_SUITE_NAME + ':' + testName, Dimension.CPU_TIME);
+
+        for (int loop = 0; loop < LOOP_COUNT; loop++) {
+            pm.start();
+            try {
+                CTFTrace trace = CtfTestTraceUtils.getTrace(testTrace);
+                EventCursor cursor = new EventCursor();
+                for (ICTFStream stream : trace.getStreams()) {
+                    for (CTFStreamInput streamInput : stream.getStreamInputs()) {
+                        try (CTFStreamInputReader reader = new CTFStreamInputReader(checkNotNull(streamInput))) {
+                            while (reader.readNextEvent(cursor) == CTFResponse.OK) {
+                                /* Do something with the event */
+                                cursor.getCPU();
+                            }
+                        }
+                    }
+                }
+            } catch (CTFException e) {
+                fail("Test failed at iteration " + loop + ':' + e.getMessage());
+            }
+            pm.stop();
+        }
+        pm.commit();
+    }
 }
@@ -14,9 +14,12 @@ package org.eclipse.tracecompass.ctf.core.tests.trace;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -32,8 +35,11 @@ import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventCursor;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructCursor;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderCompactDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
 import org.junit.Test;
@@ -52,6 +58,13 @@ public class CTFPacketReaderTest {
         return new BitBuffer(ByteBuffer.wrap(bytes));
     }
 
+    /* Bit buffer of a packet whose events start after a 16-bit header */
+    private static @NonNull BitBuffer createEventsBitBuffer(byte[] bytes) throws CTFException {
+        BitBuffer input = createBitBuffer(bytes);
+        input.position(16);
+        return input;
+    }
+
     /**
      * Test a packet with fields and a header (a normal packet)
      *
@@ -226,4 +239,190 @@ public class CTFPacketReaderTest {
         assertFalse(cpr.hasMoreEvents());
     }
 
+    /**
+     * Test reading a packet with an {@link EventCursor}, which must give the
+     * same events as the definitions
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testPacketCursor() throws CTFException {
+        byte[] bytes = { (byte) 0x00, (byte) 0x02, (byte) 0x00, (byte) 0x00, (byte) 0x01, (byte) 0x00, (byte) 0x01, (byte) 0x5a };
+        BitBuffer input = createBitBuffer(bytes);
+        final StructDeclaration packetHeader = new StructDeclaration(8);
+        packetHeader.addField(CTFStrings.EVENTS_DISCARDED, IntegerDeclaration.UINT_16L_DECL);
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, packetHeader.createDefinition(null, ILexicalScope.TRACE, input), 8, 0, 16);
+        final EventDeclaration eventDec = new EventDeclaration();
+        eventDec.setName("Hello");
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("timestamp", IntegerDeclaration.UINT_16L_DECL);
+        fields.addField("field", IntegerDeclaration.UINT_8_DECL);
+        eventDec.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Collections.singletonList(eventDec);
+        CTFTrace trace = new CTFTrace();
+        CTFPacketReader cpr = new CTFPacketReader(input, packetContext, declarations, null, null, null, trace);
+        EventCursor cursor = new EventCursor();
+        assertTrue(cpr.hasMoreEvents());
+        cpr.readNextEvent(cursor);
+        assertEquals(eventDec, cursor.getDeclaration());
+        assertEquals(0L, cursor.getTimestamp());
+        StructCursor eventFields = cursor.getFields();
+        assertNotNull(eventFields);
+        int field = eventFields.getFieldIndex("field");
+        assertEquals(1L, eventFields.getLong(field));
+        assertTrue(cpr.hasMoreEvents());
+        cpr.readNextEvent(cursor);
+        assertEquals(256L, cursor.getTimestamp());
+        assertEquals(eventFields, cursor.getFields());
+        assertEquals(0x5a, eventFields.getLong(field));
+        assertTrue(cpr.hasMoreEvents());
+        cpr.readNextEvent(cursor);
+        assertEquals(256L, cursor.getTimestamp());
+        assertEquals(CTFStrings.LOST_EVENT_NAME, cursor.getDeclaration().getName());
+        assertEquals(512L, cursor.getLostEvents());
+        assertNull(cursor.getFields());
+        assertFalse(cpr.hasMoreEvents());
+    }
+
+    /**
+     * Test reading a packet with a compact event header with an
+     * {@link EventCursor}
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testPacketCursorCompactHeader() throws CTFException {
+        /* id 1, timestamp 5, then extended id 0, timestamp 0x100 */
+        byte[] bytes = { (byte) 0x08, (byte) 0x00, (byte) 0x00, (byte) 0x05, (byte) 0x2a,
+                (byte) 0xf8, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x01, (byte) 0x00,
+                (byte) 0x2b };
+        BitBuffer input = createBitBuffer(bytes);
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, EMPTY_STRUCT.createDefinition(null, ILexicalScope.TRACE, new BitBuffer()), bytes.length, 0, 0);
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("field", IntegerDeclaration.UINT_8_DECL);
+        final EventDeclaration first = new EventDeclaration();
+        first.setName("first");
+        first.setFields(fields);
+        final EventDeclaration second = new EventDeclaration();
+        second.setName("second");
+        second.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Arrays.asList(first, second);
+        CTFTrace trace = new CTFTrace();
+        CTFPacketReader cpr = new CTFPacketReader(input, packetContext, declarations, EventHeaderCompactDeclaration.getEventHeader(ByteOrder.BIG_ENDIAN), null, null, trace);
+        CTFPacketReader expectedReader = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, EventHeaderCompactDeclaration.getEventHeader(ByteOrder.BIG_ENDIAN), null, null, trace);
+        EventCursor cursor = new EventCursor();
+        while (expectedReader.hasMoreEvents()) {
+            EventDefinition expected = expectedReader.readNextEvent();
+            assertTrue(cpr.hasMoreEvents());
+            cpr.readNextEvent(cursor);
+            assertEquals(expected.getDeclaration(), cursor.getDeclaration());
+            assertEquals(expected.getTimestamp(), cursor.getTimestamp());
+            StructCursor eventFields = cursor.getFields();
+            assertNotNull(eventFields);
+            assertEquals(((IntegerDefinition) expected.getFields().getDefinition("field")).getValue(), eventFields.getLong(0));
+        }
+        assertFalse(cpr.hasMoreEvents());
+        assertEquals(first, cursor.getDeclaration());
+        assertEquals(0x100L, cursor.getTimestamp());
+    }
+
+    /**
+     * Test skipping the events before a timestamp with an {@link EventCursor},
+     * like a seek does
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testSkipEventsBefore() throws CTFException {
+        /* 512 events discarded, then id 1, timestamp 5, then extended id 0, timestamp 0x100 */
+        byte[] bytes = { (byte) 0x00, (byte) 0x02,
+                (byte) 0x08, (byte) 0x00, (byte) 0x00, (byte) 0x05, (byte) 0x2a,
+                (byte) 0xf8, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x01, (byte) 0x00,
+                (byte) 0x2b };
+        final StructDeclaration packetHeader = new StructDeclaration(8);
+        packetHeader.addField(CTFStrings.EVENTS_DISCARDED, IntegerDeclaration.UINT_16L_DECL);
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, packetHeader.createDefinition(null, ILexicalScope.TRACE, createBitBuffer(bytes)), bytes.length, 0, 16);
+        StructDeclaration fields = new StructDeclaration(8);
+        fields.addField("field", IntegerDeclaration.UINT_8_DECL);
+        final EventDeclaration first = new EventDeclaration();
+        first.setName("first");
+        first.setFields(fields);
+        final EventDeclaration second = new EventDeclaration();
+        second.setName("second");
+        second.setFields(fields);
+        List<@Nullable IEventDeclaration> declarations = Arrays.asList(first, second);
+        CTFTrace trace = new CTFTrace();
+        EventCursor cursor = new EventCursor();
+
+        /* Nothing to skip */
+        CTFPacketReader cpr = new CTFPacketReader(createEventsBitBuffer(bytes), packetContext, declarations, EventHeaderCompactDeclaration.getEventHeader(ByteOrder.BIG_ENDIAN), null, null, trace);
+        assertEquals(0, cpr.skipEventsBefore(0, cursor));
+        assertEquals(5L, cpr.readNextEvent().getTimestamp());
+
+        /* The next event is read again with its definition */
+        cpr = new CTFPacketReader(createEventsBitBuffer(bytes), packetContext, declarations, EventHeaderCompactDeclaration.getEventHeader(ByteOrder.BIG_ENDIAN), null, null, trace);
+        assertEquals(1, cpr.skipEventsBefore(6, cursor));
+        EventDefinition event = cpr.readNextEvent();
+        assertEquals(first, event.getDeclaration());
+        assertEquals(0x100L, event.getTimestamp());
+        assertEquals(0x2bL, ((IntegerDefinition) event.getFields().getDefinition("field")).getValue());
+        assertEquals(CTFStrings.LOST_EVENT_NAME, cpr.readNextEvent().getDeclaration().getName());
+        assertFalse(cpr.hasMoreEvents());
+
+        /* Skip the lost events too */
+        cpr = new CTFPacketReader(createEventsBitBuffer(bytes), packetContext, declarations, EventHeaderCompactDeclaration.getEventHeader(ByteOrder.BIG_ENDIAN), null, null, trace);
+        assertEquals(3, cpr.skipEventsBefore(1000, cursor));
+        assertFalse(cpr.hasMoreEvents());
+    }
+
+    /**
+     * Test the timestamps found in the fields of events without header: the
+     * cursor must find the same timestamp fields as the definitions, and the
+     * events must not be skipped with the cursor timestamps
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testFieldTimestamp() throws CTFException {
+        /* Timestamp 5, field 0x2a, then timestamp 0x100, field 0x2b */
+        byte[] bytes = { (byte) 0x05, (byte) 0x00, (byte) 0x2a, (byte) 0x00, (byte) 0x01, (byte) 0x2b };
+        ICTFPacketDescriptor packetContext = new StreamInputPacketIndexEntry(0, EMPTY_STRUCT.createDefinition(null, ILexicalScope.TRACE, new BitBuffer()), bytes.length, 0, 0);
+        StructDeclaration underscored = new StructDeclaration(8);
+        underscored.addField("_timestamp", IntegerDeclaration.UINT_16L_DECL);
+        underscored.addField("field", IntegerDeclaration.UINT_8_DECL);
+        StructDeclaration common = new StructDeclaration(8);
+        common.addField(CTFStrings.TIMESTAMP, IntegerDeclaration.UINT_16L_DECL);
+        StructDeclaration nested = new StructDeclaration(8);
+        nested.addField("common", common);
+        nested.addField("field", IntegerDeclaration.UINT_8_DECL);
+        CTFTrace trace = new CTFTrace();
+
+        for (StructDeclaration fields : Arrays.asList(underscored, nested)) {
+            final EventDeclaration eventDec = new EventDeclaration();
+            eventDec.setName("Hello");
+            eventDec.setFields(fields);
+            List<@Nullable IEventDeclaration> declarations = Collections.singletonList(eventDec);
+            CTFPacketReader cpr = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, null, null, null, trace);
+            CTFPacketReader expectedReader = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, null, null, null, trace);
+            EventCursor cursor = new EventCursor();
+            for (long timestamp : new long[] { 5, 0x100 }) {
+                assertEquals(timestamp, expectedReader.readNextEvent().getTimestamp());
+                cpr.readNextEvent(cursor);
+                assertEquals(timestamp, cursor.getTimestamp());
+                assertTrue(cursor.isTimestampInFields());
+            }
+
+            /* Only the definitions give the timestamps of these events */
+            cpr = new CTFPacketReader(createBitBuffer(bytes), packetContext, declarations, null, null, null, trace);
+            assertEquals(0, cpr.skipEventsBefore(1000, cursor));
+            assertEquals(5L, cpr.readNextEvent().getTimestamp());
+        }
+    }
+
 }
@@ -135,6 +135,27 @@ public class CTFStreamInputTest {
         assertEquals(fixture.getTimestampEnd(), 1L);
     }
 
+    /**
+     * Run the int indexPackets() method test, it should index the same
+     * packets as repeated calls to addPacketHeaderIndex().
+     *
+     * @throws CTFException
+     */
+    @Test
+    public void testIndexPackets() throws CTFException {
+        CTFStreamInput sequential = new CTFStreamInput(new CTFStream(CtfTestTraceUtils.getTrace(testTrace)),
+                createFile());
+        int nbPackets = 0;
+        while (sequential.addPacketHeaderIndex()) {
+            nbPackets++;
+        }
+        assertTrue(nbPackets > 0);
+
+        assertEquals(nbPackets, fixture.indexPackets());
+        assertEquals(0, fixture.indexPackets());
+        assertFalse(fixture.addPacketHeaderIndex());
+    }
+
     CTFStreamInput s1;
     CTFStreamInput s2;
 
@@ -13,6 +13,7 @@ package org.eclipse.tracecompass.ctf.core.tests.trace;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
@@ -274,6 +275,28 @@ public class MetadataTest {
         assertEquals("bozo_the_clown", eventDeclarations.get(1).getName());
     }
 
+    /**
+     * Test parsing the same metadata for two traces, the second one reuses the
+     * syntax tree of the first one but has its own declarations
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testSameTextMD() throws CTFException {
+        CTFTrace first = testSingleFragment();
+        fixture.parseTextFragment(mdSecond);
+        CTFTrace second = testSingleFragment();
+
+        IEventDeclaration firstEvent = Iterables.getFirst(first.getEventDeclarations(0L), null);
+        IEventDeclaration secondEvent = Iterables.getFirst(second.getEventDeclarations(0L), null);
+        assertNotNull(firstEvent);
+        assertNotNull(secondEvent);
+        assertEquals(firstEvent.getName(), secondEvent.getName());
+        assertNotSame(firstEvent, secondEvent);
+        assertEquals(2, first.getEventDeclarations(0L).size());
+    }
+
     /**
      * Run the ByteOrder getDetectedByteOrder() method test.
      *
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketIndexCacheFile;
+import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Test the saving and restoring of packet indexes with
+ * {@link PacketIndexCacheFile}
+ */
+@SuppressWarnings("javadoc")
+public class PacketIndexCacheFileTest {
+
+    private static final @NonNull Map<String, Object> ATTRIBUTES = ImmutableMap.of(
+            CTFStrings.PACKET_SIZE, 8192L,
+            CTFStrings.CPU_ID, 2L,
+            "ratio", 0.5,
+            CTFStrings.DEVICE, "eth0",
+            "mode", new AbstractMap.SimpleImmutableEntry<>("ON", 1L));
+
+    private File fDirectory;
+    private File fMetadataFile;
+    private File fStreamFile;
+    private File fCacheFile;
+
+    @Before
+    public void setUp() throws IOException {
+        Path directory = Files.createTempDirectory("trace");
+        fDirectory = directory.toFile();
+        fMetadataFile = new File(fDirectory, "metadata");
+        fStreamFile = new File(fDirectory, "channel0_0");
+        fCacheFile = new File(fDirectory, "packet_index.cache");
+        Files.write(fMetadataFile.toPath(), "trace { major = 1; minor = 8; };".getBytes());
+        Files.write(fStreamFile.toPath(), new byte[2048]);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(fCacheFile.toPath());
+        Files.deleteIfExists(fStreamFile.toPath());
+        Files.deleteIfExists(fMetadataFile.toPath());
+        Files.delete(fDirectory.toPath());
+    }
+
+    private static List<@NonNull ICTFPacketDescriptor> createEntries() {
+        return Arrays.asList(
+                new StreamInputPacketIndexEntry(0, 256, 8192, 4000, 10, 20, 0, "CPU2", 2, ATTRIBUTES),
+                new StreamInputPacketIndexEntry(8192, 256, 8192, 8192, 21, Long.MAX_VALUE, 3, null, -1, ATTRIBUTES));
+    }
+
+    private Map<File, List<@NonNull ICTFPacketDescriptor>> read() {
+        return PacketIndexCacheFile.read(fCacheFile, fMetadataFile, Collections.singleton(fStreamFile));
+    }
+
+    /**
+     * Test that the entries are restored as they were saved
+     */
+    @Test
+    public void testWriteRead() {
+        List<@NonNull ICTFPacketDescriptor> expected = createEntries();
+        assertTrue(PacketIndexCacheFile.write(fCacheFile, fMetadataFile, Collections.singletonMap(fStreamFile, expected)));
+
+        Map<File, List<@NonNull ICTFPacketDescriptor>> indexes = read();
+        assertNotNull(indexes);
+        List<@NonNull ICTFPacketDescriptor> actual = indexes.get(fStreamFile);
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ICTFPacketDescriptor expectedEntry = expected.get(i);
+            ICTFPacketDescriptor actualEntry = actual.get(i);
+            assertEquals(expectedEntry.getOffsetBits(), actualEntry.getOffsetBits());
+            assertEquals(expectedEntry.getOffsetBytes(), actualEntry.getOffsetBytes());
+            assertEquals(expectedEntry.getPayloadStartBits(), actualEntry.getPayloadStartBits());
+            assertEquals(expectedEntry.getPacketSizeBits(), actualEntry.getPacketSizeBits());
+            assertEquals(expectedEntry.getContentSizeBits(), actualEntry.getContentSizeBits());
+            assertEquals(expectedEntry.getTimestampBegin(), actualEntry.getTimestampBegin());
+            assertEquals(expectedEntry.getTimestampEnd(), actualEntry.getTimestampEnd());
+            assertEquals(expectedEntry.getLostEvents(), actualEntry.getLostEvents());
+            assertEquals(expectedEntry.getTarget(), actualEntry.getTarget());
+            assertEquals(expectedEntry.getTargetId(), actualEntry.getTargetId());
+            assertEquals(expectedEntry.getAttributes(), actualEntry.getAttributes());
+        }
+    }
+
+    /**
+     * Test that the index of a stream file that changed is not restored
+     */
+    @Test
+    public void testStreamFileChanged() throws IOException {
+        assertTrue(PacketIndexCacheFile.write(fCacheFile, fMetadataFile, Collections.singletonMap(fStreamFile, createEntries())));
+        Files.write(fStreamFile.toPath(), new byte[4096]);
+
+        Map<File, List<@NonNull ICTFPacketDescriptor>> indexes = read();
+        assertNotNull(indexes);
+        assertFalse(indexes.containsKey(fStreamFile));
+    }
+
+    /**
+     * Test that the cache is not used if the metadata changed
+     */
+    @Test
+    public void testMetadataChanged() throws IOException {
+        assertTrue(PacketIndexCacheFile.write(fCacheFile, fMetadataFile, Collections.singletonMap(fStreamFile, createEntries())));
+        Files.write(fMetadataFile.toPath(), "trace { major = 1; minor = 9; };".getBytes());
+        assertNull(read());
+    }
+
+    /**
+     * Test reading a missing or invalid cache file
+     */
+    @Test
+    public void testInvalidFile() throws IOException {
+        assertNull(read());
+        Files.write(fCacheFile.toPath(), new byte[] { 1, 2, 3 });
+        assertNull(read());
+    }
+}
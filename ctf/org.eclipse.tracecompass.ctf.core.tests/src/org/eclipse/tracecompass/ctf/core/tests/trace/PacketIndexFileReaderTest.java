@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.trace.CTFStream;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketIndexFileReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Test the reading of the LTTng packet index files with
+ * {@link PacketIndexFileReader}
+ */
+@SuppressWarnings("javadoc")
+public class PacketIndexFileReaderTest {
+
+    private static final int MAGIC = 0xC1F1DCC1;
+    private static final long STREAM_ID = 3;
+    private static final long PACKET_SIZE_BYTES = 4096;
+    private static final int NB_PACKETS = 4;
+    private static final long FILE_SIZE_BYTES = NB_PACKETS * PACKET_SIZE_BYTES;
+
+    private File fIndexFile;
+    private CTFStream fStream;
+
+    /**
+     * First packet of the stream, as read from the stream file
+     */
+    private static class FirstPacket implements ICTFPacketDescriptor {
+
+        private final @NonNull Map<String, Object> fAttributes = ImmutableMap.<String, Object> of(
+                CTFStrings.PACKET_SIZE, PACKET_SIZE_BYTES * Byte.SIZE,
+                CTFStrings.CONTENT_SIZE, contentSize(0),
+                CTFStrings.TIMESTAMP_BEGIN, 0L,
+                CTFStrings.TIMESTAMP_END, 9L,
+                CTFStrings.EVENTS_DISCARDED, 0L,
+                CTFStrings.CPU_ID, 1L);
+
+        @Override
+        public boolean includes(long ts) {
+            return ts >= getTimestampBegin() && ts <= getTimestampEnd();
+        }
+
+        @Override
+        public long getOffsetBits() {
+            return 0;
+        }
+
+        @Override
+        public long getPacketSizeBits() {
+            return PACKET_SIZE_BYTES * Byte.SIZE;
+        }
+
+        @Override
+        public long getContentSizeBits() {
+            return contentSize(0);
+        }
+
+        @Override
+        public long getTimestampBegin() {
+            return 0;
+        }
+
+        @Override
+        public long getTimestampEnd() {
+            return 9;
+        }
+
+        @Override
+        public long getLostEvents() {
+            return 0;
+        }
+
+        @Override
+        public @NonNull Map<String, Object> getAttributes() {
+            return fAttributes;
+        }
+
+        @Override
+        public String getTarget() {
+            return "CPU1";
+        }
+
+        @Override
+        public long getTargetId() {
+            return 1;
+        }
+
+        @Override
+        public long getOffsetBytes() {
+            return 0;
+        }
+
+        @Override
+        public long getPayloadStartBits() {
+            return 256;
+        }
+    }
+
+    private static long contentSize(int packet) {
+        return (PACKET_SIZE_BYTES - packet) * Byte.SIZE;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        fIndexFile = File.createTempFile("stream", ".idx");
+        fStream = new CTFStream(new CTFTrace());
+        fStream.setId(STREAM_ID);
+    }
+
+    @After
+    public void tearDown() {
+        fIndexFile.delete();
+    }
+
+    /**
+     * Write an index file, the packets are 10 time units long and have 2 more
+     * discarded events than the previous one.
+     */
+    private void writeIndex(int magic, int minor, long streamId, int nbPackets) throws IOException {
+        int entrySize = minor >= 1 ? 9 * Long.BYTES : 7 * Long.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(4 * Integer.BYTES + nbPackets * entrySize);
+        buffer.putInt(magic).putInt(1).putInt(minor).putInt(entrySize);
+        for (int i = 0; i < nbPackets; i++) {
+            buffer.putLong(i * PACKET_SIZE_BYTES);
+            buffer.putLong(PACKET_SIZE_BYTES * Byte.SIZE);
+            buffer.putLong(contentSize(i));
+            buffer.putLong(i * 10L);
+            buffer.putLong(i * 10L + 9);
+            buffer.putLong(i * 2L);
+            buffer.putLong(streamId);
+            if (minor >= 1) {
+                buffer.putLong(0);
+                buffer.putLong(i);
+            }
+        }
+        Files.write(fIndexFile.toPath(), buffer.array());
+    }
+
+    private List<@NonNull ICTFPacketDescriptor> read() {
+        return PacketIndexFileReader.read(fIndexFile, fStream, new FirstPacket(), FILE_SIZE_BYTES);
+    }
+
+    /**
+     * Test reading a valid index file
+     */
+    @Test
+    public void testRead() throws IOException {
+        writeIndex(MAGIC, 0, STREAM_ID, NB_PACKETS);
+        List<@NonNull ICTFPacketDescriptor> entries = read();
+        assertNotNull(entries);
+        assertEquals(NB_PACKETS - 1, entries.size());
+        for (int i = 1; i < NB_PACKETS; i++) {
+            ICTFPacketDescriptor entry = entries.get(i - 1);
+            assertEquals(i * PACKET_SIZE_BYTES, entry.getOffsetBytes());
+            assertEquals(i * PACKET_SIZE_BYTES * Byte.SIZE, entry.getOffsetBits());
+            assertEquals(PACKET_SIZE_BYTES * Byte.SIZE, entry.getPacketSizeBits());
+            assertEquals(contentSize(i), entry.getContentSizeBits());
+            assertEquals(i * 10L, entry.getTimestampBegin());
+            assertEquals(i * 10L + 9, entry.getTimestampEnd());
+            assertEquals(2, entry.getLostEvents());
+            assertEquals(256, entry.getPayloadStartBits());
+            assertEquals("CPU1", entry.getTarget());
+            assertEquals(1, entry.getTargetId());
+            assertEquals(1L, entry.getAttributes().get(CTFStrings.CPU_ID));
+        }
+    }
+
+    /**
+     * Test that the packet sequence number of version 1.1 is skipped if the
+     * packet context does not have it
+     */
+    @Test
+    public void testReadMinorVersion() throws IOException {
+        writeIndex(MAGIC, 1, STREAM_ID, NB_PACKETS);
+        List<@NonNull ICTFPacketDescriptor> entries = read();
+        assertNotNull(entries);
+        assertEquals(NB_PACKETS - 1, entries.size());
+        assertEquals(30L, entries.get(NB_PACKETS - 2).getTimestampBegin());
+    }
+
+    /**
+     * Test reading the index of the packets written so far
+     */
+    @Test
+    public void testReadPartial() throws IOException {
+        writeIndex(MAGIC, 0, STREAM_ID, 2);
+        List<@NonNull ICTFPacketDescriptor> entries = read();
+        assertNotNull(entries);
+        assertEquals(1, entries.size());
+    }
+
+    /**
+     * Test that invalid index files are rejected
+     */
+    @Test
+    public void testReadInvalid() throws IOException {
+        writeIndex(0xDEADBEEF, 0, STREAM_ID, NB_PACKETS);
+        assertNull(read());
+
+        writeIndex(MAGIC, 0, STREAM_ID + 1, NB_PACKETS);
+        assertNull(read());
+
+        /* More packets than the stream file */
+        writeIndex(MAGIC, 0, STREAM_ID, NB_PACKETS + 1);
+        assertNull(read());
+
+        Files.write(fIndexFile.toPath(), new byte[] { 1, 2, 3 });
+        assertNull(read());
+    }
+}
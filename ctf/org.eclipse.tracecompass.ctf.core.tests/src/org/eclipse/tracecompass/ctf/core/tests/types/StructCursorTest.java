@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.ctf.core.tests.types;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
+import org.eclipse.tracecompass.ctf.core.event.types.AbstractArrayDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.Encoding;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.VariantDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.ArrayDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.SequenceDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructCursor;
+import org.junit.Test;
+
+/**
+ * Test reading structs with a {@link StructCursor}, which must give the same
+ * values as their {@link StructDefinition}
+ */
+public class StructCursorTest {
+
+    private static StructDeclaration createInnerDeclaration() {
+        StructDeclaration inner = new StructDeclaration(8);
+        inner.addField("a", IntegerDeclaration.UINT_16B_DECL);
+        inner.addField("b", IntegerDeclaration.UINT_8_DECL);
+        return inner;
+    }
+
+    private static @NonNull StructDeclaration createDeclaration() {
+        EnumDeclaration mode = new EnumDeclaration(IntegerDeclaration.UINT_8_DECL);
+        mode.add(0, 0, "OFF");
+        mode.add(1, 1, "ON");
+        StructDeclaration declaration = new StructDeclaration(8);
+        declaration.addField("flags", IntegerDeclaration.createDeclaration(4, false, 10, ByteOrder.BIG_ENDIAN, Encoding.NONE, "", 1));
+        declaration.addField("id", IntegerDeclaration.INT_32B_DECL);
+        declaration.addField("mode", mode);
+        declaration.addField("name", StringDeclaration.getStringDeclaration(Encoding.UTF8));
+        declaration.addField("_len", IntegerDeclaration.UINT_8_DECL);
+        declaration.addField("seq", new SequenceDeclaration("len", IntegerDeclaration.UINT_16B_DECL));
+        declaration.addField("ratio", new FloatDeclaration(8, 24, ByteOrder.BIG_ENDIAN, 32));
+        declaration.addField("inner", createInnerDeclaration());
+        declaration.addField("bytes", new ArrayDeclaration(3, IntegerDeclaration.UINT_8_DECL));
+        declaration.addField("last", IntegerDeclaration.INT_8_DECL);
+        return declaration;
+    }
+
+    private static @NonNull BitBuffer createInput() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put((byte) 0xa0);
+        buffer.putInt(0x12345678);
+        buffer.put((byte) 1);
+        buffer.put("abc".getBytes()).put((byte) 0);
+        buffer.put((byte) 2);
+        buffer.putShort((short) 300).putShort((short) 400);
+        buffer.position(20);
+        buffer.putFloat(0.5f);
+        buffer.putShort((short) 1000).put((byte) 7);
+        buffer.put(new byte[] { 1, 2, 3 });
+        buffer.put((byte) -4);
+        buffer.position(0);
+        return new BitBuffer(buffer);
+    }
+
+    private static long getLong(StructDefinition definition, String field) {
+        return ((IntegerDefinition) definition.getDefinition(field)).getValue();
+    }
+
+    /**
+     * Test that the cursor reads the same values as the definition, and leaves
+     * the input at the same position
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testRead() throws CTFException {
+        StructDeclaration declaration = createDeclaration();
+        BitBuffer input = createInput();
+        StructDefinition expected = declaration.createDefinition(null, ILexicalScope.FIELDS, input);
+        long end = input.position();
+
+        StructCursor cursor = new StructCursor(declaration);
+        assertTrue(cursor.isSupported());
+        input = createInput();
+        cursor.read(input, null, ILexicalScope.FIELDS, null);
+        assertEquals(end, input.position());
+
+        assertEquals(getLong(expected, "flags"), cursor.getLong(cursor.getFieldIndex("flags")));
+        assertEquals(getLong(expected, "id"), cursor.getLong(cursor.getFieldIndex("id")));
+        int mode = cursor.getFieldIndex("mode");
+        assertEquals(1L, cursor.getLong(mode));
+        assertEquals(((EnumDefinition) expected.getDefinition("mode")).getStringValue(), cursor.getEnumLabel(mode));
+        assertEquals(((StringDefinition) expected.getDefinition("name")).getValue(), cursor.getString(cursor.getFieldIndex("name")));
+        int seq = cursor.getFieldIndex("seq");
+        assertEquals(((AbstractArrayDefinition) expected.getDefinition("seq")).getLength(), cursor.getLength(seq));
+        assertEquals(((AbstractArrayDefinition) expected.getDefinition("seq")).getDefinitions().toString(), ((AbstractArrayDefinition) cursor.getDefinition(seq)).getDefinitions().toString());
+        assertEquals(((FloatDefinition) expected.getDefinition("ratio")).getValue(), cursor.getDouble(cursor.getFieldIndex("ratio")), 0.0);
+        StructCursor inner = cursor.getStruct(cursor.getFieldIndex("inner"));
+        assertNotNull(inner);
+        StructDefinition expectedInner = (StructDefinition) expected.getDefinition("inner");
+        assertEquals(getLong(expectedInner, "a"), inner.getLong(inner.getFieldIndex("a")));
+        assertEquals(getLong(expectedInner, "b"), inner.getLong(inner.getFieldIndex("b")));
+        int bytes = cursor.getFieldIndex("bytes");
+        assertEquals(3L, cursor.getLength(bytes));
+        assertEquals(((AbstractArrayDefinition) expected.getDefinition("bytes")).getDefinitions().toString(), ((AbstractArrayDefinition) cursor.getDefinition(bytes)).getDefinitions().toString());
+        assertEquals(getLong(expected, "last"), cursor.getLong(cursor.getFieldIndex("last")));
+        /* Decoding on demand does not move the input */
+        assertEquals(end, input.position());
+    }
+
+    /**
+     * Test that the cursor creates the definition of the structs it cannot
+     * walk
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testReadUnsupported() throws CTFException {
+        EnumDeclaration tag = new EnumDeclaration(IntegerDeclaration.UINT_8_DECL);
+        tag.add(0, 0, "small");
+        tag.add(1, 1, "large");
+        VariantDeclaration variant = new VariantDeclaration();
+        variant.setTag("tag");
+        variant.addField("small", IntegerDeclaration.UINT_8_DECL);
+        variant.addField("large", IntegerDeclaration.UINT_16B_DECL);
+        StructDeclaration declaration = new StructDeclaration(8);
+        declaration.addField("tag", tag);
+        declaration.addField("v", variant);
+        declaration.addField("last", IntegerDeclaration.UINT_8_DECL);
+        StructCursor cursor = new StructCursor(declaration);
+        assertFalse(cursor.isSupported());
+
+        BitBuffer input = new BitBuffer(ByteBuffer.wrap(new byte[] { 1, 1, 2, 7 }));
+        cursor.read(input, null, ILexicalScope.FIELDS, null);
+        assertEquals(32, input.position());
+        assertEquals(1L, cursor.getLong(cursor.getFieldIndex("tag")));
+        assertEquals("large", cursor.getEnumLabel(cursor.getFieldIndex("tag")));
+        assertEquals(7L, cursor.getLong(cursor.getFieldIndex("last")));
+        assertEquals("{ large = 258 }", cursor.getDefinition(cursor.getFieldIndex("v")).toString());
+
+        StructDeclaration nested = new StructDeclaration(8);
+        nested.addField("inner", declaration);
+        assertFalse(new StructCursor(nested).isSupported());
+
+        StructDeclaration outOfScope = new StructDeclaration(8);
+        outOfScope.addField("seq", new SequenceDeclaration("len", IntegerDeclaration.UINT_8_DECL));
+        outOfScope.addField("len", IntegerDeclaration.UINT_8_DECL);
+        assertFalse(new StructCursor(outOfScope).isSupported());
+    }
+
+    /**
+     * Test reading several structs with the same cursor
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testReuse() throws CTFException {
+        StructDeclaration declaration = new StructDeclaration(8);
+        declaration.addField("_len", IntegerDeclaration.UINT_8_DECL);
+        declaration.addField("seq", new SequenceDeclaration("len", IntegerDeclaration.UINT_8_DECL));
+        declaration.addField("value", IntegerDeclaration.UINT_8_DECL);
+        BitBuffer input = new BitBuffer(ByteBuffer.wrap(new byte[] { 2, 10, 11, 42, 0, 43, 1, 12, 44 }));
+        StructCursor cursor = new StructCursor(declaration);
+        int value = cursor.getFieldIndex("value");
+        int seq = cursor.getFieldIndex("seq");
+        long[] expectedLengths = { 2, 0, 1 };
+        long[] expectedValues = { 42, 43, 44 };
+        for (int i = 0; i < expectedValues.length; i++) {
+            cursor.read(input, null, ILexicalScope.FIELDS, null);
+            assertEquals(expectedLengths[i], cursor.getLength(seq));
+            assertEquals(expectedValues[i], cursor.getLong(value));
+        }
+        assertEquals(9 * 8, input.position());
+    }
+
+    /**
+     * Test that the fields of the fixed prefix of a struct, read at their
+     * precomputed offsets, have the same values as their definitions, for
+     * both byte orders of the input
+     *
+     * @throws CTFException
+     *             won't happen
+     */
+    @Test
+    public void testFixedLayout() throws CTFException {
+        StructDeclaration declaration = new StructDeclaration(8);
+        declaration.addField("bits", IntegerDeclaration.UINT_5B_DECL);
+        declaration.addField("small", IntegerDeclaration.UINT_27L_DECL);
+        declaration.addField("le16", IntegerDeclaration.UINT_16L_DECL);
+        declaration.addField("be32", IntegerDeclaration.INT_32B_DECL);
+        declaration.addField("le64", IntegerDeclaration.INT_64L_DECL);
+        declaration.addField("inner", createInnerDeclaration());
+        declaration.addField("arr", new ArrayDeclaration(2, IntegerDeclaration.UINT_16L_DECL));
+        declaration.addField("tail", IntegerDeclaration.INT_8_DECL);
+        declaration.addField("name", StringDeclaration.getStringDeclaration(Encoding.UTF8));
+        declaration.addField("after", IntegerDeclaration.UINT_32L_DECL);
+        String[] integers = { "bits", "small", "le16", "be32", "le64", "tail", "after" };
+
+        byte[] bytes = new byte[40];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 37 + 11);
+        }
+        bytes[26] = 'x';
+        bytes[27] = 'y';
+        bytes[28] = 0;
+        StructCursor cursor = new StructCursor(declaration);
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            BitBuffer input = new BitBuffer(ByteBuffer.wrap(bytes), order);
+            StructDefinition expected = declaration.createDefinition(null, ILexicalScope.FIELDS, input);
+            long end = input.position();
+
+            input = new BitBuffer(ByteBuffer.wrap(bytes), order);
+            cursor.read(input, null, ILexicalScope.FIELDS, null);
+            assertEquals(end, input.position());
+            assertEquals(order, input.getByteOrder());
+            for (String field : integers) {
+                assertEquals(field, getLong(expected, field), cursor.getLong(cursor.getFieldIndex(field)));
+            }
+            StructCursor inner = cursor.getStruct(cursor.getFieldIndex("inner"));
+            assertNotNull(inner);
+            StructDefinition expectedInner = (StructDefinition) expected.getDefinition("inner");
+            assertEquals(getLong(expectedInner, "a"), inner.getLong(inner.getFieldIndex("a")));
+            assertEquals(getLong(expectedInner, "b"), inner.getLong(inner.getFieldIndex("b")));
+            int arr = cursor.getFieldIndex("arr");
+            assertEquals(2L, cursor.getLength(arr));
+            assertEquals(((AbstractArrayDefinition) expected.getDefinition("arr")).getDefinitions().toString(), ((AbstractArrayDefinition) cursor.getDefinition(arr)).getDefinitions().toString());
+            assertEquals("xy", cursor.getString(cursor.getFieldIndex("name")));
+        }
+    }
+}
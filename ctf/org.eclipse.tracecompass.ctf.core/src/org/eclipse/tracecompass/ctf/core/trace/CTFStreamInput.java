@@ -18,6 +18,8 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import org.eclipse.core.runtime.IStatus;
@@ -35,6 +37,8 @@ import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructDeclarationFlattener;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketIndexFileReader;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndex;
 import org.eclipse.tracecompass.internal.ctf.core.trace.StreamInputPacketIndexEntry;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
@@ -214,6 +218,8 @@ public class CTFStreamInput implements IDefinitionScope {
 
     /**
      * Adds the next packet header index entry to the index of a stream input.
+     * The entries of the packet index file of the stream input, if there is a
+     * valid one, are added with the first packet.
      *
      * <strong>This method is slow and can corrupt data if not used
      * properly</strong>
@@ -222,56 +228,189 @@ public class CTFStreamInput implements IDefinitionScope {
      * @throws CTFException
      *             If there was a problem reading the packed header
      */
-    public boolean addPacketHeaderIndex() throws CTFException {
-        long currentPosBits = 0L;
-        if (!fIndex.isEmpty()) {
-            ICTFPacketDescriptor pos = fIndex.lastElement();
-            if (pos == null) {
-                throw new IllegalStateException("Index contains null packet entries"); //$NON-NLS-1$
-            }
-            currentPosBits = pos.getOffsetBits() + pos.getPacketSizeBits();
-        }
+    public synchronized boolean addPacketHeaderIndex() throws CTFException {
+        long currentPosBits = getNextPacketOffsetBits();
         if (currentPosBits < getStreamSizeBits()) {
-            return fIndex.append(createPacketIndexEntry(currentPosBits));
+            try (FileChannel fc = openFileChannel()) {
+                return appendPacketIndexEntries(fc, currentPosBits) > 0;
+            } catch (IOException e) {
+                throw new CTFException("Failed to create packet index entry", e); //$NON-NLS-1$
+            }
         }
         return false;
     }
 
-    private long getStreamSizeBits() {
-        return fFile.length() * Byte.SIZE;
+    /**
+     * Adds the index entries of all the packets of the stream input that are
+     * not indexed yet. This is equivalent to calling
+     * {@link #addPacketHeaderIndex()} until it returns false, but the file is
+     * opened only once. The packets are read from the packet index file of
+     * the stream input, if there is a valid one. It is safe to call it while readers of this stream
+     * input are indexing packets, so the stream inputs of a trace can be
+     * indexed in parallel before they are read.
+     *
+     * @return The number of packets added to the index
+     * @throws CTFException
+     *             If there was a problem reading a packet header. The packets
+     *             before it remain in the index.
+     * @since 2.3
+     */
+    public synchronized int indexPackets() throws CTFException {
+        int count = 0;
+        long currentPosBits = getNextPacketOffsetBits();
+        long streamSizeBits = getStreamSizeBits();
+        if (currentPosBits >= streamSizeBits) {
+            return 0;
+        }
+        try (FileChannel fc = openFileChannel()) {
+            while (currentPosBits < streamSizeBits) {
+                int added = appendPacketIndexEntries(fc, currentPosBits);
+                if (added == 0) {
+                    break;
+                }
+                count += added;
+                currentPosBits = getNextPacketOffsetBits();
+            }
+        } catch (IOException e) {
+            throw new CTFException("Failed to create packet index entry", e); //$NON-NLS-1$
+        }
+        return count;
     }
 
-    private ICTFPacketDescriptor createPacketIndexEntry(long dataOffsetbits)
-            throws CTFException {
+    /**
+     * Get the entries of the packet index, if all the packets of the stream
+     * file are indexed
+     *
+     * @return The entries of the index, or null if the stream input is not
+     *         completely indexed
+     */
+    synchronized @Nullable List<ICTFPacketDescriptor> getCompleteIndex() {
+        if (fIndex.isEmpty() || getNextPacketOffsetBits() != getStreamSizeBits()) {
+            return null;
+        }
+        List<ICTFPacketDescriptor> entries = new ArrayList<>(fIndex.size());
+        for (int i = 0; i < fIndex.size(); i++) {
+            entries.add(fIndex.getElement(i));
+        }
+        return entries;
+    }
 
-        try (FileChannel fc = FileChannel.open(fFile.toPath(), StandardOpenOption.READ)) {
-            if (fc == null) {
-                throw new IOException("Failed to create FileChannel"); //$NON-NLS-1$
-            }
-            BitBuffer bitBuffer = createBitBufferForPacketHeader(fc, dataOffsetbits);
-            /*
-             * Read the trace packet header if it exists.
-             */
-            parseTracePacketHeader(bitBuffer);
-
-            /*
-             * Read the stream packet context if it exists.
-             */
-            long size = fc.size();
-            ICTFPacketDescriptor packetIndex = parsePacketContext(dataOffsetbits, size, bitBuffer);
-
-            /* Basic validation */
-            if (packetIndex.getContentSizeBits() > packetIndex.getPacketSizeBits()) {
-                throw new CTFException("Content size > packet size"); //$NON-NLS-1$
+    /**
+     * Restore the packet index of the stream input, before it is indexed
+     *
+     * @param entries
+     *            The entries of the index, that were returned by
+     *            {@link #getCompleteIndex()}
+     * @return true if the whole index was restored, false if the stream input
+     *         is already indexed or if some entries are invalid. The valid
+     *         entries before an invalid one are restored, the remaining
+     *         packets are indexed by reading them.
+     */
+    synchronized boolean restoreIndex(List<ICTFPacketDescriptor> entries) {
+        if (!fIndex.isEmpty() || entries.isEmpty()) {
+            return false;
+        }
+        for (ICTFPacketDescriptor entry : entries) {
+            if (!fIndex.append(entry)) {
+                return false;
             }
+            fLostSoFar = entry.getLostEvents() + fLostSoFar;
+            setTimestampEnd(entry.getTimestampEnd());
+        }
+        return true;
+    }
 
-            if (packetIndex.getPacketSizeBits() > ((size * Byte.SIZE - packetIndex.getOffsetBits()))) {
-                throw new CTFException("Not enough data remaining in the file for the size of this packet"); //$NON-NLS-1$
+    /**
+     * Append the entry of the packet at an offset to the index. The first
+     * packet is followed by the entries of the packet index file, if there is
+     * a valid one.
+     *
+     * @return The number of entries added to the index
+     */
+    private int appendPacketIndexEntries(FileChannel fc, long dataOffsetBits) throws CTFException, IOException {
+        ICTFPacketDescriptor packetIndex = createPacketIndexEntry(fc, dataOffsetBits);
+        if (!fIndex.append(packetIndex)) {
+            return 0;
+        }
+        if (dataOffsetBits != 0) {
+            return 1;
+        }
+        return 1 + appendPacketIndexFile(packetIndex);
+    }
+
+    private int appendPacketIndexFile(ICTFPacketDescriptor firstPacket) {
+        File indexFile = PacketIndexFileReader.getIndexFile(fFile);
+        /*
+         * The index file does not have the end of the packet context, it is the
+         * same as the first packet's only if the sizes are fixed
+         */
+        if (!indexFile.isFile() ||
+                !StructDeclarationFlattener.canBeFlattened(fTracePacketHeaderDecl) ||
+                !StructDeclarationFlattener.canBeFlattened(fStreamPacketContextDecl)) {
+            return 0;
+        }
+        List<ICTFPacketDescriptor> entries = PacketIndexFileReader.read(indexFile, fStream, firstPacket, fFile.length());
+        if (entries == null) {
+            return 0;
+        }
+        int count = 0;
+        for (ICTFPacketDescriptor entry : entries) {
+            if (!fIndex.append(entry)) {
+                break;
             }
-            return packetIndex;
-        } catch (IOException e) {
-            throw new CTFException("Failed to create packet index entry", e); //$NON-NLS-1$
+            fLostSoFar = entry.getLostEvents() + fLostSoFar;
+            setTimestampEnd(entry.getTimestampEnd());
+            count++;
+        }
+        return count;
+    }
+
+    private long getNextPacketOffsetBits() {
+        if (fIndex.isEmpty()) {
+            return 0L;
+        }
+        ICTFPacketDescriptor pos = fIndex.lastElement();
+        if (pos == null) {
+            throw new IllegalStateException("Index contains null packet entries"); //$NON-NLS-1$
+        }
+        return pos.getOffsetBits() + pos.getPacketSizeBits();
+    }
+
+    private long getStreamSizeBits() {
+        return fFile.length() * Byte.SIZE;
+    }
+
+    private FileChannel openFileChannel() throws IOException {
+        FileChannel fc = FileChannel.open(fFile.toPath(), StandardOpenOption.READ);
+        if (fc == null) {
+            throw new IOException("Failed to create FileChannel"); //$NON-NLS-1$
+        }
+        return fc;
+    }
+
+    private ICTFPacketDescriptor createPacketIndexEntry(FileChannel fc, long dataOffsetbits)
+            throws CTFException, IOException {
+        BitBuffer bitBuffer = createBitBufferForPacketHeader(fc, dataOffsetbits);
+        /*
+         * Read the trace packet header if it exists.
+         */
+        parseTracePacketHeader(bitBuffer);
+
+        /*
+         * Read the stream packet context if it exists.
+         */
+        long size = fc.size();
+        ICTFPacketDescriptor packetIndex = parsePacketContext(dataOffsetbits, size, bitBuffer);
+
+        /* Basic validation */
+        if (packetIndex.getContentSizeBits() > packetIndex.getPacketSizeBits()) {
+            throw new CTFException("Content size > packet size"); //$NON-NLS-1$
+        }
+
+        if (packetIndex.getPacketSizeBits() > ((size * Byte.SIZE - packetIndex.getOffsetBits()))) {
+            throw new CTFException("Not enough data remaining in the file for the size of this packet"); //$NON-NLS-1$
         }
+        return packetIndex;
     }
 
     private BitBuffer createBitBufferForPacketHeader(FileChannel fc, long dataOffsetbits) throws CTFException, IOException {
@@ -31,6 +31,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.Activator;
 import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventCursor;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
 import org.eclipse.tracecompass.internal.ctf.core.trace.NullPacketReader;
 
@@ -82,6 +83,12 @@ public class CTFStreamInputReader implements AutoCloseable {
      */
     private boolean fLive = false;
 
+    /**
+     * Cursor to read the events skipped by a seek, without creating their
+     * definitions
+     */
+    private final EventCursor fSeekCursor = new EventCursor();
+
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -111,11 +118,8 @@ public class CTFStreamInputReader implements AutoCloseable {
              */
             // did we already index the packet?
             if (getPacketSize() < (fPacketIndex + 1)) {
-                // go to the next packet if there is one, index it at the same
-                // time
-                if (fStreamInput.addPacketHeaderIndex()) {
-                    fPacketIndex = getPacketSize() - 1;
-                }
+                // index the first packet if there is one
+                fStreamInput.addPacketHeaderIndex();
             }
             ICTFPacketDescriptor packet = getPacket();
             fPacketReader = getCurrentPacketReader(packet);
@@ -299,16 +303,7 @@ public class CTFStreamInputReader implements AutoCloseable {
         /*
          * Change packet if needed
          */
-        while (!fPacketReader.hasMoreEvents()) {
-            final ICTFPacketDescriptor prevPacket = fPacketReader.getCurrentPacket();
-            if (prevPacket == null) {
-                if (fLive) {
-                    goToNextPacket();
-                }
-                break;
-            }
-            goToNextPacket();
-        }
+        goToPacketWithEvents();
 
         /*
          * If an event is available, read it.
@@ -321,6 +316,50 @@ public class CTFStreamInputReader implements AutoCloseable {
         return fLive ? CTFResponse.WAIT : CTFResponse.FINISH;
     }
 
+    /**
+     * Reads the next event in a reusable cursor, without creating its
+     * definition. The current event of this reader is not updated, so this
+     * is not to be mixed with {@link #readNextEvent()}.
+     *
+     * The {@link EventCursor} is internal, so this is not part of the API. It
+     * is meant for the benchmarks and tests comparing the cursors with the
+     * event definitions, the cursors are used by {@link #seek(long)}.
+     *
+     * @param cursor
+     *            the cursor to update with the next event
+     * @return If an event has been successfully read.
+     * @throws CTFException
+     *             if an error occurs
+     * @since 2.3
+     * @noreference Meant to be used by the tests and benchmarks only, the
+     *              event cursors are internal
+     */
+    public CTFResponse readNextEvent(EventCursor cursor) throws CTFException {
+        goToPacketWithEvents();
+        IPacketReader packetReader = fPacketReader;
+        if (packetReader.hasMoreEvents()) {
+            if (!(packetReader instanceof CTFPacketReader)) {
+                throw new CTFException("Packet reader cannot read events in a cursor: " + packetReader.getClass().getName()); //$NON-NLS-1$
+            }
+            ((CTFPacketReader) packetReader).readNextEvent(cursor);
+            return CTFResponse.OK;
+        }
+        return fLive ? CTFResponse.WAIT : CTFResponse.FINISH;
+    }
+
+    private void goToPacketWithEvents() throws CTFException {
+        while (!fPacketReader.hasMoreEvents()) {
+            final ICTFPacketDescriptor prevPacket = fPacketReader.getCurrentPacket();
+            if (prevPacket == null) {
+                if (fLive) {
+                    goToNextPacket();
+                }
+                break;
+            }
+            goToNextPacket();
+        }
+    }
+
     /**
      * Change the current packet of the packet reader to the next one.
      *
@@ -332,9 +371,7 @@ public class CTFStreamInputReader implements AutoCloseable {
         // did we already index the packet?
         while (getPacketSize() < (fPacketIndex + 1)) {
             // go to the next packet if there is one, index it at the same time
-            if (fStreamInput.addPacketHeaderIndex()) {
-                fPacketIndex = getPacketSize() - 1;
-            } else {
+            if (!fStreamInput.addPacketHeaderIndex()) {
                 fPacketReader = NullPacketReader.INSTANCE;
                 return;
             }
@@ -363,8 +400,6 @@ public class CTFStreamInputReader implements AutoCloseable {
      *             if an error occurs
      */
     public long seek(long timestamp) throws CTFException {
-        long offset = 0;
-
         gotoPacket(timestamp);
 
         /*
@@ -392,7 +427,11 @@ public class CTFStreamInputReader implements AutoCloseable {
          *
          * - found the first event with a timestamp greater or equal the given
          * timestamp.
+         *
+         * The events before the timestamp are skipped with a cursor, the
+         * definitions are only created from the first event that is not.
          */
+        long offset = skipEventsBefore(timestamp);
         readNextEvent();
         IEventDefinition currentEvent = getCurrentEvent();
         while (currentEvent != null && (currentEvent.getTimestamp() < timestamp)) {
@@ -403,6 +442,32 @@ public class CTFStreamInputReader implements AutoCloseable {
         return offset;
     }
 
+    /**
+     * Skip the events before a timestamp, going through the packets, without
+     * creating their definitions.
+     *
+     * @param timestamp
+     *            the timestamp to reach
+     * @return the number of events skipped
+     * @throws CTFException
+     *             if an error occurs
+     */
+    private long skipEventsBefore(long timestamp) throws CTFException {
+        long skipped = 0;
+        while (true) {
+            goToPacketWithEvents();
+            IPacketReader packetReader = fPacketReader;
+            if (!(packetReader instanceof CTFPacketReader) || !packetReader.hasMoreEvents()) {
+                return skipped;
+            }
+            skipped += ((CTFPacketReader) packetReader).skipEventsBefore(timestamp, fSeekCursor);
+            if (packetReader.hasMoreEvents()) {
+                /* Stopped before an event at or after the timestamp */
+                return skipped;
+            }
+        }
+    }
+
     /**
      * @param timestamp
      *            the time to seek
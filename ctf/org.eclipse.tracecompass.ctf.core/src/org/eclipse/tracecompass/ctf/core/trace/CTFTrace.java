@@ -25,11 +25,13 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -55,6 +57,7 @@ import org.eclipse.tracecompass.internal.ctf.core.SafeMappedByteBuffer;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.MetadataStrings;
 import org.eclipse.tracecompass.internal.ctf.core.event.metadata.ParseException;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFStream;
+import org.eclipse.tracecompass.internal.ctf.core.trace.PacketIndexCacheFile;
 import org.eclipse.tracecompass.internal.ctf.core.trace.Utils;
 
 import com.google.common.collect.ImmutableMap;
@@ -905,6 +908,74 @@ public class CTFTrace implements IDefinitionScope {
     public void setEnvironment(@NonNull Map<String, String> parseEnvironment) {
         fEnvironment = ImmutableMap.copyOf(parseEnvironment);
     }
+
+    /**
+     * Restore the packet index of the stream files from a cache file written
+     * by {@link #savePacketIndexCache(File)}, so the packets do not have to be
+     * read again. The index of a stream file is restored only if the metadata
+     * and the stream file did not change, the other stream files are indexed
+     * by reading their packets. This should be called before reading the
+     * trace.
+     *
+     * @param cacheFile
+     *            The cache file, it may not exist
+     * @return true if the index of all the stream files was restored
+     * @since 2.3
+     */
+    public boolean loadPacketIndexCache(File cacheFile) {
+        if (fPath == null) {
+            return false;
+        }
+        List<CTFStreamInput> streamInputs = getStreamInputs();
+        List<File> streamFiles = new ArrayList<>();
+        for (CTFStreamInput streamInput : streamInputs) {
+            streamFiles.add(streamInput.getFile());
+        }
+        Map<File, List<@NonNull ICTFPacketDescriptor>> indexes = PacketIndexCacheFile.read(cacheFile, new File(fPath, "metadata"), streamFiles); //$NON-NLS-1$
+        if (indexes == null) {
+            return false;
+        }
+        boolean complete = true;
+        for (CTFStreamInput streamInput : streamInputs) {
+            List<@NonNull ICTFPacketDescriptor> entries = indexes.get(streamInput.getFile());
+            complete &= (entries != null && streamInput.restoreIndex(entries));
+        }
+        return complete;
+    }
+
+    /**
+     * Save the packet index of the stream files to a cache file, to restore it
+     * with {@link #loadPacketIndexCache(File)} when the trace is reopened. The
+     * file is written only if all the packets of the stream files are indexed,
+     * for example after going to the last event of the trace.
+     *
+     * @param cacheFile
+     *            The cache file, it is replaced if it exists
+     * @return true if the cache file was written
+     * @since 2.3
+     */
+    public boolean savePacketIndexCache(File cacheFile) {
+        if (fPath == null) {
+            return false;
+        }
+        Map<File, List<@NonNull ICTFPacketDescriptor>> indexes = new HashMap<>();
+        for (CTFStreamInput streamInput : getStreamInputs()) {
+            List<@NonNull ICTFPacketDescriptor> entries = streamInput.getCompleteIndex();
+            if (entries == null) {
+                return false;
+            }
+            indexes.put(streamInput.getFile(), entries);
+        }
+        return PacketIndexCacheFile.write(cacheFile, new File(fPath, "metadata"), indexes); //$NON-NLS-1$
+    }
+
+    private List<CTFStreamInput> getStreamInputs() {
+        List<CTFStreamInput> streamInputs = new ArrayList<>();
+        for (ICTFStream stream : fStreams.values()) {
+            streamInputs.addAll(stream.getStreamInputs());
+        }
+        return streamInputs;
+    }
 }
 
 class MetadataFileFilter implements FileFilter {
@@ -22,6 +22,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.tracecompass.ctf.core.CTFException;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
@@ -42,6 +47,14 @@ public class CTFTraceReader implements AutoCloseable {
 
     private static final int MIN_PRIO_SIZE = 16;
 
+    /**
+     * System property to set the number of threads indexing the packets of
+     * the stream inputs in parallel. With 1 thread, each stream input is
+     * indexed by its reader as it goes.
+     */
+    private static final String INDEX_THREADS_PROPERTY = "org.eclipse.tracecompass.ctf.core.indexThreads"; //$NON-NLS-1$
+    private static final int DEFAULT_INDEX_THREADS = Math.min(8, Runtime.getRuntime().availableProcessors());
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -223,6 +236,51 @@ public class CTFTraceReader implements AutoCloseable {
         fEventCountPerTraceFile = new long[fStreamInputReaders.size()];
     }
 
+    /**
+     * Index the packets of all the stream inputs of the trace in parallel, on
+     * a bounded number of threads. The readers going through the packets then
+     * find them already indexed, instead of reading the packet headers of
+     * each file one after the other.
+     */
+    private void indexStreamInputs() {
+        List<CTFStreamInput> streamInputs = new ArrayList<>();
+        synchronized (fStreamInputReaders) {
+            for (CTFStreamInputReader reader : fStreamInputReaders) {
+                streamInputs.add(reader.getStreamInput());
+            }
+        }
+        int nbThreads = Math.min(streamInputs.size(), Integer.getInteger(INDEX_THREADS_PROPERTY, DEFAULT_INDEX_THREADS));
+        if (nbThreads <= 1) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads, r -> {
+            Thread thread = new Thread(r, "CTF Packet Indexer"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (CTFStreamInput streamInput : streamInputs) {
+                tasks.add(streamInput::indexPackets);
+            }
+            for (Future<Integer> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    /*
+                     * The packets before the error are indexed, the reader
+                     * will get the same error when it reaches the faulty
+                     * packet, and handle it as usual.
+                     */
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     /**
      * Returns whether or not this CTFTraceReader has been closed
      *
@@ -398,6 +456,7 @@ public class CTFTraceReader implements AutoCloseable {
      *             if an error occurs
      */
     public void goToLastEvent() throws CTFException {
+        indexStreamInputs();
         long endTime = Long.MIN_VALUE;
         for (CTFStreamInputReader sir : fPrio) {
             sir.goToLastEvent();
@@ -605,6 +664,7 @@ public class CTFTraceReader implements AutoCloseable {
      * @since 1.0
      */
     public void populateIndex() throws CTFException {
+        indexStreamInputs();
         for (CTFStreamInputReader sir : fPrio) {
             sir.goToLastEvent();
         }
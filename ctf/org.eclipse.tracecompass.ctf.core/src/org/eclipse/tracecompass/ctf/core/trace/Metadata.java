@@ -23,6 +23,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
@@ -30,6 +31,9 @@ import java.nio.charset.Charset;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 
 import org.antlr.runtime.ANTLRReaderStream;
@@ -78,6 +82,29 @@ public class Metadata {
      */
     private static final int METADATA_PACKET_HEADER_SIZE = 37;
 
+    /**
+     * Number of metadata trees kept by {@link #AST_CACHE}
+     */
+    private static final int AST_CACHE_SIZE = 8;
+
+    /**
+     * Syntax trees of the last metadata parsed, by metadata text, so that
+     * reopening a trace, or opening many traces with the same metadata, does
+     * not run the ANTLR lexer and parser again. The declarations still have to
+     * be generated from the tree, they belong to their trace. The trees are
+     * only read once built, and are softly referenced so they can be reclaimed
+     * when memory is low.
+     */
+    private static final Map<String, SoftReference<CommonTree>> AST_CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, SoftReference<CommonTree>>(AST_CACHE_SIZE, 0.75f, true) {
+                private static final long serialVersionUID = -3185270452346542718L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SoftReference<CommonTree>> eldest) {
+                    return size() > AST_CACHE_SIZE;
+                }
+            });
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -149,20 +176,15 @@ public class Metadata {
      */
     public void parseFile() throws CTFException {
 
-        /*
-         * Reader. It will contain a StringReader if we are using packet-based metadata
-         * and it will contain a FileReader if we have text-based metadata.
-         */
-
         File metadataFile = new File(getMetadataPath());
         ByteOrder byteOrder = CTFTrace.startsWithMagicNumber(metadataFile, Utils.TSDL_MAGIC);
         fDetectedByteOrder = byteOrder;
         try (FileInputStream fis = new FileInputStream(metadataFile);
-                FileChannel metadataFileChannel = fis.getChannel();
-                /* Check if metadata is packet-based, if not it is text based */
-                Reader metadataTextInput = ( byteOrder!= null ? readBinaryMetaData(metadataFileChannel) : new FileReader(metadataFile));) {
+                FileChannel metadataFileChannel = fis.getChannel();) {
 
-            readMetaDataText(metadataTextInput);
+            /* Check if metadata is packet-based, if not it is text based */
+            String metadataText = (byteOrder != null) ? readBinaryMetaData(metadataFileChannel) : new String(Files.readAllBytes(metadataFile.toPath()), Charset.defaultCharset());
+            readMetaDataText(metadataText);
 
         } catch (FileNotFoundException e) {
             throw new CTFException("Cannot find metadata file!", e); //$NON-NLS-1$
@@ -176,7 +198,7 @@ public class Metadata {
 
     }
 
-    private Reader readBinaryMetaData(FileChannel metadataFileChannel) throws CTFException {
+    private String readBinaryMetaData(FileChannel metadataFileChannel) throws CTFException {
         /* Create StringBuffer to receive metadata text */
         StringBuffer metadataText = new StringBuffer();
 
@@ -190,8 +212,7 @@ public class Metadata {
                     metadataText);
         }
 
-        /* Wrap the metadata string with a StringReader */
-        return new StringReader(metadataText.toString());
+        return metadataText.toString();
     }
 
     /**
@@ -238,9 +259,8 @@ public class Metadata {
      *             parsing a TSDL file
      */
     public void parseText(String data) throws CTFException {
-        Reader metadataTextInput = new StringReader(data);
         try {
-            readMetaDataText(metadataTextInput);
+            readMetaDataText(data);
         } catch (IOException | ParseException e) {
             throw new CTFException(e);
         } catch (RecognitionException | RewriteCardinalityException e) {
@@ -249,8 +269,8 @@ public class Metadata {
 
     }
 
-    private void readMetaDataText(Reader metadataTextInput) throws IOException, RecognitionException, ParseException {
-        CommonTree tree = createAST(metadataTextInput);
+    private void readMetaDataText(String metadataText) throws IOException, RecognitionException, ParseException {
+        CommonTree tree = getAST(metadataText);
 
         /* Generate IO structures (declarations) */
         fTreeParser = new IOStructGen(tree, NonNullUtils.checkNotNull(fTrace));
@@ -289,6 +309,16 @@ public class Metadata {
         fTreeParser.generateFragment();
     }
 
+    private static CommonTree getAST(String metadataText) throws IOException, RecognitionException {
+        SoftReference<CommonTree> cached = AST_CACHE.get(metadataText);
+        CommonTree tree = (cached == null) ? null : cached.get();
+        if (tree == null) {
+            tree = createAST(new StringReader(metadataText));
+            AST_CACHE.put(metadataText, new SoftReference<>(tree));
+        }
+        return tree;
+    }
+
     private static CommonTree createAST(Reader metadataTextInput) throws IOException,
             RecognitionException {
         /* Create an ANTLR reader */
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructCursor;
+import org.eclipse.tracecompass.internal.ctf.core.trace.CTFPacketReader;
+
+/**
+ * A reusable view of the events read by a {@link CTFPacketReader}, for the
+ * readers that only need a few fields of the events and do not keep them.
+ * Unlike {@link EventDefinition}, the cursor and its {@link StructCursor}s are
+ * updated in place by every event read, so reading an event does not create
+ * any object. Seeking in a stream uses a cursor to skip the events before the
+ * requested time.
+ */
+@NonNullByDefault
+public final class EventCursor {
+
+    /* Cursors of the struct declarations, created the first time they are read */
+    private final Map<StructDeclaration, StructCursor> fCursors = new IdentityHashMap<>();
+
+    private @Nullable IEventDeclaration fDeclaration;
+    private @Nullable ICTFPacketDescriptor fPacketDescriptor;
+    private long fTimestamp;
+    private boolean fTimestampInFields;
+    private long fHeaderTimestamp;
+    private int fHeaderTimestampLength;
+    private @Nullable StructCursor fStreamEventContext;
+    private @Nullable StructCursor fContext;
+    private @Nullable StructCursor fFields;
+    private long fLostEvents;
+    private long fLostEventsDuration;
+
+    /**
+     * Get the cursor that reads the structs of a declaration
+     *
+     * @param declaration
+     *            the struct declaration
+     * @return the cursor of this declaration
+     */
+    public StructCursor getCursor(StructDeclaration declaration) {
+        StructCursor cursor = fCursors.get(declaration);
+        if (cursor == null) {
+            cursor = new StructCursor(declaration);
+            fCursors.put(declaration, cursor);
+        }
+        return cursor;
+    }
+
+    /**
+     * Set the timestamp read in the event header, before the event is read
+     *
+     * @param timestamp
+     *            the timestamp bits read in the header
+     * @param length
+     *            the number of bits valid in the timestamp, 0 if the header
+     *            has no timestamp
+     */
+    public void setHeaderTimestamp(long timestamp, int length) {
+        fHeaderTimestamp = timestamp;
+        fHeaderTimestampLength = length;
+    }
+
+    /**
+     * Get the timestamp read in the event header
+     *
+     * @return the timestamp bits read in the header
+     */
+    public long getHeaderTimestamp() {
+        return fHeaderTimestamp;
+    }
+
+    /**
+     * Get the length of the timestamp read in the event header
+     *
+     * @return the number of bits valid in the header timestamp, 0 if the header
+     *         has no timestamp
+     */
+    public int getHeaderTimestampLength() {
+        return fHeaderTimestampLength;
+    }
+
+    /**
+     * Set the event read
+     *
+     * @param declaration
+     *            the declaration of the event
+     * @param packetDescriptor
+     *            the packet of the event
+     * @param timestamp
+     *            the timestamp of the event
+     * @param streamEventContext
+     *            the stream event context, can be null
+     * @param context
+     *            the event context, can be null
+     * @param fields
+     *            the event fields, can be null
+     */
+    public void setEvent(IEventDeclaration declaration, ICTFPacketDescriptor packetDescriptor, long timestamp,
+            @Nullable StructCursor streamEventContext, @Nullable StructCursor context, @Nullable StructCursor fields) {
+        fDeclaration = declaration;
+        fPacketDescriptor = packetDescriptor;
+        fTimestamp = timestamp;
+        fTimestampInFields = false;
+        fStreamEventContext = streamEventContext;
+        fContext = context;
+        fFields = fields;
+        fLostEvents = 0;
+        fLostEventsDuration = 0;
+    }
+
+    /**
+     * Set a lost event, which has no fields
+     *
+     * @param packetDescriptor
+     *            the packet of the lost events
+     * @param timestamp
+     *            the timestamp of the lost events
+     * @param lostEvents
+     *            the number of lost events
+     * @param duration
+     *            the duration of the lost events
+     */
+    public void setLostEvent(ICTFPacketDescriptor packetDescriptor, long timestamp, long lostEvents, long duration) {
+        setEvent(LostEventDeclaration.INSTANCE, packetDescriptor, timestamp, null, null, null);
+        fLostEvents = lostEvents;
+        fLostEventsDuration = duration;
+    }
+
+    /**
+     * Get the declaration of the event
+     *
+     * @return the event declaration, {@link LostEventDeclaration#INSTANCE} for
+     *         lost events
+     */
+    public @Nullable IEventDeclaration getDeclaration() {
+        return fDeclaration;
+    }
+
+    /**
+     * Get the packet of the event
+     *
+     * @return the packet descriptor
+     */
+    public @Nullable ICTFPacketDescriptor getPacketDescriptor() {
+        return fPacketDescriptor;
+    }
+
+    /**
+     * Get the CPU of the event
+     *
+     * @return the CPU of the event
+     */
+    public int getCPU() {
+        ICTFPacketDescriptor packetDescriptor = fPacketDescriptor;
+        return packetDescriptor == null ? -1 : (int) packetDescriptor.getTargetId();
+    }
+
+    /**
+     * Get the timestamp of the event
+     *
+     * @return the timestamp, in cycles
+     */
+    public long getTimestamp() {
+        return fTimestamp;
+    }
+
+    /**
+     * Mark the timestamp of the event as read in its fields or context, for
+     * the events whose header has no timestamp
+     *
+     * @param inFields
+     *            whether the timestamp was read in the fields or context
+     */
+    public void setTimestampInFields(boolean inFields) {
+        fTimestampInFields = inFields;
+    }
+
+    /**
+     * Whether the timestamp of the event was read in its fields or context
+     * rather than in its header. The cursors look up this field like
+     * {@link StructDefinition#lookupDefinition(String)}, in the fields and
+     * their structs, but not in the enclosing scopes of the event, so the
+     * definition of the event may have another timestamp.
+     *
+     * @return true if the timestamp was not in the event header
+     */
+    public boolean isTimestampInFields() {
+        return fTimestampInFields;
+    }
+
+    /**
+     * Get the stream event context
+     *
+     * @return the stream event context, or null if there is none
+     */
+    public @Nullable StructCursor getStreamEventContext() {
+        return fStreamEventContext;
+    }
+
+    /**
+     * Get the event context
+     *
+     * @return the event context, or null if there is none
+     */
+    public @Nullable StructCursor getContext() {
+        return fContext;
+    }
+
+    /**
+     * Get the event fields
+     *
+     * @return the event fields, or null if there are none or this is a lost
+     *         event
+     */
+    public @Nullable StructCursor getFields() {
+        return fFields;
+    }
+
+    /**
+     * Get the number of events lost, for lost events
+     *
+     * @return the number of lost events, 0 for other events
+     */
+    public long getLostEvents() {
+        return fLostEvents;
+    }
+
+    /**
+     * Get the duration of the events lost, for lost events
+     *
+     * @return the duration of the lost events, 0 for other events
+     */
+    public long getLostEventsDuration() {
+        return fLostEventsDuration;
+    }
+}
@@ -31,6 +31,8 @@ import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
 import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
 import org.eclipse.tracecompass.ctf.core.event.types.Definition;
 import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
@@ -38,6 +40,7 @@ import org.eclipse.tracecompass.ctf.core.trace.CTFIOException;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.StructCursor;
 import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.trace.CTFStream;
 
@@ -51,6 +54,9 @@ public class EventDeclaration implements IEventDeclaration {
 
     private static final Comparator<CTFCallsite> CS_COMPARATOR = (o1, o2) -> Long.compareUnsigned(o1.getIp(), o2.getIp());
 
+    /* Alternative name of the timestamp field, as in StructDefinition#lookupDefinition */
+    private static final String UNDERSCORED_TIMESTAMP = "_" + CTFStrings.TIMESTAMP; //$NON-NLS-1$
+
     // ------------------------------------------------------------------------
     // Attributes
     // ------------------------------------------------------------------------
@@ -140,6 +146,112 @@ public class EventDeclaration implements IEventDeclaration {
                 packetDescriptor);
     }
 
+    /**
+     * Reads an event of this declaration into a reusable cursor, instead of
+     * creating an EventDefinition.
+     *
+     * @param cursor
+     *            the cursor to update, its header timestamp must be set
+     * @param streamEventContextDecl
+     *            event context
+     * @param packetDescriptor
+     *            current packet
+     * @param eventHeaderDef
+     *            The event header definition, if the header was not read in
+     *            the cursor
+     * @param input
+     *            the bitbuffer input source
+     * @param prevTimestamp
+     *            The timestamp when the event was taken
+     * @throws CTFException
+     *             As a bitbuffer is used to read, it could have wrapped
+     *             IOExceptions.
+     */
+    public void readEvent(@NonNull EventCursor cursor, @Nullable StructDeclaration streamEventContextDecl, @NonNull ICTFPacketDescriptor packetDescriptor, @Nullable ICompositeDefinition eventHeaderDef, @NonNull BitBuffer input, long prevTimestamp)
+            throws CTFException {
+        final CTFStream stream = fStream;
+        final CTFTrace trace = stream == null ? null : stream.getTrace();
+        StructCursor streamEventContext = null;
+        if (streamEventContextDecl != null) {
+            streamEventContext = cursor.getCursor(streamEventContextDecl);
+            streamEventContext.read(input, trace, ILexicalScope.STREAM_EVENT_CONTEXT, null);
+        }
+        StructCursor eventContext = null;
+        if (fContext != null) {
+            eventContext = cursor.getCursor(fContext);
+            eventContext.read(input, trace, ILexicalScope.CONTEXT, eventHeaderDef);
+        }
+        StructCursor eventPayload = null;
+        if (fFields != null) {
+            eventPayload = cursor.getCursor(fFields);
+            eventPayload.read(input, trace, ILexicalScope.FIELDS, eventHeaderDef);
+        }
+        long timestamp = 0;
+        boolean inFields = false;
+        if (cursor.getHeaderTimestampLength() > 0) {
+            timestamp = calculateTimestamp(cursor.getHeaderTimestamp(), cursor.getHeaderTimestampLength(), prevTimestamp);
+        } else {
+            Definition def = null;
+            if (eventHeaderDef instanceof StructDefinition) {
+                def = ((StructDefinition) eventHeaderDef).lookupDefinition(CTFStrings.TIMESTAMP);
+            } else if (eventHeaderDef != null) {
+                throw new CTFIOException("Event header def is not a Struct or an Event Header"); //$NON-NLS-1$
+            }
+            if (def instanceof IntegerDefinition) {
+                timestamp = calculateTimestamp((IntegerDefinition) def, prevTimestamp);
+            } else if (def == null) {
+                inFields = true;
+                StructCursor struct = lookupTimestamp(eventPayload);
+                if (struct == null) {
+                    struct = lookupTimestamp(eventContext);
+                }
+                if (struct != null) {
+                    timestamp = calculateTimestamp(struct, prevTimestamp);
+                }
+            }
+        }
+        cursor.setEvent(this, packetDescriptor, timestamp, streamEventContext, eventContext, eventPayload);
+        cursor.setTimestampInFields(inFields);
+    }
+
+    /**
+     * Look up the timestamp field in a struct read by a cursor, like
+     * {@link StructDefinition#lookupDefinition(String)}: the field named
+     * timestamp or _timestamp, else the same lookup in its struct fields.
+     *
+     * @return the cursor of the struct that has the field, or null if there
+     *         is no such field
+     */
+    private static @Nullable StructCursor lookupTimestamp(@Nullable StructCursor struct) {
+        if (struct == null) {
+            return null;
+        }
+        if (getTimestampIndex(struct) >= 0) {
+            return struct;
+        }
+        for (int i = 0; i < struct.getNbFields(); i++) {
+            StructCursor found = lookupTimestamp(struct.getStruct(i));
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private static int getTimestampIndex(StructCursor struct) {
+        int index = struct.getFieldIndex(CTFStrings.TIMESTAMP);
+        return index >= 0 ? index : struct.getFieldIndex(UNDERSCORED_TIMESTAMP);
+    }
+
+    private static long calculateTimestamp(StructCursor struct, long prevTimestamp) {
+        int index = getTimestampIndex(struct);
+        IDeclaration timestampDecl = struct.getFieldDeclaration(index);
+        if (timestampDecl instanceof IntegerDeclaration) {
+            return calculateTimestamp(struct.getLong(index), ((IntegerDeclaration) timestampDecl).getLength(), prevTimestamp);
+        }
+        return 0;
+    }
+
     private static long calculateTimestamp(@Nullable ICompositeDefinition eventHeaderDef, long prevTimestamp, StructDefinition eventPayload, StructDefinition eventContext) throws CTFIOException {
         long timestamp = 0;
         Definition def = null;
@@ -40,12 +40,22 @@ public final class PointerListStringParser implements ICommonTreeParser {
      */
     @Override
     public StringBuilder parse(CommonTree pointers, ICommonTreeParserParameter param) {
-        StringBuilder sb = new StringBuilder();
-        List<CommonTree> pointerList = pointers.getChildren();
         if (pointers.getChildCount() == 0) {
-            return sb;
+            return new StringBuilder();
         }
+        return parse(pointers.getChildren());
+    }
 
+    /**
+     * Creates the string representation of a list of pointers.
+     *
+     * @param pointerList
+     *            The POINTER nodes
+     *
+     * @return A StringBuilder to which will be appended the string.
+     */
+    public StringBuilder parse(List<CommonTree> pointerList) {
+        StringBuilder sb = new StringBuilder();
         for (CommonTree pointer : pointerList) {
 
             sb.append(" *"); //$NON-NLS-1$
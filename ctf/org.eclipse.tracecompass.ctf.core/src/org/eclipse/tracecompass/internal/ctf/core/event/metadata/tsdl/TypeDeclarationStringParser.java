@@ -69,11 +69,11 @@ public final class TypeDeclarationStringParser implements ICommonTreeParser {
         StringBuilder sb = new StringBuilder();
         sb.append(TypeSpecifierListStringParser.INSTANCE.parse(typeSpecifierList, null));
         if (pointers != null) {
-            CommonTree temp = new CommonTree();
-            for (CommonTree pointer : pointers) {
-                temp.addChild(pointer);
-            }
-            sb.append(PointerListStringParser.INSTANCE.parse(temp, null));
+            /*
+             * Do not add the pointers to a new parent tree, that would change
+             * their parent in the metadata tree, which may be shared
+             */
+            sb.append(PointerListStringParser.INSTANCE.parse(pointers));
         }
         return sb.toString();
     }
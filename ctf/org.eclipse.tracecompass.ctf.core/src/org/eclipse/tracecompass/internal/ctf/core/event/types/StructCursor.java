@@ -0,0 +1,796 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.event.types;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFException;
+import org.eclipse.tracecompass.ctf.core.event.io.BitBuffer;
+import org.eclipse.tracecompass.ctf.core.event.scope.IDefinitionScope;
+import org.eclipse.tracecompass.ctf.core.event.scope.ILexicalScope;
+import org.eclipse.tracecompass.ctf.core.event.types.AbstractArrayDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.CompoundDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.Definition;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.EnumDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.FloatDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.IntegerDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StringDefinition;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
+import org.eclipse.tracecompass.ctf.core.event.types.StructDefinition;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * A reusable cursor over the fields of a {@link StructDeclaration} in a
+ * {@link BitBuffer}.
+ *
+ * Reading a struct with a cursor does not create any {@link Definition}: the
+ * fields are walked once, and the values of the integer and enum fields and
+ * the positions of the other fields are kept in arrays that are reused for
+ * every struct read. Strings, floats and compound fields are only decoded
+ * when they are requested.
+ *
+ * The layout of the leading fields whose size does not depend on the data is
+ * resolved when the cursor is created: their offsets from the start of the
+ * struct are computed once, and each of their integers is given a reader
+ * specific to its size and alignment. The byte-aligned 8, 16, 32 and 64-bit
+ * integers of this fixed prefix are read directly from the {@link ByteBuffer}
+ * at their offset, without going through the generic bit reader. The fields
+ * after the first string or sequence are walked one by one.
+ *
+ * Structs with variants, or with sequences whose length is not an integer
+ * field of the same struct, cannot be walked without their scope. The cursor
+ * creates the {@link StructDefinition} of those.
+ *
+ * The values of a cursor are only valid until the next struct is read, and
+ * the fields decoded on demand must be requested before the buffer is reused
+ * for another packet.
+ */
+@NonNullByDefault
+public final class StructCursor {
+
+    private static final int INTEGER = 0;
+    private static final int ENUM = 1;
+    private static final int FLOAT = 2;
+    private static final int STRING = 3;
+    private static final int STRUCT = 4;
+    private static final int ARRAY = 5;
+    private static final int SEQUENCE = 6;
+    private static final int UNSUPPORTED = -1;
+
+    /* Readers of the fields of the fixed prefix */
+    private static final int READ_BITS = 0;
+    private static final int READ_BYTE = 1;
+    private static final int READ_SHORT = 2;
+    private static final int READ_INT = 3;
+    private static final int READ_LONG = 4;
+    private static final int READ_STRUCT = 5;
+    private static final int SKIP = 6;
+
+    private static final int BITS_PER_BYTE = 8;
+    private static final int BYTE_MASK = 0xff;
+    private static final int SHORT_MASK = 0xffff;
+    private static final long INT_MASK = 0xffffffffL;
+
+    private final StructDeclaration fDeclaration;
+    private final String[] fNames;
+    private final IDeclaration[] fDeclarations;
+    private final int[] fKinds;
+    /* Kind of the elements of the array and sequence fields */
+    private final int[] fElementKinds;
+    /* Index of the length field of the sequence fields */
+    private final int[] fLengthIndexes;
+    /* Cursors of the struct fields and of the elements of struct arrays */
+    private final @Nullable StructCursor[] fChildren;
+    private final boolean fSupported;
+
+    /* Number of fields of the fixed prefix, and its size in bits */
+    private final int fNbFixed;
+    private final long fFixedSize;
+    /* Offsets of the fields of the fixed prefix from the start of the struct */
+    private final long[] fOffsets;
+    private final int[] fReaders;
+    /* Integer read for the integer and enum fields, null for the others */
+    private final @Nullable IntegerDeclaration[] fIntegers;
+
+    /* Integer and enum values, or the lengths of the arrays and sequences */
+    private final long[] fValues;
+    private final long[] fPositions;
+
+    private @Nullable BitBuffer fInput;
+    private @Nullable StructDefinition fDefinition;
+
+    /**
+     * Constructor
+     *
+     * @param declaration
+     *            the declaration of the structs to read
+     */
+    public StructCursor(StructDeclaration declaration) {
+        fDeclaration = declaration;
+        int nbFields = Iterables.size(declaration.getFieldsList());
+        fNames = new String[nbFields];
+        fDeclarations = new IDeclaration[nbFields];
+        fKinds = new int[nbFields];
+        fElementKinds = new int[nbFields];
+        fLengthIndexes = new int[nbFields];
+        fChildren = new @Nullable StructCursor[nbFields];
+        fValues = new long[nbFields];
+        fPositions = new long[nbFields];
+        fOffsets = new long[nbFields];
+        fReaders = new int[nbFields];
+        fIntegers = new @Nullable IntegerDeclaration[nbFields];
+
+        boolean supported = true;
+        int i = 0;
+        for (String name : declaration.getFieldsList()) {
+            IDeclaration field = declaration.getField(name);
+            if (field == null) {
+                throw new IllegalStateException("Struct has no declaration for field " + name); //$NON-NLS-1$
+            }
+            fNames[i] = name;
+            fDeclarations[i] = field;
+            fKinds[i] = kindOf(field);
+            fElementKinds[i] = UNSUPPORTED;
+            fLengthIndexes[i] = -1;
+            if (fKinds[i] == INTEGER) {
+                fIntegers[i] = (IntegerDeclaration) field;
+            } else if (fKinds[i] == ENUM) {
+                fIntegers[i] = ((EnumDeclaration) field).getContainerType();
+            } else if (fKinds[i] == STRUCT) {
+                fChildren[i] = new StructCursor((StructDeclaration) field);
+            } else if (fKinds[i] == ARRAY || fKinds[i] == SEQUENCE) {
+                IDeclaration element = ((CompoundDeclaration) field).getElementType();
+                fElementKinds[i] = kindOf(element);
+                if (fElementKinds[i] == STRUCT) {
+                    fChildren[i] = new StructCursor((StructDeclaration) element);
+                } else if (fElementKinds[i] == ARRAY || fElementKinds[i] == SEQUENCE) {
+                    fElementKinds[i] = UNSUPPORTED;
+                }
+                if (fKinds[i] == SEQUENCE) {
+                    fLengthIndexes[i] = getLengthIndex(((SequenceDeclaration) field).getLengthName(), i);
+                }
+            }
+            StructCursor child = fChildren[i];
+            supported &= fKinds[i] != UNSUPPORTED
+                    && (fKinds[i] != ARRAY || fElementKinds[i] != UNSUPPORTED)
+                    && (fKinds[i] != SEQUENCE || (fElementKinds[i] != UNSUPPORTED && fLengthIndexes[i] >= 0))
+                    && (child == null || child.isSupported());
+            i++;
+        }
+        fSupported = supported;
+        fNbFixed = supported ? compileFixedPrefix() : 0;
+        fFixedSize = fNbFixed == 0 ? 0 : fOffsets[fNbFixed - 1] + getFixedSize(fNbFixed - 1);
+    }
+
+    /*
+     * Resolve the offsets and the readers of the leading fields of fixed size.
+     * The struct is aligned on the largest alignment of its fields, so the
+     * alignment of these fields relative to the start of the struct is the
+     * same for all the structs read.
+     */
+    private int compileFixedPrefix() {
+        long structAlignment = fDeclaration.getAlignment();
+        boolean byteAligned = (structAlignment % BITS_PER_BYTE) == 0;
+        long offset = 0;
+        int i = 0;
+        for (; i < fKinds.length; i++) {
+            long size = getFixedSize(i);
+            long alignment = fDeclarations[i].getAlignment();
+            if (size < 0 || (structAlignment % alignment) != 0) {
+                break;
+            }
+            offset = alignUp(offset, alignment);
+            IntegerDeclaration integer = fIntegers[i];
+            if (integer != null) {
+                if ((structAlignment % integer.getAlignment()) != 0) {
+                    break;
+                }
+                offset = alignUp(offset, integer.getAlignment());
+                fReaders[i] = getIntegerReader(integer, byteAligned && (offset % BITS_PER_BYTE) == 0);
+            } else {
+                fReaders[i] = fKinds[i] == STRUCT ? READ_STRUCT : SKIP;
+            }
+            fOffsets[i] = offset;
+            offset += size;
+        }
+        return i;
+    }
+
+    private static int getIntegerReader(IntegerDeclaration integer, boolean byteAligned) {
+        if (!byteAligned) {
+            return READ_BITS;
+        }
+        switch (integer.getLength()) {
+        case Byte.SIZE:
+            return READ_BYTE;
+        case Short.SIZE:
+            return READ_SHORT;
+        case Integer.SIZE:
+            return READ_INT;
+        case Long.SIZE:
+            return READ_LONG;
+        default:
+            return READ_BITS;
+        }
+    }
+
+    /*
+     * Size in bits of a field, from its aligned start, or -1 if it depends on
+     * the data
+     */
+    private long getFixedSize(int index) {
+        switch (fKinds[index]) {
+        case INTEGER:
+        case ENUM:
+            IntegerDeclaration integer = fIntegers[index];
+            return integer == null ? -1 : integer.getLength();
+        case FLOAT:
+            FloatDeclaration floatDeclaration = (FloatDeclaration) fDeclarations[index];
+            int size = floatDeclaration.getExponent() + floatDeclaration.getMantissa();
+            return (size == Integer.SIZE || size == Long.SIZE) ? size : 0;
+        case STRUCT:
+            StructCursor child = fChildren[index];
+            return (child == null || child.fNbFixed != child.fKinds.length) ? -1 : child.fFixedSize;
+        case ARRAY:
+            ArrayDeclaration array = (ArrayDeclaration) fDeclarations[index];
+            if (array.isAlignedBytes()) {
+                return (long) array.getLength() * BITS_PER_BYTE;
+            }
+            if (fElementKinds[index] != INTEGER && fElementKinds[index] != ENUM) {
+                return -1;
+            }
+            /* Elements whose size is a multiple of their alignment are packed */
+            IDeclaration element = array.getElementType();
+            long elementSize = element.getMaximumSize();
+            if ((elementSize % element.getAlignment()) != 0) {
+                return -1;
+            }
+            return array.getLength() * elementSize;
+        default:
+            return -1;
+        }
+    }
+
+    private static long alignUp(long offset, long alignment) {
+        long mask = alignment - 1;
+        return (offset + mask) & ~mask;
+    }
+
+    private static int kindOf(IDeclaration declaration) {
+        if (declaration instanceof IntegerDeclaration) {
+            return INTEGER;
+        } else if (declaration instanceof EnumDeclaration) {
+            return ENUM;
+        } else if (declaration instanceof FloatDeclaration) {
+            return FLOAT;
+        } else if (declaration instanceof StringDeclaration) {
+            return STRING;
+        } else if (declaration instanceof StructDeclaration) {
+            return STRUCT;
+        } else if (declaration instanceof ArrayDeclaration) {
+            return ARRAY;
+        } else if (declaration instanceof SequenceDeclaration) {
+            return SEQUENCE;
+        }
+        return UNSUPPORTED;
+    }
+
+    /*
+     * The length of a sequence can be walked only if it is an unsigned integer
+     * field before the sequence in the same struct, looked up like
+     * StructDefinition#lookupDefinition does.
+     */
+    private int getLengthIndex(@Nullable String lengthName, int sequenceIndex) {
+        if (lengthName == null) {
+            return -1;
+        }
+        String underscored = '_' + lengthName;
+        for (String name : new String[] { lengthName, underscored }) {
+            for (int j = 0; j < sequenceIndex; j++) {
+                if (fNames[j].equals(name)) {
+                    IDeclaration length = fDeclarations[j];
+                    if (length instanceof IntegerDeclaration && !((IntegerDeclaration) length).isSigned()) {
+                        return j;
+                    }
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // ------------------------------------------------------------------------
+    // Getters
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the declaration of the structs read by this cursor
+     *
+     * @return the struct declaration
+     */
+    public StructDeclaration getDeclaration() {
+        return fDeclaration;
+    }
+
+    /**
+     * Whether the structs can be read without creating their definition
+     *
+     * @return true if the cursor walks the fields, false if it creates the
+     *         definition of the structs
+     */
+    public boolean isSupported() {
+        return fSupported;
+    }
+
+    /**
+     * Get the number of fields of the struct
+     *
+     * @return the number of fields
+     */
+    public int getNbFields() {
+        return fNames.length;
+    }
+
+    /**
+     * Get the index of a field, to be kept by the readers of a field
+     *
+     * @param fieldName
+     *            the name of the field
+     * @return the index of the field, or -1 if there is no such field
+     */
+    public int getFieldIndex(String fieldName) {
+        for (int i = 0; i < fNames.length; i++) {
+            if (fNames[i].equals(fieldName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the name of a field
+     *
+     * @param index
+     *            the index of the field
+     * @return the name of the field
+     */
+    public String getFieldName(int index) {
+        return fNames[index];
+    }
+
+    /**
+     * Get the declaration of a field
+     *
+     * @param index
+     *            the index of the field
+     * @return the declaration of the field
+     */
+    public IDeclaration getFieldDeclaration(int index) {
+        return fDeclarations[index];
+    }
+
+    // ------------------------------------------------------------------------
+    // Operations
+    // ------------------------------------------------------------------------
+
+    /**
+     * Read a struct at the current position of the input. The input is
+     * positioned after the struct when this returns.
+     *
+     * @param input
+     *            the input buffer
+     * @param definitionScope
+     *            the scope of the struct, used if its definition is created
+     * @param scope
+     *            the lexical scope of the struct
+     * @param eventHeaderDef
+     *            the event header, used if the definition is created for
+     *            event fields
+     * @throws CTFException
+     *             if the struct cannot be read
+     */
+    public void read(BitBuffer input, @Nullable IDefinitionScope definitionScope, ILexicalScope scope, @Nullable ICompositeDefinition eventHeaderDef) throws CTFException {
+        fInput = input;
+        if (!fSupported) {
+            fDefinition = fDeclaration.createFieldDefinition(eventHeaderDef, definitionScope, scope, input);
+            return;
+        }
+        fDefinition = null;
+        walk(input);
+    }
+
+    private void walk(BitBuffer input) throws CTFException {
+        fInput = input;
+        align(input, fDeclaration.getAlignment());
+        if (fNbFixed > 0) {
+            long start = input.position();
+            if (!input.canRead((int) fFixedSize)) {
+                throw new CTFException("Cannot read the struct, the buffer does not have enough remaining space. Requested:" + fFixedSize); //$NON-NLS-1$
+            }
+            readFixedPrefix(input, start);
+            input.position(start + fFixedSize);
+        }
+        for (int i = fNbFixed; i < fKinds.length; i++) {
+            fPositions[i] = input.position();
+            switch (fKinds[i]) {
+            case INTEGER:
+                fValues[i] = readInteger(input, (IntegerDeclaration) fDeclarations[i]);
+                break;
+            case ENUM:
+                align(input, fDeclarations[i].getAlignment());
+                fValues[i] = readInteger(input, ((EnumDeclaration) fDeclarations[i]).getContainerType());
+                break;
+            case FLOAT:
+                skipFloat(input, (FloatDeclaration) fDeclarations[i]);
+                break;
+            case STRING:
+                skipString(input);
+                break;
+            case STRUCT:
+                walkChild(i, input);
+                break;
+            case ARRAY:
+                ArrayDeclaration array = (ArrayDeclaration) fDeclarations[i];
+                fValues[i] = array.getLength();
+                align(input, array.getAlignment());
+                if (array.isAlignedBytes()) {
+                    input.position(input.position() + (long) array.getLength() * BITS_PER_BYTE);
+                } else {
+                    skipElements(i, input, array.getLength());
+                }
+                break;
+            case SEQUENCE:
+                SequenceDeclaration sequence = (SequenceDeclaration) fDeclarations[i];
+                long length = fValues[fLengthIndexes[i]];
+                if ((length > Integer.MAX_VALUE) || (!input.canRead((int) length * sequence.getElementType().getMaximumSize()))) {
+                    throw new CTFException("Sequence length too long " + length); //$NON-NLS-1$
+                }
+                fValues[i] = length;
+                if (sequence.isAlignedBytes()) {
+                    input.position(input.position() + length * BITS_PER_BYTE);
+                } else {
+                    skipElements(i, input, length);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Field " + fNames[i] + " cannot be walked"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+    }
+
+    /*
+     * Read the fields of the fixed prefix at their precomputed offsets. The
+     * bounds of the prefix are checked by the caller.
+     */
+    private void readFixedPrefix(BitBuffer input, long start) throws CTFException {
+        fInput = input;
+        ByteBuffer buffer = input.getByteBuffer();
+        for (int i = 0; i < fNbFixed; i++) {
+            long position = start + fOffsets[i];
+            fPositions[i] = position;
+            IntegerDeclaration integer = fIntegers[i];
+            if (integer != null) {
+                if (fReaders[i] == READ_BITS) {
+                    input.position(position);
+                    fValues[i] = readInteger(input, integer);
+                } else {
+                    fValues[i] = readAlignedInteger(buffer, (int) (position / BITS_PER_BYTE), integer, fReaders[i]);
+                }
+            } else if (fReaders[i] == READ_STRUCT) {
+                walkChildFixed(i, input, position);
+            } else if (fKinds[i] == ARRAY) {
+                fValues[i] = ((ArrayDeclaration) fDeclarations[i]).getLength();
+            }
+        }
+    }
+
+    private static long readAlignedInteger(ByteBuffer buffer, int index, IntegerDeclaration integer, int reader) {
+        boolean swap = integer.getByteOrder() != buffer.order();
+        boolean signed = integer.isSigned();
+        switch (reader) {
+        case READ_BYTE:
+            byte byteValue = buffer.get(index);
+            return signed ? byteValue : byteValue & BYTE_MASK;
+        case READ_SHORT:
+            short shortValue = buffer.getShort(index);
+            if (swap) {
+                shortValue = Short.reverseBytes(shortValue);
+            }
+            return signed ? shortValue : shortValue & SHORT_MASK;
+        case READ_INT:
+            int intValue = buffer.getInt(index);
+            if (swap) {
+                intValue = Integer.reverseBytes(intValue);
+            }
+            return signed ? intValue : intValue & INT_MASK;
+        case READ_LONG:
+            long longValue = buffer.getLong(index);
+            return swap ? Long.reverseBytes(longValue) : longValue;
+        default:
+            throw new IllegalStateException("Unknown integer reader " + reader); //$NON-NLS-1$
+        }
+    }
+
+    private void walkChildFixed(int index, BitBuffer input, long position) throws CTFException {
+        StructCursor child = fChildren[index];
+        if (child == null) {
+            throw new IllegalStateException("No cursor for field " + fNames[index]); //$NON-NLS-1$
+        }
+        child.readFixedPrefix(input, position);
+    }
+
+    private void walkChild(int index, BitBuffer input) throws CTFException {
+        StructCursor child = fChildren[index];
+        if (child == null) {
+            throw new IllegalStateException("No cursor for field " + fNames[index]); //$NON-NLS-1$
+        }
+        child.walk(input);
+    }
+
+    private void skipElements(int index, BitBuffer input, long length) throws CTFException {
+        IDeclaration element = ((CompoundDeclaration) fDeclarations[index]).getElementType();
+        switch (fElementKinds[index]) {
+        case INTEGER:
+        case ENUM:
+            int size = element.getMaximumSize();
+            long alignment = element.getAlignment();
+            for (long i = 0; i < length; i++) {
+                align(input, alignment);
+                input.position(input.position() + size);
+            }
+            break;
+        case FLOAT:
+            for (long i = 0; i < length; i++) {
+                skipFloat(input, (FloatDeclaration) element);
+            }
+            break;
+        case STRING:
+            for (long i = 0; i < length; i++) {
+                skipString(input);
+            }
+            break;
+        case STRUCT:
+            for (long i = 0; i < length; i++) {
+                walkChild(index, input);
+            }
+            break;
+        default:
+            throw new IllegalStateException("Elements of field " + fNames[index] + " cannot be walked"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+
+    private static void align(BitBuffer input, long alignment) throws CTFException {
+        long mask = alignment - 1;
+        long pos = input.position();
+        if ((pos & mask) != 0) {
+            input.position((pos + mask) & ~mask);
+        }
+    }
+
+    private static long readInteger(BitBuffer input, IntegerDeclaration declaration) throws CTFException {
+        align(input, declaration.getAlignment());
+        ByteOrder byteOrder = input.getByteOrder();
+        input.setByteOrder(declaration.getByteOrder());
+        long value = input.get(declaration.getLength(), declaration.isSigned());
+        input.setByteOrder(byteOrder);
+        return value;
+    }
+
+    private static void skipFloat(BitBuffer input, FloatDeclaration declaration) throws CTFException {
+        align(input, declaration.getAlignment());
+        /* Only 32 and 64 bit floats are read by FloatDeclaration */
+        int size = declaration.getExponent() + declaration.getMantissa();
+        if (size == Integer.SIZE || size == Long.SIZE) {
+            input.position(input.position() + size);
+        }
+    }
+
+    private static void skipString(BitBuffer input) throws CTFException {
+        align(input, BITS_PER_BYTE);
+        while (input.get(BITS_PER_BYTE, false) != 0) {
+            /* Skip until the null terminator */
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Field values
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the value of an integer or enum field
+     *
+     * @param index
+     *            the index of the field
+     * @return the value of the field
+     * @throws IllegalArgumentException
+     *             if the field is not an integer or an enum
+     */
+    public long getLong(int index) {
+        StructDefinition definition = fDefinition;
+        if (definition != null) {
+            IDefinition field = definition.getDefinition(fNames[index]);
+            if (field instanceof IntegerDefinition) {
+                return ((IntegerDefinition) field).getValue();
+            } else if (field instanceof EnumDefinition) {
+                return ((EnumDefinition) field).getIntegerValue();
+            }
+        } else if (fKinds[index] == INTEGER || fKinds[index] == ENUM) {
+            return fValues[index];
+        }
+        throw new IllegalArgumentException("Field " + fNames[index] + " is not an integer"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Get the label of an enum field
+     *
+     * @param index
+     *            the index of the field
+     * @return the label of the value of the field, can be null
+     * @throws IllegalArgumentException
+     *             if the field is not an enum
+     */
+    public @Nullable String getEnumLabel(int index) {
+        IDeclaration declaration = fDeclarations[index];
+        if (!(declaration instanceof EnumDeclaration)) {
+            throw new IllegalArgumentException("Field " + fNames[index] + " is not an enum"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return ((EnumDeclaration) declaration).query(getLong(index));
+    }
+
+    /**
+     * Get the length of an array or sequence field
+     *
+     * @param index
+     *            the index of the field
+     * @return the number of elements of the field
+     * @throws IllegalArgumentException
+     *             if the field is not an array or a sequence
+     */
+    public long getLength(int index) {
+        StructDefinition definition = fDefinition;
+        if (definition != null) {
+            IDefinition field = definition.getDefinition(fNames[index]);
+            if (field instanceof AbstractArrayDefinition) {
+                return ((AbstractArrayDefinition) field).getLength();
+            }
+        } else if (fKinds[index] == ARRAY || fKinds[index] == SEQUENCE) {
+            return fValues[index];
+        }
+        throw new IllegalArgumentException("Field " + fNames[index] + " is not an array"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Decode a float field
+     *
+     * @param index
+     *            the index of the field
+     * @return the value of the field
+     * @throws CTFException
+     *             if the field cannot be read
+     * @throws IllegalArgumentException
+     *             if the field is not a float
+     */
+    public double getDouble(int index) throws CTFException {
+        IDefinition field = getDefinition(index);
+        if (!(field instanceof FloatDefinition)) {
+            throw new IllegalArgumentException("Field " + fNames[index] + " is not a float"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return ((FloatDefinition) field).getValue();
+    }
+
+    /**
+     * Decode a string field
+     *
+     * @param index
+     *            the index of the field
+     * @return the value of the field
+     * @throws CTFException
+     *             if the field cannot be read
+     * @throws IllegalArgumentException
+     *             if the field is not a string
+     */
+    public String getString(int index) throws CTFException {
+        IDefinition field = getDefinition(index);
+        if (!(field instanceof StringDefinition)) {
+            throw new IllegalArgumentException("Field " + fNames[index] + " is not a string"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return ((StringDefinition) field).getValue();
+    }
+
+    /**
+     * Get the cursor of a struct field. Its values are those of the last
+     * struct read by this cursor.
+     *
+     * @param index
+     *            the index of the field
+     * @return the cursor of the field, or null if the field is not a struct or
+     *         this cursor created the definition of the struct
+     */
+    public @Nullable StructCursor getStruct(int index) {
+        if (fDefinition != null || fKinds[index] != STRUCT) {
+            return null;
+        }
+        return fChildren[index];
+    }
+
+    /**
+     * Create the definition of a field, for the readers that need any field
+     * as a {@link Definition}
+     *
+     * @param index
+     *            the index of the field
+     * @return the definition of the field
+     * @throws CTFException
+     *             if the field cannot be read
+     */
+    public Definition getDefinition(int index) throws CTFException {
+        StructDefinition definition = fDefinition;
+        if (definition != null) {
+            Definition field = definition.getDefinition(fNames[index]);
+            if (field == null) {
+                throw new IllegalStateException("No definition for field " + fNames[index]); //$NON-NLS-1$
+            }
+            return field;
+        }
+        BitBuffer input = fInput;
+        if (input == null) {
+            throw new IllegalStateException("No struct was read"); //$NON-NLS-1$
+        }
+        long position = input.position();
+        input.position(fPositions[index]);
+        try {
+            if (fKinds[index] == SEQUENCE) {
+                return fDeclarations[index].createDefinition(new LengthScope(fDeclarations[fLengthIndexes[index]], fNames[fLengthIndexes[index]], fValues[index]), fNames[index], input);
+            }
+            return fDeclarations[index].createDefinition(null, fNames[index], input);
+        } finally {
+            input.position(position);
+        }
+    }
+
+    /**
+     * The scope of a sequence created from a cursor, which only knows the
+     * length of the sequence
+     */
+    private static final class LengthScope implements IDefinitionScope {
+
+        private final IntegerDefinition fLength;
+        private final String fLengthName;
+
+        public LengthScope(IDeclaration lengthDeclaration, String lengthName, long length) {
+            fLength = new IntegerDefinition((IntegerDeclaration) lengthDeclaration, null, lengthName, length);
+            fLengthName = lengthName;
+        }
+
+        @Override
+        public @Nullable ILexicalScope getScopePath() {
+            return null;
+        }
+
+        @Override
+        public @Nullable IDefinition lookupDefinition(@Nullable String lookupPath) {
+            if (fLengthName.equals(lookupPath) || fLengthName.equals('_' + lookupPath)) {
+                return fLength;
+            }
+            return null;
+        }
+    }
+}
@@ -53,7 +53,7 @@ public final class StructDeclarationFlattener {
      *            the struct
      * @return if the struct is of fixed size
      */
-    private static boolean canBeFlattened(@NonNull StructDeclaration sd) {
+    public static boolean canBeFlattened(@NonNull StructDeclaration sd) {
         for (String field : sd.getFieldsList()) {
             IDeclaration dec = sd.getField(field);
             if (!isFixedSize(dec)) {
@@ -29,6 +29,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.IEventHeaderDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.VariantDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventCursor;
 
 /**
  * An event header declaration is a declaration of a structure defined in the
@@ -171,6 +172,39 @@ public final class EventHeaderCompactDeclaration extends Declaration implements
 
     }
 
+    /**
+     * Read an event header into an {@link EventCursor}, without creating its
+     * definition
+     *
+     * @param input
+     *            the input buffer
+     * @param cursor
+     *            the cursor in which to set the header timestamp
+     * @return the event id
+     * @throws CTFException
+     *             if the header cannot be read
+     */
+    public int readHeader(BitBuffer input, EventCursor cursor) throws CTFException {
+        alignRead(input);
+        ByteOrder bo = input.getByteOrder();
+        input.setByteOrder(fByteOrder);
+        int enumId = (int) input.get(COMPACT_ID, false);
+        if (enumId != EXTENDED_VALUE) {
+            cursor.setHeaderTimestamp(input.get(COMPACT_TS, false), COMPACT_TS);
+            input.setByteOrder(bo);
+            return enumId;
+        }
+        // needed since we read 5 bits
+        input.position(input.position() + 3);
+        long id = input.get(ID_SIZE, false);
+        if (id > Integer.MAX_VALUE) {
+            throw new CTFException("ID " + id + " larger than " + Integer.MAX_VALUE + " is currently unsupported by the parser"); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
+        }
+        cursor.setHeaderTimestamp(input.get(FULL_TS, false), FULL_TS);
+        input.setByteOrder(bo);
+        return (int) id;
+    }
+
     @Override
     public long getAlignment() {
         return ALIGN_ON_8;
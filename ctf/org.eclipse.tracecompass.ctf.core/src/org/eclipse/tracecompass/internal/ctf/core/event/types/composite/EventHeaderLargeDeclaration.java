@@ -29,6 +29,7 @@ import org.eclipse.tracecompass.ctf.core.event.types.IEventHeaderDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.IntegerDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.StructDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.VariantDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventCursor;
 
 /**
  * An event header declaration is a declaration of a structure defined in the
@@ -194,6 +195,38 @@ public final class EventHeaderLargeDeclaration extends Declaration implements IE
         return new EventHeaderDefinition(this, (int) second, timestampLong, FULL_TS);
     }
 
+    /**
+     * Read an event header into an {@link EventCursor}, without creating its
+     * definition
+     *
+     * @param input
+     *            the input buffer
+     * @param cursor
+     *            the cursor in which to set the header timestamp
+     * @return the event id
+     * @throws CTFException
+     *             if the header cannot be read
+     */
+    public int readHeader(BitBuffer input, EventCursor cursor) throws CTFException {
+        alignRead(input);
+        ByteOrder bo = input.getByteOrder();
+        input.setByteOrder(fByteOrder);
+        int first = (int) input.get(COMPACT_ID, false);
+        long second = input.get(COMPACT_TS, false);
+        if (first != EXTENDED_VALUE) {
+            input.setByteOrder(bo);
+            cursor.setHeaderTimestamp(second, COMPACT_TS);
+            return first;
+        }
+        long timestampLong = input.get(FULL_TS, false);
+        input.setByteOrder(bo);
+        if (second > Integer.MAX_VALUE) {
+            throw new CTFException("ID " + second + " larger than " + Integer.MAX_VALUE + " is currently unsupported by the parser"); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
+        }
+        cursor.setHeaderTimestamp(timestampLong, FULL_TS);
+        return (int) second;
+    }
+
     @Override
     public long getAlignment() {
         return ALIGN_ON_8;
@@ -35,10 +35,13 @@ import org.eclipse.tracecompass.ctf.core.event.types.VariantDefinition;
 import org.eclipse.tracecompass.ctf.core.trace.CTFIOException;
 import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
 import org.eclipse.tracecompass.ctf.core.trace.IPacketReader;
+import org.eclipse.tracecompass.internal.ctf.core.event.EventCursor;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.event.EventDefinition;
 import org.eclipse.tracecompass.internal.ctf.core.event.LostEventDeclaration;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderCompactDeclaration;
 import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderDefinition;
+import org.eclipse.tracecompass.internal.ctf.core.event.types.composite.EventHeaderLargeDeclaration;
 
 /**
  * Packet reader with a fixed bit buffer, should be the fast and easily
@@ -140,37 +143,144 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
             fEventHeader = ehd;
             eventID = ehd.getId();
         } else if (streamEventHeaderDecl instanceof StructDeclaration) {
-            StructDefinition structEventHeaderDef = ((StructDeclaration) streamEventHeaderDecl).createDefinition(EVENT_HEADER_SCOPE, ILexicalScope.EVENT_HEADER, fInput);
-            fEventHeader = structEventHeaderDef;
-            /* Check for the event id. */
-            IDefinition idDef = structEventHeaderDef.lookupDefinition("id"); //$NON-NLS-1$
-            SimpleDatatypeDefinition simpleIdDef = null;
-            if (idDef instanceof SimpleDatatypeDefinition) {
-                simpleIdDef = ((SimpleDatatypeDefinition) idDef);
-            } else if (idDef != null) {
-                throw new CTFIOException("Id defintion not an integer, enum or float definiton in event header."); //$NON-NLS-1$
-            }
-            /* Check for the variant v. */
-            IDefinition variantDef = structEventHeaderDef.lookupDefinition("v"); //$NON-NLS-1$
-            if (variantDef instanceof VariantDefinition) {
+            eventID = readStructEventHeader((StructDeclaration) streamEventHeaderDecl);
+        }
+        EventDeclaration declaration = getEventDeclaration(eventID);
+        EventDefinition eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
+        fLastTimestamp = eventDef.getTimestamp();
+        /*
+         * Set the event timestamp using the timestamp calculated by updateTimestamp.
+         */
 
-                /* Get the variant current field */
-                StructDefinition variantCurrentField = (StructDefinition) ((VariantDefinition) variantDef).getCurrentField();
+        if (posStart == fInput.position()) {
+            throw new CTFIOException("Empty event not allowed, event: " + eventDef.getDeclaration().getName()); //$NON-NLS-1$
+        }
 
+        return eventDef;
+    }
+
+    /**
+     * Read the next event into a reusable cursor instead of creating an
+     * {@link EventDefinition}. The compact and large event headers and the
+     * fields of the events are read without creating definitions, so readers
+     * that only need a few fields of the events do not create objects for
+     * every event.
+     *
+     * @param cursor
+     *            the cursor to update with the next event
+     * @throws CTFException
+     *             if an error occurs reading the event
+     */
+    public void readNextEvent(EventCursor cursor) throws CTFException {
+        int eventID = (int) IEventDeclaration.UNSET_EVENT_ID;
+        final long posStart = fInput.position();
+        if (fHasLost && (posStart >= fPacketContext.getContentSizeBits())) {
+            fHasLost = false;
+            cursor.setLostEvent(fPacketContext, fLastTimestamp, fPacketContext.getLostEvents(), fPacketContext.getTimestampEnd() - fLastTimestamp);
+            return;
+        }
+
+        fEventHeader = null;
+        cursor.setHeaderTimestamp(0, 0);
+        final IDeclaration streamEventHeaderDecl = fStreamEventHeaderDecl;
+        if (streamEventHeaderDecl instanceof EventHeaderCompactDeclaration) {
+            eventID = ((EventHeaderCompactDeclaration) streamEventHeaderDecl).readHeader(fInput, cursor);
+        } else if (streamEventHeaderDecl instanceof EventHeaderLargeDeclaration) {
+            eventID = ((EventHeaderLargeDeclaration) streamEventHeaderDecl).readHeader(fInput, cursor);
+        } else if (streamEventHeaderDecl instanceof StructDeclaration) {
+            eventID = readStructEventHeader((StructDeclaration) streamEventHeaderDecl);
+        }
+        EventDeclaration declaration = getEventDeclaration(eventID);
+        declaration.readEvent(cursor, fStreamContext, fPacketContext, fEventHeader, fInput, fLastTimestamp);
+        fLastTimestamp = cursor.getTimestamp();
+
+        if (posStart == fInput.position()) {
+            throw new CTFIOException("Empty event not allowed, event: " + declaration.getName()); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Skip the events before a timestamp, reading them in a cursor so that no
+     * definitions are created for them. The next event read is the first one
+     * at or after the timestamp, or the first one that could not be read in
+     * the cursor or whose timestamp is not in its header, which is then read
+     * again with its definition.
+     *
+     * @param timestamp
+     *            the timestamp to reach
+     * @param cursor
+     *            the cursor to read the skipped events
+     * @return the number of events skipped
+     * @throws CTFException
+     *             if an error occurs moving back to the next event
+     */
+    public long skipEventsBefore(long timestamp, EventCursor cursor) throws CTFException {
+        long skipped = 0;
+        while (hasMoreEvents()) {
+            final long posStart = fInput.position();
+            final long lastTimestamp = fLastTimestamp;
+            final boolean hasLost = fHasLost;
+            try {
+                readNextEvent(cursor);
                 /*
-                 * Try to get the id field in the current field of the variant. If it is
-                 * present, it overrides the previously read event id.
+                 * A timestamp that is not in the header may be found
+                 * elsewhere by the definition of the event, so only the
+                 * definition can tell if the event is before the timestamp
                  */
-                IDefinition vIdDef = variantCurrentField.lookupDefinition("id"); //$NON-NLS-1$
-                if (vIdDef instanceof IntegerDefinition) {
-                    simpleIdDef = (SimpleDatatypeDefinition) vIdDef;
+                if (!cursor.isTimestampInFields() && cursor.getTimestamp() < timestamp) {
+                    skipped++;
+                    continue;
                 }
-
+            } catch (CTFException e) {
+                /* The error is reported when reading the event definition */
             }
-            if (simpleIdDef != null) {
-                eventID = simpleIdDef.getIntegerValue().intValue();
+            /* Go back to the start of the event */
+            fInput.position(posStart);
+            fLastTimestamp = lastTimestamp;
+            fHasLost = hasLost;
+            fEventHeader = null;
+            break;
+        }
+        return skipped;
+    }
+
+    private int readStructEventHeader(StructDeclaration streamEventHeaderDecl) throws CTFException {
+        int eventID = (int) IEventDeclaration.UNSET_EVENT_ID;
+        StructDefinition structEventHeaderDef = streamEventHeaderDecl.createDefinition(EVENT_HEADER_SCOPE, ILexicalScope.EVENT_HEADER, fInput);
+        fEventHeader = structEventHeaderDef;
+        /* Check for the event id. */
+        IDefinition idDef = structEventHeaderDef.lookupDefinition("id"); //$NON-NLS-1$
+        SimpleDatatypeDefinition simpleIdDef = null;
+        if (idDef instanceof SimpleDatatypeDefinition) {
+            simpleIdDef = ((SimpleDatatypeDefinition) idDef);
+        } else if (idDef != null) {
+            throw new CTFIOException("Id defintion not an integer, enum or float definiton in event header."); //$NON-NLS-1$
+        }
+        /* Check for the variant v. */
+        IDefinition variantDef = structEventHeaderDef.lookupDefinition("v"); //$NON-NLS-1$
+        if (variantDef instanceof VariantDefinition) {
+
+            /* Get the variant current field */
+            StructDefinition variantCurrentField = (StructDefinition) ((VariantDefinition) variantDef).getCurrentField();
+
+            /*
+             * Try to get the id field in the current field of the variant. If it is
+             * present, it overrides the previously read event id.
+             */
+            IDefinition vIdDef = variantCurrentField.lookupDefinition("id"); //$NON-NLS-1$
+            if (vIdDef instanceof IntegerDefinition) {
+                simpleIdDef = (SimpleDatatypeDefinition) vIdDef;
             }
+
         }
+        if (simpleIdDef != null) {
+            eventID = simpleIdDef.getIntegerValue().intValue();
+        }
+        return eventID;
+    }
+
+    private EventDeclaration getEventDeclaration(int id) throws CTFIOException {
+        int eventID = id;
         /* Single event type in a trace */
         if (eventID == IEventDeclaration.UNSET_EVENT_ID && fDeclarations.size() == 1) {
             eventID = 0;
@@ -183,18 +293,7 @@ public final class CTFPacketReader implements IPacketReader, IDefinitionScope {
         if (!(eventDeclaration instanceof EventDeclaration)) {
             throw new CTFIOException("Invalid event id : " + eventID); //$NON-NLS-1$
         }
-        EventDeclaration declaration = (EventDeclaration) eventDeclaration;
-        EventDefinition eventDef = declaration.createDefinition(fStreamContext, fPacketContext, fTracePacketHeader, fEventHeader, fInput, fLastTimestamp);
-        fLastTimestamp = eventDef.getTimestamp();
-        /*
-         * Set the event timestamp using the timestamp calculated by updateTimestamp.
-         */
-
-        if (posStart == fInput.position()) {
-            throw new CTFIOException("Empty event not allowed, event: " + eventDef.getDeclaration().getName()); //$NON-NLS-1$
-        }
-
-        return eventDef;
+        return (EventDeclaration) eventDeclaration;
     }
 
     private EventDefinition createLostEvent(final ICTFPacketDescriptor currentPacket) {
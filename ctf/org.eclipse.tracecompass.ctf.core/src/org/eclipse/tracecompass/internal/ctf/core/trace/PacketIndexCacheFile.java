@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.internal.ctf.core.Activator;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMap.Builder;
+
+/**
+ * File saving the packet index of the stream files of a trace, so that the
+ * packets do not have to be read again when the trace is reopened.
+ *
+ * The file is keyed by the checksum of the metadata file, and each stream file
+ * by its name, size and modification time. The index of a stream file is only
+ * restored if the stream file did not change since it was saved.
+ */
+public final class PacketIndexCacheFile {
+
+    private static final int MAGIC = 0xC1FC1DC0;
+    /* Increment if the format of the file changes */
+    private static final int VERSION = 1;
+
+    private static final byte LONG_VALUE = 0;
+    private static final byte DOUBLE_VALUE = 1;
+    private static final byte STRING_VALUE = 2;
+    private static final byte ENUM_VALUE = 3;
+
+    private PacketIndexCacheFile() {
+    }
+
+    /**
+     * Read the packet indexes of the stream files that did not change since
+     * the cache file was written.
+     *
+     * @param cacheFile
+     *            The cache file
+     * @param metadataFile
+     *            The metadata file of the trace
+     * @param streamFiles
+     *            The stream files of the trace
+     * @return The packet index of the stream files that did not change, or
+     *         null if the cache file does not exist, is invalid or the
+     *         metadata changed
+     */
+    public static @Nullable Map<File, List<@NonNull ICTFPacketDescriptor>> read(File cacheFile, File metadataFile, Iterable<File> streamFiles) {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            if (in.readLong() != metadataFile.length() || in.readLong() != checksum(metadataFile)) {
+                return null;
+            }
+            Map<String, File> filesByName = new HashMap<>();
+            for (File streamFile : streamFiles) {
+                filesByName.put(streamFile.getName(), streamFile);
+            }
+
+            Map<File, List<@NonNull ICTFPacketDescriptor>> indexes = new HashMap<>();
+            int nbStreams = in.readInt();
+            for (int i = 0; i < nbStreams; i++) {
+                String name = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                int nbEntries = in.readInt();
+                List<@NonNull ICTFPacketDescriptor> entries = new ArrayList<>(nbEntries);
+                for (int j = 0; j < nbEntries; j++) {
+                    entries.add(readEntry(in));
+                }
+                File streamFile = filesByName.get(name);
+                if (streamFile != null && streamFile.length() == size && streamFile.lastModified() == lastModified) {
+                    indexes.put(streamFile, entries);
+                }
+            }
+            return indexes;
+        } catch (IOException | IllegalArgumentException e) {
+            Activator.log("Failed to read the packet index cache " + cacheFile, e); //$NON-NLS-1$
+            return null;
+        }
+    }
+
+    /**
+     * Write the packet indexes of stream files to the cache file. The cache
+     * file is replaced atomically, so a concurrent reader sees the previous or
+     * the new file.
+     *
+     * @param cacheFile
+     *            The cache file
+     * @param metadataFile
+     *            The metadata file of the trace
+     * @param indexes
+     *            The complete packet index of the stream files
+     * @return true if the file was written, false if one of the entries
+     *         cannot be saved or there was an error writing the file
+     */
+    public static boolean write(File cacheFile, File metadataFile, Map<File, List<@NonNull ICTFPacketDescriptor>> indexes) {
+        File tmpFile = new File(cacheFile.getPath() + ".tmp"); //$NON-NLS-1$
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile.toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(metadataFile.length());
+                out.writeLong(checksum(metadataFile));
+                out.writeInt(indexes.size());
+                for (Entry<File, List<@NonNull ICTFPacketDescriptor>> index : indexes.entrySet()) {
+                    File streamFile = index.getKey();
+                    out.writeUTF(streamFile.getName());
+                    out.writeLong(streamFile.length());
+                    out.writeLong(streamFile.lastModified());
+                    out.writeInt(index.getValue().size());
+                    for (ICTFPacketDescriptor entry : index.getValue()) {
+                        if (!writeEntry(out, entry)) {
+                            out.close();
+                            Files.deleteIfExists(tmpFile.toPath());
+                            return false;
+                        }
+                    }
+                }
+            }
+            Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            Activator.log("Failed to write the packet index cache " + cacheFile, e); //$NON-NLS-1$
+            tmpFile.delete();
+            return false;
+        }
+    }
+
+    private static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static @NonNull ICTFPacketDescriptor readEntry(DataInputStream in) throws IOException {
+        long offsetBits = in.readLong();
+        long payloadStartBits = in.readLong();
+        long packetSizeBits = in.readLong();
+        long contentSizeBits = in.readLong();
+        long timestampBegin = in.readLong();
+        long timestampEnd = in.readLong();
+        long lostEvents = in.readLong();
+        String target = in.readBoolean() ? in.readUTF() : null;
+        long targetId = in.readLong();
+        int nbAttributes = in.readInt();
+        Builder<String, Object> attributes = ImmutableMap.builder();
+        for (int i = 0; i < nbAttributes; i++) {
+            String key = in.readUTF();
+            byte type = in.readByte();
+            switch (type) {
+            case LONG_VALUE:
+                attributes.put(key, in.readLong());
+                break;
+            case DOUBLE_VALUE:
+                attributes.put(key, in.readDouble());
+                break;
+            case STRING_VALUE:
+                attributes.put(key, in.readUTF());
+                break;
+            case ENUM_VALUE:
+                String label = in.readUTF();
+                attributes.put(key, new AbstractMap.SimpleImmutableEntry<>(label, in.readLong()));
+                break;
+            default:
+                throw new IOException("Invalid attribute type " + type); //$NON-NLS-1$
+            }
+        }
+        return new StreamInputPacketIndexEntry(offsetBits, payloadStartBits, packetSizeBits, contentSizeBits,
+                timestampBegin, timestampEnd, lostEvents, target, targetId, attributes.build());
+    }
+
+    private static boolean writeEntry(DataOutputStream out, ICTFPacketDescriptor entry) throws IOException {
+        out.writeLong(entry.getOffsetBits());
+        out.writeLong(entry.getPayloadStartBits());
+        out.writeLong(entry.getPacketSizeBits());
+        out.writeLong(entry.getContentSizeBits());
+        out.writeLong(entry.getTimestampBegin());
+        out.writeLong(entry.getTimestampEnd());
+        out.writeLong(entry.getLostEvents());
+        String target = entry.getTarget();
+        out.writeBoolean(target != null);
+        if (target != null) {
+            out.writeUTF(target);
+        }
+        out.writeLong(entry.getTargetId());
+        Map<String, Object> attributes = entry.getAttributes();
+        out.writeInt(attributes.size());
+        for (Entry<String, Object> attribute : attributes.entrySet()) {
+            out.writeUTF(attribute.getKey());
+            Object value = attribute.getValue();
+            if (value instanceof Long) {
+                out.writeByte(LONG_VALUE);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE_VALUE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof String) {
+                out.writeByte(STRING_VALUE);
+                out.writeUTF((String) value);
+            } else if (value instanceof Entry && ((Entry<?, ?>) value).getKey() instanceof String && ((Entry<?, ?>) value).getValue() instanceof Long) {
+                Entry<?, ?> enumValue = (Entry<?, ?>) value;
+                out.writeByte(ENUM_VALUE);
+                out.writeUTF((String) enumValue.getKey());
+                out.writeLong((Long) enumValue.getValue());
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.ctf.core.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.CTFStrings;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFPacketDescriptor;
+import org.eclipse.tracecompass.ctf.core.trace.ICTFStream;
+import org.eclipse.tracecompass.internal.ctf.core.Activator;
+
+/**
+ * Reader of the packet index files written by LTTng next to the stream files
+ * of a trace, in <code>index/&lt;stream file name&gt;.idx</code>. An index
+ * file has a header followed by an entry per packet of the stream file, with
+ * the offset, sizes, timestamps and discarded events of the packet, so the
+ * packets do not need to be read to index the stream.
+ *
+ * The entries only have the values of the packet context, so they are
+ * completed with the first packet of the stream, which is read from the
+ * stream file. The index file is rejected if it does not match the stream
+ * file, the packets should then be indexed by reading them.
+ */
+public final class PacketIndexFileReader {
+
+    /**
+     * Name of the directory of the index files, in the directory of the
+     * stream files
+     */
+    public static final String INDEX_DIRECTORY = "index"; //$NON-NLS-1$
+
+    /**
+     * Extension of the index files
+     */
+    public static final String INDEX_FILE_EXTENSION = ".idx"; //$NON-NLS-1$
+
+    private static final int INDEX_MAGIC = 0xC1F1DCC1;
+    private static final int INDEX_MAJOR = 1;
+    private static final String PACKET_SEQ_NUM = "packet_seq_num"; //$NON-NLS-1$
+
+    /* magic, major, minor and entry size, 32 bits each */
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    /* offset, packet_size, content_size, timestamp_begin, timestamp_end,
+     * events_discarded and stream_id, 64 bits each */
+    private static final int ENTRY_SIZE_1_0 = 7 * Long.BYTES;
+    /* stream_instance_id and packet_seq_num added in 1.1 */
+    private static final int ENTRY_SIZE_1_1 = ENTRY_SIZE_1_0 + 2 * Long.BYTES;
+
+    private PacketIndexFileReader() {
+    }
+
+    /**
+     * Get the index file of a stream file
+     *
+     * @param streamFile
+     *            The stream file
+     * @return The index file, which may not exist
+     */
+    public static File getIndexFile(File streamFile) {
+        return new File(new File(streamFile.getParentFile(), INDEX_DIRECTORY), streamFile.getName() + INDEX_FILE_EXTENSION);
+    }
+
+    /**
+     * Read the entries of the packets of a stream file from its index file.
+     *
+     * @param indexFile
+     *            The index file
+     * @param stream
+     *            The stream of the stream file
+     * @param firstPacket
+     *            The first packet of the stream file, read from the stream file
+     * @param fileSizeBytes
+     *            The size of the stream file in bytes
+     * @return The entries of the packets following the first packet, or null
+     *         if the index file cannot be read or does not match the stream
+     *         file
+     */
+    public static @Nullable List<@NonNull ICTFPacketDescriptor> read(File indexFile, ICTFStream stream,
+            ICTFPacketDescriptor firstPacket, long fileSizeBytes) {
+        ByteBuffer buffer;
+        try (FileChannel fc = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            long size = fc.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                return invalid(indexFile, "invalid size " + size); //$NON-NLS-1$
+            }
+            /* The index files are big endian, as the default byte order */
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && fc.read(buffer) >= 0) {
+                /* Read the whole file */
+            }
+            buffer.flip();
+        } catch (IOException e) {
+            Activator.log("Failed to read the packet index file " + indexFile, e); //$NON-NLS-1$
+            return null;
+        }
+
+        int magic = buffer.getInt();
+        int major = buffer.getInt();
+        int minor = buffer.getInt();
+        long entrySize = Integer.toUnsignedLong(buffer.getInt());
+        if (magic != INDEX_MAGIC) {
+            return invalid(indexFile, "magic mismatch " + Integer.toHexString(magic)); //$NON-NLS-1$
+        }
+        if (major != INDEX_MAJOR || entrySize < ENTRY_SIZE_1_0) {
+            return invalid(indexFile, "unsupported version " + major + '.' + minor); //$NON-NLS-1$
+        }
+        boolean hasSeqNum = minor >= 1 && entrySize >= ENTRY_SIZE_1_1;
+
+        /*
+         * The entries replace the whole packet context, except the target,
+         * which is the same for all the packets of a stream file
+         */
+        if (!firstPacket.getAttributes().containsKey(CTFStrings.PACKET_SIZE)) {
+            return invalid(indexFile, "packet context has no packet size"); //$NON-NLS-1$
+        }
+        for (String field : firstPacket.getAttributes().keySet()) {
+            if (!isIndexed(field, hasSeqNum)) {
+                return invalid(indexFile, "packet context field " + field + " is not indexed"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+
+        /* A trailing partial entry is being written by a live session */
+        long nbEntries = (buffer.limit() - HEADER_SIZE) / entrySize;
+        if (nbEntries == 0) {
+            return invalid(indexFile, "no entries"); //$NON-NLS-1$
+        }
+        List<@NonNull ICTFPacketDescriptor> entries = new ArrayList<>();
+        Map<String, Long> packetContext = new HashMap<>();
+        long nextOffsetBits = 0;
+        long lostSoFar = 0;
+        for (long i = 0; i < nbEntries; i++) {
+            buffer.position((int) (HEADER_SIZE + i * entrySize));
+            long offsetBits = buffer.getLong() * Byte.SIZE;
+            long packetSizeBits = buffer.getLong();
+            long contentSizeBits = buffer.getLong();
+            packetContext.put(CTFStrings.PACKET_SIZE, packetSizeBits);
+            packetContext.put(CTFStrings.CONTENT_SIZE, contentSizeBits);
+            packetContext.put(CTFStrings.TIMESTAMP_BEGIN, buffer.getLong());
+            packetContext.put(CTFStrings.TIMESTAMP_END, buffer.getLong());
+            long eventsDiscarded = buffer.getLong();
+            packetContext.put(CTFStrings.EVENTS_DISCARDED, eventsDiscarded);
+            long streamId = buffer.getLong();
+            if (hasSeqNum) {
+                /* Skip the stream instance ID */
+                buffer.getLong();
+                packetContext.put(PACKET_SEQ_NUM, buffer.getLong());
+            }
+
+            if (offsetBits != nextOffsetBits) {
+                return invalid(indexFile, "packet " + i + " is not contiguous to the previous one"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            if (packetSizeBits <= 0 || contentSizeBits > packetSizeBits ||
+                    packetSizeBits > fileSizeBytes * Byte.SIZE - offsetBits) {
+                return invalid(indexFile, "packet " + i + " has invalid sizes"); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            if (stream.isIdSet() && streamId != stream.getId()) {
+                return invalid(indexFile, "packet " + i + " has stream ID " + streamId); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            nextOffsetBits = offsetBits + packetSizeBits;
+
+            ICTFPacketDescriptor entry = new StreamInputPacketIndexEntry(firstPacket, offsetBits, packetContext, fileSizeBytes, lostSoFar);
+            if (i == 0) {
+                if (!entry.getAttributes().equals(firstPacket.getAttributes())) {
+                    return invalid(indexFile, "first packet does not match the stream file"); //$NON-NLS-1$
+                }
+            } else {
+                entries.add(entry);
+            }
+            if (firstPacket.getAttributes().containsKey(CTFStrings.EVENTS_DISCARDED)) {
+                lostSoFar = eventsDiscarded;
+            }
+        }
+        return entries;
+    }
+
+    private static boolean isIndexed(String field, boolean hasSeqNum) {
+        switch (field) {
+        case CTFStrings.PACKET_SIZE:
+        case CTFStrings.CONTENT_SIZE:
+        case CTFStrings.TIMESTAMP_BEGIN:
+        case CTFStrings.TIMESTAMP_END:
+        case CTFStrings.EVENTS_DISCARDED:
+        case CTFStrings.CPU_ID:
+        case CTFStrings.DEVICE:
+            return true;
+        case PACKET_SEQ_NUM:
+            return hasSeqNum;
+        default:
+            return false;
+        }
+    }
+
+    private static @Nullable List<@NonNull ICTFPacketDescriptor> invalid(File indexFile, String reason) {
+        Activator.log(IStatus.WARNING, "Ignoring packet index file " + indexFile + ": " + reason); //$NON-NLS-1$ //$NON-NLS-2$
+        return null;
+    }
+}
@@ -200,6 +200,85 @@ public class StreamInputPacketIndexEntry implements ICTFPacketDescriptor {
         fLostEvents = entryToAdd.getLostEvents();
     }
 
+    /**
+     * Constructor for a packet described by an index file. The packet header
+     * and context must have the same layout as those of a reference packet,
+     * the packet context is the one of the reference packet with the values
+     * of the index file.
+     *
+     * @param reference
+     *            a packet of the same stream, read from the trace file
+     * @param dataOffsetBits
+     *            offset in the file for the start of data in bits
+     * @param packetContext
+     *            values of the packet context fields read from the index file
+     * @param fileSizeBytes
+     *            number of bytes in a file
+     * @param lostSoFar
+     *            number of lost events so far
+     */
+    public StreamInputPacketIndexEntry(ICTFPacketDescriptor reference, long dataOffsetBits, Map<String, Long> packetContext, long fileSizeBytes, long lostSoFar) {
+        fEndPacketHeaderBits = reference.getPayloadStartBits();
+        Builder<String, Object> attributeBuilder = ImmutableMap.<String, Object> builder();
+        for (Map.Entry<String, Object> attribute : reference.getAttributes().entrySet()) {
+            Long value = packetContext.get(attribute.getKey());
+            attributeBuilder.put(attribute.getKey(), value != null ? value : attribute.getValue());
+        }
+        fAttributes = attributeBuilder.build();
+        fContentSizeBits = computeContentSize(fileSizeBytes);
+        fPacketSizeBits = computePacketSize(fileSizeBytes);
+        fTimestampBegin = computeTsBegin();
+        fTimestampEnd = computeTsEnd();
+        fOffsetBits = dataOffsetBits;
+        fOffsetBytes = dataOffsetBits / Byte.SIZE;
+
+        // LTTng Specific
+        fTarget = reference.getTarget();
+        fTargetID = reference.getTargetId();
+        fLostEvents = computeLostEvents(lostSoFar);
+    }
+
+    /**
+     * Constructor with all the values of the entry, to restore a saved entry
+     *
+     * @param dataOffsetBits
+     *            offset in the file for the start of data in bits
+     * @param payloadStartBits
+     *            end of packet headers, from the start of the packet
+     * @param packetSizeBits
+     *            packet size in bits
+     * @param contentSizeBits
+     *            content size in bits
+     * @param timestampBegin
+     *            begin timestamp
+     * @param timestampEnd
+     *            end timestamp
+     * @param lostEvents
+     *            number of events lost before this packet
+     * @param target
+     *            the target of the packet, can be null
+     * @param targetId
+     *            the id of the target
+     * @param attributes
+     *            the values of the packet context
+     */
+    public StreamInputPacketIndexEntry(long dataOffsetBits, long payloadStartBits, long packetSizeBits, long contentSizeBits,
+            long timestampBegin, long timestampEnd, long lostEvents, String target, long targetId, @NonNull Map<String, Object> attributes) {
+        fEndPacketHeaderBits = payloadStartBits;
+        fAttributes = attributes;
+        fContentSizeBits = contentSizeBits;
+        fPacketSizeBits = packetSizeBits;
+        fTimestampBegin = timestampBegin;
+        fTimestampEnd = timestampEnd;
+        fOffsetBits = dataOffsetBits;
+        fOffsetBytes = dataOffsetBits / Byte.SIZE;
+
+        // LTTng Specific
+        fTarget = target;
+        fTargetID = targetId;
+        fLostEvents = lostEvents;
+    }
+
     private static @NonNull Map<String, Object> computeAttributeMap(StructDefinition streamPacketContextDef) {
         Builder<String, Object> attributeBuilder = ImmutableMap.<String, Object> builder();
         for (String field : streamPacketContextDef.getDeclaration().getFieldsList()) {
@@ -16,6 +16,7 @@ package org.eclipse.tracecompass.tmf.ctf.core.trace;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.io.File;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -63,6 +64,7 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceKnownSize;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithPreDefinedEvents;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfPersistentlyIndexable;
 import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
@@ -144,6 +146,11 @@ public class CtfTmfTrace extends TmfTrace
      */
     private static final int CTF_AVG_EVENT_SIZE = 16;
 
+    /**
+     * Name of the file saving the packet index, in the supplementary files
+     */
+    private static final String PACKET_INDEX_CACHE_FILE_NAME = "ctf_packet_index.cache"; //$NON-NLS-1$
+
     // -------------------------------------------
     // Fields
     // -------------------------------------------
@@ -159,6 +166,9 @@ public class CtfTmfTrace extends TmfTrace
 
     private UUID fUUID;
 
+    /* Whether the packet index cache file is up to date */
+    private volatile boolean fPacketIndexCached = false;
+
     // -------------------------------------------
     // Constructor
     // -------------------------------------------
@@ -213,6 +223,7 @@ public class CtfTmfTrace extends TmfTrace
 
         try {
             this.fTrace = new CTFTrace(path);
+            fPacketIndexCached = fTrace.loadPacketIndexCache(getPacketIndexCacheFile());
             CtfTmfContext ctx;
             /* Set the start and (current) end times for this trace */
             ctx = (CtfTmfContext) seekEvent(0L);
@@ -865,6 +876,10 @@ public class CtfTmfTrace extends TmfTrace
         return getStartTime();
     }
 
+    private File getPacketIndexCacheFile() {
+        return new File(TmfTraceManager.getSupplementaryFileDir(this) + PACKET_INDEX_CACHE_FILE_NAME);
+    }
+
     /**
      * @since 3.0
      */
@@ -872,6 +887,10 @@ public class CtfTmfTrace extends TmfTrace
     public ITmfTimestamp readEnd() {
         try (CTFTraceReader reader = new CTFTraceReader(fTrace)) {
             reader.goToLastEvent();
+            if (!fPacketIndexCached) {
+                /* All the packets are indexed now */
+                fPacketIndexCached = fTrace.savePacketIndexCache(getPacketIndexCacheFile());
+            }
             long end = reader.getEndTime();
             return createTimestamp(end);
         } catch (CTFException e) {
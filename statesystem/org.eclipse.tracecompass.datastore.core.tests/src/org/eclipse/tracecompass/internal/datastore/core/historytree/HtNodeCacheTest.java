@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.datastore.core.historytree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.eclipse.tracecompass.internal.datastore.core.historytree.HtNodeCache.Partition;
+import org.eclipse.tracecompass.internal.datastore.core.historytree.HtNodeCache.Statistics;
+import org.junit.Test;
+
+/**
+ * Test the {@link HtNodeCache} class
+ */
+public class HtNodeCacheTest {
+
+    private static final int NODE_WEIGHT = 10;
+    private static final String PINNED_PREFIX = "core";
+
+    private static String load(int seqNumber) {
+        return "node" + seqNumber;
+    }
+
+    private static String loadPinnable(int seqNumber) {
+        return PINNED_PREFIX + seqNumber;
+    }
+
+    /**
+     * Test hits, misses and evictions within one partition's quota
+     *
+     * @throws IOException
+     *             Exceptions thrown by the loader
+     */
+    @Test
+    public void testPartitionQuota() throws IOException {
+        HtNodeCache cache = new HtNodeCache(1000, 3 * NODE_WEIGHT);
+        Partition<String> partition = cache.createPartition("test", NODE_WEIGHT, n -> false);
+
+        assertEquals("node0", partition.get(0, HtNodeCacheTest::load));
+        assertEquals("node1", partition.get(1, HtNodeCacheTest::load));
+        assertEquals("node2", partition.get(2, HtNodeCacheTest::load));
+        /* Access node 0 so that node 1 is the least recently used */
+        assertEquals("node0", partition.get(0, HtNodeCacheTest::load));
+        assertEquals("node3", partition.get(3, HtNodeCacheTest::load));
+
+        assertNull(partition.getIfPresent(1));
+        assertNotNull(partition.getIfPresent(0));
+        assertNotNull(partition.getIfPresent(2));
+        assertNotNull(partition.getIfPresent(3));
+
+        Statistics stats = partition.getStatistics();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(4, stats.getMissCount());
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(3, stats.getNodeCount());
+        assertEquals(3 * NODE_WEIGHT, stats.getWeight());
+        assertEquals(3 * NODE_WEIGHT, cache.getTotalWeight());
+    }
+
+    /**
+     * Test that a partition over its quota does not evict the nodes of the
+     * other partitions, but that the global budget is still respected
+     *
+     * @throws IOException
+     *             Exceptions thrown by the loader
+     */
+    @Test
+    public void testPartitionIsolation() throws IOException {
+        HtNodeCache cache = new HtNodeCache(5 * NODE_WEIGHT, 3 * NODE_WEIGHT);
+        Partition<String> quiet = cache.createPartition("quiet", NODE_WEIGHT, n -> false);
+        Partition<String> busy = cache.createPartition("busy", NODE_WEIGHT, n -> false);
+
+        quiet.get(0, HtNodeCacheTest::load);
+        quiet.get(1, HtNodeCacheTest::load);
+        for (int i = 0; i < 10; i++) {
+            busy.get(i, HtNodeCacheTest::load);
+        }
+
+        /* The busy tree only evicted its own nodes */
+        assertNotNull(quiet.getIfPresent(0));
+        assertNotNull(quiet.getIfPresent(1));
+        assertEquals(3, busy.getStatistics().getNodeCount());
+        assertEquals(7, busy.getStatistics().getEvictionCount());
+        assertEquals(0, quiet.getStatistics().getEvictionCount());
+
+        /* Exceeding the global budget evicts the least recently used node */
+        quiet.get(2, HtNodeCacheTest::load);
+        assertEquals(5 * NODE_WEIGHT, cache.getTotalWeight());
+        assertNull(busy.getIfPresent(7));
+        assertNotNull(quiet.getIfPresent(0));
+    }
+
+    /**
+     * Test that pinned nodes are not evicted and are limited to a fraction of
+     * the quota
+     *
+     * @throws IOException
+     *             Exceptions thrown by the loader
+     */
+    @Test
+    public void testPinnedNodes() throws IOException {
+        HtNodeCache cache = new HtNodeCache(1000, 8 * NODE_WEIGHT);
+        Partition<String> partition = cache.createPartition("test", NODE_WEIGHT, n -> n.startsWith(PINNED_PREFIX));
+
+        /* Only 2 nodes can be pinned: a quarter of the quota */
+        partition.get(0, HtNodeCacheTest::loadPinnable);
+        partition.get(1, HtNodeCacheTest::loadPinnable);
+        partition.get(2, HtNodeCacheTest::loadPinnable);
+        for (int i = 3; i < 20; i++) {
+            partition.get(i, HtNodeCacheTest::load);
+        }
+
+        assertNotNull(partition.getIfPresent(0));
+        assertNotNull(partition.getIfPresent(1));
+        assertNull(partition.getIfPresent(2));
+        Statistics stats = partition.getStatistics();
+        assertEquals(2, stats.getPinnedCount());
+        assertEquals(8, stats.getNodeCount());
+        assertEquals(8 * NODE_WEIGHT, stats.getWeight());
+    }
+
+    /**
+     * Test that disposing a partition releases its nodes
+     *
+     * @throws IOException
+     *             Exceptions thrown by the loader
+     */
+    @Test
+    public void testDispose() throws IOException {
+        HtNodeCache cache = new HtNodeCache(1000, 1000);
+        Partition<String> partition = cache.createPartition("test", NODE_WEIGHT, n -> n.startsWith(PINNED_PREFIX));
+        partition.get(0, HtNodeCacheTest::loadPinnable);
+        partition.put(1, "node1");
+        assertEquals(2 * NODE_WEIGHT, cache.getTotalWeight());
+        assertEquals(1, cache.getStatistics().size());
+
+        partition.dispose();
+        assertEquals(0, cache.getTotalWeight());
+        assertEquals(0, cache.getStatistics().size());
+
+        /* Nodes loaded after the dispose are not kept */
+        partition.get(2, HtNodeCacheTest::load);
+        assertEquals(0, cache.getTotalWeight());
+    }
+    /**
+     * Test that partitions with the same name have their own statistics
+     *
+     * @throws IOException
+     *             Exceptions thrown by the loader
+     */
+    @Test
+    public void testStatisticsSameName() throws IOException {
+        HtNodeCache cache = new HtNodeCache(1000, 1000);
+        Partition<String> first = cache.createPartition("test", NODE_WEIGHT, n -> false);
+        Partition<String> second = cache.createPartition("test", NODE_WEIGHT, n -> false);
+        first.get(0, HtNodeCacheTest::load);
+        second.get(0, HtNodeCacheTest::load);
+        second.get(0, HtNodeCacheTest::load);
+
+        Map<Partition<?>, Statistics> stats = cache.getStatistics();
+        assertEquals(2, stats.size());
+        assertEquals(0, stats.get(first).getHitCount());
+        assertEquals(1, stats.get(second).getHitCount());
+        assertEquals("test", first.getName());
+    }
+}
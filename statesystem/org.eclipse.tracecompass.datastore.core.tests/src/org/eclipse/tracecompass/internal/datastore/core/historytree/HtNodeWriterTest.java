@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.datastore.core.historytree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+/**
+ * Test the {@link HtNodeWriter} class
+ */
+public class HtNodeWriterTest {
+
+    private static final int NB_NODES = 500;
+    private static final String FAILING_NODE = "node42";
+
+    /**
+     * Test that all the nodes are written when the writer is flushed
+     *
+     * @throws IOException
+     *             Exceptions thrown by the writer
+     */
+    @Test
+    public void testFlush() throws IOException {
+        Map<Integer, String> disk = new ConcurrentHashMap<>();
+        HtNodeWriter<String> writer = new HtNodeWriter<>(node -> disk.put(Integer.parseInt(node.substring(4)), node), true);
+        for (int i = 0; i < NB_NODES; i++) {
+            writer.write(i, "node" + i);
+        }
+        writer.flush();
+
+        assertEquals(NB_NODES, disk.size());
+        for (int i = 0; i < NB_NODES; i++) {
+            assertEquals("node" + i, disk.get(i));
+            assertNull(writer.getPending(i));
+        }
+    }
+
+    /**
+     * Test that a write failure is thrown by the flush and that the node that
+     * could not be written is still readable
+     */
+    @Test
+    public void testWriteFailure() {
+        HtNodeWriter<String> writer = new HtNodeWriter<>(node -> {
+            if (node.equals(FAILING_NODE)) {
+                throw new IOException("Disk full");
+            }
+        }, true);
+        for (int i = 0; i < NB_NODES; i++) {
+            writer.write(i, "node" + i);
+        }
+        try {
+            writer.flush();
+            fail("The write failure should have been thrown");
+        } catch (IOException e) {
+            assertEquals("Disk full", e.getCause().getMessage());
+        }
+
+        assertEquals(FAILING_NODE, writer.getPending(42));
+        assertNull(writer.getPending(41));
+
+        /* The failure is thrown again, the file must not be finalized */
+        try {
+            writer.flush();
+            fail("The write failure should have been thrown");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Test that a reserved node is readable until it is written
+     *
+     * @throws IOException
+     *             Exceptions thrown by the writer
+     */
+    @Test
+    public void testReserve() throws IOException {
+        Map<Integer, String> disk = new ConcurrentHashMap<>();
+        HtNodeWriter<String> writer = new HtNodeWriter<>(node -> disk.put(Integer.parseInt(node.substring(4)), node), true);
+        writer.reserve(0, "node0");
+        assertEquals("node0", writer.getPending(0));
+        assertNull(disk.get(0));
+
+        writer.write(0, "node0");
+        writer.flush();
+        assertEquals("node0", disk.get(0));
+        assertNull(writer.getPending(0));
+    }
+
+    /**
+     * Test a synchronous writer
+     */
+    @Test
+    public void testSyncWriteFailure() {
+        HtNodeWriter<String> writer = new HtNodeWriter<>(node -> {
+            throw new IOException("Disk full");
+        }, false);
+        writer.write(0, "node0");
+        assertEquals("node0", writer.getPending(0));
+        try {
+            writer.flush();
+            fail("The write failure should have been thrown");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+}
@@ -14,9 +14,13 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.datastore.core.interval.HTInterval;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.historytree.AbstractHistoryTree;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.historytree.AbstractHistoryTreeTestBase;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.historytree.HtTestUtils;
@@ -152,4 +156,56 @@ public class OverlappingHistoryTreeTest
         HtTestUtils.assertTreeIntegrity(ht);
     }
 
+    /**
+     * Test bulk loading an empty tree with intervals that are not sorted by
+     * end time, then reading the tree back
+     *
+     * @throws IOException
+     *             Exceptions with the HT file
+     */
+    @Test
+    public void testBulkLoading() throws IOException {
+        long start = 1L;
+        int nbIntervals = 5000;
+        OverlappingHistoryTreeStub ht = (OverlappingHistoryTreeStub) setupSmallTree(3, start);
+
+        List<HTInterval> intervals = new ArrayList<>(nbIntervals);
+        for (int i = 0; i < nbIntervals; i++) {
+            long end = start + i;
+            intervals.add(createInterval(Math.max(start, end - (i * 7) % 500), end));
+        }
+        Collections.shuffle(intervals);
+        ht.insertAll(intervals);
+
+        /* 20 leaves, then 7, 3 and 1 core nodes */
+        assertEquals(31, ht.getNodeCount());
+        assertEquals(4, ht.getDepth());
+        assertEquals(start + nbIntervals - 1, ht.getTreeEnd());
+
+        ht.closeTree(ht.getTreeEnd());
+        HtTestUtils.assertTreeIntegrity(ht);
+        assertMatchingIntervals(ht, intervals);
+        int nbNodes = ht.getNodeCount();
+        ht.closeFile();
+
+        ht = (OverlappingHistoryTreeStub) createHistoryTreeReader();
+        assertEquals(4, ht.getDepth());
+        assertEquals(nbNodes, ht.getNodeCount());
+        HtTestUtils.assertTreeIntegrity(ht);
+        assertMatchingIntervals(ht, intervals);
+    }
+
+    private static void assertMatchingIntervals(AbstractHistoryTree<HTInterval, OverlappingNode<HTInterval>> ht, List<HTInterval> intervals) {
+        for (long time = ht.getTreeStart(); time <= ht.getTreeEnd(); time += 37) {
+            final long t = time;
+            long expected = intervals.stream().filter(interval -> interval.getStart() <= t && t <= interval.getEnd()).count();
+            long actual = 0;
+            for (HTInterval interval : ht.getMatchingIntervals(TimeRangeCondition.singleton(time), interval -> true)) {
+                assertTrue(interval.getStart() <= t && t <= interval.getEnd());
+                actual++;
+            }
+            assertEquals("Intervals at " + time, expected, actual);
+        }
+    }
+
 }
@@ -10,6 +10,7 @@
 package org.eclipse.tracecompass.internal.datastore.core;
 
 import org.eclipse.tracecompass.common.core.TraceCompassActivator;
+import org.eclipse.tracecompass.internal.datastore.core.historytree.HistoryTreeExecutor;
 
 /**
  * The activator class controls the plug-in life cycle
@@ -43,6 +44,7 @@ public class Activator extends TraceCompassActivator {
 
     @Override
     protected void stopActions() {
+        HistoryTreeExecutor.shutdown();
     }
 
 }
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.datastore.core.historytree;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The thread pool doing the background I/O of all the history trees of the
+ * JVM: writing the closed nodes of the trees being built and prefetching the
+ * nodes of the queries.
+ *
+ * The pool is created when first needed and is shut down when the datastore
+ * bundle is stopped. The number of threads can be configured with the
+ * {@link #THREADS_PROPERTY} system property. With 0, there is no pool and the
+ * I/O is done by the calling threads.
+ */
+public final class HistoryTreeExecutor {
+
+    /** System property to set the number of history tree I/O threads */
+    public static final String THREADS_PROPERTY = "org.eclipse.tracecompass.datastore.historyTreeThreads"; //$NON-NLS-1$
+
+    private static final int DEFAULT_THREADS = Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+    private static @Nullable ExecutorService sfExecutor = null;
+
+    private HistoryTreeExecutor() {
+        // Do nothing
+    }
+
+    /**
+     * Get the history tree I/O thread pool
+     *
+     * @return The thread pool, or <code>null</code> if the pool is disabled
+     *         and the I/O must be done by the calling thread
+     */
+    public static synchronized @Nullable ExecutorService getExecutor() {
+        ExecutorService executor = sfExecutor;
+        if (executor != null) {
+            return executor;
+        }
+        int nbThreads = Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS);
+        if (nbThreads <= 0) {
+            return null;
+        }
+        executor = Executors.newFixedThreadPool(nbThreads, runnable -> {
+            Thread thread = new Thread(runnable, "History Tree I/O"); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        });
+        sfExecutor = executor;
+        return executor;
+    }
+
+    /**
+     * Shut down the thread pool. The tasks already submitted are still
+     * executed.
+     */
+    public static synchronized void shutdown() {
+        ExecutorService executor = sfExecutor;
+        sfExecutor = null;
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -9,16 +9,13 @@
 
 package org.eclipse.tracecompass.internal.datastore.core.historytree;
 
-import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
-
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
-import java.util.Objects;
-import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,12 +27,10 @@ import org.eclipse.tracecompass.datastore.core.interval.IHTIntervalReader;
 import org.eclipse.tracecompass.internal.datastore.core.Activator;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.historytree.AbstractHistoryTree.IHTNodeFactory;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.historytree.HTNode;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.historytree.IHTNode.NodeType;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.historytree.IHistoryTree;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 
 /**
  * This class abstracts inputs/outputs of the HistoryTree nodes.
@@ -61,68 +56,13 @@ public class HtIo<E extends IHTInterval, N extends HTNode<E>> {
     // Global cache of nodes
     // ------------------------------------------------------------------------
 
-    private static final class CacheKey {
-
-        public final HtIo<IHTInterval, HTNode<IHTInterval>> fHistoryTreeIo;
-        public final int fSeqNumber;
-
-        public CacheKey(HtIo<IHTInterval, HTNode<IHTInterval>> htio, int seqNumber) {
-            fHistoryTreeIo = htio;
-            fSeqNumber = seqNumber;
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(fHistoryTreeIo, fSeqNumber);
-        }
-
-        @Override
-        public boolean equals(@Nullable Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            CacheKey other = (CacheKey) obj;
-            return (fHistoryTreeIo.equals(other.fHistoryTreeIo) &&
-                    fSeqNumber == other.fSeqNumber);
-        }
-    }
-
-    private static final int CACHE_SIZE = 256;
-
-    private static final LoadingCache<CacheKey, HTNode<IHTInterval>> NODE_CACHE = checkNotNull(CacheBuilder.newBuilder()
-            .maximumSize(CACHE_SIZE)
-            .build(new CacheLoader<CacheKey, HTNode<IHTInterval>>() {
-                @Override
-                public HTNode<IHTInterval> load(CacheKey key) throws IOException {
-                    HtIo<IHTInterval, HTNode<IHTInterval>> io = key.fHistoryTreeIo;
-                    int seqNb = key.fSeqNumber;
-
-                    TraceCompassLogUtils.traceInstant(LOGGER, Level.FINEST, "HtIo:CacheMiss", "seqNum", seqNb); //$NON-NLS-1$ //$NON-NLS-2$
-
-                    synchronized (io) {
-                        io.seekFCToNodePos(io.fFileChannelIn, seqNb);
-                        return HTNode.readNode(io.fBlockSize,
-                                io.fNodeMaxChildren,
-                                io.fFileChannelIn,
-                                io.fObjectReader,
-                                io.fNodeFactory);
-                    }
-                }
-            }));
-
     /**
      * This method invalidates all data in the cache so nodes will have to be
      * read again
      */
     @VisibleForTesting
     static void clearCache() {
-        NODE_CACHE.invalidateAll();
+        HtNodeCache.getInstance().invalidateAll();
     }
 
     /**
@@ -137,8 +77,7 @@ public class HtIo<E extends IHTInterval, N extends HTNode<E>> {
      */
     @VisibleForTesting
     static <E extends IHTInterval, N extends HTNode<E>> boolean isInCache(HtIo<E, N> htio, int seqNum) {
-        @SuppressWarnings("unchecked")
-        @Nullable HTNode<IHTInterval> present = NODE_CACHE.getIfPresent(new CacheKey((HtIo<IHTInterval, HTNode<IHTInterval>>) htio, seqNum));
+        @Nullable N present = htio.fNodeCache.getIfPresent(seqNum);
         return (present != null);
     }
 
@@ -159,6 +98,15 @@ public class HtIo<E extends IHTInterval, N extends HTNode<E>> {
     private final FileChannel fFileChannelIn;
     private final FileChannel fFileChannelOut;
 
+    /* This tree's part of the global node cache */
+    private final HtNodeCache.Partition<N> fNodeCache;
+
+    /* Marks the nodes handed to the writer threads as being on disk */
+    private final @Nullable Consumer<N> fOnDiskMarker;
+
+    /* Writes the closed nodes */
+    private final HtNodeWriter<N> fNodeWriter;
+
     // ------------------------------------------------------------------------
     // Methods
     // ------------------------------------------------------------------------
@@ -190,6 +138,43 @@ public class HtIo<E extends IHTInterval, N extends HTNode<E>> {
             boolean newFile,
             IHTIntervalReader<E> intervalReader,
             IHTNodeFactory<E, N> nodeFactory) throws IOException {
+        this(stateHistoryFile, blockSize, nodeMaxChildren, newFile, intervalReader, nodeFactory, null);
+    }
+
+    /**
+     * Constructor for trees whose closed nodes can be written in the
+     * background
+     *
+     * @param stateHistoryFile
+     *            The name of the history file
+     * @param blockSize
+     *            The size of each "block" on disk in bytes. One node will
+     *            always fit in one block. It should be at least 4096.
+     * @param nodeMaxChildren
+     *            The maximum number of children allowed per core (non-leaf)
+     *            node.
+     * @param newFile
+     *            Flag indicating that the file must be created from scratch
+     * @param intervalReader
+     *            The factory to create new tree data elements when reading from
+     *            the disk
+     * @param nodeFactory
+     *            The factory to create new nodes for this tree
+     * @param onDiskMarker
+     *            Marks a node as being on disk when it is handed to the writer
+     *            threads, so that it behaves as if it were on disk, for
+     *            instance to return its end time. If <code>null</code>, the
+     *            nodes are written by the calling thread.
+     * @throws IOException
+     *             An exception can be thrown when file cannot be accessed
+     */
+    public HtIo(File stateHistoryFile,
+            int blockSize,
+            int nodeMaxChildren,
+            boolean newFile,
+            IHTIntervalReader<E> intervalReader,
+            IHTNodeFactory<E, N> nodeFactory,
+            @Nullable Consumer<N> onDiskMarker) throws IOException {
 
         fBlockSize = blockSize;
         fNodeMaxChildren = nodeMaxChildren;
@@ -221,6 +206,26 @@ public class HtIo<E extends IHTInterval, N extends HTNode<E>> {
         }
         fFileChannelIn = fFileInputStream.getChannel();
         fFileChannelOut = fFileOutputStream.getChannel();
+
+        /*
+         * The positional writes of the writer threads are not allowed on a
+         * file opened in append mode
+         */
+        if (newFile && onDiskMarker != null) {
+            fOnDiskMarker = onDiskMarker;
+            fNodeWriter = new HtNodeWriter<>(node -> node.writeSelf(fFileChannelOut, getNodePosition(node.getSequenceNumber())), true);
+        } else {
+            fOnDiskMarker = null;
+            fNodeWriter = new HtNodeWriter<>(node -> {
+                /* Position ourselves at the start of the node and write it */
+                seekFCToNodePos(fFileChannelOut, node.getSequenceNumber());
+                node.writeSelf(fFileChannelOut);
+            }, false);
+        }
+
+        /* Core nodes are visited by most queries, keep them in memory */
+        fNodeCache = HtNodeCache.getInstance().createPartition(fStateHistoryFile.getAbsolutePath(), blockSize,
+                node -> node.getNodeType() == NodeType.CORE);
     }
 
     /**
@@ -234,20 +239,15 @@ public class HtIo<E extends IHTInterval, N extends HTNode<E>> {
      *             reading. Instead of using a big reader-writer lock, we'll
      *             just catch this exception.
      */
-    @SuppressWarnings("unchecked")
     public N readNode(int seqNumber) throws ClosedChannelException {
         /* Do a cache lookup. If it's not present it will be loaded from disk */
         TraceCompassLogUtils.traceInstant(LOGGER, Level.FINEST, "HtIo:CacheLookup", "seqNum", seqNumber); //$NON-NLS-1$ //$NON-NLS-2$
-        CacheKey key = new CacheKey((HtIo<IHTInterval, HTNode<IHTInterval>>) this, seqNumber);
         try {
-            return (N) checkNotNull(NODE_CACHE.get(key));
+            return fNodeCache.get(seqNumber, this::loadNode);
 
-        } catch (ExecutionException e) {
-            /* Get the inner exception that was generated */
-            Throwable cause = e.getCause();
-            if (cause instanceof ClosedChannelException) {
-                throw (ClosedChannelException) cause;
-            }
+        } catch (ClosedChannelException e) {
+            throw e;
+        } catch (IOException e) {
             /*
              * Other types of IOExceptions shouldn't happen at this point
              * though.
@@ -257,30 +257,79 @@ public class HtIo<E extends IHTInterval, N extends HTNode<E>> {
         }
     }
 
+    private N loadNode(int seqNumber) throws IOException {
+        TraceCompassLogUtils.traceInstant(LOGGER, Level.FINEST, "HtIo:CacheMiss", "seqNum", seqNumber); //$NON-NLS-1$ //$NON-NLS-2$
+
+        /* The node may have been evicted before it was written */
+        N pending = fNodeWriter.getPending(seqNumber);
+        if (pending != null) {
+            return pending;
+        }
+
+        synchronized (this) {
+            seekFCToNodePos(fFileChannelIn, seqNumber);
+            return HTNode.readNode(fBlockSize,
+                    fNodeMaxChildren,
+                    fFileChannelIn,
+                    fObjectReader,
+                    fNodeFactory);
+        }
+    }
+
     /**
-     * Write the given node to disk.
+     * Get the statistics of this tree's node cache
+     *
+     * @return The cache statistics
+     */
+    public HtNodeCache.Statistics getCacheStatistics() {
+        return fNodeCache.getStatistics();
+    }
+
+    /**
+     * Write the given node to disk. The node must not be modified afterwards.
+     *
+     * If the tree was created with an on disk marker and the file is new, the
+     * node is serialized and written asynchronously, so the thread building
+     * the tree can continue inserting intervals while the closed nodes are
+     * written in parallel. Use {@link #flush()} to wait until all the nodes
+     * are on disk.
      *
      * @param node
      *            The node to write.
      */
-    @SuppressWarnings("unchecked")
     public void writeNode(N node) {
-        try {
-            int seqNumber = node.getSequenceNumber();
+        int seqNumber = node.getSequenceNumber();
 
-            /* "Write-back" the node into the cache */
-            CacheKey key = new CacheKey((HtIo<IHTInterval, HTNode<IHTInterval>>) this, seqNumber);
-            NODE_CACHE.put(key, (HTNode<IHTInterval>) node);
-
-            /* Position ourselves at the start of the node and write it */
-            synchronized (this) {
-                seekFCToNodePos(fFileChannelOut, seqNumber);
-                node.writeSelf(fFileChannelOut);
-            }
-        } catch (IOException e) {
-            /* If we were able to open the file, we should be fine now... */
-            Activator.getInstance().logError(e.getMessage(), e);
+        Consumer<N> onDiskMarker = fOnDiskMarker;
+        if (onDiskMarker != null) {
+            /*
+             * The node is complete, it must behave as if it were on disk
+             * while it is being written
+             */
+            onDiskMarker.accept(node);
         }
+
+        /*
+         * The node must be pending before it is in the cache: if it is evicted
+         * before it is written, it must not be read from the file.
+         */
+        fNodeWriter.reserve(seqNumber, node);
+
+        /* "Write-back" the node into the cache */
+        fNodeCache.put(seqNumber, node);
+
+        fNodeWriter.write(seqNumber, node);
+    }
+
+    /**
+     * Wait until all the nodes passed to {@link #writeNode(HTNode)} are
+     * written to disk.
+     *
+     * @throws IOException
+     *             If a node could not be written
+     */
+    public void flush() throws IOException {
+        fNodeWriter.flush();
     }
 
     /**
@@ -336,6 +385,12 @@ public class HtIo<E extends IHTInterval, N extends HTNode<E>> {
      * Close all file channels and streams.
      */
     public synchronized void closeFile() {
+        try {
+            flush();
+        } catch (IOException e) {
+            Activator.getInstance().logError(e.getMessage(), e);
+        }
+        fNodeCache.dispose();
         try {
             fFileInputStream.close();
             fFileOutputStream.close();
@@ -369,12 +424,15 @@ public class HtIo<E extends IHTInterval, N extends HTNode<E>> {
      */
     private void seekFCToNodePos(FileChannel fc, int seqNumber)
             throws IOException {
+        fc.position(getNodePosition(seqNumber));
+    }
+
+    private long getNodePosition(int seqNumber) {
         /*
          * Cast to (long) is needed to make sure the result is a long too and
          * doesn't get truncated
          */
-        fc.position(IHistoryTree.TREE_HEADER_SIZE
-                + ((long) seqNumber) * fBlockSize);
+        return IHistoryTree.TREE_HEADER_SIZE + ((long) seqNumber) * fBlockSize;
     }
 
 }
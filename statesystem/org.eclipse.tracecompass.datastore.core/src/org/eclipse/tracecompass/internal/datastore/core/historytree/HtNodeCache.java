@@ -0,0 +1,483 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal and others
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.datastore.core.historytree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Memory-bounded cache of history tree nodes, shared by all the history trees
+ * opened in the JVM.
+ *
+ * Each tree gets its own {@link Partition} of the cache, with a quota in bytes.
+ * A tree can only evict its own nodes when it exceeds its quota, so trees that
+ * are queried a lot do not evict the nodes of the other trees. When the sum of
+ * all partitions exceeds the global budget, the least recently used node of
+ * all the trees is evicted.
+ *
+ * A partition can also pin some of its nodes, typically the core nodes close
+ * to the root that every query goes through. Pinned nodes are never evicted,
+ * but are limited to a fraction of the partition's quota.
+ *
+ * The budget and quota can be configured with the {@link #BUDGET_PROPERTY} and
+ * {@link #TREE_QUOTA_PROPERTY} system properties, in bytes.
+ */
+public final class HtNodeCache {
+
+    /** System property to set the total budget of the node cache, in bytes */
+    public static final String BUDGET_PROPERTY = "org.eclipse.tracecompass.datastore.nodeCacheBudget"; //$NON-NLS-1$
+
+    /** System property to set the budget of one history tree, in bytes */
+    public static final String TREE_QUOTA_PROPERTY = "org.eclipse.tracecompass.datastore.nodeCacheTreeQuota"; //$NON-NLS-1$
+
+    /* 1024 nodes of the default 64k block size */
+    private static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+    /* 256 nodes of the default 64k block size */
+    private static final long DEFAULT_TREE_QUOTA = 16L * 1024 * 1024;
+    /* The fraction of a tree's quota that can be used by pinned nodes */
+    private static final int PINNED_QUOTA_DIVISOR = 4;
+
+    private static final HtNodeCache INSTANCE = new HtNodeCache(
+            getPropertyValue(BUDGET_PROPERTY, DEFAULT_BUDGET),
+            getPropertyValue(TREE_QUOTA_PROPERTY, DEFAULT_TREE_QUOTA));
+
+    /**
+     * Loads a node from disk when it is not in the cache.
+     *
+     * @param <N>
+     *            The type of node
+     */
+    @FunctionalInterface
+    public interface INodeLoader<N> {
+        /**
+         * Read the node from disk
+         *
+         * @param seqNumber
+         *            The sequence number of the node to read
+         * @return The node
+         * @throws IOException
+         *             Exceptions thrown while reading the node
+         */
+        N load(int seqNumber) throws IOException;
+    }
+
+    private final long fBudget;
+    private final long fTreeQuota;
+    private final List<Partition<?>> fPartitions = new ArrayList<>();
+
+    /* All the following fields are protected by 'this' */
+    private long fTotalWeight = 0;
+    private long fAccessClock = 0;
+
+    /**
+     * Constructor
+     *
+     * @param budget
+     *            The total budget of this cache, in bytes
+     * @param treeQuota
+     *            The default budget of each partition, in bytes
+     */
+    @VisibleForTesting
+    HtNodeCache(long budget, long treeQuota) {
+        fBudget = budget;
+        fTreeQuota = Math.min(treeQuota, budget);
+    }
+
+    /**
+     * Get the node cache shared by all history trees
+     *
+     * @return The node cache instance
+     */
+    public static HtNodeCache getInstance() {
+        return INSTANCE;
+    }
+
+    private static long getPropertyValue(String property, long defaultValue) {
+        Long value = Long.getLong(property);
+        return (value == null || value <= 0) ? defaultValue : value;
+    }
+
+    /**
+     * Create a new partition of the cache for a history tree, using the
+     * default quota.
+     *
+     * @param name
+     *            The name of this partition, typically the absolute path of
+     *            the tree's file
+     * @param nodeWeight
+     *            The size of a node in bytes, typically the block size of the
+     *            tree
+     * @param pinCondition
+     *            Which nodes can be pinned in the cache
+     * @return The new partition
+     */
+    public synchronized <N> Partition<N> createPartition(String name, int nodeWeight, Predicate<N> pinCondition) {
+        Partition<N> partition = new Partition<>(name, nodeWeight, fTreeQuota, pinCondition);
+        fPartitions.add(partition);
+        return partition;
+    }
+
+    /**
+     * Get the statistics of all the partitions currently open in this cache.
+     * The partitions are the keys, rather than their names, since the same
+     * file may be opened by more than one tree.
+     *
+     * @return The statistics of each partition
+     */
+    public synchronized Map<Partition<?>, Statistics> getStatistics() {
+        Map<Partition<?>, Statistics> stats = new HashMap<>();
+        fPartitions.forEach(p -> stats.put(p, p.getStatistics()));
+        return stats;
+    }
+
+    /**
+     * Remove all the nodes from all partitions of the cache
+     */
+    public synchronized void invalidateAll() {
+        fPartitions.forEach(Partition::invalidateAll);
+    }
+
+    /**
+     * Get the total weight of the nodes in the cache, in bytes
+     *
+     * @return The weight of the cache
+     */
+    @VisibleForTesting
+    synchronized long getTotalWeight() {
+        return fTotalWeight;
+    }
+
+    /* Should be called with the lock on 'this' taken */
+    private void evictOverBudget() {
+        while (fTotalWeight > fBudget) {
+            /* Find the partition whose least recently used node is the oldest */
+            Partition<?> victim = null;
+            long oldest = Long.MAX_VALUE;
+            for (Partition<?> partition : fPartitions) {
+                long eldest = partition.eldestAccess();
+                if (eldest < oldest) {
+                    oldest = eldest;
+                    victim = partition;
+                }
+            }
+            if (victim == null) {
+                /* Only pinned nodes remain */
+                return;
+            }
+            victim.evictEldest();
+        }
+    }
+
+    /**
+     * A cache entry
+     */
+    private static final class Entry<N> {
+        private final N fNode;
+        private long fLastAccess;
+
+        public Entry(N node, long access) {
+            fNode = node;
+            fLastAccess = access;
+        }
+    }
+
+    /**
+     * The part of the cache that belongs to one history tree.
+     *
+     * @param <N>
+     *            The type of node
+     */
+    public final class Partition<N> {
+
+        private final String fName;
+        private final int fNodeWeight;
+        private final long fQuota;
+        private final Predicate<N> fPinCondition;
+
+        /* All the following fields are protected by the enclosing cache */
+        private final LinkedHashMap<Integer, Entry<N>> fNodes = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<Integer, N> fPinned = new HashMap<>();
+        private long fWeight = 0;
+        private long fHits = 0;
+        private long fMisses = 0;
+        private long fEvictions = 0;
+        private boolean fDisposed = false;
+
+        private Partition(String name, int nodeWeight, long quota, Predicate<N> pinCondition) {
+            fName = name;
+            fNodeWeight = nodeWeight;
+            fQuota = quota;
+            fPinCondition = pinCondition;
+        }
+
+        /**
+         * Get the name of this partition
+         *
+         * @return The name of this partition
+         */
+        public String getName() {
+            return fName;
+        }
+
+        /**
+         * Get a node from the cache without loading it and without counting
+         * it in the statistics.
+         *
+         * @param seqNumber
+         *            The sequence number of the node
+         * @return The node, or <code>null</code> if it is not in the cache
+         */
+        public @Nullable N getIfPresent(int seqNumber) {
+            synchronized (HtNodeCache.this) {
+                return lookup(seqNumber);
+            }
+        }
+
+        /**
+         * Get a node from the cache, or load it and add it to the cache if it
+         * is not present.
+         *
+         * The loading is done outside of the cache's lock, so many nodes can
+         * be loaded at the same time. If two threads miss the same node, it
+         * will be read twice and only one copy will be kept.
+         *
+         * @param seqNumber
+         *            The sequence number of the node
+         * @param loader
+         *            The loader to read the node if it is not present
+         * @return The node
+         * @throws IOException
+         *             Exceptions thrown by the loader
+         */
+        public N get(int seqNumber, INodeLoader<N> loader) throws IOException {
+            synchronized (HtNodeCache.this) {
+                N node = lookup(seqNumber);
+                if (node != null) {
+                    fHits++;
+                    return node;
+                }
+                fMisses++;
+            }
+            N node = loader.load(seqNumber);
+            synchronized (HtNodeCache.this) {
+                N present = lookup(seqNumber);
+                if (present != null) {
+                    return present;
+                }
+                insert(seqNumber, node);
+            }
+            return node;
+        }
+
+        /**
+         * Add or replace a node in the cache, for example after it was written
+         * to disk.
+         *
+         * @param seqNumber
+         *            The sequence number of the node
+         * @param node
+         *            The node to add
+         */
+        public void put(int seqNumber, N node) {
+            synchronized (HtNodeCache.this) {
+                remove(seqNumber);
+                insert(seqNumber, node);
+            }
+        }
+
+        /**
+         * Remove all the nodes of this partition from the cache, including the
+         * pinned nodes.
+         */
+        public void invalidateAll() {
+            synchronized (HtNodeCache.this) {
+                fTotalWeight -= fWeight;
+                fWeight = 0;
+                fNodes.clear();
+                fPinned.clear();
+            }
+        }
+
+        /**
+         * Remove this partition from the cache. Should be called when the
+         * history tree is closed.
+         */
+        public void dispose() {
+            synchronized (HtNodeCache.this) {
+                invalidateAll();
+                fDisposed = true;
+                fPartitions.remove(this);
+            }
+        }
+
+        /**
+         * Get a snapshot of the statistics of this partition
+         *
+         * @return The statistics
+         */
+        public Statistics getStatistics() {
+            synchronized (HtNodeCache.this) {
+                return new Statistics(fHits, fMisses, fEvictions, fNodes.size() + fPinned.size(), fPinned.size(), fWeight, fQuota);
+            }
+        }
+
+        private @Nullable N lookup(int seqNumber) {
+            N pinned = fPinned.get(seqNumber);
+            if (pinned != null) {
+                return pinned;
+            }
+            Entry<N> entry = fNodes.get(seqNumber);
+            if (entry == null) {
+                return null;
+            }
+            entry.fLastAccess = ++fAccessClock;
+            return entry.fNode;
+        }
+
+        private void remove(int seqNumber) {
+            if (fPinned.remove(seqNumber) != null || fNodes.remove(seqNumber) != null) {
+                fWeight -= fNodeWeight;
+                fTotalWeight -= fNodeWeight;
+            }
+        }
+
+        private void insert(int seqNumber, N node) {
+            if (fDisposed) {
+                /* The tree was closed while the node was being loaded */
+                return;
+            }
+            if (fPinCondition.test(node) && (fPinned.size() + 1L) * fNodeWeight <= fQuota / PINNED_QUOTA_DIVISOR) {
+                fPinned.put(seqNumber, node);
+            } else {
+                fNodes.put(seqNumber, new Entry<>(node, ++fAccessClock));
+            }
+            fWeight += fNodeWeight;
+            fTotalWeight += fNodeWeight;
+
+            /* Make room in this partition first, then in the whole cache */
+            while (fWeight > fQuota && !fNodes.isEmpty()) {
+                evictEldest();
+            }
+            evictOverBudget();
+        }
+
+        private long eldestAccess() {
+            Iterator<Entry<N>> iterator = fNodes.values().iterator();
+            return iterator.hasNext() ? iterator.next().fLastAccess : Long.MAX_VALUE;
+        }
+
+        private void evictEldest() {
+            Iterator<Entry<N>> iterator = fNodes.values().iterator();
+            iterator.next();
+            iterator.remove();
+            fWeight -= fNodeWeight;
+            fTotalWeight -= fNodeWeight;
+            fEvictions++;
+        }
+    }
+
+    /**
+     * Immutable snapshot of the statistics of a cache partition
+     */
+    public static final class Statistics {
+
+        private final long fHitCount;
+        private final long fMissCount;
+        private final long fEvictionCount;
+        private final int fNodeCount;
+        private final int fPinnedCount;
+        private final long fWeight;
+        private final long fQuota;
+
+        private Statistics(long hits, long misses, long evictions, int nodes, int pinned, long weight, long quota) {
+            fHitCount = hits;
+            fMissCount = misses;
+            fEvictionCount = evictions;
+            fNodeCount = nodes;
+            fPinnedCount = pinned;
+            fWeight = weight;
+            fQuota = quota;
+        }
+
+        /**
+         * @return The number of node requests served from the cache
+         */
+        public long getHitCount() {
+            return fHitCount;
+        }
+
+        /**
+         * @return The number of node requests that had to be read from disk
+         */
+        public long getMissCount() {
+            return fMissCount;
+        }
+
+        /**
+         * @return The number of nodes removed from the cache to make room
+         */
+        public long getEvictionCount() {
+            return fEvictionCount;
+        }
+
+        /**
+         * @return The number of nodes currently in the cache, pinned or not
+         */
+        public int getNodeCount() {
+            return fNodeCount;
+        }
+
+        /**
+         * @return The number of nodes currently pinned in the cache
+         */
+        public int getPinnedCount() {
+            return fPinnedCount;
+        }
+
+        /**
+         * @return The size of the nodes in the cache, in bytes
+         */
+        public long getWeight() {
+            return fWeight;
+        }
+
+        /**
+         * @return The maximum size of the nodes in the cache, in bytes
+         */
+        public long getQuota() {
+            return fQuota;
+        }
+
+        /**
+         * @return The ratio of requests served from the cache, between 0 and 1
+         */
+        public double getHitRate() {
+            long requests = fHitCount + fMissCount;
+            return (requests == 0) ? 1.0 : (double) fHitCount / requests;
+        }
+
+        @SuppressWarnings("nls")
+        @Override
+        public String toString() {
+            return "hits=" + fHitCount + ", misses=" + fMissCount + ", evictions=" + fEvictionCount
+                    + ", nodes=" + fNodeCount + " (" + fPinnedCount + " pinned), bytes=" + fWeight + '/' + fQuota;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.datastore.core.historytree;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Writes the closed nodes of a history tree, in the background when the
+ * {@link HistoryTreeExecutor} pool is available, so the thread building the
+ * tree can continue inserting intervals while the nodes are serialized and
+ * written in parallel.
+ *
+ * The nodes that are not on disk yet are kept in memory and can be read with
+ * {@link #getPending(int)}. This is also the case of the nodes that could not
+ * be written: the first write failure is kept and thrown by {@link #flush()},
+ * so that the tree is never finalized with missing nodes.
+ *
+ * @param <N>
+ *            The type of nodes
+ */
+public final class HtNodeWriter<N> {
+
+    /* Maximum number of nodes of a tree waiting to be written */
+    private static final int MAX_PENDING_WRITES = 64;
+
+    /**
+     * Writes one node at its position in the file.
+     *
+     * @param <N>
+     *            The type of nodes
+     */
+    @FunctionalInterface
+    public interface INodeWrite<N> {
+        /**
+         * Write the node to disk. If the writer is asynchronous, this method
+         * may be called concurrently for different nodes.
+         *
+         * @param node
+         *            The node to write
+         * @throws IOException
+         *             Exceptions thrown while writing the node
+         */
+        void write(N node) throws IOException;
+    }
+
+    private final INodeWrite<N> fNodeWrite;
+    private final boolean fAsync;
+
+    /* Nodes that are not on disk yet, and the permits limiting their number */
+    private final Map<Integer, N> fPendingWrites = new ConcurrentHashMap<>();
+    private final Semaphore fPendingPermits = new Semaphore(MAX_PENDING_WRITES);
+
+    private final AtomicReference<@Nullable Throwable> fFailure = new AtomicReference<>();
+
+    /**
+     * Constructor
+     *
+     * @param nodeWrite
+     *            The method writing a node to disk
+     * @param async
+     *            Whether the nodes can be written in the background. If
+     *            <code>false</code>, the nodes are written by the calling
+     *            thread, one at a time.
+     */
+    public HtNodeWriter(INodeWrite<N> nodeWrite, boolean async) {
+        fNodeWrite = nodeWrite;
+        fAsync = async;
+    }
+
+    /**
+     * Make a node readable with {@link #getPending(int)} until it is written.
+     * This must be called before the node is published anywhere it can be
+     * evicted from, like a node cache, so that a reader never looks for it on
+     * disk before it is written. The node must then be passed to
+     * {@link #write(int, Object)}.
+     *
+     * @param seqNumber
+     *            The sequence number of the node
+     * @param node
+     *            The node that will be written
+     */
+    public void reserve(int seqNumber, N node) {
+        fPendingWrites.put(seqNumber, node);
+    }
+
+    /**
+     * Write a node. The node must not be modified afterwards.
+     *
+     * @param seqNumber
+     *            The sequence number of the node
+     * @param node
+     *            The node to write
+     */
+    public void write(int seqNumber, N node) {
+        /* The node stays readable while waiting for a permit */
+        reserve(seqNumber, node);
+
+        ExecutorService pool = HistoryTreeExecutor.getExecutor();
+        if (pool == null || !fAsync) {
+            synchronized (this) {
+                writeNow(seqNumber, node);
+            }
+            return;
+        }
+
+        /* Wait if the writers are too far behind */
+        fPendingPermits.acquireUninterruptibly();
+        Runnable task = () -> {
+            try {
+                writeNow(seqNumber, node);
+            } finally {
+                fPendingPermits.release();
+            }
+        };
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            /* The pool was shut down */
+            task.run();
+        }
+    }
+
+    private void writeNow(int seqNumber, N node) {
+        try {
+            fNodeWrite.write(node);
+            fPendingWrites.remove(seqNumber, node);
+        } catch (IOException | RuntimeException e) {
+            /* The node is not on disk, keep it readable from memory */
+            fPendingWrites.put(seqNumber, node);
+            fFailure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * Get a node that was passed to {@link #reserve(int, Object)} or
+     * {@link #write(int, Object)} but that is not on disk
+     *
+     * @param seqNumber
+     *            The sequence number of the node
+     * @return The node, or <code>null</code> if the node is on disk or was
+     *         never written
+     */
+    public @Nullable N getPending(int seqNumber) {
+        return fPendingWrites.get(seqNumber);
+    }
+
+    /**
+     * Wait until all the nodes passed to {@link #write(int, Object)} are
+     * written to disk.
+     *
+     * @throws IOException
+     *             If a node could not be written. The file is missing nodes
+     *             and must not be used.
+     */
+    public void flush() throws IOException {
+        fPendingPermits.acquireUninterruptibly(MAX_PENDING_WRITES);
+        fPendingPermits.release(MAX_PENDING_WRITES);
+        Throwable failure = fFailure.get();
+        if (failure != null) {
+            throw new IOException("Failed to write history tree nodes", failure); //$NON-NLS-1$
+        }
+    }
+
+}
@@ -18,13 +18,17 @@ import java.nio.ByteOrder;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -86,6 +90,11 @@ public abstract class AbstractHistoryTree<E extends IHTInterval, N extends HTNod
                 int seqNumber, int parentSeqNumber, long start);
     }
 
+    /* Order of the intervals in the leaves of a bulk loaded tree */
+    private static final Comparator<IHTInterval> END_TIME_COMPARATOR = Comparator
+            .comparingLong(IHTInterval::getEnd)
+            .thenComparingLong(IHTInterval::getStart);
+
     // ------------------------------------------------------------------------
     // Tree-specific configuration
     // ------------------------------------------------------------------------
@@ -175,7 +184,8 @@ public abstract class AbstractHistoryTree<E extends IHTInterval, N extends HTNod
                 maxChildren,
                 true,
                 intervalReader,
-                getNodeFactory());
+                getNodeFactory(),
+                HTNode::setOnDisk);
 
         /* Add the first node to the tree */
         N firstNode = initNewLeafNode(-1, treeStart);
@@ -562,7 +572,8 @@ public abstract class AbstractHistoryTree<E extends IHTInterval, N extends HTNod
                     fMaxChildren,
                     true,
                     fIntervalReader,
-                    getNodeFactory());
+                    getNodeFactory(),
+                    HTNode::setOnDisk);
 
             clearContent();
             /* Add the first node to the tree */
@@ -600,6 +611,164 @@ public abstract class AbstractHistoryTree<E extends IHTInterval, N extends HTNod
         tryInsertAtNode(interval, fLatestBranch.size() - 1);
     }
 
+    /**
+     * Insert many intervals in the tree.
+     *
+     * If the tree is empty and can be bulk loaded (see
+     * {@link #isBulkLoadable()}), it is built bottom-up from the intervals
+     * sorted by end time: the leaves are filled in parallel, each with a
+     * contiguous slice of the sorted intervals, then the core nodes are added
+     * level by level above them. Otherwise, the intervals are inserted one by
+     * one.
+     *
+     * @param intervals
+     *            The intervals to insert
+     * @throws RangeException
+     *             If the start of end time of an interval is invalid. If the
+     *             tree is bulk loaded, no interval is inserted, otherwise the
+     *             previous intervals are inserted.
+     */
+    public synchronized void insertAll(Collection<? extends E> intervals) throws RangeException {
+        if (isBulkLoadable() && fNodeCount == 1 && fLatestBranch.get(0).isEmpty()) {
+            bulkLoad(intervals);
+            return;
+        }
+        for (E interval : intervals) {
+            insert(interval);
+        }
+    }
+
+    /**
+     * Get whether an empty tree can be built bottom-up by
+     * {@link #insertAll(Collection)}. The leaves of such a tree cover the
+     * intervals of contiguous slices of end times, their start times may be
+     * before the end of the previous leaf. By default, trees are not bulk
+     * loadable.
+     *
+     * @return Whether the tree can be bulk loaded
+     */
+    protected boolean isBulkLoadable() {
+        return false;
+    }
+
+    private void bulkLoad(Collection<? extends E> intervals) {
+        @SuppressWarnings("unchecked")
+        E[] sorted = (E[]) intervals.toArray(new IHTInterval[intervals.size()]);
+        if (sorted.length == 0) {
+            return;
+        }
+        boolean isSorted = true;
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i].getStart() < fTreeStart) {
+                throw new RangeException("Interval Start:" + sorted[i].getStart() + ", Config Start:" + fTreeStart); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            isSorted &= (i == 0 || END_TIME_COMPARATOR.compare(sorted[i - 1], sorted[i]) <= 0);
+        }
+        if (!isSorted) {
+            Arrays.parallelSort(sorted, END_TIME_COMPARATOR);
+        }
+
+        synchronized (fLatestBranch) {
+            fLatestBranchSnapshot = null;
+            N firstLeaf = fLatestBranch.get(0);
+
+            /* Split the sorted intervals in slices that fill a leaf */
+            List<Integer> slices = new ArrayList<>();
+            int capacity = firstLeaf.getNodeFreeSpace();
+            int used = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                int size = sorted[i].getSizeOnDisk();
+                if (used > 0 && used + size > capacity) {
+                    slices.add(i);
+                    used = 0;
+                }
+                used += size;
+            }
+            slices.add(sorted.length);
+            int nbLeaves = slices.size();
+            int[] bounds = new int[nbLeaves + 1];
+            for (int i = 0; i < nbLeaves; i++) {
+                bounds[i + 1] = slices.get(i);
+            }
+
+            /*
+             * Each leaf ends with its last interval and starts with the
+             * earliest interval of this leaf and the following ones, so that
+             * the siblings' start times are in order, like those of an
+             * incrementally built tree.
+             */
+            long[] starts = new long[nbLeaves];
+            long[] ends = new long[nbLeaves];
+            long minStart = Long.MAX_VALUE;
+            for (int leaf = nbLeaves - 1; leaf >= 0; leaf--) {
+                for (int i = bounds[leaf]; i < bounds[leaf + 1]; i++) {
+                    minStart = Math.min(minStart, sorted[i].getStart());
+                }
+                starts[leaf] = minStart;
+                ends[leaf] = sorted[bounds[leaf + 1] - 1].getEnd();
+            }
+            starts[0] = fTreeStart;
+
+            /* The leaves are independent, fill them in parallel */
+            List<N> level = IntStream.range(0, nbLeaves).parallel()
+                    .mapToObj(leaf -> {
+                        N node = (leaf == 0 ? firstLeaf : getNodeFactory().createNode(NodeType.LEAF,
+                                fBlockSize, fMaxChildren, leaf, -1, starts[leaf]));
+                        for (int i = bounds[leaf]; i < bounds[leaf + 1]; i++) {
+                            node.add(sorted[i]);
+                        }
+                        return node;
+                    })
+                    .collect(Collectors.toList());
+            fNodeCount = nbLeaves;
+            fTreeEnd = Math.max(fTreeEnd, ends[nbLeaves - 1]);
+
+            /*
+             * Add the core nodes level by level. The last node of each level
+             * stays open in the latest branch, the others are closed and
+             * written before being linked to their parent.
+             */
+            List<N> latestBranch = new ArrayList<>();
+            long[] levelStarts = starts;
+            long[] levelEnds = ends;
+            while (level.size() > 1) {
+                int nbNodes = level.size();
+                int nbParents = (nbNodes + fMaxChildren - 1) / fMaxChildren;
+                for (int i = 0; i < nbNodes; i++) {
+                    N node = level.get(i);
+                    node.setParentSequenceNumber(fNodeCount + i / fMaxChildren);
+                    if (i < nbNodes - 1) {
+                        node.closeThisNode(levelEnds[i]);
+                        fTreeIO.writeNode(node);
+                    }
+                }
+                latestBranch.add(0, level.get(nbNodes - 1));
+
+                List<N> parents = new ArrayList<>(nbParents);
+                long[] parentStarts = new long[nbParents];
+                long[] parentEnds = new long[nbParents];
+                for (int parent = 0; parent < nbParents; parent++) {
+                    int first = parent * fMaxChildren;
+                    int last = Math.min(first + fMaxChildren, nbNodes) - 1;
+                    parentStarts[parent] = levelStarts[first];
+                    parentEnds[parent] = levelEnds[last];
+                    N parentNode = initNewCoreNode(-1, parentStarts[parent]);
+                    for (int i = first; i <= last; i++) {
+                        parentNode.linkNewChild(level.get(i));
+                    }
+                    parents.add(parentNode);
+                }
+                level = parents;
+                levelStarts = parentStarts;
+                levelEnds = parentEnds;
+            }
+            latestBranch.add(0, level.get(0));
+
+            fLatestBranch.clear();
+            fLatestBranch.addAll(latestBranch);
+        }
+    }
+
     /**
      * Add a new empty core node to the tree.
      *
@@ -845,8 +1014,14 @@ public abstract class AbstractHistoryTree<E extends IHTInterval, N extends HTNod
                 fLatestBranch.get(i).closeThisNode(fTreeEnd);
                 fTreeIO.writeNode(fLatestBranch.get(i));
             }
-
             try (FileOutputStream fc = fTreeIO.getFileWriter(-1);) {
+                /*
+                 * Make sure all the nodes are on disk before the header. If one
+                 * of them could not be written, the header is not written, so
+                 * the incomplete file will not be opened.
+                 */
+                fTreeIO.flush();
+
                 ByteBuffer buffer = ByteBuffer.allocate(TREE_HEADER_SIZE);
                 buffer.order(ByteOrder.LITTLE_ENDIAN);
                 buffer.clear();
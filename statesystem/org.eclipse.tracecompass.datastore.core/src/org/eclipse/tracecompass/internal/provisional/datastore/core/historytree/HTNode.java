@@ -523,6 +523,44 @@ public class HTNode<E extends IHTInterval> implements IHTNode<E> {
 
     @Override
     public final void writeSelf(FileChannel fc) throws IOException {
+        final int blockSize = getBlockSize();
+        ByteBuffer buffer = serialize();
+
+        /* Finally, write everything in the Buffer to disk */
+        int res = fc.write(buffer);
+        if (res != blockSize) {
+            throw new IllegalStateException("Wrong size of block written: Actual: " + res + ", Expected: " + blockSize); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        fIsOnDisk = true;
+    }
+
+    /**
+     * Write this node to the given file channel, at the given position. This
+     * does not modify the position of the channel, so many nodes can be
+     * written concurrently to the same channel.
+     *
+     * @param fc
+     *            The file channel to write to
+     * @param position
+     *            The position in the file at which to write the node
+     * @throws IOException
+     *             If there was an error writing
+     */
+    public final void writeSelf(FileChannel fc, long position) throws IOException {
+        ByteBuffer buffer = serialize();
+        while (buffer.hasRemaining()) {
+            fc.write(buffer, position + buffer.position());
+        }
+        fIsOnDisk = true;
+    }
+
+    /**
+     * Serialize this node in a new buffer of the size of a block, the content
+     * written to the history file
+     *
+     * @return The buffer, flipped and ready to be written
+     */
+    public final ByteBuffer serialize() {
         /*
          * Yes, we are taking the *read* lock here, because we are reading the
          * information in the node to write it to disk.
@@ -559,18 +597,11 @@ public class HTNode<E extends IHTInterval> implements IHTNode<E> {
             while (buffer.position() < blockSize) {
                 buffer.put((byte) 0);
             }
-
-            /* Finally, write everything in the Buffer to disk */
             buffer.flip();
-            int res = fc.write(buffer);
-            if (res != blockSize) {
-                throw new IllegalStateException("Wrong size of block written: Actual: " + res + ", Expected: " + blockSize); //$NON-NLS-1$ //$NON-NLS-2$
-            }
-
+            return buffer;
         } finally {
             fRwl.readLock().unlock();
         }
-        fIsOnDisk = true;
     }
 
     // ------------------------------------------------------------------------
@@ -693,9 +724,19 @@ public class HTNode<E extends IHTInterval> implements IHTNode<E> {
                 throw new IllegalArgumentException("The interval to insert (" + objSize + ") is larger than available space (" + getNodeFreeSpace() + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
             }
 
-            int insertPoint = Collections.binarySearch(fIntervals, newInterval, getIntervalComparator());
-            insertPoint = (insertPoint >= 0 ? insertPoint : -insertPoint - 1);
-            fIntervals.add(insertPoint, newInterval);
+            /*
+             * The intervals usually arrive in order of end time, append them
+             * without searching
+             */
+            Comparator<E> comparator = getIntervalComparator();
+            int size = fIntervals.size();
+            if (size == 0 || comparator.compare(fIntervals.get(size - 1), newInterval) <= 0) {
+                fIntervals.add(newInterval);
+            } else {
+                int insertPoint = Collections.binarySearch(fIntervals, newInterval, comparator);
+                insertPoint = (insertPoint >= 0 ? insertPoint : -insertPoint - 1);
+                fIntervals.add(insertPoint, newInterval);
+            }
 
             fSizeOfContentSection += objSize;
 
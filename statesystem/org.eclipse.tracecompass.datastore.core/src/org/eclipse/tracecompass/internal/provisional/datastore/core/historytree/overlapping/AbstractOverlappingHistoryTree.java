@@ -107,6 +107,12 @@ public abstract class AbstractOverlappingHistoryTree<E extends IHTInterval, N ex
         return Math.max(interval.getStart(), getLatestNode(depth).getNodeStart());
     }
 
+    @Override
+    protected boolean isBulkLoadable() {
+        /* The nodes' start times only need to be before their intervals' */
+        return true;
+    }
+
     // ------------------------------------------------------------------------
     // Test-specific methods
     // ------------------------------------------------------------------------
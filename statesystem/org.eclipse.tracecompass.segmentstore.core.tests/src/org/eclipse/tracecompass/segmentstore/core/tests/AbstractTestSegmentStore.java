@@ -22,6 +22,7 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
@@ -470,6 +471,41 @@ public abstract class AbstractTestSegmentStore {
         assertEquals(0, Iterables.size(intersectingElements));
     }
 
+    /**
+     * Testing method
+     * {@link ISegmentStore#getIntersectingElements(long start, long end)}
+     * with many segments of various durations, inserted out of order, against
+     * a linear search of the segments
+     */
+    @Test
+    public void testGetIntersectingElementsMany() {
+        ISegmentStore<@NonNull TestSegment> store = getSegmentStore();
+        List<@NonNull TestSegment> segments = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            long start = random.nextInt(100000);
+            /* Mostly short segments, and a few long ones */
+            long duration = (i % 50 == 0) ? random.nextInt(50000) : random.nextInt(100);
+            TestSegment segment = new TestSegment(start, start + duration, "test" + i);
+            segments.add(segment);
+            store.add(segment);
+        }
+        try {
+            for (int i = 0; i < 200; i++) {
+                long start = random.nextInt(110000) - 5000;
+                long end = start + ((i % 2 == 0) ? random.nextInt(100) : random.nextInt(20000));
+                long expected = segments.stream()
+                        .filter(segment -> segment.getStart() <= end && segment.getEnd() >= start)
+                        .count();
+                Iterable<@NonNull TestSegment> actual = store.getIntersectingElements(start, end);
+                assertEquals(expected, Iterables.size(actual));
+                actual.forEach(segment -> assertTrue(segment.getStart() <= end && segment.getEnd() >= start));
+            }
+        } finally {
+            store.dispose();
+        }
+    }
+
     /**
      * Testing method {@link ISegmentStore#dispose()}
      */
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.segmentstore.core.arraylist.ColumnarSegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.IColumnarSegmentCodec;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Unit tests for the {@link ColumnarSegmentStore}
+ */
+public class ColumnarSegmentStoreTest extends AbstractTestSegmentStore {
+
+    /**
+     * Codec of the test segments, with the payload as string attribute
+     */
+    private static final IColumnarSegmentCodec<@NonNull TestSegment> CODEC = new IColumnarSegmentCodec<TestSegment>() {
+
+        @Override
+        public int getNbStringAttributes() {
+            return 1;
+        }
+
+        @Override
+        public @NonNull String getStringAttribute(@NonNull TestSegment segment, int index) {
+            return segment.getPayload();
+        }
+
+        @Override
+        public @NonNull TestSegment createSegment(long start, long end, long @NonNull [] longAttributes, @NonNull String @NonNull [] stringAttributes) {
+            return new TestSegment(start, end, stringAttributes[0]);
+        }
+    };
+
+    @Override
+    protected ISegmentStore<@NonNull TestSegment> getSegmentStore() {
+        return new ColumnarSegmentStore<>(CODEC);
+    }
+
+    @Override
+    protected ISegmentStore<@NonNull TestSegment> getSegmentStore(@NonNull TestSegment @NonNull [] data) {
+        return new ColumnarSegmentStore<>(CODEC, data);
+    }
+
+    /**
+     * Overrides the assert equals to compare 2 segments. The segments of the
+     * store are created when they are read, they are not the original
+     * segments.
+     */
+    @Override
+    protected void assertSegmentsEqual(@Nullable ISegment expected, @Nullable ISegment actual) {
+        assertNotNull(expected);
+        assertNotNull(actual);
+        assertEquals(expected.getStart(), actual.getStart());
+        assertEquals(expected.getEnd(), actual.getEnd());
+        assertEquals(((TestSegment) expected).getPayload(), ((TestSegment) actual).getPayload());
+    }
+
+    /*
+     * The segments are not the original ones, so the tests of the arrays and
+     * iterators check that they are in the store instead.
+     */
+
+    @Override
+    @Test
+    public void testToObjectArray() {
+        Object[] array = fSegmentStore.toArray();
+        assertEquals(SEGMENTS.size(), array.length);
+        for (Object segment : array) {
+            assertTrue(fSegmentStore.contains(segment));
+        }
+    }
+
+    @Override
+    @Test
+    public void testToSpecificArray() {
+        ISegment[] array = fSegmentStore.toArray(new ISegment[0]);
+        assertEquals(SEGMENTS.size(), array.length);
+        for (int i = 0; i < array.length; i++) {
+            assertSegmentsEqual(SEGMENTS.get(i), array[i]);
+        }
+    }
+
+    @Override
+    @Test
+    public void testToSpecifyArraySubtype() {
+        ISegmentStore<@NonNull TestSegment> store = getSegmentStore();
+        TestSegment otherSegment = new TestSegment(2, 6, "test");
+        store.add(otherSegment);
+        TestSegment[] array = store.toArray(new TestSegment[0]);
+        assertEquals(1, array.length);
+        assertSegmentsEqual(otherSegment, array[0]);
+        store.dispose();
+    }
+
+    @Override
+    @Test
+    public void testIterator() {
+        ISegmentStore<@NonNull TestSegment> store = getSegmentStore();
+        store.add(SEGMENTS.get(0));
+        store.add(SEGMENTS.get(2));
+        Iterator<@NonNull TestSegment> iter = store.iterator();
+
+        /* The iterator taken before keeps the segments it had */
+        store.add(SEGMENTS.get(3));
+        Iterator<@NonNull TestSegment> iter2 = store.iterator();
+        assertSegmentsEqual(SEGMENTS.get(0), iter.next());
+        assertSegmentsEqual(SEGMENTS.get(2), iter.next());
+        assertFalse(iter.hasNext());
+        assertSegmentsEqual(SEGMENTS.get(0), iter2.next());
+        assertSegmentsEqual(SEGMENTS.get(2), iter2.next());
+        assertSegmentsEqual(SEGMENTS.get(3), iter2.next());
+        assertFalse(iter2.hasNext());
+        store.dispose();
+    }
+
+    /**
+     * Test that the attributes of the segments are kept, and that segments
+     * with the same times but other attributes are distinct
+     */
+    @Test
+    public void testAttributes() {
+        ISegmentStore<@NonNull TestSegment> store = getSegmentStore();
+        store.add(new TestSegment(5, 10, "b"));
+        store.add(new TestSegment(1, 3, "a"));
+        store.add(new TestSegment(5, 10, "c"));
+
+        assertTrue(store.contains(new TestSegment(5, 10, "c")));
+        assertFalse(store.contains(new TestSegment(5, 10, "d")));
+
+        Iterator<@NonNull TestSegment> iterator = store.iterator();
+        assertSegmentsEqual(new TestSegment(1, 3, "a"), iterator.next());
+        assertSegmentsEqual(new TestSegment(5, 10, "b"), iterator.next());
+        assertSegmentsEqual(new TestSegment(5, 10, "c"), iterator.next());
+        assertFalse(iterator.hasNext());
+
+        assertSegmentsEqual(new TestSegment(1, 3, "a"), Iterables.getOnlyElement(store.getIntersectingElements(0, 2)));
+        store.dispose();
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.segmentstore.core.arraylist.SealedArrayStore;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * Unit tests for the {@link SealedArrayStore}
+ */
+public class SealedArrayStoreTest extends AbstractTestSegmentStore {
+
+    @Override
+    protected ISegmentStore<@NonNull TestSegment> getSegmentStore() {
+        return new SealedArrayStore<>();
+    }
+
+    @Override
+    protected ISegmentStore<@NonNull TestSegment> getSegmentStore(@NonNull TestSegment @NonNull [] data) {
+        return new SealedArrayStore<>(data);
+    }
+
+    /**
+     * Test that readers running while segments are added always see a sorted
+     * store, with at least the segments added before they started
+     *
+     * @throws InterruptedException
+     *             If the test is interrupted
+     * @throws ExecutionException
+     *             If a reader fails
+     */
+    @Test
+    public void testConcurrentReads() throws InterruptedException, ExecutionException {
+        SealedArrayStore<@NonNull TestSegment> store = new SealedArrayStore<>();
+        int nbSegments = 20000;
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < nbSegments; i++) {
+                /* Out of order start times */
+                long start = (i * 7919L) % nbSegments;
+                store.add(new TestSegment(start, start + 10, "test"));
+                if (i % 2000 == 0) {
+                    int minSize = i + 1;
+                    results.add(readers.submit(() -> {
+                        long previous = Long.MIN_VALUE;
+                        int size = 0;
+                        for (TestSegment segment : store) {
+                            assertTrue(segment.getStart() >= previous);
+                            previous = segment.getStart();
+                            size++;
+                        }
+                        assertTrue(size >= minSize);
+                    }));
+                }
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            readers.shutdown();
+        }
+        store.seal();
+        assertEquals(nbSegments, store.size());
+        assertEquals(11, Iterables.size(store.getIntersectingElements(100, 100)));
+    }
+}
@@ -11,6 +11,7 @@ package org.eclipse.tracecompass.segmentstore.core.tests;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -58,6 +59,28 @@ public class SegmentStoreFactoryTest {
         assertNotNull(SegmentStoreFactory.createSegmentStore(SegmentStoreType.Stable));
     }
 
+    /**
+     * Create a segment store for concurrent reads
+     */
+    @Test
+    public void createConcurrent() {
+        assertNotNull(SegmentStoreFactory.createSegmentStore(SegmentStoreType.Concurrent));
+    }
+
+    /**
+     * Create a columnar segment store of basic segments
+     */
+    @Test
+    public void createColumnar() {
+        ISegmentStore<@NonNull BasicSegment> fixture = SegmentStoreFactory.createColumnarSegmentStore(BasicSegment.BASIC_SEGMENT_COLUMNAR_CODEC);
+        assertNotNull(fixture);
+        fixture.add(new BasicSegment(4, 8));
+        fixture.add(new BasicSegment(2, 6));
+        assertEquals(2, fixture.size());
+        assertEquals(2, fixture.iterator().next().getStart());
+        assertTrue(fixture.contains(new BasicSegment(4, 8)));
+    }
+
     /**
      * Create a "set" like segment store
      */
@@ -146,6 +169,9 @@ public class SegmentStoreFactoryTest {
         segmentStore = SegmentStoreFactory.createSegmentStore(data, SegmentStoreType.Stable);
         assertNotNull(segmentStore);
         assertEquals(1, segmentStore.size());
+        segmentStore = SegmentStoreFactory.createSegmentStore(data, SegmentStoreType.Concurrent);
+        assertNotNull(segmentStore);
+        assertEquals(1, segmentStore.size());
         segmentStore = SegmentStoreFactory.createSegmentStore(data, SegmentStoreType.Distinct);
         assertNotNull(segmentStore);
         assertEquals(1, segmentStore.size());
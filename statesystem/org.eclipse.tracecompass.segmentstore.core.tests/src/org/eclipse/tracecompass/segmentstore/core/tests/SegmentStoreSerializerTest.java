@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+import org.eclipse.tracecompass.segmentstore.core.SegmentStoreFactory;
+import org.eclipse.tracecompass.segmentstore.core.SegmentStoreSerializer;
+import org.eclipse.tracecompass.segmentstore.core.tests.AbstractTestSegmentStore.TestSegment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link SegmentStoreSerializer}
+ */
+public class SegmentStoreSerializerTest {
+
+    private Path fFile;
+
+    /**
+     * Create the file to write to
+     *
+     * @throws IOException
+     *             If the file cannot be created
+     */
+    @Before
+    public void setup() throws IOException {
+        fFile = Files.createTempFile("segments", ".ss");
+    }
+
+    /**
+     * Delete the file
+     *
+     * @throws IOException
+     *             If the file cannot be deleted
+     */
+    @After
+    public void teardown() throws IOException {
+        Files.deleteIfExists(fFile);
+    }
+
+    /**
+     * Write a store larger than the buffers, with segments of various sizes,
+     * and read it back in another store
+     *
+     * @throws IOException
+     *             If there is an error reading or writing
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        ISegmentStore<@NonNull TestSegment> store = SegmentStoreFactory.createSegmentStore();
+        int nbSegments = 100000;
+        for (int i = 0; i < nbSegments; i++) {
+            long start = (i * 7919L) % nbSegments;
+            store.add(new TestSegment(start, start + i % 100, "payload" + i));
+        }
+        assertEquals(nbSegments, SegmentStoreSerializer.write(fFile, store));
+
+        ISegmentStore<@NonNull TestSegment> read = SegmentStoreFactory.createSegmentStore();
+        assertEquals(nbSegments, SegmentStoreSerializer.read(fFile, TestSegment.DESERIALISER, read));
+        assertEquals(nbSegments, read.size());
+        Iterator<@NonNull TestSegment> expected = store.iterator();
+        Iterator<@NonNull TestSegment> actual = read.iterator();
+        while (expected.hasNext()) {
+            TestSegment expectedSegment = expected.next();
+            TestSegment actualSegment = actual.next();
+            assertEquals(expectedSegment.getStart(), actualSegment.getStart());
+            assertEquals(expectedSegment.getEnd(), actualSegment.getEnd());
+            assertEquals(expectedSegment.getPayload(), actualSegment.getPayload());
+        }
+        assertFalse(actual.hasNext());
+    }
+
+    /**
+     * Test reading a truncated file
+     *
+     * @throws IOException
+     *             If the test file cannot be written
+     */
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        ISegmentStore<@NonNull TestSegment> store = SegmentStoreFactory.createSegmentStore();
+        for (int i = 0; i < 10; i++) {
+            store.add(new TestSegment(i, i + 10, "test"));
+        }
+        SegmentStoreSerializer.write(fFile, store);
+        try (FileChannel channel = FileChannel.open(fFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        SegmentStoreSerializer.read(fFile, TestSegment.DESERIALISER, SegmentStoreFactory.createSegmentStore());
+    }
+
+    /**
+     * Test reading a file in another format
+     *
+     * @throws IOException
+     *             If the test file cannot be written
+     */
+    @Test(expected = IOException.class)
+    public void testWrongFormat() throws IOException {
+        Files.write(fFile, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 });
+        SegmentStoreSerializer.read(fFile, TestSegment.DESERIALISER, SegmentStoreFactory.createSegmentStore());
+    }
+}
@@ -16,7 +16,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -29,6 +31,8 @@ import org.eclipse.tracecompass.segmentstore.core.tests.historytree.HistoryTreeS
 import org.junit.After;
 import org.junit.Test;
 
+import com.google.common.collect.Iterables;
+
 /**
  * Unit tests for the history tree segment store. It tests the segment store
  * specific functionalities.
@@ -166,4 +170,47 @@ public class HTStoreTest extends AbstractTestSegmentStore {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Test adding a large batch of segments sorted by end time, as an analysis
+     * would, with enough segments to fill many nodes, then re-reading the
+     * segment store
+     *
+     * @throws IOException
+     *             Exception thrown by application
+     */
+    @Test
+    public void testBulkLoading() throws IOException {
+        Path dirPath = Files.createTempDirectory("tmpSegStoreDir");
+        Path filePath = Paths.get(dirPath.toString(), "tmpSegStore");
+        assertNotNull(filePath);
+
+        int nbSegments = 100000;
+        List<TestSegment> segments = new ArrayList<>(nbSegments);
+        for (int i = 0; i < nbSegments; i++) {
+            long end = 10 + i;
+            segments.add(new TestSegment(end - (i % 10), end, "abc"));
+        }
+
+        try {
+            HistoryTreeSegmentStoreStub<TestSegment> segmentStore = new HistoryTreeSegmentStoreStub<>(filePath, 1, TestSegment.DESERIALISER);
+            segmentStore.addAll(segments);
+            segmentStore.finishedBuilding(10 + nbSegments);
+            assertEquals(nbSegments, segmentStore.size());
+            segmentStore.dispose();
+
+            // All the nodes should have been written before the file was closed
+            segmentStore = new HistoryTreeSegmentStoreStub<>(filePath, 1, TestSegment.DESERIALISER);
+            assertEquals(nbSegments, segmentStore.size());
+            for (long time = 0; time < 10 + nbSegments; time += 9973) {
+                final long t = time;
+                long expected = segments.stream().filter(segment -> segment.getStart() <= t && t <= segment.getEnd()).count();
+                assertEquals("Segments at " + time, expected, Iterables.size(segmentStore.getIntersectingElements(time)));
+            }
+            segmentStore.dispose();
+        } finally {
+            Files.delete(filePath);
+            Files.delete(dirPath);
+        }
+    }
+
+}
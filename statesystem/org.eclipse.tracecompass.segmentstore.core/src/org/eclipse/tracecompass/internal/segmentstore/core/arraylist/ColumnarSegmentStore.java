@@ -0,0 +1,583 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.segmentstore.core.arraylist;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.segmentstore.core.IColumnarSegmentCodec;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+
+/**
+ * Implementation of an {@link ISegmentStore} that does not keep the segment
+ * objects, but their fields in parallel primitive arrays: the start times, the
+ * end times, one array per long attribute and one array per string attribute,
+ * described by an {@link IColumnarSegmentCodec}. The string attributes are
+ * stored as IDs in a dictionary of the distinct strings of the store.
+ *
+ * A segment takes 16 bytes plus 8 bytes per long attribute and 4 bytes per
+ * string attribute, instead of an object header, its fields and the reference
+ * to it, and the start and end times are scanned sequentially by the
+ * queries. The segments returned by the store are created by the codec each
+ * time they are read.
+ *
+ * Like the {@link LazyArrayListStore}, the segments are sorted on the first
+ * read after they were added out of order, by start time, then end time, then
+ * insertion order. Only the segments added since the last sort are sorted,
+ * then merged with the others in new arrays, so the iterators and query
+ * results obtained before still see the segments as they were.
+ *
+ * Removal operations are not supported.
+ *
+ * @param <E>
+ *            The type of segment held in this store
+ */
+public class ColumnarSegmentStore<@NonNull E extends ISegment> implements ISegmentStore<E> {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long[] NO_LONGS = new long[0];
+    private static final String[] NO_STRINGS = new String[0];
+
+    private final IColumnarSegmentCodec<E> fCodec;
+    private final int fNbLongs;
+    private final int fNbStrings;
+
+    private final ReentrantLock fLock = new ReentrantLock(false);
+
+    /*
+     * The columns, guarded by fLock. The rows up to fSortedSize are sorted,
+     * the others were added after the last sort. Rows are only written past
+     * the size of the snapshots, or in new arrays, so the snapshots can be
+     * read without the lock.
+     */
+    private long[] fStarts;
+    private long[] fEnds;
+    private long[][] fLongs;
+    private int[][] fStringIds;
+    private int fSize = 0;
+    private int fSortedSize = 0;
+
+    /* The string dictionary, guarded by fLock */
+    private final Map<String, Integer> fDictionary = new HashMap<>();
+    private String[] fStrings = new String[16];
+
+    private @Nullable Snapshot<E> fLastSnapshot = null;
+    private volatile long fStart = Long.MAX_VALUE;
+    private volatile long fEnd = Long.MIN_VALUE;
+
+    /**
+     * Constructor
+     *
+     * @param codec
+     *            The codec describing the fields of the segments
+     */
+    public ColumnarSegmentStore(IColumnarSegmentCodec<E> codec) {
+        fCodec = codec;
+        fNbLongs = codec.getNbLongAttributes();
+        fNbStrings = codec.getNbStringAttributes();
+        fStarts = new long[INITIAL_CAPACITY];
+        fEnds = new long[INITIAL_CAPACITY];
+        fLongs = new long[fNbLongs][INITIAL_CAPACITY];
+        fStringIds = new int[fNbStrings][INITIAL_CAPACITY];
+    }
+
+    /**
+     * Constructor
+     *
+     * @param codec
+     *            The codec describing the fields of the segments
+     * @param array
+     *            an array of elements to copy in the segment store
+     */
+    public ColumnarSegmentStore(IColumnarSegmentCodec<E> codec, Object[] array) {
+        this(codec);
+        for (Object object : array) {
+            if (object instanceof ISegment) {
+                addRow((E) object);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Columns
+    // ------------------------------------------------------------------------
+
+    /**
+     * Append a segment to the columns. DO NOT CALL FROM OUTSIDE OF A LOCK!
+     */
+    private void addRow(E val) {
+        int row = fSize;
+        if (row == fStarts.length) {
+            grow(Math.max(INITIAL_CAPACITY, row + (row >> 1)));
+        }
+        long start = val.getStart();
+        long end = val.getEnd();
+        fStarts[row] = start;
+        fEnds[row] = end;
+        for (int i = 0; i < fNbLongs; i++) {
+            fLongs[i][row] = fCodec.getLongAttribute(val, i);
+        }
+        for (int i = 0; i < fNbStrings; i++) {
+            fStringIds[i][row] = getStringId(fCodec.getStringAttribute(val, i));
+        }
+        if (fSortedSize == row && (row == 0 || compareRows(fStarts, fEnds, row - 1, row) <= 0)) {
+            fSortedSize = row + 1;
+        }
+        fSize = row + 1;
+        fLastSnapshot = null;
+        fStart = Math.min(fStart, start);
+        fEnd = Math.max(fEnd, end);
+    }
+
+    private void grow(int capacity) {
+        fStarts = Arrays.copyOf(fStarts, capacity);
+        fEnds = Arrays.copyOf(fEnds, capacity);
+        for (int i = 0; i < fNbLongs; i++) {
+            fLongs[i] = Arrays.copyOf(fLongs[i], capacity);
+        }
+        for (int i = 0; i < fNbStrings; i++) {
+            fStringIds[i] = Arrays.copyOf(fStringIds[i], capacity);
+        }
+    }
+
+    private int getStringId(String string) {
+        Integer id = fDictionary.get(string);
+        if (id != null) {
+            return id;
+        }
+        int newId = fDictionary.size();
+        if (newId == fStrings.length) {
+            fStrings = Arrays.copyOf(fStrings, newId * 2);
+        }
+        fStrings[newId] = string;
+        fDictionary.put(string, newId);
+        return newId;
+    }
+
+    private static int compareRows(long[] starts, long[] ends, int row1, int row2) {
+        int cmp = Long.compare(starts[row1], starts[row2]);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = Long.compare(ends[row1], ends[row2]);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return Integer.compare(row1, row2);
+    }
+
+    /**
+     * Sort the rows added out of order since the last sort, and merge them
+     * with the sorted rows in new arrays. DO NOT CALL FROM OUTSIDE OF A LOCK!
+     */
+    private void sortColumns() {
+        int sorted = fSortedSize;
+        int size = fSize;
+        long[] starts = fStarts;
+        long[] ends = fEnds;
+
+        int[] added = new int[size - sorted];
+        for (int i = 0; i < added.length; i++) {
+            added[i] = sorted + i;
+        }
+        sortRows(starts, ends, added, 0, added.length - 1);
+
+        /* The order of the rows in the new arrays */
+        int[] order = new int[size];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < sorted && j < added.length) {
+            order[k++] = (compareRows(starts, ends, i, added[j]) <= 0) ? i++ : added[j++];
+        }
+        while (i < sorted) {
+            order[k++] = i++;
+        }
+        while (j < added.length) {
+            order[k++] = added[j++];
+        }
+
+        int capacity = starts.length;
+        fStarts = gather(starts, order, capacity);
+        fEnds = gather(ends, order, capacity);
+        for (int col = 0; col < fNbLongs; col++) {
+            fLongs[col] = gather(fLongs[col], order, capacity);
+        }
+        for (int col = 0; col < fNbStrings; col++) {
+            int[] column = fStringIds[col];
+            int[] newColumn = new int[capacity];
+            for (int row = 0; row < order.length; row++) {
+                newColumn[row] = column[order[row]];
+            }
+            fStringIds[col] = newColumn;
+        }
+        fSortedSize = size;
+    }
+
+    private static long[] gather(long[] column, int[] order, int capacity) {
+        long[] newColumn = new long[capacity];
+        for (int row = 0; row < order.length; row++) {
+            newColumn[row] = column[order[row]];
+        }
+        return newColumn;
+    }
+
+    /**
+     * Quicksort of row numbers, on the values of the rows
+     */
+    private static void sortRows(long[] starts, long[] ends, int[] rows, int from, int to) {
+        int lo = from;
+        int hi = to;
+        while (hi - lo > 16) {
+            int pivot = rows[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (compareRows(starts, ends, rows[i], pivot) < 0) {
+                    i++;
+                }
+                while (compareRows(starts, ends, rows[j], pivot) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = rows[i];
+                    rows[i++] = rows[j];
+                    rows[j--] = tmp;
+                }
+            }
+            /* Recurse on the smaller part to bound the stack depth */
+            if (j - lo < hi - i) {
+                sortRows(starts, ends, rows, lo, j);
+                lo = i;
+            } else {
+                sortRows(starts, ends, rows, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            int row = rows[i];
+            int j = i - 1;
+            while (j >= lo && compareRows(starts, ends, rows[j], row) > 0) {
+                rows[j + 1] = rows[j];
+                j--;
+            }
+            rows[j + 1] = row;
+        }
+    }
+
+    /**
+     * Get a view of the sorted segments, sorting the columns if needed. DO
+     * NOT CALL FROM OUTSIDE OF A LOCK!
+     */
+    private Snapshot<E> getSnapshot() {
+        Snapshot<E> snapshot = fLastSnapshot;
+        if (snapshot == null) {
+            if (fSortedSize < fSize) {
+                sortColumns();
+            }
+            snapshot = new Snapshot<>(this);
+            fLastSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Immutable view of the columns at one point, the segments are created
+     * when they are read
+     */
+    private static final class Snapshot<@NonNull E extends ISegment> extends AbstractList<E> implements RandomAccess {
+        private final IColumnarSegmentCodec<E> fCodec;
+        private final int fSize;
+        private final long[] fStarts;
+        private final long[] fEnds;
+        private final long[][] fLongs;
+        private final int[][] fStringIds;
+        private final String[] fStrings;
+        private @Nullable IntervalIndex fIndex = null;
+
+        public Snapshot(ColumnarSegmentStore<E> store) {
+            fCodec = store.fCodec;
+            fSize = store.fSize;
+            fStarts = store.fStarts;
+            fEnds = store.fEnds;
+            fLongs = store.fLongs.clone();
+            fStringIds = store.fStringIds.clone();
+            fStrings = store.fStrings;
+        }
+
+        @Override
+        public E get(int index) {
+            if (index < 0 || index >= fSize) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + fSize); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            long[] longs = (fLongs.length == 0) ? NO_LONGS : new long[fLongs.length];
+            for (int i = 0; i < longs.length; i++) {
+                longs[i] = fLongs[i][index];
+            }
+            String[] strings = (fStringIds.length == 0) ? NO_STRINGS : new String[fStringIds.length];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = fStrings[fStringIds[i][index]];
+            }
+            return fCodec.createSegment(fStarts[index], fEnds[index], longs, strings);
+        }
+
+        @Override
+        public int size() {
+            return fSize;
+        }
+
+        @Override
+        public boolean contains(@Nullable Object o) {
+            if (!(o instanceof ISegment)) {
+                return false;
+            }
+            ISegment segment = (ISegment) o;
+            long start = segment.getStart();
+            /* Binary search of the first row with this start time */
+            int lo = 0;
+            int hi = fSize;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (fStarts[mid] < start) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            for (int row = lo; row < fSize && fStarts[row] == start; row++) {
+                if (fEnds[row] == segment.getEnd() && rowEquals(row, segment)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Compare the attributes of a row with a segment of the same class as
+         * the segments created by the codec
+         */
+        private boolean rowEquals(int row, ISegment segment) {
+            E rowSegment = get(row);
+            if (rowSegment.getClass() != segment.getClass()) {
+                return false;
+            }
+            @SuppressWarnings("unchecked")
+            E other = (E) segment;
+            for (int i = 0; i < fLongs.length; i++) {
+                if (fLongs[i][row] != fCodec.getLongAttribute(other, i)) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < fStringIds.length; i++) {
+                if (!fStrings[fStringIds[i][row]].equals(fCodec.getStringAttribute(other, i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private synchronized IntervalIndex getIndex() {
+            IntervalIndex index = fIndex;
+            if (index == null) {
+                long[] starts = fStarts;
+                long[] ends = fEnds;
+                index = new IntervalIndex(fSize, i -> starts[i], i -> ends[i]);
+                fIndex = index;
+            }
+            return index;
+        }
+
+        /**
+         * Get a view of the segments of this snapshot intersecting a range
+         */
+        public List<E> getIntersectingElements(long start, long end) {
+            RowsView<E> rows = new RowsView<>(this);
+            getIndex().forEachIntersecting(start, end, rows);
+            return (rows.isEmpty() ? Collections.emptyList() : rows);
+        }
+    }
+
+    /**
+     * View of some rows of a snapshot, which are added in order by the index
+     */
+    private static final class RowsView<@NonNull E extends ISegment> extends AbstractList<E> implements RandomAccess, IntConsumer {
+        private final Snapshot<E> fSnapshot;
+        private int[] fRows = new int[16];
+        private int fSize = 0;
+
+        public RowsView(Snapshot<E> snapshot) {
+            fSnapshot = snapshot;
+        }
+
+        @Override
+        public void accept(int row) {
+            if (fSize == fRows.length) {
+                fRows = Arrays.copyOf(fRows, fSize * 2);
+            }
+            fRows[fSize++] = row;
+        }
+
+        @Override
+        public E get(int index) {
+            if (index < 0 || index >= fSize) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + fSize); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            return fSnapshot.get(fRows[index]);
+        }
+
+        @Override
+        public int size() {
+            return fSize;
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods from Collection
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterator<E> iterator() {
+        fLock.lock();
+        try {
+            return getSnapshot().iterator();
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean add(@Nullable E val) {
+        if (val == null) {
+            throw new IllegalArgumentException("Cannot add null value"); //$NON-NLS-1$
+        }
+        fLock.lock();
+        try {
+            addRow(val);
+            return true;
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean addAll(@Nullable Collection<? extends E> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+        fLock.lock();
+        try {
+            c.forEach(this::add);
+            return true;
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        fLock.lock();
+        try {
+            return fSize;
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+        return getCurrentSnapshot().contains(o);
+    }
+
+    @Override
+    public boolean containsAll(@Nullable Collection<?> c) {
+        return getCurrentSnapshot().containsAll(c);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return getCurrentSnapshot().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return getCurrentSnapshot().toArray(a);
+    }
+
+    @Override
+    public void clear() {
+        fLock.lock();
+        try {
+            fStarts = new long[INITIAL_CAPACITY];
+            fEnds = new long[INITIAL_CAPACITY];
+            fLongs = new long[fNbLongs][INITIAL_CAPACITY];
+            fStringIds = new int[fNbStrings][INITIAL_CAPACITY];
+            fSize = 0;
+            fSortedSize = 0;
+            fDictionary.clear();
+            fStrings = new String[16];
+            fLastSnapshot = null;
+            fStart = Long.MAX_VALUE;
+            fEnd = Long.MIN_VALUE;
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    private Snapshot<E> getCurrentSnapshot() {
+        fLock.lock();
+        try {
+            return getSnapshot();
+        } finally {
+            fLock.unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods added by ISegmentStore
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterable<E> getIntersectingElements(long start, long end) {
+        Snapshot<E> snapshot;
+        fLock.lock();
+        try {
+            snapshot = getSnapshot();
+            if (start <= fStart && end >= fEnd) {
+                return snapshot;
+            }
+        } finally {
+            fLock.unlock();
+        }
+        /* The snapshot is immutable, it can be queried outside the lock */
+        return snapshot.getIntersectingElements(start, end);
+    }
+
+    @Override
+    public void dispose() {
+        clear();
+    }
+}
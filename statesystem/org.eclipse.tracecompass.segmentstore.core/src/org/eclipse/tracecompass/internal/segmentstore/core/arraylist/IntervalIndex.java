@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.segmentstore.core.arraylist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntToLongFunction;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+
+/**
+ * Immutable index of segments sorted by start time, to find the segments
+ * intersecting a time range in O(log n + k), where k is the number of results.
+ * The segments are accessed by their position, so they can be stored as
+ * objects in a list, see {@link #forList(List)}, or in primitive columns.
+ *
+ * The sorted array is seen as an implicit balanced binary tree: the segment at
+ * index i is at level k if the k lowest bits of i are 1 and the next is 0, its
+ * children are at i - 2^(k-1) and i + 2^(k-1). Each node is augmented with
+ * the maximum end time of its sub-tree, so the sub-trees where all segments
+ * end before the range can be skipped, as well as those where they all start
+ * after it.
+ *
+ * The results are returned in the order of the sorted segments.
+ */
+final class IntervalIndex {
+
+    /* Sub-trees up to this level are scanned linearly */
+    private static final int SCAN_LEVEL = 3;
+
+    private final int fSize;
+    private final IntToLongFunction fStarts;
+    private final IntToLongFunction fEnds;
+    private final long[] fMaxEnds;
+    private final int fMaxLevel;
+
+    /**
+     * Constructor
+     *
+     * @param size
+     *            The number of segments
+     * @param starts
+     *            The start time of the segment at a position. The segments
+     *            must be sorted by start time and must not change afterwards.
+     * @param ends
+     *            The end time of the segment at a position
+     */
+    IntervalIndex(int size, IntToLongFunction starts, IntToLongFunction ends) {
+        fSize = size;
+        fStarts = starts;
+        fEnds = ends;
+        long[] maxEnds = new long[size];
+        int maxLevel = -1;
+        if (size > 0) {
+            /* Leaves, at the even indexes */
+            int lastIndex = 0;
+            long lastMaxEnd = Long.MIN_VALUE;
+            for (int i = 0; i < size; i += 2) {
+                lastIndex = i;
+                maxEnds[i] = ends.applyAsLong(i);
+                lastMaxEnd = maxEnds[i];
+            }
+            /*
+             * Upper levels. The right child of the last nodes of a level may
+             * be past the end of the array, the maximum end of the last node
+             * of the lower level is used instead.
+             */
+            int level = 1;
+            for (; (1L << level) <= size; level++) {
+                int half = 1 << (level - 1);
+                int first = (half << 1) - 1;
+                int step = half << 2;
+                for (int i = first; i < size; i += step) {
+                    long leftMax = maxEnds[i - half];
+                    long rightMax = (i + half < size) ? maxEnds[i + half] : lastMaxEnd;
+                    maxEnds[i] = Math.max(ends.applyAsLong(i), Math.max(leftMax, rightMax));
+                }
+                lastIndex = (((lastIndex >> level) & 1) != 0) ? lastIndex - half : lastIndex + half;
+                if (lastIndex < size) {
+                    lastMaxEnd = Math.max(lastMaxEnd, maxEnds[lastIndex]);
+                }
+            }
+            maxLevel = level - 1;
+        }
+        fMaxEnds = maxEnds;
+        fMaxLevel = maxLevel;
+    }
+
+    /**
+     * Create the index of a list of segments
+     *
+     * @param sortedSegments
+     *            The segments, sorted by start time. The list must not be
+     *            modified afterwards.
+     * @return The index
+     */
+    static <@NonNull E extends ISegment> IntervalIndex forList(List<E> sortedSegments) {
+        return new IntervalIndex(sortedSegments.size(),
+                i -> sortedSegments.get(i).getStart(),
+                i -> sortedSegments.get(i).getEnd());
+    }
+
+    /**
+     * Get the segments of a list intersecting a time range
+     *
+     * @param sortedSegments
+     *            The list of segments this index was created for
+     * @param start
+     *            The start of the range, inclusive
+     * @param end
+     *            The end of the range, inclusive
+     * @return The intersecting segments, sorted by start time
+     */
+    <@NonNull E extends ISegment> List<E> getIntersectingElements(List<E> sortedSegments, long start, long end) {
+        List<E> result = new ArrayList<>();
+        forEachIntersecting(start, end, i -> result.add(sortedSegments.get(i)));
+        return (result.isEmpty() ? Collections.emptyList() : result);
+    }
+
+    /**
+     * Visit the positions of the segments intersecting a time range, in
+     * increasing order
+     *
+     * @param start
+     *            The start of the range, inclusive
+     * @param end
+     *            The end of the range, inclusive
+     * @param action
+     *            The action to call with each position
+     */
+    void forEachIntersecting(long start, long end, IntConsumer action) {
+        if (fMaxLevel < 0) {
+            return;
+        }
+        IntToLongFunction starts = fStarts;
+        IntToLongFunction ends = fEnds;
+        int size = fSize;
+
+        /*
+         * Depth-first traversal. Each entry of the stack is a node with its
+         * level, and whether its left sub-tree was already visited.
+         */
+        int[] nodes = new int[2 * (fMaxLevel + 2)];
+        int[] levels = new int[nodes.length];
+        boolean[] leftDone = new boolean[nodes.length];
+        int top = 0;
+        nodes[top] = (1 << fMaxLevel) - 1;
+        levels[top] = fMaxLevel;
+        leftDone[top] = false;
+        top++;
+
+        while (top > 0) {
+            top--;
+            int node = nodes[top];
+            int level = levels[top];
+            if (level <= SCAN_LEVEL) {
+                /* Small sub-tree, check its segments in order */
+                int first = (node >> level) << level;
+                int last = Math.min(size, first + (1 << (level + 1)) - 1);
+                for (int i = first; i < last; i++) {
+                    if (starts.applyAsLong(i) > end) {
+                        break;
+                    }
+                    if (ends.applyAsLong(i) >= start) {
+                        action.accept(i);
+                    }
+                }
+            } else if (!leftDone[top]) {
+                /* Visit the left sub-tree, then come back to this node */
+                int left = node - (1 << (level - 1));
+                leftDone[top] = true;
+                top++;
+                if (left >= size || fMaxEnds[left] >= start) {
+                    nodes[top] = left;
+                    levels[top] = level - 1;
+                    leftDone[top] = false;
+                    top++;
+                }
+            } else if (node < size && starts.applyAsLong(node) <= end) {
+                /* This node, then the right sub-tree */
+                if (ends.applyAsLong(node) >= start) {
+                    action.accept(node);
+                }
+                nodes[top] = node + (1 << (level - 1));
+                levels[top] = level - 1;
+                leftDone[top] = false;
+                top++;
+            }
+        }
+    }
+}
@@ -13,7 +13,6 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
@@ -22,7 +21,6 @@ import java.util.function.Function;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
-import org.eclipse.tracecompass.segmentstore.core.BasicSegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegment;
 import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
 
@@ -45,6 +43,11 @@ import com.google.common.collect.ImmutableList;
  * should be faster at building when receiving shuffled datasets than the
  * {@link ArrayListStore}.
  *
+ * Intersection queries use an {@link IntervalIndex} of the sorted segments,
+ * built on the first query after the store was modified. Once the store is
+ * complete, queries take a time proportional to the number of results instead
+ * of the number of segments starting before the range.
+ *
  * Removal operations are not supported.
  *
  * @param <E>
@@ -67,7 +70,8 @@ public class LazyArrayListStore<@NonNull E extends ISegment> implements ISegment
      */
     protected final List<E> fStore;
 
-    private @Nullable transient Iterable<E> fLastSnapshot = null;
+    private @Nullable transient ImmutableList<E> fLastSnapshot = null;
+    private @Nullable transient IntervalIndex fIndex = null;
 
     private volatile boolean fDirty = false;
     private volatile long fStart = Long.MAX_VALUE;
@@ -122,20 +126,28 @@ public class LazyArrayListStore<@NonNull E extends ISegment> implements ISegment
     public Iterator<E> iterator() {
         fLock.lock();
         try {
-            if (fDirty) {
-                sortStore();
-            }
-            Iterable<E> lastSnapshot = fLastSnapshot;
-            if (lastSnapshot == null) {
-                lastSnapshot = ImmutableList.copyOf(fStore);
-                fLastSnapshot = lastSnapshot;
-            }
-            return checkNotNull(lastSnapshot.iterator());
+            return checkNotNull(getSnapshot().iterator());
         } finally {
             fLock.unlock();
         }
     }
 
+    /**
+     * Get an immutable copy of the sorted segments, sorting the backing
+     * ArrayList if needed. DO NOT CALL FROM OUTSIDE OF A LOCK!
+     */
+    private ImmutableList<E> getSnapshot() {
+        if (fDirty) {
+            sortStore();
+        }
+        ImmutableList<E> lastSnapshot = fLastSnapshot;
+        if (lastSnapshot == null) {
+            lastSnapshot = ImmutableList.copyOf(fStore);
+            fLastSnapshot = lastSnapshot;
+        }
+        return lastSnapshot;
+    }
+
     /**
      * Sort the backing ArrayList using the order defined by the internal
      * comparator. DO NOT CALL FROM OUTSIDE OF A LOCK!
@@ -156,6 +168,7 @@ public class LazyArrayListStore<@NonNull E extends ISegment> implements ISegment
             setDirtyIfNeeded(val);
             fStore.add(getInsertionPoint(val), val);
             fLastSnapshot = null;
+            fIndex = null;
             fStart = Math.min(fStart, val.getStart());
             fEnd = Math.max(fEnd, val.getEnd());
             return true;
@@ -267,6 +280,7 @@ public class LazyArrayListStore<@NonNull E extends ISegment> implements ISegment
         try {
             fStore.clear();
             fLastSnapshot = null;
+            fIndex = null;
             fDirty = false;
         } finally {
             fLock.unlock();
@@ -279,53 +293,24 @@ public class LazyArrayListStore<@NonNull E extends ISegment> implements ISegment
 
     @Override
     public Iterable<E> getIntersectingElements(long start, long end) {
+        ImmutableList<E> snapshot;
+        IntervalIndex index;
         fLock.lock();
-        if (fDirty) {
-            sortStore();
-        }
         try {
+            snapshot = getSnapshot();
             if (start <= fStart && end >= fEnd) {
-                Iterable<E> lastSnapshot = fLastSnapshot;
-                if (lastSnapshot == null) {
-                    lastSnapshot = ImmutableList.copyOf(fStore);
-                    fLastSnapshot = lastSnapshot;
-                }
-                return checkNotNull(lastSnapshot);
-            }
-            /*
-             * Compute the index of the last Segment we will find in here,
-             * correct the negative insertion point and add 1 for array size.
-             */
-            int arraySize = Collections.binarySearch(fStore, new BasicSegment(end, Long.MAX_VALUE));
-            arraySize = (arraySize >= 0) ? arraySize + 1 : -arraySize;
-            /*
-             * Create the ArrayList as late as possible, with size = (first
-             * intersecting segment index) - (last intersecting segment index).
-             */
-            ArrayList<E> iterable = null;
-            for (E seg : fStore) {
-                if (seg.getStart() <= end && seg.getEnd() >= start) {
-                    if (iterable == null) {
-                        iterable = new ArrayList<>(arraySize);
-                    }
-                    iterable.add(seg);
-                } else if (seg.getStart() > end) {
-                    /*
-                     * Since segments are sorted by start times, there is no
-                     * point in searching segments that start too late.
-                     */
-                    break;
-                }
-                arraySize--;
+                return snapshot;
             }
-            if (iterable != null) {
-                iterable.trimToSize();
-                return iterable;
+            index = fIndex;
+            if (index == null) {
+                index = IntervalIndex.forList(snapshot);
+                fIndex = index;
             }
-            return Collections.EMPTY_LIST;
         } finally {
             fLock.unlock();
         }
+        /* The index is immutable, it can be queried outside the lock */
+        return index.getIntersectingElements(snapshot, start, end);
     }
 
     @Override
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.segmentstore.core.arraylist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.segmentstore.core.ISegment;
+import org.eclipse.tracecompass.segmentstore.core.ISegmentStore;
+
+/**
+ * Implementation of an {@link ISegmentStore} for stores that are read by many
+ * threads at once. The segments are kept in an immutable array sorted by
+ * start time, then end time, then the segments' natural ordering, and indexed
+ * with an {@link IntervalIndex}. Readers use the current array without
+ * locking.
+ *
+ * New segments are appended to a pending buffer. The next read seals the
+ * store: the buffer is sorted with {@link Arrays#parallelSort} and merged
+ * with the current array into a new one, which is then published to the
+ * readers. Building the store and reading it afterwards is fast, but reading
+ * while segments are still added costs a merge of the whole store each time.
+ *
+ * Removal operations are not supported.
+ *
+ * @param <E>
+ *            The type of segment held in this store
+ */
+public class SealedArrayStore<@NonNull E extends ISegment> implements ISegmentStore<E> {
+
+    private static final Comparator<ISegment> COMPARATOR = Comparator.comparing(ISegment::getStart)
+            .thenComparing(ISegment::getEnd).thenComparing(Function.identity());
+
+    /**
+     * Immutable state of the store, replaced at each seal
+     */
+    private static final class Sealed<@NonNull E extends ISegment> {
+        private final List<E> fSegments;
+        private final IntervalIndex fIndex;
+        private final long fStart;
+        private final long fEnd;
+
+        public Sealed(List<E> segments, long start, long end) {
+            fSegments = segments;
+            fIndex = IntervalIndex.forList(segments);
+            fStart = start;
+            fEnd = end;
+        }
+    }
+
+    private final Object fWriteLock = new Object();
+
+    /* Segments added since the last seal, guarded by fWriteLock */
+    private List<E> fPending = new ArrayList<>();
+
+    /* Written under fWriteLock, read by anyone */
+    private volatile boolean fHasPending = false;
+    private volatile Sealed<E> fSealed = new Sealed<>(Collections.emptyList(), Long.MAX_VALUE, Long.MIN_VALUE);
+
+    /**
+     * Constructor
+     */
+    public SealedArrayStore() {
+        // Do nothing
+    }
+
+    /**
+     * Constructor
+     *
+     * @param array
+     *            an array of elements to wrap in the segment store
+     */
+    public SealedArrayStore(Object[] array) {
+        for (Object object : array) {
+            if (object instanceof ISegment) {
+                fPending.add((E) object);
+            }
+        }
+        fHasPending = !fPending.isEmpty();
+        seal();
+    }
+
+    /**
+     * Sort the segments added since the last seal and merge them with the
+     * sorted segments. This is done automatically on the next read, but
+     * writers can call it once they are done to avoid delaying the first
+     * reader.
+     */
+    public void seal() {
+        if (!fHasPending) {
+            return;
+        }
+        synchronized (fWriteLock) {
+            if (!fHasPending) {
+                return;
+            }
+            @SuppressWarnings("unchecked")
+            E[] added = (E[]) fPending.toArray(new ISegment[fPending.size()]);
+            Arrays.parallelSort(added, COMPARATOR);
+
+            Sealed<E> previous = fSealed;
+            List<E> merged = merge(previous.fSegments, added);
+            fSealed = new Sealed<>(merged,
+                    Math.min(previous.fStart, added[0].getStart()),
+                    Math.max(previous.fEnd, maxEnd(added)));
+            fPending = new ArrayList<>();
+            fHasPending = false;
+        }
+    }
+
+    private static <@NonNull E extends ISegment> List<E> merge(List<E> sorted, E[] added) {
+        if (sorted.isEmpty()) {
+            return Collections.unmodifiableList(Arrays.asList(added));
+        }
+        @SuppressWarnings("unchecked")
+        E[] merged = (E[]) new ISegment[sorted.size() + added.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < sorted.size() && j < added.length) {
+            E left = sorted.get(i);
+            E right = added[j];
+            /* Keep the segments already in the store first for equal keys */
+            if (COMPARATOR.compare(left, right) <= 0) {
+                merged[k++] = left;
+                i++;
+            } else {
+                merged[k++] = right;
+                j++;
+            }
+        }
+        while (i < sorted.size()) {
+            merged[k++] = sorted.get(i++);
+        }
+        System.arraycopy(added, j, merged, k, added.length - j);
+        return Collections.unmodifiableList(Arrays.asList(merged));
+    }
+
+    private static long maxEnd(ISegment[] segments) {
+        long max = Long.MIN_VALUE;
+        for (ISegment segment : segments) {
+            max = Math.max(max, segment.getEnd());
+        }
+        return max;
+    }
+
+    /**
+     * Get the sealed state of the store, sealing it first if segments were
+     * added
+     */
+    private Sealed<E> getSealed() {
+        seal();
+        return fSealed;
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods from Collection
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterator<E> iterator() {
+        return getSealed().fSegments.iterator();
+    }
+
+    @Override
+    public boolean add(@Nullable E val) {
+        if (val == null) {
+            throw new IllegalArgumentException("Cannot add null value"); //$NON-NLS-1$
+        }
+        synchronized (fWriteLock) {
+            fPending.add(val);
+            fHasPending = true;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean addAll(@Nullable Collection<? extends E> c) {
+        if (c == null) {
+            throw new IllegalArgumentException();
+        }
+        synchronized (fWriteLock) {
+            for (E val : c) {
+                if (val == null) {
+                    throw new IllegalArgumentException("Cannot add null value"); //$NON-NLS-1$
+                }
+                fPending.add(val);
+            }
+            fHasPending = !fPending.isEmpty();
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return getSealed().fSegments.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getSealed().fSegments.isEmpty();
+    }
+
+    @Override
+    public boolean contains(@Nullable Object o) {
+        return getSealed().fSegments.contains(o);
+    }
+
+    @Override
+    public boolean containsAll(@Nullable Collection<?> c) {
+        return getSealed().fSegments.containsAll(c);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return getSealed().fSegments.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return getSealed().fSegments.toArray(a);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (fWriteLock) {
+            fPending = new ArrayList<>();
+            fHasPending = false;
+            fSealed = new Sealed<>(Collections.emptyList(), Long.MAX_VALUE, Long.MIN_VALUE);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Methods added by ISegmentStore
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Iterable<E> getIntersectingElements(long start, long end) {
+        Sealed<E> sealed = getSealed();
+        if (start <= sealed.fStart && end >= sealed.fEnd) {
+            return sealed.fSegments;
+        }
+        return sealed.fIndex.getIntersectingElements(sealed.fSegments, start, end);
+    }
+
+    @Override
+    public void dispose() {
+        clear();
+    }
+}
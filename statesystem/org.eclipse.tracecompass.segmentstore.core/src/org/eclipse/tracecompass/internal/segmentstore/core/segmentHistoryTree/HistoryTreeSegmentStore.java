@@ -197,7 +197,8 @@ public class HistoryTreeSegmentStore<E extends ISegment> implements ISegmentStor
         if (c == null) {
             return false;
         }
-        c.forEach(interval -> add(interval));
+        /* An empty tree is built bottom-up from the sorted segments */
+        getSHT().insertAll(c);
         return true;
     }
 
@@ -28,6 +28,15 @@ public class BasicSegment implements ISegment {
             return new BasicSegment(buffer.getLong(), buffer.getLong());
     };
 
+    /**
+     * The codec to store basic segments in a columnar segment store, they
+     * have no attributes besides their start and end times
+     *
+     * @since 2.0
+     * @see SegmentStoreFactory#createColumnarSegmentStore(IColumnarSegmentCodec)
+     */
+    public static final IColumnarSegmentCodec<BasicSegment> BASIC_SEGMENT_COLUMNAR_CODEC = (start, end, longs, strings) -> new BasicSegment(start, end);
+
     private static final long serialVersionUID = -3257452887960883177L;
 
     private final long fStart;
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core;
+
+/**
+ * Description of the fields of a type of segment, for the segment stores that
+ * keep the segments in primitive columns instead of objects. Besides the start
+ * and end times, a segment can have a fixed number of long attributes, and of
+ * string attributes, which are stored as references to a dictionary of the
+ * distinct strings of the store.
+ *
+ * The segments returned by those stores are new objects created by
+ * {@link #createSegment(long, long, long[], String[])} each time they are
+ * read, so they are not the instances that were added. Segments are compared
+ * on their class and fields by the store's {@link ISegmentStore#contains}.
+ *
+ * @param <E>
+ *            The type of segment
+ * @since 2.0
+ * @see SegmentStoreFactory#createColumnarSegmentStore(IColumnarSegmentCodec)
+ */
+@FunctionalInterface
+public interface IColumnarSegmentCodec<E extends ISegment> {
+
+    /**
+     * Get the number of long attributes of the segments, not counting the
+     * start and end times
+     *
+     * @return The number of long attributes
+     */
+    default int getNbLongAttributes() {
+        return 0;
+    }
+
+    /**
+     * Get the number of string attributes of the segments
+     *
+     * @return The number of string attributes
+     */
+    default int getNbStringAttributes() {
+        return 0;
+    }
+
+    /**
+     * Get a long attribute of a segment
+     *
+     * @param segment
+     *            The segment
+     * @param index
+     *            The index of the attribute, smaller than
+     *            {@link #getNbLongAttributes()}
+     * @return The value of the attribute
+     */
+    default long getLongAttribute(E segment, int index) {
+        throw new IndexOutOfBoundsException("No long attribute " + index); //$NON-NLS-1$
+    }
+
+    /**
+     * Get a string attribute of a segment
+     *
+     * @param segment
+     *            The segment
+     * @param index
+     *            The index of the attribute, smaller than
+     *            {@link #getNbStringAttributes()}
+     * @return The value of the attribute
+     */
+    default String getStringAttribute(E segment, int index) {
+        throw new IndexOutOfBoundsException("No string attribute " + index); //$NON-NLS-1$
+    }
+
+    /**
+     * Create a segment from its fields
+     *
+     * @param start
+     *            The start time of the segment
+     * @param end
+     *            The end time of the segment
+     * @param longAttributes
+     *            The long attributes, the array may be reused after this call
+     * @param stringAttributes
+     *            The string attributes, the array may be reused after this
+     *            call
+     * @return The segment
+     */
+    E createSegment(long start, long end, long[] longAttributes, String[] stringAttributes);
+}
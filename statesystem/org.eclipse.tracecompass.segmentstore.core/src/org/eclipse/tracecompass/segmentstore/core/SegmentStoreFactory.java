@@ -21,7 +21,9 @@ import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.datastore.core.interval.IHTIntervalReader;
 import org.eclipse.tracecompass.internal.segmentstore.core.arraylist.ArrayListStore;
+import org.eclipse.tracecompass.internal.segmentstore.core.arraylist.ColumnarSegmentStore;
 import org.eclipse.tracecompass.internal.segmentstore.core.arraylist.LazyArrayListStore;
+import org.eclipse.tracecompass.internal.segmentstore.core.arraylist.SealedArrayStore;
 import org.eclipse.tracecompass.internal.segmentstore.core.segmentHistoryTree.HistoryTreeSegmentStore;
 import org.eclipse.tracecompass.internal.segmentstore.core.treemap.TreeMapStore;
 
@@ -67,7 +69,16 @@ public final class SegmentStoreFactory<E> {
          *
          * @since 2.0
          */
-        OnDisk
+        OnDisk,
+        /**
+         * Segment Store meant to be read by many threads at once, like the
+         * views of an analysis. The segments are sorted in bulk before they
+         * are read, reads do not block each other, but reading while segments
+         * are added is slower.
+         *
+         * @since 2.0
+         */
+        Concurrent
     }
 
     private SegmentStoreFactory() {
@@ -91,6 +102,9 @@ public final class SegmentStoreFactory<E> {
         if (segments.contains(SegmentStoreType.Stable)) {
             return createArrayListStore();
         }
+        if (segments.contains(SegmentStoreType.Concurrent)) {
+            return createSealedArrayStore();
+        }
         // default option is the fastest
         return createLazyArrayListStore();
 
@@ -123,6 +137,9 @@ public final class SegmentStoreFactory<E> {
         if (segments.contains(SegmentStoreType.Stable)) {
             return new ArrayListStore<>(array);
         }
+        if (segments.contains(SegmentStoreType.Concurrent)) {
+            return new SealedArrayStore<>(array);
+        }
         // default option is the fastest
         return new LazyArrayListStore<>(array);
     }
@@ -144,6 +161,22 @@ public final class SegmentStoreFactory<E> {
         return new HistoryTreeSegmentStore<>(segmentFile, segmentReader);
     }
 
+    /**
+     * SegmentStore factory method that creates an in-memory segment store
+     * keeping the fields of the segments in primitive arrays instead of the
+     * segment objects. It uses much less memory than the other in-memory
+     * stores for large numbers of small segments, but the segments it returns
+     * are new objects created by the codec.
+     *
+     * @param codec
+     *            The codec describing the fields of the segments
+     * @return an {@link ISegmentStore}
+     * @since 2.0
+     */
+    public static <E extends ISegment> ISegmentStore<E> createColumnarSegmentStore(IColumnarSegmentCodec<E> codec) {
+        return new ColumnarSegmentStore<>(codec);
+    }
+
     private static Set<@NonNull SegmentStoreType> getListOfFlags(SegmentStoreType... segmentTypes) {
         Set<@NonNull SegmentStoreType> segments = new HashSet<>();
         for(@Nullable SegmentStoreType segmentType : segmentTypes ) {
@@ -172,6 +205,15 @@ public final class SegmentStoreFactory<E> {
         return new ArrayListStore<>();
     }
 
+    /**
+     * New {@link SealedArrayStore} factory method
+     *
+     * @return the new Segment Store
+     */
+    private static <E extends ISegment> ISegmentStore<E> createSealedArrayStore() {
+        return new SealedArrayStore<>();
+    }
+
     /**
      * New {@link LazyArrayListStore} factory method
      *
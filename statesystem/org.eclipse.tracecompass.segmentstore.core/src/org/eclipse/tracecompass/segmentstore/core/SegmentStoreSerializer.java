@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.segmentstore.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import org.eclipse.tracecompass.datastore.core.interval.IHTIntervalReader;
+import org.eclipse.tracecompass.datastore.core.serialization.ISafeByteBufferWriter;
+import org.eclipse.tracecompass.datastore.core.serialization.SafeByteBufferFactory;
+
+/**
+ * Save the segments of an in-memory segment store to a file, and read them
+ * back, using the {@link ISegment#writeSegment(ISafeByteBufferWriter)} method
+ * of the segments and an {@link IHTIntervalReader}, like the on-disk segment
+ * stores.
+ *
+ * The file starts with a header containing a magic number, the version of the
+ * format and the number of segments. Each segment is then written as the size
+ * of its record, from {@link ISegment#getSizeOnDisk()}, followed by the
+ * record. The segments are written in the iteration order of the store, so
+ * they are added back in sorted order, and they are read in chunks directly
+ * into the target store, without holding them all in an array first.
+ *
+ * @since 2.0
+ */
+public final class SegmentStoreSerializer {
+
+    private static final int MAGIC_NUMBER = 0x05E65E65;
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private SegmentStoreSerializer() {
+        // Do nothing
+    }
+
+    /**
+     * Write the segments of a store to a file. The segments are written to a
+     * temporary file first, which then replaces the target file, so the file
+     * is never left half written.
+     *
+     * @param file
+     *            The file to write
+     * @param segments
+     *            The segments to write, typically a segment store
+     * @return The number of segments written
+     * @throws IOException
+     *             If there was an error writing the file
+     */
+    public static long write(Path file, Iterable<? extends ISegment> segments) throws IOException {
+        Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp"); //$NON-NLS-1$
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            /* The header is written at the end, when the count is known */
+            channel.position(HEADER_SIZE);
+            for (ISegment segment : segments) {
+                int size = segment.getSizeOnDisk();
+                if (buffer.remaining() < Integer.BYTES + size) {
+                    flush(channel, buffer);
+                    if (buffer.capacity() < Integer.BYTES + size) {
+                        buffer = ByteBuffer.allocate(Integer.BYTES + size);
+                    }
+                }
+                buffer.putInt(size);
+                segment.writeSegment(SafeByteBufferFactory.wrapWriter(buffer, size));
+                count++;
+            }
+            flush(channel, buffer);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC_NUMBER);
+            header.putInt(FILE_VERSION);
+            header.putLong(count);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpFile);
+            throw e;
+        }
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Read the segments of a file written by
+     * {@link #write(Path, Iterable)}, and add them to a collection, typically
+     * an empty segment store. The segments are added as they are read.
+     *
+     * @param <E>
+     *            The type of segment
+     * @param file
+     *            The file to read
+     * @param reader
+     *            The reader to create the segments from their record
+     * @param target
+     *            The collection to add the segments to
+     * @return The number of segments read
+     * @throws IOException
+     *             If there was an error reading the file, or if the file is
+     *             not in the expected format or is truncated. The collection
+     *             may then contain some of the segments.
+     */
+    public static <E extends ISegment> long read(Path file, IHTIntervalReader<E> reader, Collection<? super E> target) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.flip();
+            if (!fill(channel, buffer, HEADER_SIZE)) {
+                throw new IOException("Segment store file too short: " + file); //$NON-NLS-1$
+            }
+            int magic = buffer.getInt();
+            int version = buffer.getInt();
+            long expected = buffer.getLong();
+            if (magic != MAGIC_NUMBER || version != FILE_VERSION || expected < 0) {
+                throw new IOException("Wrong segment store file format: " + file); //$NON-NLS-1$
+            }
+
+            long count = 0;
+            while (count < expected) {
+                if (!fill(channel, buffer, Integer.BYTES)) {
+                    break;
+                }
+                int size = buffer.getInt();
+                if (size < 0) {
+                    throw new IOException("Invalid segment size " + size + " in " + file); //$NON-NLS-1$ //$NON-NLS-2$
+                }
+                if (buffer.capacity() < size) {
+                    ByteBuffer bigger = ByteBuffer.allocate(size);
+                    bigger.put(buffer);
+                    bigger.flip();
+                    buffer = bigger;
+                }
+                if (!fill(channel, buffer, size)) {
+                    break;
+                }
+                target.add(reader.readInterval(SafeByteBufferFactory.wrapReader(buffer, size)));
+                count++;
+            }
+            if (count != expected) {
+                throw new IOException("Truncated segment store file, read " + count + " of " + expected + " segments: " + file); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Make sure the buffer, in read mode, has some bytes remaining, reading
+     * from the channel if needed. The buffer must be large enough.
+     *
+     * @return Whether the bytes are available, false at the end of the file
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return true;
+        }
+        buffer.compact();
+        try {
+            while (buffer.position() < needed) {
+                if (channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            buffer.flip();
+        }
+    }
+}
@@ -20,6 +20,11 @@ import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.eclipse.jdt.annotation.NonNull;
@@ -46,7 +51,7 @@ import com.google.common.collect.ImmutableList;
 
 /**
  * This class benchmarks writing intervals to the state system and querying them
- * using a history tree backend
+ * using a history tree backend, from one thread and from many threads at once
  *
  * @author Geneviève Bastien
  */
@@ -59,11 +64,13 @@ public class HistoryTreeBackendBenchmark {
     private static final @NonNull String TEST_FULL_QUERY_ID = "Full Queries: ";
     private static final @NonNull String TEST_QUERY_RANGE_ID = "Query History Range: ";
     private static final @NonNull String TEST_2D_QUERY_ID = "2D Queries: ";
+    private static final @NonNull String TEST_CONCURRENT_QUERY_ID = "Concurrent Queries: ";
     private static final @NonNull String ROOT_NODE = "root";
     private static final int QUEUE_SIZE = 10000;
     private static final long SEED = 5575784704147L;
     private static final int QUERY_COUNT = 100;
     private static final int INTERVAL_AVG_TIME = 1000;
+    private static final int QUERY_THREAD_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
 
     /* Values for the average case */
     private static final int DEFAULT_NB_ATTRIB = 1500;
@@ -273,6 +280,9 @@ public class HistoryTreeBackendBenchmark {
         PerformanceMeter pm2DQuery = perf.createPerformanceMeter(TEST_PREFIX + TEST_2D_QUERY_ID + fName);
         perf.tagAsSummary(pm2DQuery, TEST_2D_QUERY_ID + fShortName, Dimension.CPU_TIME);
 
+        PerformanceMeter pmConcurrentQuery = perf.createPerformanceMeter(TEST_PREFIX + TEST_CONCURRENT_QUERY_ID + fName);
+        perf.tagAsSummary(pmConcurrentQuery, TEST_CONCURRENT_QUERY_ID + fShortName, Dimension.ELAPSED_PROCESS);
+
         for (int i = 0; i < fNbLoops; i++) {
             try {
                 /* Create the state system */
@@ -352,12 +362,43 @@ public class HistoryTreeBackendBenchmark {
                 }
                 pmFullQuery.stop();
 
+                /*
+                 * Benchmark the single and full queries done by many threads at
+                 * the same time, as views and data providers do
+                 */
+                ExecutorService pool = Executors.newFixedThreadPool(QUERY_THREAD_COUNT);
+                List<Callable<Void>> queryTasks = new ArrayList<>();
+                for (int j = 0; j < QUERY_THREAD_COUNT; j++) {
+                    Random threadRandom = new Random(SEED + j);
+                    queryTasks.add(() -> {
+                        for (int k = 0; k < QUERY_COUNT; k++) {
+                            long ts = getNextRandomValue(threadRandom, totalTime);
+                            int attrib = (int) getNextRandomValue(threadRandom, subAttributes.size());
+                            ss.querySingleState(ts, attrib);
+                            ss.queryFullState(ts);
+                        }
+                        return null;
+                    });
+                }
+                pmConcurrentQuery.start();
+                try {
+                    for (Future<Void> future : pool.invokeAll(queryTasks)) {
+                        future.get();
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    fail(e.getMessage());
+                } finally {
+                    pool.shutdown();
+                }
+                pmConcurrentQuery.stop();
+
                 /* Output some data on the file */
                 if (i == 0) {
                     if (backend instanceof HistoryTreeBackend) {
                         HistoryTreeBackend htBackend = (HistoryTreeBackend) backend;
                         System.out.println("History tree file size: " + FileUtils.byteCountToDisplaySize(htBackend.getFileSize()));
                         System.out.println("Average node usage: " + htBackend.getAverageNodeUsage());
+                        System.out.println("Node cache: " + htBackend.getNodeCacheStatistics());
                     }
                 }
                 deleteFile();
@@ -372,6 +413,7 @@ public class HistoryTreeBackendBenchmark {
         pmFullQuery.commit();
         pmRangeQuery.commit();
         pm2DQuery.commit();
+        pmConcurrentQuery.commit();
     }
 
     /**
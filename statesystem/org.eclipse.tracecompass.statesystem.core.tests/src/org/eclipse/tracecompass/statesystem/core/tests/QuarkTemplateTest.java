@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.QuarkTemplate;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link QuarkTemplate} attribute lookups
+ */
+public class QuarkTemplateTest {
+
+    private static final String THREADS = "Threads";
+    private static final String STATUS = "Status";
+
+    private ITmfStateSystemBuilder fStateSystem;
+
+    /**
+     * Create the state system
+     */
+    @Before
+    public void setup() {
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createNullBackend("test");
+        fStateSystem = StateSystemFactory.newStateSystem(backend);
+    }
+
+    /**
+     * Dispose the state system
+     */
+    @After
+    public void cleanup() {
+        fStateSystem.dispose();
+    }
+
+    /**
+     * Test that the template resolves the same quarks as the absolute paths,
+     * for enough keys to grow its table
+     */
+    @Test
+    public void testIntKeys() {
+        ITmfStateSystemBuilder ss = fStateSystem;
+        QuarkTemplate template = ss.createQuarkTemplate(ITmfStateSystem.ROOT_ATTRIBUTE, THREADS, QuarkTemplate.VARIABLE, STATUS);
+        for (int tid = -10; tid < 1000; tid += 3) {
+            int quark = template.getQuarkAndAdd(tid);
+            assertEquals(ss.getQuarkAbsoluteAndAdd(THREADS, String.valueOf(tid), STATUS), quark);
+        }
+        int nbAttributes = ss.getNbAttributes();
+        for (int tid = -10; tid < 1000; tid += 3) {
+            assertEquals(ss.optQuarkAbsolute(THREADS, String.valueOf(tid), STATUS), template.getQuarkAndAdd(tid));
+            assertEquals(ss.optQuarkAbsolute(THREADS, String.valueOf(tid), STATUS), template.optQuark(tid));
+        }
+        assertEquals(nbAttributes, ss.getNbAttributes());
+    }
+
+    /**
+     * Test that optQuark does not create attributes, and sees attributes
+     * created without the template
+     */
+    @Test
+    public void testOptQuark() {
+        ITmfStateSystemBuilder ss = fStateSystem;
+        QuarkTemplate template = ss.createQuarkTemplate(ITmfStateSystem.ROOT_ATTRIBUTE, THREADS, QuarkTemplate.VARIABLE, STATUS);
+        assertEquals(ITmfStateSystem.INVALID_ATTRIBUTE, template.optQuark(42));
+        assertEquals(ITmfStateSystem.INVALID_ATTRIBUTE, template.optQuark("0_1"));
+        assertEquals(0, ss.getNbAttributes());
+
+        int quark = ss.getQuarkAbsoluteAndAdd(THREADS, "42", STATUS);
+        assertEquals(ITmfStateSystem.INVALID_ATTRIBUTE, template.optQuark(43));
+        assertEquals(quark, template.optQuark(42));
+        assertEquals(quark, template.optQuark("42"));
+        assertEquals(quark, template.getQuarkAndAdd("42"));
+    }
+
+    /**
+     * Test templates relative to an attribute, with the variable element first
+     * or last
+     */
+    @Test
+    public void testRelativeTemplates() {
+        ITmfStateSystemBuilder ss = fStateSystem;
+        int threadsQuark = ss.getQuarkAbsoluteAndAdd(THREADS);
+        QuarkTemplate first = ss.createQuarkTemplate(threadsQuark, QuarkTemplate.VARIABLE, STATUS);
+        QuarkTemplate last = ss.createQuarkTemplate(threadsQuark, QuarkTemplate.VARIABLE);
+
+        int statusQuark = first.getQuarkAndAdd("0_1");
+        assertEquals(ss.optQuarkAbsolute(THREADS, "0_1", STATUS), statusQuark);
+        int threadQuark = last.getQuarkAndAdd("0_1");
+        assertEquals(ss.optQuarkAbsolute(THREADS, "0_1"), threadQuark);
+        assertEquals(threadQuark, ss.getParentAttributeQuark(statusQuark));
+    }
+
+    /**
+     * Test that a template needs one variable element
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoVariable() {
+        fStateSystem.createQuarkTemplate(ITmfStateSystem.ROOT_ATTRIBUTE, THREADS, STATUS);
+    }
+
+    /**
+     * Test that a template can only have one variable element
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testTwoVariables() {
+        fStateSystem.createQuarkTemplate(ITmfStateSystem.ROOT_ATTRIBUTE, THREADS, QuarkTemplate.VARIABLE, QuarkTemplate.VARIABLE);
+    }
+}
@@ -9,21 +9,32 @@
 
 package org.eclipse.tracecompass.statesystem.core.tests;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
@@ -320,4 +331,186 @@ public class StateSystem2DTest {
         assertTrue(Iterables.isEmpty(iterable));
     }
 
+    private static void assertSameStates(List<@NonNull ITmfStateInterval> expected, List<@NonNull ITmfStateInterval> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            ITmfStateInterval expectedInterval = expected.get(i);
+            ITmfStateInterval actualInterval = actual.get(i);
+            assertEquals(expectedInterval.getStartTime(), actualInterval.getStartTime());
+            assertEquals(expectedInterval.getEndTime(), actualInterval.getEndTime());
+            assertEquals(expectedInterval.getAttribute(), actualInterval.getAttribute());
+            assertEquals(expectedInterval.getValue(), actualInterval.getValue());
+        }
+    }
+
+    /**
+     * Test the batched full state query, which should return the same states
+     * as individual full queries
+     *
+     * @throws StateSystemDisposedException
+     *             ss was closed
+     */
+    @Test
+    public void testFullSweepQuery() throws StateSystemDisposedException {
+        ITmfStateSystem ss = fStateSystem;
+        assertNotNull(ss);
+        long end = ss.getCurrentEndTime();
+
+        /* Include duplicates and the bounds of the state system */
+        long[] times = { START_TIME, 65L, 89L, 90L, 90L, 135L, 159L, end };
+        List<@NonNull List<@NonNull ITmfStateInterval>> states = ss.queryFullStates(times);
+        assertEquals(times.length, states.size());
+        for (int i = 0; i < times.length; i++) {
+            assertSameStates(ss.queryFullState(times[i]), states.get(i));
+        }
+
+        assertTrue(ss.queryFullStates(new long[0]).isEmpty());
+    }
+
+    /**
+     * Test the batched full state query on a state system being built, where
+     * some states are still in the transient state
+     *
+     * @throws StateSystemDisposedException
+     *             ss was closed
+     */
+    @Test
+    public void testFullSweepQueryDuringBuild() throws StateSystemDisposedException {
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createInMemoryBackend("test", START_TIME);
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(backend);
+        int quark1 = ss.getQuarkAbsoluteAndAdd("quark1");
+        int quark2 = ss.getQuarkAbsoluteAndAdd("quark2");
+        ss.modifyAttribute(60L, 1, quark1);
+        ss.modifyAttribute(70L, 2, quark2);
+        ss.modifyAttribute(80L, 3, quark1);
+        ss.modifyAttribute(100L, 4, quark2);
+
+        try {
+            long[] times = { START_TIME, 60L, 75L, 80L, 95L, 99L };
+            List<@NonNull List<@NonNull ITmfStateInterval>> states = ss.queryFullStates(times);
+            for (int i = 0; i < times.length; i++) {
+                assertSameStates(ss.queryFullState(times[i]), states.get(i));
+            }
+        } finally {
+            ss.dispose();
+        }
+    }
+
+    /**
+     * Test the sweep query on a subset of the attributes
+     *
+     * @throws AttributeNotFoundException
+     *             if the requested attribute simply did not exist in the system.
+     * @throws StateSystemDisposedException
+     *             ss was closed
+     */
+    @Test
+    public void testSweepQuery() throws AttributeNotFoundException, StateSystemDisposedException {
+        ITmfStateSystem ss = fStateSystem;
+        assertNotNull(ss);
+        int integerQuark = ss.getQuarkAbsolute(INTEGER_ATTRIBUTE);
+
+        long[] times = { 75L, 85L, 105L, 170L };
+        Object[] expected = { 0, 1, 2, 4 };
+        Object[] values = new Object[times.length];
+        int[] count = new int[1];
+        ss.queryStates(Collections.singleton(integerQuark), times, (interval, index) -> {
+            assertEquals(integerQuark, interval.getAttribute());
+            assertTrue(interval.intersects(times[index]));
+            values[index] = interval.getValue();
+            count[0]++;
+        }, null);
+        assertEquals(times.length, count[0]);
+        assertArrayEquals(expected, values);
+
+        /* A cancelled sweep does not send any more intervals */
+        IProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        ss.queryStates(Collections.singleton(integerQuark), times, (interval, index) -> fail("The query was cancelled"), monitor);
+    }
+
+    /**
+     * Test that the timestamps of a sweep query need to be sorted
+     *
+     * @throws StateSystemDisposedException
+     *             ss was closed
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsortedSweepQuery() throws StateSystemDisposedException {
+        ITmfStateSystem ss = fStateSystem;
+        assertNotNull(ss);
+
+        ss.queryFullStates(new long[] { 90L, 80L });
+    }
+
+    /**
+     * Test a time range exception on sweep queries
+     *
+     * @throws StateSystemDisposedException
+     *             ss was closed
+     */
+    @Test(expected = TimeRangeException.class)
+    public void testTimeRangeExceptionSweep() throws StateSystemDisposedException {
+        ITmfStateSystem ss = fStateSystem;
+        assertNotNull(ss);
+
+        ss.queryFullStates(new long[] { 80L, ss.getCurrentEndTime() + 1 });
+    }
+
+    /**
+     * Test that the 2D query spliterator returns the same intervals as the 2D
+     * query, sequentially and in a parallel stream, on a tree with many nodes
+     *
+     * @throws IOException
+     *             If the state system file could not be created
+     * @throws StateSystemDisposedException
+     *             ss was closed
+     */
+    @Test
+    public void testQuery2DSpliterator() throws IOException, StateSystemDisposedException {
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile("test",
+                NonNullUtils.checkNotNull(File.createTempFile("2Dspliterator", "ht")), 0, START_TIME, 0);
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(backend);
+        try {
+            List<@NonNull Integer> quarks = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                quarks.add(ss.getQuarkAbsoluteAndAdd(String.valueOf(i)));
+            }
+            for (long t = START_TIME; t < 50000L; t++) {
+                ss.modifyAttribute(t, t, quarks.get((int) (t % quarks.size())));
+            }
+            ss.closeHistory(50000L);
+
+            Collection<@NonNull Integer> queried = quarks.subList(5, 15);
+            long start = 10000L;
+            long end = 40000L;
+            Set<ITmfStateInterval> expected = new HashSet<>();
+            ss.query2D(queried, start, end).forEach(expected::add);
+            assertTrue(expected.size() > (end - start) / 2);
+
+            Set<ITmfStateInterval> sequential = StreamSupport.stream(ss.query2DSpliterator(queried, start, end), false)
+                    .collect(Collectors.toSet());
+            assertEquals(expected, sequential);
+
+            List<ITmfStateInterval> parallel = StreamSupport.stream(ss.query2DSpliterator(queried, start, end), true)
+                    .collect(Collectors.toList());
+            assertEquals(expected.size(), parallel.size());
+            assertEquals(expected, new HashSet<>(parallel));
+
+            /* The size of the backend's spliterator is estimated from its nodes */
+            Spliterator<@NonNull ITmfStateInterval> spliterator = backend.query2DSpliterator(
+                    IntegerRangeCondition.forDiscreteRange(queried), TimeRangeCondition.forContinuousRange(start, end));
+            long estimate = spliterator.estimateSize();
+            assertTrue(estimate > 0 && estimate < Long.MAX_VALUE);
+            Spliterator<@NonNull ITmfStateInterval> split = spliterator.trySplit();
+            assertNotNull(split);
+            assertTrue(split.estimateSize() < estimate);
+            assertTrue(spliterator.estimateSize() < estimate);
+            spliterator.forEachRemaining(interval -> assertTrue(expected.contains(interval)));
+            assertEquals(0, spliterator.estimateSize());
+        } finally {
+            ss.dispose();
+            ss.removeFiles();
+        }
+    }
 }
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Test saving checkpoints of a state system being built and resuming its
+ * construction
+ */
+public class StateSystemCheckpointTest {
+
+    /** Time-out tests after 1 minute. */
+    @Rule
+    public TestRule globalTimeout = new Timeout(1, TimeUnit.MINUTES);
+
+    private static final String SSID = "checkpoint";
+    private static final int PROVIDER_VERSION = 1;
+    private static final int NB_EVENTS = 20000;
+    private static final int CHECKPOINT_EVENT = 10000;
+    private static final int CANCEL_EVENT = 15000;
+    private static final long EVENT_DELTA = 10;
+
+    private File fStateFile;
+    private File fReferenceFile;
+
+    /**
+     * Create the history files
+     *
+     * @throws IOException
+     *             If the files could not be created
+     */
+    @Before
+    public void setup() throws IOException {
+        fStateFile = File.createTempFile("checkpoint", ".ht");
+        fReferenceFile = File.createTempFile("reference", ".ht");
+    }
+
+    /**
+     * Delete the history files
+     */
+    @After
+    public void cleanup() {
+        fStateFile.delete();
+        fReferenceFile.delete();
+        HistoryTreeBackend.getCheckpointFile(fStateFile).delete();
+    }
+
+    /**
+     * Test resuming the construction of a history tree built in the same
+     * thread
+     *
+     * @throws Exception
+     *             Exceptions thrown by the state system
+     */
+    @Test
+    public void testResume() throws Exception {
+        resumeAndCompare(0);
+    }
+
+    /**
+     * Test resuming the construction of a history tree built in its own
+     * thread
+     *
+     * @throws Exception
+     *             Exceptions thrown by the state system
+     */
+    @Test
+    public void testResumeThreaded() throws Exception {
+        resumeAndCompare(1000);
+    }
+
+    /**
+     * Test that a checkpoint is not used with a different provider version,
+     * and that a new history file invalidates the checkpoint
+     *
+     * @throws IOException
+     *             Exceptions thrown by the state system
+     */
+    @Test
+    public void testInvalidCheckpoint() throws IOException {
+        File checkpointFile = HistoryTreeBackend.getCheckpointFile(fStateFile);
+        ITmfStateSystemBuilder ss = newStateSystem(fStateFile, 0);
+        build(ss, 0, CHECKPOINT_EVENT);
+        assertTrue(ss.saveCheckpoint(CHECKPOINT_EVENT));
+        ss.dispose();
+        assertTrue(checkpointFile.exists());
+
+        try {
+            StateSystemFactory.resumeStateSystem(SSID, fStateFile, PROVIDER_VERSION + 1, 0);
+            fail("The checkpoint of a different provider version should not be used");
+        } catch (IOException e) {
+            // Expected
+        }
+        /* The partial history cannot be reused */
+        assertFalse(checkpointFile.exists());
+        assertFalse(fStateFile.exists());
+
+        /* A new history invalidates the previous checkpoint */
+        ss = newStateSystem(fStateFile, 0);
+        build(ss, 0, CHECKPOINT_EVENT);
+        assertTrue(ss.saveCheckpoint(CHECKPOINT_EVENT));
+        ss.dispose();
+        assertTrue(checkpointFile.exists());
+        ss = newStateSystem(fStateFile, 0);
+        assertFalse(checkpointFile.exists());
+        ss.dispose();
+    }
+
+    private void resumeAndCompare(int queueSize) throws IOException, StateSystemDisposedException {
+        File checkpointFile = HistoryTreeBackend.getCheckpointFile(fStateFile);
+
+        /* Reference history, built in one go */
+        ITmfStateSystemBuilder reference = newStateSystem(fReferenceFile, queueSize);
+        build(reference, 0, NB_EVENTS);
+        reference.closeHistory(NB_EVENTS * EVENT_DELTA);
+
+        /* Save a checkpoint, build some more, then cancel */
+        ITmfStateSystemBuilder ss = newStateSystem(fStateFile, queueSize);
+        assertEquals(-1, ss.getCheckpointLocation());
+        build(ss, 0, CHECKPOINT_EVENT);
+        assertTrue(ss.saveCheckpoint(CHECKPOINT_EVENT));
+        assertEquals(CHECKPOINT_EVENT, ss.getCheckpointLocation());
+        build(ss, CHECKPOINT_EVENT, CANCEL_EVENT);
+        ss.dispose();
+        assertTrue(fStateFile.exists());
+        assertTrue(checkpointFile.exists());
+
+        /* Resume from the checkpoint and finish the construction */
+        ss = StateSystemFactory.resumeStateSystem(SSID, fStateFile, PROVIDER_VERSION, queueSize);
+        assertEquals(CHECKPOINT_EVENT, ss.getCheckpointLocation());
+        assertEquals(reference.getNbAttributes(), ss.getNbAttributes());
+        build(ss, CHECKPOINT_EVENT, NB_EVENTS);
+        ss.closeHistory(NB_EVENTS * EVENT_DELTA);
+        ss.removeCheckpoint();
+        assertFalse(checkpointFile.exists());
+        assertEquals(-1, ss.getCheckpointLocation());
+        assertSameHistory(reference, ss);
+        ss.dispose();
+
+        /* The history file can be opened like any complete history */
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendExistingFile(SSID, fStateFile, PROVIDER_VERSION);
+        ITmfStateSystem reopened = StateSystemFactory.newStateSystem(backend, false);
+        assertSameHistory(reference, reopened);
+        reopened.dispose();
+        reference.dispose();
+    }
+
+    private static ITmfStateSystemBuilder newStateSystem(File file, int queueSize) throws IOException {
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(SSID, file, PROVIDER_VERSION, 0, queueSize);
+        return StateSystemFactory.newStateSystem(backend);
+    }
+
+    /**
+     * Simulate the events between the ranks start (inclusive) and end
+     * (exclusive) of a trace
+     */
+    private static void build(ITmfStateSystemBuilder ss, int start, int end) {
+        for (int rank = start; rank < end; rank++) {
+            long t = rank * EVENT_DELTA;
+            int cpuQuark = ss.getQuarkAbsoluteAndAdd("CPUs", String.valueOf(rank % 8));
+            ss.modifyAttribute(t, rank, cpuQuark);
+            int threadQuark = ss.getQuarkAbsoluteAndAdd("Threads", String.valueOf(rank % 13), "Name");
+            ss.modifyAttribute(t, "thread" + rank % 7, threadQuark);
+            if (rank % 5 == 0) {
+                int statusQuark = ss.getQuarkAbsoluteAndAdd("Status");
+                ss.modifyAttribute(t, (rank % 2 == 0) ? null : (long) rank, statusQuark);
+            }
+        }
+    }
+
+    private static void assertSameHistory(ITmfStateSystem expected, ITmfStateSystem actual) throws StateSystemDisposedException {
+        assertEquals(expected.getNbAttributes(), actual.getNbAttributes());
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getCurrentEndTime(), actual.getCurrentEndTime());
+        for (long t = 0; t <= NB_EVENTS * EVENT_DELTA; t += 997) {
+            List<ITmfStateInterval> expectedStates = expected.queryFullState(t);
+            List<ITmfStateInterval> actualStates = actual.queryFullState(t);
+            for (int quark = 0; quark < expectedStates.size(); quark++) {
+                ITmfStateInterval expectedInterval = expectedStates.get(quark);
+                ITmfStateInterval actualInterval = actualStates.get(quark);
+                String message = "Time " + t + ", quark " + quark;
+                assertEquals(message, expected.getFullAttributePath(quark), actual.getFullAttributePath(quark));
+                assertEquals(message, expectedInterval.getStartTime(), actualInterval.getStartTime());
+                assertEquals(message, expectedInterval.getEndTime(), actualInterval.getEndTime());
+                assertEquals(message, expectedInterval.getValue(), actualInterval.getValue());
+            }
+        }
+    }
+}
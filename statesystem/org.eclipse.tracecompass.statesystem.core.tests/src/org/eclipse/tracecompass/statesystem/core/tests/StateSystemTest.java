@@ -9,16 +9,25 @@
 
 package org.eclipse.tracecompass.statesystem.core.tests;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -79,4 +88,119 @@ public class StateSystemTest {
         assertTrue(ss.waitUntilBuilt(0));
     }
 
+    /**
+     * Test that the ongoing state can be queried while the state system is
+     * being built by another thread
+     *
+     * @throws Exception
+     *             If the builder thread failed
+     */
+    @Test
+    public void testConcurrentOngoingQueries() throws Exception {
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createInMemoryBackend("Test", 0);
+        ITmfStateSystemBuilder ss = new StateSystem(backend);
+        int nbQuarks = 100;
+        long nbChanges = 10000;
+        for (int i = 0; i < nbQuarks; i++) {
+            ss.getQuarkAbsoluteAndAdd(String.valueOf(i));
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> builder = executor.submit(() -> {
+                for (long t = 1; t <= nbChanges; t++) {
+                    ss.modifyAttribute(t, t, (int) (t % nbQuarks));
+                }
+            });
+
+            while (!builder.isDone()) {
+                for (int quark = 0; quark < nbQuarks; quark++) {
+                    /* The value of an attribute is the time at which it was set */
+                    Object value = ss.queryOngoing(quark);
+                    long start = ss.getOngoingStartTime(quark);
+                    assertTrue(value == null || (Long) value <= ss.getCurrentEndTime() + nbQuarks);
+                    assertTrue(start >= 0);
+                }
+            }
+            builder.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int quark = 0; quark < nbQuarks; quark++) {
+            long expected = nbChanges - ((nbChanges - quark) % nbQuarks);
+            assertEquals(expected, ss.queryOngoing(quark));
+            assertEquals(expected, ss.getOngoingStartTime(quark));
+        }
+        ss.dispose();
+    }
+
+    /**
+     * Test the primitive modify methods, which must give the same history as
+     * the modifications with objects
+     *
+     * @throws StateSystemDisposedException
+     *             Exception thrown by the queries
+     */
+    @Test
+    public void testModifyPrimitiveAttributes() throws StateSystemDisposedException {
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createInMemoryBackend("Test", 0);
+        ITmfStateSystemBuilder ss = new StateSystem(backend);
+        int intQuark = ss.getQuarkAbsoluteAndAdd("int");
+        int longQuark = ss.getQuarkAbsoluteAndAdd("long");
+        int doubleQuark = ss.getQuarkAbsoluteAndAdd("double");
+
+        ss.modifyAttributeInt(10, 1, intQuark);
+        ss.modifyAttributeLong(10, 1L, longQuark);
+        ss.modifyAttributeDouble(10, 1.5, doubleQuark);
+        assertEquals(1, ss.queryOngoing(intQuark));
+        assertEquals(1L, ss.queryOngoing(longQuark));
+        assertEquals(1.5, ss.queryOngoing(doubleQuark));
+
+        /* The same value, given as an object or not, continues the state */
+        ss.modifyAttribute(20, 1, intQuark);
+        ss.modifyAttributeLong(20, 1L, longQuark);
+        ss.modifyAttribute(20, 1.5, doubleQuark);
+        assertEquals(10, ss.getOngoingStartTime(intQuark));
+        assertEquals(10, ss.getOngoingStartTime(longQuark));
+        assertEquals(10, ss.getOngoingStartTime(doubleQuark));
+
+        ss.modifyAttributeInt(30, 2, intQuark);
+        ss.modifyAttribute(30, 2L, longQuark);
+        ss.modifyAttributeDouble(30, -0.0, doubleQuark);
+
+        /* The types must still match */
+        try {
+            ss.modifyAttributeLong(40, 3L, intQuark);
+            fail("Long value in an integer attribute");
+        } catch (StateValueTypeException e) {
+            /* Expected */
+        }
+        try {
+            ss.modifyAttributeInt(40, 3, doubleQuark);
+            fail("Integer value in a double attribute");
+        } catch (StateValueTypeException e) {
+            /* Expected */
+        }
+        ss.modifyAttribute(40, (Object) null, intQuark);
+        ss.closeHistory(50);
+
+        List<ITmfStateInterval> intervals = ss.queryFullState(25);
+        assertInterval(10, 29, 1, intervals.get(intQuark));
+        assertInterval(10, 29, 1L, intervals.get(longQuark));
+        assertInterval(10, 29, 1.5, intervals.get(doubleQuark));
+        intervals = ss.queryFullState(35);
+        assertInterval(30, 39, 2, intervals.get(intQuark));
+        assertInterval(30, 50, 2L, intervals.get(longQuark));
+        assertInterval(30, 50, -0.0, intervals.get(doubleQuark));
+        assertInterval(40, 50, null, ss.querySingleState(45, intQuark));
+        ss.dispose();
+    }
+
+    private static void assertInterval(long start, long end, Object value, ITmfStateInterval interval) {
+        assertEquals(start, interval.getStartTime());
+        assertEquals(end, interval.getEndTime());
+        assertEquals(value, interval.getValue());
+    }
+
 }
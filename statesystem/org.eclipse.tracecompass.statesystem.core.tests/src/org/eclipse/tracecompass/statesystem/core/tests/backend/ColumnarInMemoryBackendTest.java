@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.ColumnarInMemoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.junit.Test;
+
+/**
+ * Test cases for the columnar in-memory backend
+ */
+public class ColumnarInMemoryBackendTest extends StateHistoryBackendTestBase {
+
+    private static final String SSID = "test-ss";
+    private static final int NB_ATTRIBUTES = 10;
+    private static final int NB_INTERVALS = 1000;
+
+    @Override
+    protected IStateHistoryBackend getBackendForBuilding(long startTime) {
+        return StateHistoryBackendFactory.createColumnarInMemoryBackend(SSID, startTime);
+    }
+
+    /**
+     * Test that the backend returns the same intervals as the original
+     * in-memory backend, including values of each type and intervals
+     * inserted out of order
+     *
+     * @throws StateSystemDisposedException
+     *             Not expected
+     */
+    @Test
+    public void testSameAsInMemory() throws StateSystemDisposedException {
+        IStateHistoryBackend reference = StateHistoryBackendFactory.createInMemoryBackend(SSID, 0);
+        IStateHistoryBackend backend = getBackendForBuilding(0);
+        fill(reference);
+        fill(backend);
+        /* Past states inserted after the others */
+        reference.insertPastState(0, 9, NB_ATTRIBUTES, "past");
+        backend.insertPastState(0, 9, NB_ATTRIBUTES, "past");
+        assertSameQueries(reference, backend);
+    }
+
+    /**
+     * Test intervals inserted in random order, so the columns of each
+     * attribute must be sorted before they are queried
+     *
+     * @throws StateSystemDisposedException
+     *             Not expected
+     */
+    @Test
+    public void testShuffled() throws StateSystemDisposedException {
+        IStateHistoryBackend reference = StateHistoryBackendFactory.createInMemoryBackend(SSID, 0);
+        IStateHistoryBackend backend = getBackendForBuilding(0);
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < NB_INTERVALS; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(42));
+        for (int i : order) {
+            for (int attribute = 0; attribute < NB_ATTRIBUTES; attribute++) {
+                long start = i * 100L + attribute;
+                reference.insertPastState(start, start + 99, attribute, i);
+                backend.insertPastState(start, start + 99, attribute, i);
+            }
+        }
+        reference.insertPastState(0, 9, NB_ATTRIBUTES, "past");
+        backend.insertPastState(0, 9, NB_ATTRIBUTES, "past");
+        assertSameQueries(reference, backend);
+    }
+
+    /**
+     * Test moving the intervals to a history tree when the memory threshold is
+     * crossed
+     *
+     * @throws IOException
+     *             If the history file could not be created
+     * @throws StateSystemDisposedException
+     *             Not expected
+     */
+    @Test
+    public void testSpill() throws IOException, StateSystemDisposedException {
+        File file = File.createTempFile("columnar", ".ht");
+        assertTrue(file.delete());
+        IStateHistoryBackend reference = StateHistoryBackendFactory.createInMemoryBackend(SSID, 0);
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createColumnarInMemoryBackend(SSID, 0, file, 1, 20000);
+        try {
+            assertFalse(((ColumnarInMemoryBackend) backend).isSpilled());
+            fill(reference);
+            fill(backend);
+            assertTrue(((ColumnarInMemoryBackend) backend).isSpilled());
+            assertTrue(file.exists());
+            backend.finishedBuilding(backend.getEndTime());
+            assertSameQueries(reference, backend);
+        } finally {
+            backend.dispose();
+            backend.removeFiles();
+        }
+    }
+
+    private static void fill(IStateHistoryBackend backend) {
+        for (int i = 0; i < NB_INTERVALS; i++) {
+            for (int attribute = 0; attribute < NB_ATTRIBUTES; attribute++) {
+                long start = i * 100L + attribute;
+                long end = start + 99;
+                Object value;
+                switch (attribute % 5) {
+                case 0:
+                    value = i;
+                    break;
+                case 1:
+                    value = (long) -i;
+                    break;
+                case 2:
+                    value = i / 3.0;
+                    break;
+                case 3:
+                    value = "value" + (i % 7);
+                    break;
+                default:
+                    value = null;
+                    break;
+                }
+                backend.insertPastState(start, end, attribute, value);
+            }
+        }
+    }
+
+    private static void assertSameQueries(IStateHistoryBackend expected, IStateHistoryBackend actual) throws StateSystemDisposedException {
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getEndTime(), actual.getEndTime());
+        int nbAttributes = NB_ATTRIBUTES + 1;
+        for (long t = expected.getStartTime(); t <= expected.getEndTime(); t += 37) {
+            List<@Nullable ITmfStateInterval> expectedStates = new ArrayList<>();
+            List<@Nullable ITmfStateInterval> actualStates = new ArrayList<>();
+            for (int i = 0; i < nbAttributes; i++) {
+                expectedStates.add(null);
+                actualStates.add(null);
+            }
+            expected.doQuery(expectedStates, t);
+            actual.doQuery(actualStates, t);
+            for (int quark = 0; quark < nbAttributes; quark++) {
+                assertSameInterval(expectedStates.get(quark), actualStates.get(quark));
+                assertSameInterval(expected.doSingularQuery(t, quark), actual.doSingularQuery(t, quark));
+            }
+        }
+
+        IntegerRangeCondition quarks = IntegerRangeCondition.forDiscreteRange(Arrays.asList(1, 3, 4, 7));
+        TimeRangeCondition times = TimeRangeCondition.forContinuousRange(5000, 25000);
+        Set<String> expectedIntervals = new HashSet<>();
+        expected.query2D(quarks, times).forEach(interval -> expectedIntervals.add(toString(interval)));
+        Set<String> actualIntervals = new HashSet<>();
+        actual.query2D(quarks, times).forEach(interval -> assertTrue(actualIntervals.add(toString(interval))));
+        assertFalse(expectedIntervals.isEmpty());
+        assertEquals(expectedIntervals, actualIntervals);
+    }
+
+    private static String toString(ITmfStateInterval interval) {
+        return interval.getAttribute() + ":[" + interval.getStartTime() + ", " + interval.getEndTime() + "] " + interval.getValue();
+    }
+
+    private static void assertSameInterval(@Nullable ITmfStateInterval expected, @Nullable ITmfStateInterval actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getEndTime(), actual.getEndTime());
+        assertEquals(expected.getAttribute(), actual.getAttribute());
+        assertEquals(expected.getValue(), actual.getValue());
+    }
+}
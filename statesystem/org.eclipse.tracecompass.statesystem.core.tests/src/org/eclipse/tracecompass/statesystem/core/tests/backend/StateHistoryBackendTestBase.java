@@ -438,6 +438,67 @@ public abstract class StateHistoryBackendTestBase {
         }
     }
 
+    /**
+     * Test inserting intervals with the primitive value methods, the values
+     * must be read back with the same types as if they were inserted as
+     * objects
+     */
+    @Test
+    public void testInsertPrimitiveStateValues() {
+        long startTime = 10;
+        long timeStep = 5;
+        int intQuark = 0;
+        int longQuark = 1;
+        int doubleQuark = 2;
+        int nbAttribs = 3;
+
+        try {
+            IStateHistoryBackend backend = getBackendForBuilding(startTime);
+            assertNotNull(backend);
+
+            long firstEnd = startTime + timeStep;
+            long nextStart = firstEnd + 1;
+            long endTime = nextStart + timeStep;
+
+            backend.insertPastStateInt(startTime, firstEnd, intQuark, (int) INT_VAL1);
+            backend.insertPastStateLong(startTime, firstEnd, longQuark, (long) LONG_VAL1);
+            backend.insertPastStateDouble(startTime, firstEnd, doubleQuark, (double) DOUBLE_VAL1);
+            backend.insertPastStateInt(nextStart, endTime, intQuark, (int) INT_VAL2);
+            backend.insertPastStateLong(nextStart, endTime, longQuark, (long) LONG_VAL2);
+            backend.insertPastStateDouble(nextStart, endTime, doubleQuark, (double) DOUBLE_VAL2);
+            backend.finishedBuilding(endTime);
+
+            IStateHistoryBackend backendQuery = getBackendForQuerying(backend);
+            List<@Nullable ITmfStateInterval> intervals = prepareIntervalList(nbAttribs);
+
+            backendQuery.doQuery(intervals, startTime);
+            ITmfStateInterval interval = intervals.get(intQuark);
+            assertNotNull(interval);
+            assertEquals("Int value", INT_VAL1, interval.getValue());
+            interval = intervals.get(longQuark);
+            assertNotNull(interval);
+            assertEquals("Long value", LONG_VAL1, interval.getValue());
+            interval = intervals.get(doubleQuark);
+            assertNotNull(interval);
+            assertEquals("Double value", DOUBLE_VAL1, interval.getValue());
+
+            backendQuery.doQuery(intervals, endTime);
+            interval = intervals.get(intQuark);
+            assertNotNull(interval);
+            assertEquals("Int value", INT_VAL2, interval.getValue());
+            assertEquals(nextStart, interval.getStartTime());
+            interval = intervals.get(longQuark);
+            assertNotNull(interval);
+            assertEquals("Long value", LONG_VAL2, interval.getValue());
+            interval = intervals.get(doubleQuark);
+            assertNotNull(interval);
+            assertEquals("Double value", DOUBLE_VAL2, interval.getValue());
+
+        } catch (TimeRangeException | IOException | StateSystemDisposedException e) {
+            fail(e.getMessage());
+        }
+    }
+
     /**
      * Test inserting an interval before the start of the backend
      */
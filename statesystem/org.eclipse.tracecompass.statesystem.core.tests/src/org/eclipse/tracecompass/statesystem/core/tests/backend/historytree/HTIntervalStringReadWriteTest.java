@@ -178,5 +178,17 @@ public class HTIntervalStringReadWriteTest {
         }
 
         assertEquals(interval, readInterval);
+
+        /* Do the same with the compact format, in a buffer */
+        long nodeStart = 0;
+        int compactSize = interval.getCompactSizeOnDisk(nodeStart);
+        ByteBuffer bb = ByteBuffer.allocate(compactSize);
+        bb.order(ByteOrder.LITTLE_ENDIAN);
+        interval.writeCompactInterval(bb, nodeStart);
+        assertEquals(compactSize, bb.position());
+        bb.flip();
+        readInterval = HTInterval.readCompactFrom(bb, nodeStart);
+        assertEquals(interval, readInterval);
+        assertEquals(interval.getSizeOnDisk(), readInterval.getSizeOnDisk());
     }
 }
@@ -11,17 +11,25 @@ package org.eclipse.tracecompass.statesystem.core.tests.backend.historytree;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeFactory;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.IHistoryTree;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.tests.stubs.backend.HistoryTreeClassicStub;
@@ -29,6 +37,11 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Range;
+
 /**
  * Tests the history tree
  *
@@ -89,11 +102,16 @@ public class HistoryTreeTest {
         try {
             File newFile = fTempFile;
             assertNotNull(newFile);
+            /*
+             * Use fixed-size intervals, so that the number of intervals that
+             * fit in a node is predictable
+             */
             HTConfig config = new HTConfig(newFile,
                     BLOCK_SIZE,
                     maxChildren, /* Number of children */
                     1, /* Provider version */
-                    1); /* Start time */
+                    1, /* Start time */
+                    HTConfig.FILE_VERSION_FIXED_INTERVALS);
             ht = new HistoryTreeClassicStub(config);
 
         } catch (IOException e) {
@@ -320,4 +338,137 @@ public class HistoryTreeTest {
         assertEquals( 5, branch.get(2).getSequenceNumber());
         assertEquals( 4, branch.get(2).getParentSequenceNumber());
     }
+
+    /**
+     * Test that trees written with the fixed-size, the compact and the string
+     * dictionary intervals formats can be read back, and that each format uses
+     * less space than the previous one
+     *
+     * @throws IOException
+     *             If the test fails
+     */
+    @Test
+    public void testFileVersions() throws IOException {
+        List<HTInterval> intervals = ImmutableList.of(
+                new HTInterval(1, 5, 0, TmfStateValue.nullValue()),
+                new HTInterval(2, 300, 1, TmfStateValue.newValueInt(-7)),
+                new HTInterval(3, 100000, 200, TmfStateValue.newValueLong(Long.MIN_VALUE)),
+                new HTInterval(150, 151, 70000, TmfStateValue.newValueDouble(1.5)),
+                new HTInterval(1000, 1000000, 3, STRING_VALUE));
+
+        int fixedFreeSpace = writeAndReadTree(HTConfig.FILE_VERSION_FIXED_INTERVALS, intervals);
+        int compactFreeSpace = writeAndReadTree(HTConfig.FILE_VERSION_COMPACT_INTERVALS, intervals);
+        assertTrue(compactFreeSpace > fixedFreeSpace);
+        int dictionaryFreeSpace = writeAndReadTree(HTConfig.FILE_VERSION_DICTIONARY_STRINGS, intervals);
+        assertTrue(dictionaryFreeSpace > compactFreeSpace);
+    }
+
+    /**
+     * Test that the string values written with the dictionary format are read
+     * back as the same instance, in all the nodes
+     *
+     * @throws IOException
+     *             If the test fails
+     */
+    @Test
+    public void testStringDictionary() throws IOException {
+        File file = fTempFile;
+        assertNotNull(file);
+        HTConfig config = new HTConfig(file, BLOCK_SIZE, 3, 1, 1, HTConfig.FILE_VERSION_DICTIONARY_STRINGS);
+        HistoryTreeClassicStub ht = new HistoryTreeClassicStub(config);
+        long start = 1;
+        for (int i = 0; i < 1000; i++) {
+            /* The concatenation creates new instances of a few strings */
+            ht.insertInterval(new HTInterval(start, start + 9, i % 10, TmfStateValue.newValueString("value" + (i % 3))));
+            start += 10;
+        }
+        ht.closeTree(start);
+        ht.closeFile();
+
+        IHistoryTree readTree = HistoryTreeFactory.createFromFile(file.toPath(), 1);
+        try {
+            assertTrue(readTree.getNodeCount() > 1);
+            Map<Object, Object> instances = new HashMap<>();
+            for (int i = 0; i < readTree.getNodeCount(); i++) {
+                HTNode node = readTree.readNode(i);
+                for (HTInterval interval : node.iterable2D(IntegerRangeCondition.forDiscreteRange(ContiguousSet.create(Range.closed(0, 9), DiscreteDomain.integers())),
+                        TimeRangeCondition.forContinuousRange(0, start))) {
+                    Object value = interval.getValue();
+                    assertEquals("value" + ((interval.getStartTime() / 10) % 3), value);
+                    assertSame(instances.computeIfAbsent(value, v -> v), value);
+                }
+            }
+            assertEquals(3, instances.size());
+        } finally {
+            readTree.closeFile();
+        }
+    }
+
+    private int writeAndReadTree(int fileVersion, List<HTInterval> intervals) throws IOException {
+        File file = fTempFile;
+        assertNotNull(file);
+        HTConfig config = new HTConfig(file, BLOCK_SIZE, 3, 1, 1, fileVersion);
+        HistoryTreeClassicStub ht = new HistoryTreeClassicStub(config);
+        intervals.forEach(ht::insertInterval);
+        ht.closeTree(1000000);
+        ht.closeFile();
+
+        IHistoryTree readTree = HistoryTreeFactory.createFromFile(file.toPath(), 1);
+        try {
+            assertEquals(1, readTree.getNodeCount());
+            HTNode root = readTree.readNode(0);
+            for (HTInterval interval : intervals) {
+                assertEquals(interval, root.getRelevantInterval(interval.getAttribute(), interval.getStartTime()));
+            }
+            return root.getNodeFreeSpace();
+        } finally {
+            readTree.closeFile();
+        }
+    }
+
+    /**
+     * Test that the nodes written while the tree is being built can be read
+     * back, during the build and after the file is reopened, even when more
+     * nodes are waiting to be written than the writers can keep up with.
+     *
+     * @throws IOException
+     *             If the file could not be read
+     */
+    @Test
+    public void testManyNodesWrittenAndRead() throws IOException {
+        File file = fTempFile;
+        assertNotNull(file);
+        HistoryTreeClassicStub ht = setupSmallTree(10);
+
+        long start = 1;
+        while (ht.getNodeCount() < 500) {
+            start = fillValues(ht, STRING_VALUE, 50, start);
+            /* Read all the nodes, some may not be on disk yet */
+            for (int i = 0; i < ht.getNodeCount(); i++) {
+                assertEquals(i, ht.readNode(i).getSequenceNumber());
+            }
+        }
+        ht.closeTree(start);
+
+        int nodeCount = ht.getNodeCount();
+        List<HTNode> nodes = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(ht.readNode(i));
+        }
+        ht.closeFile();
+
+        IHistoryTree readTree = HistoryTreeFactory.createFromFile(file.toPath(), 1);
+        try {
+            assertEquals(nodeCount, readTree.getNodeCount());
+            for (HTNode expected : nodes) {
+                HTNode actual = readTree.readNode(expected.getSequenceNumber());
+                assertEquals(expected.getNodeStart(), actual.getNodeStart());
+                assertEquals(expected.getNodeEnd(), actual.getNodeEnd());
+                assertEquals(expected.getNodeFreeSpace(), actual.getNodeFreeSpace());
+                assertEquals(expected.getParentSequenceNumber(), actual.getParentSequenceNumber());
+            }
+        } finally {
+            readTree.closeFile();
+        }
+    }
 }
@@ -26,10 +26,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
@@ -57,6 +60,9 @@ public final class AttributeTree {
     private final List<Attribute> attributeList;
     private final Attribute attributeTreeRoot;
 
+    /* The distinct names of the attributes, see internName() */
+    private final Map<@NonNull String, @NonNull String> fNames = new HashMap<>();
+
     /**
      * Standard constructor, create a new empty Attribute Tree
      *
@@ -125,28 +131,42 @@ public final class AttributeTree {
         try (FileOutputStream fos = new FileOutputStream(file, true);
                 FileChannel fc = fos.getChannel();) {
             fc.position(pos);
-            try (ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-
-                /* Write the almost-magic number */
-                oos.writeInt(ATTRIB_TREE_MAGIC_NUMBER);
-
-                /* Compute the serialized list of attributes and write it */
-                List<String[]> list = new ArrayList<>(attributeList.size());
-                String[] prevFullAttribute = null, curFullAttribute = null, curEncodedAttribute = null;
-                for (Attribute entry : this.attributeList) {
-                    curFullAttribute = entry.getFullAttribute();
-                    curEncodedAttribute = encodeFullAttribute(prevFullAttribute, entry.getFullAttribute());
-                    list.add(curEncodedAttribute);
-                    prevFullAttribute = curFullAttribute;
-                }
-                oos.writeObject(list);
-            }
+            writeSelf(fos);
         } catch (IOException e) {
             e.printStackTrace();
         }
 
     }
 
+    /**
+     * Tell the Attribute Tree to write itself in an output stream, which can
+     * then be read with {@link #AttributeTree(StateSystem, FileInputStream)}.
+     * The stream is flushed, but not closed.
+     *
+     * @param os
+     *            The stream to write to
+     * @throws IOException
+     *             If there was a problem writing to the stream
+     */
+    public synchronized void writeSelf(OutputStream os) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(os);
+
+        /* Write the almost-magic number */
+        oos.writeInt(ATTRIB_TREE_MAGIC_NUMBER);
+
+        /* Compute the serialized list of attributes and write it */
+        List<String[]> list = new ArrayList<>(attributeList.size());
+        String[] prevFullAttribute = null, curFullAttribute = null, curEncodedAttribute = null;
+        for (Attribute entry : this.attributeList) {
+            curFullAttribute = entry.getFullAttribute();
+            curEncodedAttribute = encodeFullAttribute(prevFullAttribute, entry.getFullAttribute());
+            list.add(curEncodedAttribute);
+            prevFullAttribute = curFullAttribute;
+        }
+        oos.writeObject(list);
+        oos.flush();
+    }
+
     /**
      * Avoid repeating path elements that are the same from one attribute to the
      * next, and replace identical path elements with "*".
@@ -263,10 +283,6 @@ public final class AttributeTree {
      *             If the starting node quark is out of range
      */
     public synchronized int getQuarkAndAdd(int startingNodeQuark, String... subPath) {
-        // FIXME synchronized here is probably quite costly... maybe only locking
-        // the "for" would be enough?
-
-        Attribute nextNode = null;
         Attribute prevNode;
 
         /* Get the "starting node" */
@@ -276,30 +292,32 @@ public final class AttributeTree {
             prevNode = attributeList.get(startingNodeQuark);
         }
 
-        int knownQuark = prevNode.getSubAttributeQuark(subPath);
-        if (knownQuark == INVALID_ATTRIBUTE) {
-            /*
-             * The attribute was not in the table previously, and we want to add
-             * it
-             */
-            for (String curDirectory : subPath) {
-                nextNode = prevNode.getSubAttributeNode(curDirectory);
-                if (nextNode == null) {
-                    /* This is where we need to start adding */
-                    nextNode = new Attribute(prevNode, checkNotNull(curDirectory), attributeList.size());
-                    prevNode.addSubAttribute(nextNode);
-                    attributeList.add(nextNode);
-                    ss.addEmptyAttribute();
-                }
-                prevNode = nextNode;
-            }
-            return attributeList.size() - 1;
-        }
         /*
-         * The attribute was already existing, return the quark of that
-         * attribute
+         * Walk down the path once, and start adding attributes from the first
+         * element that does not exist.
          */
-        return knownQuark;
+        for (String curDirectory : subPath) {
+            Attribute nextNode = prevNode.getSubAttributeNode(curDirectory);
+            if (nextNode == null) {
+                nextNode = new Attribute(prevNode, internName(checkNotNull(curDirectory)), attributeList.size());
+                prevNode.addSubAttribute(nextNode);
+                attributeList.add(nextNode);
+                ss.addEmptyAttribute();
+            }
+            prevNode = nextNode;
+        }
+        return prevNode.getQuark();
+    }
+
+    /**
+     * Get a shared instance of an attribute name. The same names are used for
+     * the sub-attributes of many attributes (the "Status" of every thread, for
+     * example), so only one copy of each is kept in memory, which also makes
+     * the comparisons of the names in lookups cheaper.
+     */
+    private @NonNull String internName(@NonNull String name) {
+        String interned = fNames.putIfAbsent(name, name);
+        return (interned == null ? name : interned);
     }
 
     /**
@@ -13,19 +13,38 @@
 
 package org.eclipse.tracecompass.internal.statesystem.core;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
@@ -33,6 +52,10 @@ import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils.ScopeLog;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTQuery2DSpliterator;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.ThreadedHistoryTreeBackend;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
@@ -69,6 +92,9 @@ public class StateSystem implements ITmfStateSystemBuilder {
 
     private static final @NonNull Logger LOGGER = TraceCompassLog.getLogger(StateSystem.class);
 
+    private static final int CHECKPOINT_MAGIC_NUMBER = 0x05FFC4EC;
+    private static final int CHECKPOINT_VERSION = 1;
+
     /* References to the inner structures */
     private final AttributeTree attributeTree;
     private final TransientState transState;
@@ -80,6 +106,9 @@ public class StateSystem implements ITmfStateSystemBuilder {
     private boolean buildCancelled = false;
     private boolean isDisposed = false;
 
+    /* Location of the last checkpoint saved or resumed from */
+    private volatile long fCheckpointLocation = -1;
+
     /**
      * New-file constructor. For when you build a state system with a new file,
      * or if the back-end does not require a file on disk.
@@ -119,6 +148,71 @@ public class StateSystem implements ITmfStateSystemBuilder {
         }
     }
 
+    /**
+     * Resume constructor, to continue building a history tree from the last
+     * checkpoint saved with {@link #saveCheckpoint(long)}.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param stateFile
+     *            The history file being built
+     * @param providerVersion
+     *            Expected version of of the state provider
+     * @param queueSize
+     *            The size of the interval insertion queue of the history tree,
+     *            or 0 to insert the intervals in the same thread
+     * @throws IOException
+     *             If there is no valid checkpoint for this history file. If
+     *             the checkpoint exists but cannot be used, it is deleted
+     *             along with the history file.
+     */
+    public StateSystem(@NonNull String ssid, @NonNull File stateFile, int providerVersion, int queueSize)
+            throws IOException {
+        File checkpointFile = HistoryTreeBackend.getCheckpointFile(stateFile);
+        if (!checkpointFile.exists()) {
+            throw new FileNotFoundException("No checkpoint for " + stateFile.getName()); //$NON-NLS-1$
+        }
+        try (FileInputStream fis = new FileInputStream(checkpointFile)) {
+            /*
+             * Do not buffer the input, the attribute tree is read from the
+             * file stream itself at the end.
+             */
+            DataInputStream in = new DataInputStream(fis);
+            if (in.readInt() != CHECKPOINT_MAGIC_NUMBER || in.readInt() != CHECKPOINT_VERSION) {
+                throw new IOException("Invalid state system checkpoint"); //$NON-NLS-1$
+            }
+            long location = in.readLong();
+
+            HistoryTreeBackend htBackend = (queueSize > 0) ?
+                    new ThreadedHistoryTreeBackend(ssid, stateFile, providerVersion, in, queueSize) :
+                    new HistoryTreeBackend(ssid, stateFile, providerVersion, in);
+            this.backend = htBackend;
+            this.transState = new TransientState(htBackend);
+            try {
+                long latestTime = in.readLong();
+                List<@NonNull ITmfStateInterval> ongoing = readOngoingState(in);
+                /* Reading the attribute tree adds empty entries to the transient state */
+                this.attributeTree = new AttributeTree(this, fis);
+                if (ongoing.size() != attributeTree.getNbAttributes()) {
+                    throw new IOException("Inconsistent state system checkpoint"); //$NON-NLS-1$
+                }
+                transState.restoreOngoingState(ongoing, latestTime);
+            } catch (IOException | RuntimeException e) {
+                htBackend.dispose();
+                throw e;
+            }
+            fCheckpointLocation = location;
+        } catch (IOException | RuntimeException e) {
+            /*
+             * The partial history cannot be resumed and is not complete,
+             * delete it so that it is not reused.
+             */
+            Files.deleteIfExists(checkpointFile.toPath());
+            Files.deleteIfExists(stateFile.toPath());
+            throw e;
+        }
+    }
+
     @Override
     public String getSSID() {
         return backend.getSSID();
@@ -245,6 +339,88 @@ public class StateSystem implements ITmfStateSystemBuilder {
         finishedLatch.countDown(); /* Mark the history as finished building */
     }
 
+    @Override
+    public synchronized boolean saveCheckpoint(long location) throws IOException {
+        if (!(backend instanceof HistoryTreeBackend) || !transState.isActive()) {
+            return false;
+        }
+        HistoryTreeBackend htBackend = (HistoryTreeBackend) backend;
+        File checkpointFile = htBackend.getCheckpointFile();
+        File tmpFile = new File(checkpointFile.getPath() + ".tmp"); //$NON-NLS-1$
+        try (ScopeLog log = new ScopeLog(LOGGER, Level.FINE, "StateSystem:SaveCheckpoint", //$NON-NLS-1$
+                "ssid", getSSID(), "location", location); //$NON-NLS-1$ //$NON-NLS-2$
+                FileOutputStream fos = new FileOutputStream(tmpFile)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeInt(CHECKPOINT_MAGIC_NUMBER);
+            out.writeInt(CHECKPOINT_VERSION);
+            out.writeLong(location);
+            htBackend.writeCheckpoint(out);
+            out.writeLong(transState.getLatestTime());
+            writeOngoingState(out);
+            getAttributeTree().writeSelf(out);
+            out.flush();
+            /* The checkpoint must be complete on disk before it replaces the previous one */
+            fos.getFD().sync();
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpFile.toPath());
+            throw e;
+        }
+        Files.move(tmpFile.toPath(), checkpointFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fCheckpointLocation = location;
+        return true;
+    }
+
+    @Override
+    public long getCheckpointLocation() {
+        return fCheckpointLocation;
+    }
+
+    @Override
+    public void removeCheckpoint() {
+        if (backend instanceof HistoryTreeBackend) {
+            ((HistoryTreeBackend) backend).removeCheckpoint();
+        }
+        fCheckpointLocation = -1;
+    }
+
+    /**
+     * Write the ongoing state of every attribute, as intervals starting and
+     * ending at the start time of the ongoing state.
+     */
+    private void writeOngoingState(DataOutputStream out) throws IOException {
+        int nbAttributes = getNbAttributes();
+        List<HTInterval> intervals = new ArrayList<>(nbAttributes);
+        int size = 0;
+        for (int quark = 0; quark < nbAttributes; quark++) {
+            long start = transState.getOngoingStartTime(quark);
+            HTInterval interval = new HTInterval(start, start, quark, transState.getOngoingStateValue(quark));
+            intervals.add(interval);
+            size += interval.getSizeOnDisk();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        for (HTInterval interval : intervals) {
+            interval.writeInterval(buffer);
+        }
+        out.writeInt(nbAttributes);
+        out.writeInt(size);
+        out.write(buffer.array());
+    }
+
+    private static List<@NonNull ITmfStateInterval> readOngoingState(DataInputStream in) throws IOException {
+        int nbAttributes = in.readInt();
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        List<@NonNull ITmfStateInterval> intervals = new ArrayList<>(nbAttributes);
+        for (int i = 0; i < nbAttributes; i++) {
+            intervals.add(HTInterval.readFrom(buffer));
+        }
+        return intervals;
+    }
+
     // --------------------------------------------------------------------------
     // Quark-retrieving methods
     // --------------------------------------------------------------------------
@@ -376,6 +552,24 @@ public class StateSystem implements ITmfStateSystemBuilder {
         transState.processStateChange(t, value, attributeQuark);
     }
 
+    @Override
+    public void modifyAttributeInt(long t, int value, int attributeQuark)
+            throws TimeRangeException, StateValueTypeException {
+        transState.processStateChangeInt(t, value, attributeQuark);
+    }
+
+    @Override
+    public void modifyAttributeLong(long t, long value, int attributeQuark)
+            throws TimeRangeException, StateValueTypeException {
+        transState.processStateChangeLong(t, value, attributeQuark);
+    }
+
+    @Override
+    public void modifyAttributeDouble(long t, double value, int attributeQuark)
+            throws TimeRangeException, StateValueTypeException {
+        transState.processStateChangeDouble(t, value, attributeQuark);
+    }
+
     @Deprecated
     @Override
     public void pushAttribute(long t, @NonNull ITmfStateValue value, int attributeQuark)
@@ -416,7 +610,7 @@ public class StateSystem implements ITmfStateSystemBuilder {
         stackDepth++;
         subAttributeQuark = getQuarkRelativeAndAdd(attributeQuark, String.valueOf(stackDepth));
 
-        modifyAttribute(t, stackDepth, attributeQuark);
+        modifyAttributeInt(t, stackDepth, attributeQuark);
         modifyAttribute(t, value, subAttributeQuark);
     }
 
@@ -464,14 +658,12 @@ public class StateSystem implements ITmfStateSystemBuilder {
         Object poppedValue = queryOngoing(subAttributeQuark);
 
         /* Update the state value of the stack-attribute */
-        Integer nextSV;
         if (--stackDepth == 0) {
             /* Store a null state value */
-            nextSV = null;
+            modifyAttribute(t, (Object) null, attributeQuark);
         } else {
-            nextSV = stackDepth;
+            modifyAttributeInt(t, stackDepth, attributeQuark);
         }
-        modifyAttribute(t, nextSV, attributeQuark);
 
         /* Delete the sub-attribute that contained the user's state value */
         removeAttribute(t, subAttributeQuark);
@@ -591,6 +783,173 @@ public class StateSystem implements ITmfStateSystemBuilder {
         }
     }
 
+    @Override
+    public List<List<ITmfStateInterval>> queryFullStates(long[] times)
+            throws TimeRangeException, StateSystemDisposedException {
+        if (isDisposed) {
+            throw new StateSystemDisposedException();
+        }
+
+        try (ScopeLog log = new ScopeLog(LOGGER, Level.FINER, "StateSystem:FullSweepQuery", //$NON-NLS-1$
+                "ssid", getSSID(), "nbTimes", times.length);) { //$NON-NLS-1$ //$NON-NLS-2$
+
+            final int nbAttr = getNbAttributes();
+            int[] quarks = new int[nbAttr];
+            Arrays.setAll(quarks, i -> i);
+
+            ITmfStateInterval[][] states = checkNotNull(sweepQuery(quarks, times, null));
+            List<List<ITmfStateInterval>> fullStates = new ArrayList<>(times.length);
+            for (ITmfStateInterval[] state : states) {
+                fullStates.add(Arrays.asList(state));
+            }
+            return fullStates;
+        }
+    }
+
+    @Override
+    public void queryStates(Collection<Integer> quarks, long[] times, ObjIntConsumer<ITmfStateInterval> consumer, @Nullable IProgressMonitor monitor)
+            throws TimeRangeException, StateSystemDisposedException {
+        if (isDisposed) {
+            throw new StateSystemDisposedException();
+        }
+
+        try (ScopeLog log = new ScopeLog(LOGGER, Level.FINER, "StateSystem:SweepQuery", //$NON-NLS-1$
+                "ssid", getSSID(), "nbTimes", times.length, "nbQuarks", quarks.size());) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+            int[] sortedQuarks = quarks.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+            ITmfStateInterval[][] states = sweepQuery(sortedQuarks, times, monitor);
+            if (states == null) {
+                return;
+            }
+            for (int i = 0; i < states.length; i++) {
+                if (monitor != null && monitor.isCanceled()) {
+                    return;
+                }
+                for (ITmfStateInterval interval : states[i]) {
+                    consumer.accept(interval, i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the states of attributes at many timestamps with a single 2D query,
+     * so that each node of the history is read once, instead of once per
+     * timestamp.
+     *
+     * @param quarks
+     *            The quarks, sorted and distinct
+     * @param times
+     *            The timestamps, sorted
+     * @param monitor
+     *            The progress monitor, can be null
+     * @return The intervals, indexed by timestamp index, then by the index of
+     *         the quark in the quarks array, or <code>null</code> if the
+     *         monitor was cancelled
+     */
+    private ITmfStateInterval @Nullable [][] sweepQuery(int[] quarks, long[] times, @Nullable IProgressMonitor monitor) throws TimeRangeException {
+        for (int i = 1; i < times.length; i++) {
+            if (times[i] < times[i - 1]) {
+                throw new IllegalArgumentException("The timestamps of a sweep query must be sorted"); //$NON-NLS-1$
+            }
+        }
+
+        ITmfStateInterval[][] states = new ITmfStateInterval[times.length][quarks.length];
+        if (times.length == 0 || quarks.length == 0) {
+            return states;
+        }
+        if (times[0] < getStartTime() || times[times.length - 1] > getCurrentEndTime()) {
+            throw new TimeRangeException(String.format("%s Times:%d-%d, Start:%d, End:%d", //$NON-NLS-1$
+                    getSSID(), times[0], times[times.length - 1], getStartTime(), getCurrentEndTime()));
+        }
+        if (quarks[0] < 0 || quarks[quarks.length - 1] >= getNbAttributes()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        /*
+         * If we are currently building the history, the ongoing states apply
+         * to all the timestamps after their start time. They are overwritten
+         * by the backend's intervals, like in queryFullState().
+         */
+        if (transState.isActive()) {
+            long lastTime = times[times.length - 1];
+            for (int q = 0; q < quarks.length; q++) {
+                ITmfStateInterval ongoing = transState.getIntervalAt(lastTime, quarks[q]);
+                if (ongoing != null) {
+                    for (int i = firstIndexAtOrAfter(times, ongoing.getStartTime()); i < times.length; i++) {
+                        states[i][q] = ongoing;
+                    }
+                }
+            }
+        }
+
+        /* The time condition requires distinct timestamps */
+        List<@NonNull Long> distinctTimes = new ArrayList<>(times.length);
+        for (int i = 0; i < times.length; i++) {
+            if (i == 0 || times[i] != times[i - 1]) {
+                distinctTimes.add(times[i]);
+            }
+        }
+        List<@NonNull Integer> quarkList = new ArrayList<>(quarks.length);
+        for (int quark : quarks) {
+            quarkList.add(quark);
+        }
+        TimeRangeCondition timeCondition = TimeRangeCondition.forDiscreteRange(distinctTimes);
+        IntegerRangeCondition quarkCondition = IntegerRangeCondition.forDiscreteRange(quarkList);
+
+        /* Query the storage backend, each interval fills all the times it covers */
+        Spliterator<@NonNull ITmfStateInterval> spliterator = backend.query2DSpliterator(quarkCondition, timeCondition);
+        Iterator<@NonNull ITmfStateInterval> intervals = Spliterators.iterator(spliterator);
+        while (intervals.hasNext()) {
+            if (monitor != null && monitor.isCanceled()) {
+                if (spliterator instanceof HTQuery2DSpliterator) {
+                    /* Do not read ahead the nodes we will not visit */
+                    ((HTQuery2DSpliterator) spliterator).close();
+                }
+                return null;
+            }
+            ITmfStateInterval interval = intervals.next();
+            int q = Arrays.binarySearch(quarks, interval.getAttribute());
+            if (q < 0) {
+                continue;
+            }
+            long end = interval.getEndTime();
+            for (int i = firstIndexAtOrAfter(times, interval.getStartTime()); i < times.length && times[i] <= end; i++) {
+                states[i][q] = interval;
+            }
+        }
+
+        /*
+         * We should have previously inserted an interval for every attribute,
+         * at every timestamp.
+         */
+        for (ITmfStateInterval[] state : states) {
+            for (ITmfStateInterval interval : state) {
+                if (interval == null) {
+                    throw new IllegalStateException("Incoherent interval storage"); //$NON-NLS-1$
+                }
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Find the index of the first timestamp greater than or equal to a time
+     */
+    private static int firstIndexAtOrAfter(long[] times, long t) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < t) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     @Override
     public ITmfStateInterval querySingleState(long t, int attributeQuark)
             throws TimeRangeException, StateSystemDisposedException {
@@ -646,25 +1005,58 @@ public class StateSystem implements ITmfStateSystemBuilder {
         return query2D(quarks, timeCondition);
     }
 
+    @Override
+    public Spliterator<@NonNull ITmfStateInterval> query2DSpliterator(Collection<@NonNull Integer> quarks, long start, long end)
+            throws StateSystemDisposedException, TimeRangeException, IndexOutOfBoundsException {
+        if (isDisposed) {
+            throw new StateSystemDisposedException();
+        }
+
+        TimeRangeCondition timeCondition = TimeRangeCondition.forContinuousRange(start, end);
+        IntegerRangeCondition quarkCondition = getQuarkCondition(quarks, timeCondition);
+        if (quarkCondition == null) {
+            return Spliterators.emptySpliterator();
+        }
+
+        /* The backend's spliterator can be split across its sub-trees */
+        Stream<@NonNull ITmfStateInterval> transStateStream = StreamSupport.stream(transState.query2D(quarks, timeCondition).spliterator(), false);
+        Stream<@NonNull ITmfStateInterval> backendStream = StreamSupport.stream(backend.query2DSpliterator(quarkCondition, timeCondition), false);
+        return Stream.concat(transStateStream, backendStream).spliterator();
+    }
+
     private Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<@NonNull Integer> quarks, TimeRangeCondition timeCondition)
             throws TimeRangeException, IndexOutOfBoundsException {
+        IntegerRangeCondition quarkCondition = getQuarkCondition(quarks, timeCondition);
+        if (quarkCondition == null) {
+            return Collections.emptyList();
+        }
+
+        Iterable<@NonNull ITmfStateInterval> transStateIterable = transState.query2D(quarks, timeCondition);
+        Iterable<@NonNull ITmfStateInterval> backendIterable = backend.query2D(quarkCondition, timeCondition);
+
+        return Iterables.concat(transStateIterable, backendIterable);
+    }
+
+    /**
+     * Validate the bounds of a 2D query and build its condition on the quarks
+     *
+     * @return the quark condition, or null if there are no quarks to query
+     */
+    private @Nullable IntegerRangeCondition getQuarkCondition(@NonNull Collection<@NonNull Integer> quarks, TimeRangeCondition timeCondition)
+            throws TimeRangeException, IndexOutOfBoundsException {
         if (timeCondition.min() < getStartTime()) {
             throw new TimeRangeException();
         }
 
         if (quarks.isEmpty()) {
-            return Collections.emptyList();
+            return null;
         }
 
         IntegerRangeCondition quarkCondition = IntegerRangeCondition.forDiscreteRange(quarks);
         if (quarkCondition.min() < 0 || quarkCondition.max() >= getNbAttributes()) {
             throw new IndexOutOfBoundsException();
         }
-
-        Iterable<@NonNull ITmfStateInterval> transStateIterable = transState.query2D(quarks, timeCondition);
-        Iterable<@NonNull ITmfStateInterval> backendIterable = backend.query2D(quarkCondition, timeCondition);
-
-        return Iterables.concat(transStateIterable, backendIterable);
+        return quarkCondition;
     }
 
     @Override
@@ -17,11 +17,12 @@ package org.eclipse.tracecompass.internal.statesystem.core;
 
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -47,18 +48,92 @@ import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
 @NonNullByDefault
 public class TransientState {
 
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Marker stored in place of an ongoing value that is kept as a primitive,
+     * the bits of the value being in the primitive values array. The values
+     * of these types given as objects are also stored this way, so that a
+     * value is always compared to the ongoing one without boxing either.
+     */
+    private enum Primitive {
+        INTEGER(Integer.class) {
+            @Override
+            Object box(long bits) {
+                return (int) bits;
+            }
+
+            @Override
+            void insert(IStateHistoryBackend backend, long start, long end, int quark, long bits) {
+                backend.insertPastStateInt(start, end, quark, (int) bits);
+            }
+        },
+        LONG(Long.class) {
+            @Override
+            Object box(long bits) {
+                return bits;
+            }
+
+            @Override
+            void insert(IStateHistoryBackend backend, long start, long end, int quark, long bits) {
+                backend.insertPastStateLong(start, end, quark, bits);
+            }
+        },
+        DOUBLE(Double.class) {
+            @Override
+            Object box(long bits) {
+                return Double.longBitsToDouble(bits);
+            }
+
+            @Override
+            void insert(IStateHistoryBackend backend, long start, long end, int quark, long bits) {
+                backend.insertPastStateDouble(start, end, quark, Double.longBitsToDouble(bits));
+            }
+        };
+
+        private final Class<?> fType;
+
+        private Primitive(Class<?> type) {
+            fType = type;
+        }
+
+        abstract Object box(long bits);
+
+        abstract void insert(IStateHistoryBackend backend, long start, long end, int quark, long bits);
+    }
+
     /* Indicates where to insert state changes that we generate */
     private final IStateHistoryBackend fBackend;
 
-    private final ReentrantReadWriteLock fRWLock = new ReentrantReadWriteLock(false);
+    /*
+     * Serializes the methods modifying the ongoing state. The modifications
+     * are only published to the arrays under the write lock of fLock, after
+     * any interval has been inserted in the backend, so readers do not wait
+     * for the backend.
+     */
+    private final Object fWriteMutex = new Object();
+
+    /*
+     * Readers first try an optimistic read and only take the read lock if the
+     * arrays were modified during the read.
+     */
+    private final StampedLock fLock = new StampedLock();
 
     private volatile boolean fIsActive;
     private volatile long fLatestTime;
 
-    /* A method accessing these arrays will have to go through the lock */
-    private List<@Nullable Object> fOngoingStateInfo;
-    private List<Long> fOngoingStateStartTimes;
-    private List<@Nullable Class<?>> fStateValueTypes;
+    /*
+     * The ongoing state, indexed by quark. The arrays are replaced by bigger
+     * copies when they are full, so readers always see arrays at least as big
+     * as the size they read. A method accessing these arrays will have to go
+     * through the lock.
+     */
+    private @Nullable Object[] fOngoingStateInfo;
+    /* The bits of the values marked as Primitive in fOngoingStateInfo */
+    private long[] fOngoingStateBits;
+    private long[] fOngoingStateStartTimes;
+    private @Nullable Class<?>[] fStateValueTypes;
+    private int fSize;
 
     /**
      * Constructor
@@ -69,9 +144,11 @@ public class TransientState {
     public TransientState(IStateHistoryBackend backend) {
         fBackend = backend;
         fIsActive = true;
-        fOngoingStateInfo = new ArrayList<>();
-        fOngoingStateStartTimes = new ArrayList<>();
-        fStateValueTypes = new ArrayList<>();
+        fOngoingStateInfo = new Object[INITIAL_CAPACITY];
+        fOngoingStateBits = new long[INITIAL_CAPACITY];
+        fOngoingStateStartTimes = new long[INITIAL_CAPACITY];
+        fStateValueTypes = new Class<?>[INITIAL_CAPACITY];
+        fSize = 0;
 
         fLatestTime = backend.getStartTime();
     }
@@ -95,12 +172,28 @@ public class TransientState {
      *             If the quark is out of range
      */
     public @Nullable Object getOngoingStateValue(int quark) {
-        fRWLock.readLock().lock();
-        try {
-            return fOngoingStateInfo.get(quark);
-        } finally {
-            fRWLock.readLock().unlock();
+        long stamp = fLock.tryOptimisticRead();
+        @Nullable Object[] values = fOngoingStateInfo;
+        long[] bits = fOngoingStateBits;
+        int size = fSize;
+        Object value = null;
+        long valueBits = 0;
+        if (isInRange(quark, size, Math.min(values.length, bits.length))) {
+            value = values[quark];
+            valueBits = bits[quark];
+        }
+        if (!fLock.validate(stamp)) {
+            stamp = fLock.readLock();
+            try {
+                size = fSize;
+                value = isInRange(quark, size, fOngoingStateInfo.length) ? fOngoingStateInfo[quark] : null;
+                valueBits = isInRange(quark, size, fOngoingStateBits.length) ? fOngoingStateBits[quark] : 0;
+            } finally {
+                fLock.unlockRead(stamp);
+            }
         }
+        checkIndex(quark, size);
+        return toObject(value, valueBits);
     }
 
     /**
@@ -113,12 +206,21 @@ public class TransientState {
      *             If the quark is out of range
      */
     public long getOngoingStartTime(int quark) {
-        fRWLock.readLock().lock();
-        try {
-            return fOngoingStateStartTimes.get(quark);
-        } finally {
-            fRWLock.readLock().unlock();
+        long stamp = fLock.tryOptimisticRead();
+        long[] startTimes = fOngoingStateStartTimes;
+        int size = fSize;
+        long start = isInRange(quark, size, startTimes.length) ? startTimes[quark] : 0;
+        if (!fLock.validate(stamp)) {
+            stamp = fLock.readLock();
+            try {
+                size = fSize;
+                start = isInRange(quark, size, fOngoingStateStartTimes.length) ? fOngoingStateStartTimes[quark] : 0;
+            } finally {
+                fLock.unlockRead(stamp);
+            }
         }
+        checkIndex(quark, size);
+        return start;
     }
 
     /**
@@ -133,11 +235,17 @@ public class TransientState {
      *             If the quark is out of range
      */
     public void changeOngoingStateValue(int quark, Object newValue) {
-        fRWLock.writeLock().lock();
-        try {
-            fOngoingStateInfo.set(quark, newValue);
-        } finally {
-            fRWLock.writeLock().unlock();
+        synchronized (fWriteMutex) {
+            checkIndex(quark, fSize);
+            Primitive primitive = toPrimitive(newValue);
+            long bits = primitive != null ? toBits(newValue) : 0;
+            long stamp = fLock.writeLock();
+            try {
+                fOngoingStateInfo[quark] = primitive != null ? primitive : newValue;
+                fOngoingStateBits[quark] = bits;
+            } finally {
+                fLock.unlockWrite(stamp);
+            }
         }
     }
 
@@ -153,13 +261,9 @@ public class TransientState {
      *             If the quark is out of range
      */
     public ITmfStateInterval getOngoingInterval(int quark) {
-        fRWLock.readLock().lock();
-        try {
-            return new TmfStateInterval(fOngoingStateStartTimes.get(quark), fLatestTime,
-                    quark, fOngoingStateInfo.get(quark));
-        } finally {
-            fRWLock.readLock().unlock();
-        }
+        ITmfStateInterval interval = queryOngoingInterval(quark, Long.MAX_VALUE);
+        checkIndex(quark, fSize);
+        return Objects.requireNonNull(interval);
     }
 
     /**
@@ -177,15 +281,119 @@ public class TransientState {
      *             If the quark is out of range
      */
     public @Nullable ITmfStateInterval getIntervalAt(long time, int quark) {
-        fRWLock.readLock().lock();
-        try {
-            if (!isActive() || time < fOngoingStateStartTimes.get(quark)) {
-                return null;
+        if (!isActive()) {
+            return null;
+        }
+        ITmfStateInterval interval = queryOngoingInterval(quark, time);
+        if (interval == null && isActive()) {
+            checkIndex(quark, fSize);
+        }
+        return interval;
+    }
+
+    /**
+     * Get the ongoing interval of a quark if it started at or before a time,
+     * with an optimistic read. The read lock is only taken, for this quark
+     * only, if the arrays were modified during the read, so that queries on
+     * many quarks never hold the lock for long and do not block the thread
+     * building the state.
+     */
+    private @Nullable ITmfStateInterval queryOngoingInterval(int quark, long time) {
+        long stamp = fLock.tryOptimisticRead();
+        ITmfStateInterval interval = readOngoingInterval(quark, time);
+        if (!fLock.validate(stamp)) {
+            stamp = fLock.readLock();
+            try {
+                interval = readOngoingInterval(quark, time);
+            } finally {
+                fLock.unlockRead(stamp);
             }
-            return new TmfStateInterval(fOngoingStateStartTimes.get(quark),
-                    fLatestTime, quark, fOngoingStateInfo.get(quark));
-        } finally {
-            fRWLock.readLock().unlock();
+        }
+        return interval;
+    }
+
+    /**
+     * Get the number of attributes in the ongoing state
+     */
+    private int getSize() {
+        long stamp = fLock.tryOptimisticRead();
+        int size = fSize;
+        if (!fLock.validate(stamp)) {
+            stamp = fLock.readLock();
+            try {
+                size = fSize;
+            } finally {
+                fLock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Read the ongoing interval of a quark if it started at or before a time.
+     * It may be called without holding the lock, as long as the stamp is
+     * validated before using the result. It does not throw exceptions on
+     * inconsistent reads, it returns null instead.
+     */
+    private @Nullable ITmfStateInterval readOngoingInterval(int quark, long time) {
+        long[] startTimes = fOngoingStateStartTimes;
+        @Nullable Object[] values = fOngoingStateInfo;
+        long[] bits = fOngoingStateBits;
+        long latestTime = fLatestTime;
+        int size = fSize;
+        if (!isInRange(quark, size, Math.min(startTimes.length, Math.min(values.length, bits.length)))) {
+            return null;
+        }
+        long start = startTimes[quark];
+        Object value = values[quark];
+        long valueBits = bits[quark];
+        if (time < start) {
+            return null;
+        }
+        return new TmfStateInterval(start, latestTime, quark, toObject(value, valueBits));
+    }
+
+    /**
+     * Get the value of an entry of the ongoing state, boxing it if it is
+     * stored as a primitive
+     */
+    private static @Nullable Object toObject(@Nullable Object value, long bits) {
+        return (value instanceof Primitive) ? ((Primitive) value).box(bits) : value;
+    }
+
+    /**
+     * Get the primitive type of a value, or null if it is not stored as a
+     * primitive
+     */
+    private static @Nullable Primitive toPrimitive(@Nullable Object value) {
+        if (value instanceof Integer) {
+            return Primitive.INTEGER;
+        } else if (value instanceof Long) {
+            return Primitive.LONG;
+        } else if (value instanceof Double) {
+            return Primitive.DOUBLE;
+        }
+        return null;
+    }
+
+    private static long toBits(@Nullable Object value) {
+        if (value instanceof Integer) {
+            return (Integer) value;
+        } else if (value instanceof Long) {
+            return (Long) value;
+        } else if (value instanceof Double) {
+            return Double.doubleToRawLongBits((Double) value);
+        }
+        return 0;
+    }
+
+    private static boolean isInRange(int quark, int size, int length) {
+        return quark >= 0 && quark < size && quark < length;
+    }
+
+    private static void checkIndex(int quark, int size) {
+        if (quark < 0 || quark >= size) {
+            throw new IndexOutOfBoundsException("Quark: " + quark + ", Size: " + size); //$NON-NLS-1$ //$NON-NLS-2$
         }
     }
 
@@ -202,45 +410,94 @@ public class TransientState {
      */
     public void replaceOngoingState(List<ITmfStateInterval> newStateIntervals) {
         final int size = newStateIntervals.size();
+        final int capacity = Math.max(size, INITIAL_CAPACITY);
+        @Nullable Object[] values = new Object[capacity];
+        long[] bits = new long[capacity];
+        long[] startTimes = new long[capacity];
+        @Nullable Class<?>[] types = new Class<?>[capacity];
+
+        int i = 0;
+        for (ITmfStateInterval interval : newStateIntervals) {
+            Object value = interval.getValue();
+            Primitive primitive = toPrimitive(value);
+            values[i] = primitive != null ? primitive : value;
+            bits[i] = toBits(value);
+            startTimes[i] = interval.getStartTime();
+            types[i] = value != null ? value.getClass() : null;
+            i++;
+        }
 
-        fRWLock.writeLock().lock();
-        try {
-            fOngoingStateInfo = new ArrayList<>(size);
-            fOngoingStateStartTimes = new ArrayList<>(size);
-            fStateValueTypes = new ArrayList<>(size);
-
-            for (ITmfStateInterval interval : newStateIntervals) {
-                Object value = interval.getValue();
-                fOngoingStateInfo.add(value);
-                fOngoingStateStartTimes.add(interval.getStartTime());
-                Class<?> objectClass = value != null ? value.getClass() : null;
-                fStateValueTypes.add(objectClass);
+        synchronized (fWriteMutex) {
+            long stamp = fLock.writeLock();
+            try {
+                fOngoingStateInfo = values;
+                fOngoingStateBits = bits;
+                fOngoingStateStartTimes = startTimes;
+                fStateValueTypes = types;
+                fSize = size;
+            } finally {
+                fLock.unlockWrite(stamp);
             }
-        } finally {
-            fRWLock.writeLock().unlock();
         }
     }
 
+    /**
+     * Restore the ongoing state saved in a checkpoint of the state system. See
+     * {@link #replaceOngoingState(List)}.
+     *
+     * @param newStateIntervals
+     *            The List of intervals that will represent the new "ongoing
+     *            state"
+     * @param latestTime
+     *            The latest time of the transient state when the checkpoint
+     *            was saved
+     */
+    public void restoreOngoingState(List<ITmfStateInterval> newStateIntervals, long latestTime) {
+        replaceOngoingState(newStateIntervals);
+        fLatestTime = latestTime;
+    }
+
     /**
      * Add an "empty line" to both "ongoing..." vectors. This is needed so the
      * Ongoing... tables can stay in sync with the number of attributes in the
      * attribute tree, namely when we add sub-path attributes.
      */
     public void addEmptyEntry() {
-        fRWLock.writeLock().lock();
-        try {
-            /*
-             * Since this is a new attribute, we suppose it was in the
-             * "null state" since the beginning (so we can have intervals
-             * covering for all timestamps). A null interval will then get added
-             * at the first state change.
-             */
-            fOngoingStateInfo.add(null);
-            fStateValueTypes.add(null);
+        synchronized (fWriteMutex) {
+            int size = fSize;
+            @Nullable Object[] values = fOngoingStateInfo;
+            long[] bits = fOngoingStateBits;
+            long[] startTimes = fOngoingStateStartTimes;
+            @Nullable Class<?>[] types = fStateValueTypes;
+            if (size == startTimes.length) {
+                /* Copy on grow, readers may still be using the old arrays */
+                int capacity = size + (size >> 1) + 1;
+                values = Arrays.copyOf(values, capacity);
+                bits = Arrays.copyOf(bits, capacity);
+                startTimes = Arrays.copyOf(startTimes, capacity);
+                types = Arrays.copyOf(types, capacity);
+            }
 
-            fOngoingStateStartTimes.add(fBackend.getStartTime());
-        } finally {
-            fRWLock.writeLock().unlock();
+            long stamp = fLock.writeLock();
+            try {
+                fOngoingStateInfo = values;
+                fOngoingStateBits = bits;
+                fOngoingStateStartTimes = startTimes;
+                fStateValueTypes = types;
+                /*
+                 * Since this is a new attribute, we suppose it was in the
+                 * "null state" since the beginning (so we can have intervals
+                 * covering for all timestamps). A null interval will then get
+                 * added at the first state change.
+                 */
+                values[size] = null;
+                bits[size] = 0;
+                types[size] = null;
+                startTimes[size] = fBackend.getStartTime();
+                fSize = size + 1;
+            } finally {
+                fLock.unlockWrite(stamp);
+            }
         }
     }
 
@@ -263,13 +520,99 @@ public class TransientState {
      */
     public void processStateChange(long eventTime, @Nullable Object value, int quark)
             throws TimeRangeException, StateValueTypeException {
+        Primitive primitive = toPrimitive(value);
+        if (primitive != null) {
+            processChange(eventTime, primitive, toBits(value), quark);
+        } else {
+            processChange(eventTime, value, 0, quark);
+        }
+    }
+
+    /**
+     * Process a state change with an integer value, without boxing it. See
+     * {@link #processStateChange(long, Object, int)}.
+     *
+     * @param eventTime
+     *            The timestamp associated with this state change
+     * @param value
+     *            The new integer value of this attribute
+     * @param quark
+     *            The quark of the attribute that is being modified
+     * @throws TimeRangeException
+     *             If 'eventTime' is invalid
+     * @throws IndexOutOfBoundsException
+     *             If the quark is out of range
+     * @throws StateValueTypeException
+     *             If the attribute has values of another type
+     */
+    public void processStateChangeInt(long eventTime, int value, int quark)
+            throws TimeRangeException, StateValueTypeException {
+        processChange(eventTime, Primitive.INTEGER, value, quark);
+    }
+
+    /**
+     * Process a state change with a long value, without boxing it. See
+     * {@link #processStateChange(long, Object, int)}.
+     *
+     * @param eventTime
+     *            The timestamp associated with this state change
+     * @param value
+     *            The new long value of this attribute
+     * @param quark
+     *            The quark of the attribute that is being modified
+     * @throws TimeRangeException
+     *             If 'eventTime' is invalid
+     * @throws IndexOutOfBoundsException
+     *             If the quark is out of range
+     * @throws StateValueTypeException
+     *             If the attribute has values of another type
+     */
+    public void processStateChangeLong(long eventTime, long value, int quark)
+            throws TimeRangeException, StateValueTypeException {
+        processChange(eventTime, Primitive.LONG, value, quark);
+    }
+
+    /**
+     * Process a state change with a double value, without boxing it. See
+     * {@link #processStateChange(long, Object, int)}.
+     *
+     * @param eventTime
+     *            The timestamp associated with this state change
+     * @param value
+     *            The new double value of this attribute
+     * @param quark
+     *            The quark of the attribute that is being modified
+     * @throws TimeRangeException
+     *             If 'eventTime' is invalid
+     * @throws IndexOutOfBoundsException
+     *             If the quark is out of range
+     * @throws StateValueTypeException
+     *             If the attribute has values of another type
+     */
+    public void processStateChangeDouble(long eventTime, double value, int quark)
+            throws TimeRangeException, StateValueTypeException {
+        processChange(eventTime, Primitive.DOUBLE, Double.doubleToRawLongBits(value), quark);
+    }
+
+    /**
+     * Process a state change, the value being either a {@link Primitive}
+     * marker with its bits, or an object that is not stored as a primitive
+     */
+    private void processChange(long eventTime, @Nullable Object value, long bits, int quark)
+            throws TimeRangeException, StateValueTypeException {
         if (!this.fIsActive) {
             return;
         }
 
-        fRWLock.writeLock().lock();
-        try {
-            Class<?> expectedSvType = fStateValueTypes.get(quark);
+        synchronized (fWriteMutex) {
+            checkIndex(quark, fSize);
+            Class<?> expectedSvType = fStateValueTypes[quark];
+            Class<?> svType = null;
+            if (value instanceof Primitive) {
+                svType = ((Primitive) value).fType;
+            } else if (value != null) {
+                svType = value.getClass();
+            }
 
             /*
              * Make sure the state value type we're inserting is the same as the
@@ -278,19 +621,22 @@ public class TransientState {
             if (expectedSvType == null) {
                 /*
                  * The value hasn't been used yet, set it to the value we're
-                 * currently inserting (which might be null/-1 again).
+                 * currently inserting (which might be null/-1 again). Only the
+                 * writers use this array, no need for the lock.
                  */
-                fStateValueTypes.set(quark, value != null ? value.getClass() : null);
-            } else if ((value != null) && (value.getClass() != expectedSvType)) {
+                fStateValueTypes[quark] = svType;
+            } else if ((svType != null) && (svType != expectedSvType)) {
                 /*
                  * We authorize inserting null values in any type of attribute,
                  * but for every other types, it needs to match our
                  * expectations!
                  */
-                throw new StateValueTypeException(fBackend.getSSID() + " Quark:" + quark + ", Type:" + value.getClass() + ", Expected:" + expectedSvType); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                throw new StateValueTypeException(fBackend.getSSID() + " Quark:" + quark + ", Type:" + svType + ", Expected:" + expectedSvType); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
             }
 
-            if (Objects.equals(fOngoingStateInfo.get(quark),value)) {
+            Object ongoingValue = fOngoingStateInfo[quark];
+            long ongoingBits = fOngoingStateBits[quark];
+            if (isSameValue(ongoingValue, ongoingBits, value, bits)) {
                 /*
                  * This is the case where the new value and the one already
                  * present in the Builder are the same. We do not need to create
@@ -299,27 +645,60 @@ public class TransientState {
                 return;
             }
 
-            if (fOngoingStateStartTimes.get(quark) < eventTime) {
+            long startTime = fOngoingStateStartTimes[quark];
+            if (startTime < eventTime) {
                 /*
                  * These two conditions are necessary to create an interval and
-                 * update ongoingStateInfo.
+                 * update ongoingStateInfo. The interval is inserted before the
+                 * new state is published, so that a concurrent query always
+                 * finds the state either here or in the backend.
                  */
-                fBackend.insertPastState(fOngoingStateStartTimes.get(quark),
+                insertPastState(startTime,
                         eventTime - 1, /* End Time */
                         quark, /* attribute quark */
-                        fOngoingStateInfo.get(quark)); /* StateValue */
-
-                fOngoingStateStartTimes.set(quark, eventTime);
+                        ongoingValue, ongoingBits); /* StateValue */
+                startTime = eventTime;
             }
-            fOngoingStateInfo.set(quark, value);
 
-            /* Update the Transient State's lastestTime, if needed */
-            if (fLatestTime < eventTime) {
-                fLatestTime = eventTime;
+            long stamp = fLock.writeLock();
+            try {
+                fOngoingStateStartTimes[quark] = startTime;
+                fOngoingStateInfo[quark] = value;
+                fOngoingStateBits[quark] = bits;
+
+                /* Update the Transient State's lastestTime, if needed */
+                if (fLatestTime < eventTime) {
+                    fLatestTime = eventTime;
+                }
+            } finally {
+                fLock.unlockWrite(stamp);
             }
+        }
+    }
 
-        } finally {
-            fRWLock.writeLock().unlock();
+    private static boolean isSameValue(@Nullable Object ongoingValue, long ongoingBits, @Nullable Object value, long bits) {
+        if (!(value instanceof Primitive)) {
+            return Objects.equals(ongoingValue, value);
+        }
+        if (ongoingValue != value) {
+            return false;
+        }
+        if (value == Primitive.DOUBLE) {
+            /* Same comparison as Double#equals */
+            return Double.doubleToLongBits(Double.longBitsToDouble(ongoingBits)) == Double.doubleToLongBits(Double.longBitsToDouble(bits));
+        }
+        return ongoingBits == bits;
+    }
+
+    /**
+     * Insert an interval in the backend, without boxing its value if it is
+     * stored as a primitive
+     */
+    private void insertPastState(long start, long end, int quark, @Nullable Object value, long bits) {
+        if (value instanceof Primitive) {
+            ((Primitive) value).insert(fBackend, start, end, quark, bits);
+        } else {
+            fBackend.insertPastState(start, end, quark, value);
         }
     }
 
@@ -333,28 +712,23 @@ public class TransientState {
      *            The requested timestamp
      */
     public void doQuery(List<@Nullable ITmfStateInterval> stateInfo, long t) {
-        fRWLock.readLock().lock();
-        try {
-            if (!this.fIsActive) {
-                return;
-            }
-            if (stateInfo.size() > fOngoingStateInfo.size()) {
-                throw new IllegalArgumentException();
-            }
+        if (!this.fIsActive) {
+            return;
+        }
+        if (stateInfo.size() > getSize()) {
+            throw new IllegalArgumentException();
+        }
 
-            for (int i = 0; i < stateInfo.size(); i++) {
-                /*
-                 * We build a dummy interval whose end time =
-                 * "current transient state end time" to put in the answer to
-                 * the query.
-                 */
-                final ITmfStateInterval interval = getIntervalAt(t, i);
-                if (interval != null) {
-                    stateInfo.set(i, interval);
-                }
+        for (int i = 0; i < stateInfo.size(); i++) {
+            /*
+             * We build a dummy interval whose end time =
+             * "current transient state end time" to put in the answer to the
+             * query.
+             */
+            final ITmfStateInterval interval = queryOngoingInterval(i, t);
+            if (interval != null) {
+                stateInfo.set(i, interval);
             }
-        } finally {
-            fRWLock.readLock().unlock();
         }
     }
 
@@ -370,23 +744,20 @@ public class TransientState {
      * @since 2.1
      */
     public Iterable<ITmfStateInterval> query2D(Collection<Integer> quarks, TimeRangeCondition timeCondition) {
-        fRWLock.readLock().lock();
-        try {
-            if (!fIsActive) {
-                return Collections.EMPTY_LIST;
-            }
-            long end = timeCondition.max();
-            Collection<ITmfStateInterval> iterable = new ArrayList<>();
-            for (Integer quark : quarks) {
-                ITmfStateInterval interval = getIntervalAt(end, quark);
-                if (interval != null) {
-                    iterable.add(interval);
-                }
+        if (!fIsActive) {
+            return Collections.EMPTY_LIST;
+        }
+        int size = getSize();
+        long end = timeCondition.max();
+        Collection<ITmfStateInterval> iterable = new ArrayList<>();
+        for (Integer quark : quarks) {
+            checkIndex(quark, size);
+            ITmfStateInterval interval = queryOngoingInterval(quark, end);
+            if (interval != null) {
+                iterable.add(interval);
             }
-            return iterable;
-        } finally {
-            fRWLock.readLock().unlock();
         }
+        return iterable;
     }
 
     /**
@@ -404,10 +775,9 @@ public class TransientState {
             return;
         }
 
-        fRWLock.writeLock().lock();
-        try {
-            for (int i = 0; i < fOngoingStateInfo.size(); i++) {
-                if (fOngoingStateStartTimes.get(i) > endTime) {
+        synchronized (fWriteMutex) {
+            for (int i = 0; i < fSize; i++) {
+                if (fOngoingStateStartTimes[i] > endTime) {
                     /*
                      * Handle the cases where trace end > timestamp of last
                      * state change. This can happen when inserting "future"
@@ -416,10 +786,10 @@ public class TransientState {
                     continue;
                 }
                 try {
-                    fBackend.insertPastState(fOngoingStateStartTimes.get(i),
+                    insertPastState(fOngoingStateStartTimes[i],
                             endTime, /* End Time */
                             i, /* attribute quark */
-                            fOngoingStateInfo.get(i)); /* StateValue */
+                            fOngoingStateInfo[i], fOngoingStateBits[i]); /* StateValue */
 
                 } catch (TimeRangeException e) {
                     /*
@@ -430,12 +800,16 @@ public class TransientState {
                 }
             }
 
-            fOngoingStateInfo.clear();
-            fOngoingStateStartTimes.clear();
-            this.fIsActive = false;
-
-        } finally {
-            fRWLock.writeLock().unlock();
+            long stamp = fLock.writeLock();
+            try {
+                fOngoingStateInfo = new Object[0];
+                fOngoingStateBits = new long[0];
+                fOngoingStateStartTimes = new long[0];
+                fSize = 0;
+                this.fIsActive = false;
+            } finally {
+                fLock.unlockWrite(stamp);
+            }
         }
     }
 
@@ -471,10 +845,15 @@ public class TransientState {
             return;
         }
         writer.println("\nAttribute\tStateValue\tValid since time"); //$NON-NLS-1$
-        for (int i = 0; i < fOngoingStateInfo.size(); i++) {
-            writer.format("%d\t\t", i); //$NON-NLS-1$
-            writer.print(String.valueOf(fOngoingStateInfo.get(i)) + "\t\t"); //$NON-NLS-1$
-            writer.println(fOngoingStateStartTimes.get(i).toString());
+        long stamp = fLock.readLock();
+        try {
+            for (int i = 0; i < fSize; i++) {
+                writer.format("%d\t\t", i); //$NON-NLS-1$
+                writer.print(String.valueOf(toObject(fOngoingStateInfo[i], fOngoingStateBits[i])) + "\t\t"); //$NON-NLS-1$
+                writer.println(fOngoingStateStartTimes[i]);
+            }
+        } finally {
+            fLock.unlockRead(stamp);
         }
         writer.println('\n');
         return;
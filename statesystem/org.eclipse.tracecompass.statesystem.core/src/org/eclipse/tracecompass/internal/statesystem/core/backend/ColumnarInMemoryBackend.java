@@ -0,0 +1,733 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
+import org.eclipse.tracecompass.internal.statesystem.core.Activator;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.interval.TmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+
+import com.google.common.collect.Iterables;
+
+/**
+ * State history back-end that stores its intervals in RAM, in primitive
+ * columns per attribute instead of interval objects. The intervals of an
+ * attribute are sorted by end time, so queries are a binary search in the
+ * columns of the attribute.
+ *
+ * Integer, long and double values are stored in the columns. Other values,
+ * like strings, are stored once in a dictionary and referred to by index.
+ *
+ * If it is given a file and a memory threshold, the backend moves all its
+ * intervals to a history tree in that file once its estimated memory usage
+ * crosses the threshold, and then uses the history tree for the rest of the
+ * construction and the queries.
+ */
+public class ColumnarInMemoryBackend implements IStateHistoryBackend {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /* Types of the values in the columns */
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_INTEGER = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_DOUBLE = 3;
+    private static final byte TYPE_DICTIONARY = 4;
+
+    /* Estimated sizes, in bytes, of an interval and of a dictionary entry */
+    private static final int INTERVAL_SIZE = 2 * Long.BYTES + Byte.BYTES + Long.BYTES;
+    private static final int ENTRY_SIZE = 64;
+
+    private final @NonNull String fSsid;
+    private final long fStartTime;
+    private volatile long fLatestTime;
+
+    /* Intervals of each attribute, indexed by quark */
+    private final Object fAttributesLock = new Object();
+    private List<@Nullable AttributeIntervals> fAttributes = new ArrayList<>();
+
+    /* Dictionary of the non-numerical values */
+    private final Map<Object, Integer> fDictionaryIndex = new HashMap<>();
+    private volatile Object[] fDictionary = new Object[INITIAL_CAPACITY];
+    private int fDictionarySize = 0;
+
+    /* Spilling to a history tree */
+    private @Nullable File fSpillFile;
+    private final int fProviderVersion;
+    private final long fMaxMemory;
+    private long fMemoryUsage = 0;
+    private volatile @Nullable IStateHistoryBackend fSpilled = null;
+
+    /**
+     * Constructor for a backend that keeps all its intervals in memory
+     *
+     * @param ssid
+     *            The state system's ID
+     * @param startTime
+     *            The start time of this interval store
+     */
+    public ColumnarInMemoryBackend(@NonNull String ssid, long startTime) {
+        this(ssid, startTime, null, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor for a backend that moves its intervals to a history tree
+     * when it uses too much memory
+     *
+     * @param ssid
+     *            The state system's ID
+     * @param startTime
+     *            The start time of this interval store
+     * @param spillFile
+     *            The file of the history tree to use once the memory threshold
+     *            is crossed, or null to keep all the intervals in memory
+     * @param providerVersion
+     *            Version of the state provider, written in the history tree
+     * @param maxMemory
+     *            The estimated memory usage, in bytes, above which the
+     *            intervals are moved to the history tree
+     */
+    public ColumnarInMemoryBackend(@NonNull String ssid, long startTime, @Nullable File spillFile, int providerVersion, long maxMemory) {
+        fSsid = ssid;
+        fStartTime = startTime;
+        fLatestTime = startTime;
+        fSpillFile = spillFile;
+        fProviderVersion = providerVersion;
+        fMaxMemory = maxMemory;
+    }
+
+    @Override
+    public String getSSID() {
+        return fSsid;
+    }
+
+    @Override
+    public long getStartTime() {
+        return fStartTime;
+    }
+
+    @Override
+    public long getEndTime() {
+        return fLatestTime;
+    }
+
+    /**
+     * Get whether the intervals were moved to the history tree
+     *
+     * @return true if this backend now uses its history tree
+     */
+    public boolean isSpilled() {
+        return fSpilled != null;
+    }
+
+    @Deprecated
+    @Override
+    public void insertPastState(long stateStartTime, long stateEndTime,
+            int quark, ITmfStateValue value) throws TimeRangeException {
+        insertPastState(stateStartTime, stateEndTime, quark, value.unboxValue());
+    }
+
+    @Override
+    public void insertPastState(long stateStartTime, long stateEndTime,
+            int quark, @Nullable Object value) throws TimeRangeException {
+        checkInterval(stateStartTime, stateEndTime);
+        IStateHistoryBackend spilled = fSpilled;
+        if (spilled != null) {
+            spilled.insertPastState(stateStartTime, stateEndTime, quark, value);
+            updateLatestTime(stateEndTime);
+            return;
+        }
+        byte type;
+        long bits;
+        if (value == null) {
+            type = TYPE_NULL;
+            bits = 0;
+        } else if (value instanceof Integer) {
+            type = TYPE_INTEGER;
+            bits = (Integer) value;
+        } else if (value instanceof Long) {
+            type = TYPE_LONG;
+            bits = (Long) value;
+        } else if (value instanceof Double) {
+            type = TYPE_DOUBLE;
+            bits = Double.doubleToRawLongBits((Double) value);
+        } else {
+            type = TYPE_DICTIONARY;
+            bits = toDictionary(value);
+        }
+        append(stateStartTime, stateEndTime, quark, type, bits);
+    }
+
+    @Override
+    public void insertPastStateInt(long stateStartTime, long stateEndTime,
+            int quark, int value) throws TimeRangeException {
+        checkInterval(stateStartTime, stateEndTime);
+        IStateHistoryBackend spilled = fSpilled;
+        if (spilled != null) {
+            spilled.insertPastStateInt(stateStartTime, stateEndTime, quark, value);
+            updateLatestTime(stateEndTime);
+            return;
+        }
+        append(stateStartTime, stateEndTime, quark, TYPE_INTEGER, value);
+    }
+
+    @Override
+    public void insertPastStateLong(long stateStartTime, long stateEndTime,
+            int quark, long value) throws TimeRangeException {
+        checkInterval(stateStartTime, stateEndTime);
+        IStateHistoryBackend spilled = fSpilled;
+        if (spilled != null) {
+            spilled.insertPastStateLong(stateStartTime, stateEndTime, quark, value);
+            updateLatestTime(stateEndTime);
+            return;
+        }
+        append(stateStartTime, stateEndTime, quark, TYPE_LONG, value);
+    }
+
+    @Override
+    public void insertPastStateDouble(long stateStartTime, long stateEndTime,
+            int quark, double value) throws TimeRangeException {
+        checkInterval(stateStartTime, stateEndTime);
+        IStateHistoryBackend spilled = fSpilled;
+        if (spilled != null) {
+            spilled.insertPastStateDouble(stateStartTime, stateEndTime, quark, value);
+            updateLatestTime(stateEndTime);
+            return;
+        }
+        append(stateStartTime, stateEndTime, quark, TYPE_DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Make sure the passed start/end times make sense
+     */
+    private void checkInterval(long stateStartTime, long stateEndTime) throws TimeRangeException {
+        if (stateStartTime > stateEndTime || stateStartTime < fStartTime) {
+            throw new TimeRangeException(fSsid + " Interval Start:" + stateStartTime + ", Interval End:" + stateEndTime + ", Backend Start:" + fStartTime); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+    }
+
+    /**
+     * Append an interval to the columns of its attribute, then spill them to
+     * the history tree if they use too much memory
+     */
+    private void append(long stateStartTime, long stateEndTime, int quark, byte type, long bits) {
+        getOrCreateAttribute(quark).append(stateStartTime, stateEndTime, type, bits);
+        fMemoryUsage += INTERVAL_SIZE;
+        updateLatestTime(stateEndTime);
+
+        if (fSpillFile != null && fMemoryUsage > fMaxMemory) {
+            spill();
+        }
+    }
+
+    private void updateLatestTime(long stateEndTime) {
+        /* Update the "latest seen time" */
+        if (stateEndTime > fLatestTime) {
+            fLatestTime = stateEndTime;
+        }
+    }
+
+    @Override
+    public void doQuery(List<ITmfStateInterval> currentStateInfo, long t)
+            throws TimeRangeException, StateSystemDisposedException {
+        IStateHistoryBackend spilled = fSpilled;
+        if (spilled != null) {
+            spilled.doQuery(currentStateInfo, t);
+            return;
+        }
+        if (!checkValidTime(t)) {
+            throw new TimeRangeException(fSsid + " Time:" + t + ", Start:" + fStartTime + ", End:" + fLatestTime); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+
+        int nbAttributes = Math.min(currentStateInfo.size(), getNbAttributes());
+        for (int quark = 0; quark < nbAttributes; quark++) {
+            Columns columns = getColumns(quark);
+            if (columns != null) {
+                ITmfStateInterval interval = columns.query(t, quark);
+                if (interval != null) {
+                    currentStateInfo.set(quark, interval);
+                }
+            }
+        }
+    }
+
+    @Override
+    public @Nullable ITmfStateInterval doSingularQuery(long t, int attributeQuark)
+            throws TimeRangeException, StateSystemDisposedException {
+        IStateHistoryBackend spilled = fSpilled;
+        if (spilled != null) {
+            return spilled.doSingularQuery(t, attributeQuark);
+        }
+        if (!checkValidTime(t)) {
+            throw new TimeRangeException(fSsid + " Time:" + t + ", Start:" + fStartTime + ", End:" + fLatestTime); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+
+        Columns columns = getColumns(attributeQuark);
+        return (columns == null ? null : columns.query(t, attributeQuark));
+    }
+
+    @Override
+    public Iterable<@NonNull ITmfStateInterval> query2D(IntegerRangeCondition quarks, TimeRangeCondition times)
+            throws TimeRangeException {
+        IStateHistoryBackend spilled = fSpilled;
+        if (spilled != null) {
+            return spilled.query2D(quarks, times);
+        }
+
+        List<Iterable<@NonNull ITmfStateInterval>> iterables = new ArrayList<>();
+        int maxQuark = Math.min(quarks.max(), getNbAttributes() - 1);
+        for (int quark = Math.max(quarks.min(), 0); quark <= maxQuark; quark++) {
+            if (quarks.test(quark)) {
+                Columns columns = getColumns(quark);
+                if (columns != null) {
+                    iterables.add(columns.query2D(times, quark));
+                }
+            }
+        }
+        return Iterables.concat(iterables);
+    }
+
+    private boolean checkValidTime(long t) {
+        return (t >= fStartTime && t <= fLatestTime);
+    }
+
+    @Override
+    public void finishedBuilding(long endTime) throws TimeRangeException {
+        IStateHistoryBackend spilled = fSpilled;
+        if (spilled != null) {
+            spilled.finishedBuilding(endTime);
+        }
+    }
+
+    @Override
+    public @Nullable FileInputStream supplyAttributeTreeReader() {
+        IStateHistoryBackend spilled = fSpilled;
+        /* Saving to disk is only supported once spilled */
+        return (spilled == null ? null : spilled.supplyAttributeTreeReader());
+    }
+
+    @Override
+    public @Nullable File supplyAttributeTreeWriterFile() {
+        IStateHistoryBackend spilled = fSpilled;
+        return (spilled == null ? null : spilled.supplyAttributeTreeWriterFile());
+    }
+
+    @Override
+    public long supplyAttributeTreeWriterFilePosition() {
+        IStateHistoryBackend spilled = fSpilled;
+        return (spilled == null ? -1 : spilled.supplyAttributeTreeWriterFilePosition());
+    }
+
+    @Override
+    public void removeFiles() {
+        IStateHistoryBackend spilled = fSpilled;
+        if (spilled != null) {
+            spilled.removeFiles();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        IStateHistoryBackend spilled = fSpilled;
+        if (spilled != null) {
+            spilled.dispose();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+    // ------------------------------------------------------------------------
+
+    private int getNbAttributes() {
+        synchronized (fAttributesLock) {
+            return fAttributes.size();
+        }
+    }
+
+    private @Nullable Columns getColumns(int quark) {
+        AttributeIntervals attribute;
+        synchronized (fAttributesLock) {
+            if (quark < 0 || quark >= fAttributes.size()) {
+                return null;
+            }
+            attribute = fAttributes.get(quark);
+        }
+        return (attribute == null ? null : attribute.getColumns());
+    }
+
+    private AttributeIntervals getOrCreateAttribute(int quark) {
+        synchronized (fAttributesLock) {
+            while (fAttributes.size() <= quark) {
+                fAttributes.add(null);
+            }
+            AttributeIntervals attribute = fAttributes.get(quark);
+            if (attribute == null) {
+                attribute = new AttributeIntervals();
+                fAttributes.set(quark, attribute);
+            }
+            return attribute;
+        }
+    }
+
+    /**
+     * Get the index of a value in the dictionary, adding it if needed. Only
+     * called by the thread inserting the intervals.
+     */
+    private int toDictionary(Object value) {
+        Integer index = fDictionaryIndex.get(value);
+        if (index != null) {
+            return index;
+        }
+        Object[] dictionary = fDictionary;
+        if (fDictionarySize == dictionary.length) {
+            dictionary = Arrays.copyOf(dictionary, dictionary.length * 2);
+        }
+        int newIndex = fDictionarySize++;
+        dictionary[newIndex] = value;
+        /*
+         * The value is written before the array is published, and before the
+         * intervals referring to it are appended
+         */
+        fDictionary = dictionary;
+        fDictionaryIndex.put(value, newIndex);
+        fMemoryUsage += ENTRY_SIZE + ((value instanceof String) ? 2 * ((String) value).length() : 0);
+        return newIndex;
+    }
+
+    private static @Nullable Object toValue(byte type, long bits, Object[] dictionary) {
+        switch (type) {
+        case TYPE_NULL:
+            return null;
+        case TYPE_INTEGER:
+            return (int) bits;
+        case TYPE_LONG:
+            return bits;
+        case TYPE_DOUBLE:
+            return Double.longBitsToDouble(bits);
+        case TYPE_DICTIONARY:
+            return dictionary[(int) bits];
+        default:
+            throw new IllegalStateException("Unknown value type " + type); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Move all the intervals to a history tree. They are inserted in order of
+     * end time, the same order the state system would insert them in.
+     */
+    private void spill() {
+        File file = fSpillFile;
+        if (file == null) {
+            return;
+        }
+        HistoryTreeBackend historyTree;
+        try {
+            historyTree = new HistoryTreeBackend(fSsid, file, fProviderVersion, fStartTime);
+        } catch (IOException e) {
+            Activator.getDefault().logWarning("Could not create the history file of " + fSsid + ", keeping the intervals in memory", e); //$NON-NLS-1$ //$NON-NLS-2$
+            fSpillFile = null;
+            return;
+        }
+
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparingLong(Cursor::getEnd));
+        int nbAttributes = getNbAttributes();
+        for (int quark = 0; quark < nbAttributes; quark++) {
+            Columns columns = getColumns(quark);
+            if (columns != null && columns.fSize > 0) {
+                cursors.add(new Cursor(columns, quark));
+            }
+        }
+        while (!cursors.isEmpty()) {
+            Cursor cursor = cursors.poll();
+            Columns columns = cursor.fColumns;
+            int i = cursor.fIndex;
+            historyTree.insertPastState(columns.fStarts[i], columns.fEnds[i], cursor.fQuark, columns.getValue(i));
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+
+        /*
+         * Queries see the history tree from now on, queries already running
+         * keep iterating on the columns they got.
+         */
+        fSpilled = historyTree;
+        synchronized (fAttributesLock) {
+            fAttributes = new ArrayList<>();
+        }
+        fDictionaryIndex.clear();
+        fDictionary = new Object[0];
+        fDictionarySize = 0;
+        fMemoryUsage = 0;
+    }
+
+    // ------------------------------------------------------------------------
+    // Inner classes
+    // ------------------------------------------------------------------------
+
+    /**
+     * The columns of an attribute's intervals. The arrays are only appended
+     * to, past the size, or replaced, so a query can keep iterating on the
+     * columns it got while intervals are inserted, or after spilling.
+     */
+    private static final class Columns {
+        private final long[] fStarts;
+        private final long[] fEnds;
+        private final byte[] fTypes;
+        private final long[] fBits;
+        private final int fSize;
+        private final Object[] fValues;
+
+        public Columns(long[] starts, long[] ends, byte[] types, long[] bits, int size, Object[] dictionary) {
+            fStarts = starts;
+            fEnds = ends;
+            fTypes = types;
+            fBits = bits;
+            fSize = size;
+            fValues = dictionary;
+        }
+
+        public @Nullable Object getValue(int i) {
+            return toValue(fTypes[i], fBits[i], fValues);
+        }
+
+        /**
+         * Index of the first interval ending at or after a time, or the size
+         * if there is none
+         */
+        private int firstEndingAtOrAfter(long t) {
+            int low = 0;
+            int high = fSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (fEnds[mid] < t) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private ITmfStateInterval toInterval(int i, int quark) {
+            return new TmfStateInterval(fStarts[i], fEnds[i], quark, getValue(i));
+        }
+
+        public @Nullable ITmfStateInterval query(long t, int quark) {
+            int i = firstEndingAtOrAfter(t);
+            if (i < fSize && fStarts[i] <= t) {
+                return toInterval(i, quark);
+            }
+            return null;
+        }
+
+        /**
+         * The intervals of an attribute do not overlap, so they are also
+         * sorted by start time and the iteration can stop at the first one
+         * starting after the range.
+         */
+        public Iterable<@NonNull ITmfStateInterval> query2D(TimeRangeCondition times, int quark) {
+            int first = firstEndingAtOrAfter(times.min());
+            if (first == fSize) {
+                return Collections.emptyList();
+            }
+            return () -> new Iterator<@NonNull ITmfStateInterval>() {
+                private int fNext = findNext(first);
+
+                private int findNext(int from) {
+                    for (int i = from; i < fSize && fStarts[i] <= times.max(); i++) {
+                        if (times.intersects(fStarts[i], fEnds[i])) {
+                            return i;
+                        }
+                    }
+                    return fSize;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return fNext < fSize;
+                }
+
+                @Override
+                public ITmfStateInterval next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    ITmfStateInterval interval = toInterval(fNext, quark);
+                    fNext = findNext(fNext + 1);
+                    return interval;
+                }
+            };
+        }
+    }
+
+    /**
+     * The growing columns of the intervals of an attribute. The state system
+     * inserts them in order of end time, intervals inserted out of order are
+     * sorted before the next query.
+     */
+    private final class AttributeIntervals {
+        private long[] fStarts = new long[INITIAL_CAPACITY];
+        private long[] fEnds = new long[INITIAL_CAPACITY];
+        private byte[] fTypes = new byte[INITIAL_CAPACITY];
+        private long[] fBits = new long[INITIAL_CAPACITY];
+        private int fSize = 0;
+        private boolean fSorted = true;
+
+        public synchronized void append(long start, long end, byte type, long bits) {
+            if (fSize == fStarts.length) {
+                int capacity = fSize + (fSize >> 1);
+                fStarts = Arrays.copyOf(fStarts, capacity);
+                fEnds = Arrays.copyOf(fEnds, capacity);
+                fTypes = Arrays.copyOf(fTypes, capacity);
+                fBits = Arrays.copyOf(fBits, capacity);
+            }
+            if (fSize > 0 && end < fEnds[fSize - 1]) {
+                fSorted = false;
+            }
+            fStarts[fSize] = start;
+            fEnds[fSize] = end;
+            fTypes[fSize] = type;
+            fBits[fSize] = bits;
+            fSize++;
+        }
+
+        public synchronized Columns getColumns() {
+            if (!fSorted) {
+                sort();
+            }
+            /*
+             * The dictionary is read after the intervals, so it has all the
+             * values they refer to
+             */
+            return new Columns(fStarts, fEnds, fTypes, fBits, fSize, fDictionary);
+        }
+
+        /**
+         * Sort the intervals by end time in new arrays, the previous ones may
+         * still be iterated on
+         */
+        private void sort() {
+            int[] order = new int[fSize];
+            for (int i = 0; i < fSize; i++) {
+                order[i] = i;
+            }
+            sortRows(fEnds, order, 0, fSize - 1);
+            long[] starts = new long[fStarts.length];
+            long[] sortedEnds = new long[fEnds.length];
+            byte[] types = new byte[fTypes.length];
+            long[] bits = new long[fBits.length];
+            for (int i = 0; i < fSize; i++) {
+                int from = order[i];
+                starts[i] = fStarts[from];
+                sortedEnds[i] = fEnds[from];
+                types[i] = fTypes[from];
+                bits[i] = fBits[from];
+            }
+            fStarts = starts;
+            fEnds = sortedEnds;
+            fTypes = types;
+            fBits = bits;
+            fSorted = true;
+        }
+    }
+
+    /**
+     * Quicksort of row numbers on the end time of the rows, the rows with
+     * the same end time stay in insertion order
+     */
+    private static void sortRows(long[] ends, int[] rows, int from, int to) {
+        int lo = from;
+        int hi = to;
+        while (hi - lo > 16) {
+            int pivot = rows[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (compareRows(ends, rows[i], pivot) < 0) {
+                    i++;
+                }
+                while (compareRows(ends, rows[j], pivot) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = rows[i];
+                    rows[i++] = rows[j];
+                    rows[j--] = tmp;
+                }
+            }
+            /* Recurse on the smaller part to bound the stack depth */
+            if (j - lo < hi - i) {
+                sortRows(ends, rows, lo, j);
+                lo = i;
+            } else {
+                sortRows(ends, rows, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            int row = rows[i];
+            int j = i - 1;
+            while (j >= lo && compareRows(ends, rows[j], row) > 0) {
+                rows[j + 1] = rows[j];
+                j--;
+            }
+            rows[j + 1] = row;
+        }
+    }
+
+    private static int compareRows(long[] ends, int row1, int row2) {
+        int cmp = Long.compare(ends[row1], ends[row2]);
+        return (cmp != 0) ? cmp : Integer.compare(row1, row2);
+    }
+
+    /** Position in the columns of an attribute, when spilling */
+    private static final class Cursor {
+        private final Columns fColumns;
+        private final int fQuark;
+        private int fIndex = 0;
+
+        public Cursor(Columns columns, int quark) {
+            fColumns = columns;
+            fQuark = quark;
+        }
+
+        public long getEnd() {
+            return fColumns.fEnds[fIndex];
+        }
+
+        public boolean advance() {
+            fIndex++;
+            return fIndex < fColumns.fSize;
+        }
+    }
+}
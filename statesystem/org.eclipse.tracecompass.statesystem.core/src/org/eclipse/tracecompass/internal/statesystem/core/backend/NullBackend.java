@@ -83,6 +83,24 @@ public class NullBackend implements IStateHistoryBackend {
         /* The interval is always discarded. */
     }
 
+    @Override
+    public void insertPastStateInt(long stateStartTime, long stateEndTime,
+            int quark, int value) {
+        /* The interval is always discarded. */
+    }
+
+    @Override
+    public void insertPastStateLong(long stateStartTime, long stateEndTime,
+            int quark, long value) {
+        /* The interval is always discarded. */
+    }
+
+    @Override
+    public void insertPastStateDouble(long stateStartTime, long stateEndTime,
+            int quark, double value) {
+        /* The interval is always discarded. */
+    }
+
     @Override
     public void finishedBuilding(long endTime) {
         /* Nothing to do */
@@ -14,6 +14,8 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
 import java.io.File;
 
+import org.eclipse.jdt.annotation.Nullable;
+
 /**
  * Configuration object for the {@link IHistoryTree}.
  *
@@ -21,6 +23,26 @@ import java.io.File;
  */
 public final class HTConfig {
 
+    /**
+     * File format version where the intervals are written with fixed-size
+     * fields: full 64-bit start and end times and 32-bit quarks and values.
+     */
+    public static final int FILE_VERSION_FIXED_INTERVALS = 9;
+
+    /**
+     * File format version where the interval times are delta-encoded against
+     * the start of their node, and the quarks, integer values and lengths are
+     * written as variable-length integers.
+     */
+    public static final int FILE_VERSION_COMPACT_INTERVALS = 10;
+
+    /**
+     * File format version with compact intervals, where the string values are
+     * replaced by their ID in a {@link HTStringDictionary} saved after the
+     * nodes. This is the format used for new history trees.
+     */
+    public static final int FILE_VERSION_DICTIONARY_STRINGS = 11;
+
     private static final int DEFAULT_BLOCKSIZE = 64 * 1024;
     private static final int DEFAULT_MAXCHILDREN = 50;
 
@@ -29,6 +51,8 @@ public final class HTConfig {
     private final int maxChildren;
     private final int providerVersion;
     private final long treeStart;
+    private final int fileVersion;
+    private final @Nullable HTStringDictionary stringDictionary;
 
     /**
      * Full constructor.
@@ -47,14 +71,50 @@ public final class HTConfig {
      *            uselessly.
      * @param startTime
      *            The start time of the history
+     * @param fileVersion
+     *            The version of the file format, one of
+     *            {@link #FILE_VERSION_FIXED_INTERVALS},
+     *            {@link #FILE_VERSION_COMPACT_INTERVALS} or
+     *            {@link #FILE_VERSION_DICTIONARY_STRINGS}
      */
     public HTConfig(File newStateFile, int blockSize, int maxChildren,
-            int providerVersion, long startTime) {
+            int providerVersion, long startTime, int fileVersion) {
+        if (fileVersion != FILE_VERSION_FIXED_INTERVALS &&
+                fileVersion != FILE_VERSION_COMPACT_INTERVALS &&
+                fileVersion != FILE_VERSION_DICTIONARY_STRINGS) {
+            throw new IllegalArgumentException("Unknown history tree file version: " + fileVersion); //$NON-NLS-1$
+        }
         this.stateFile = newStateFile;
         this.blockSize = blockSize;
         this.maxChildren = maxChildren;
         this.providerVersion = providerVersion;
         this.treeStart = startTime;
+        this.fileVersion = fileVersion;
+        this.stringDictionary = (fileVersion == FILE_VERSION_DICTIONARY_STRINGS ? new HTStringDictionary() : null);
+    }
+
+    /**
+     * Constructor using the compact file format for the intervals, with the
+     * string values in a dictionary.
+     *
+     * @param newStateFile
+     *            The name of the history file
+     * @param blockSize
+     *            The size of each "block" on disk. One node will always fit in
+     *            one block.
+     * @param maxChildren
+     *            The maximum number of children allowed per core (non-leaf)
+     *            node.
+     * @param providerVersion
+     *            The version of the state provider. If a file already exists,
+     *            and their versions match, the history file will not be rebuilt
+     *            uselessly.
+     * @param startTime
+     *            The start time of the history
+     */
+    public HTConfig(File newStateFile, int blockSize, int maxChildren,
+            int providerVersion, long startTime) {
+        this(newStateFile, blockSize, maxChildren, providerVersion, startTime, FILE_VERSION_DICTIONARY_STRINGS);
     }
 
     /**
@@ -122,4 +182,34 @@ public final class HTConfig {
     public long getTreeStart() {
         return treeStart;
     }
+
+    /**
+     * Get the version of the file format used to write the nodes
+     *
+     * @return The file format version
+     */
+    public int getFileVersion() {
+        return fileVersion;
+    }
+
+    /**
+     * Get whether the intervals are written in the compact format
+     *
+     * @return <code>true</code> if the intervals use the compact encoding
+     */
+    public boolean isCompactIntervals() {
+        return fileVersion == FILE_VERSION_COMPACT_INTERVALS ||
+                fileVersion == FILE_VERSION_DICTIONARY_STRINGS;
+    }
+
+    /**
+     * Get the dictionary of the string values of the history. The strings of
+     * the intervals are written as their ID in this dictionary.
+     *
+     * @return The string dictionary, or <code>null</code> if the file format
+     *         writes the strings in the intervals
+     */
+    public @Nullable HTStringDictionary getStringDictionary() {
+        return stringDictionary;
+    }
 }
@@ -17,14 +17,9 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.charset.Charset;
 import java.util.Objects;
 
-import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
-import org.eclipse.tracecompass.datastore.core.serialization.ISafeByteBufferReader;
-import org.eclipse.tracecompass.datastore.core.serialization.ISafeByteBufferWriter;
-import org.eclipse.tracecompass.datastore.core.serialization.SafeByteBufferFactory;
 import org.eclipse.tracecompass.internal.provisional.statesystem.core.statevalue.CustomStateValue;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
@@ -39,21 +34,18 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
  */
 public final class HTInterval implements ITmfStateInterval {
 
-    private static final Charset CHARSET = Charset.forName("UTF-8"); //$NON-NLS-1$
-
-    private static final String errMsg = "Invalid interval data. Maybe your file is corrupt?"; //$NON-NLS-1$
-
-    /* 'Byte' equivalent for state values types */
-    private static final byte TYPE_NULL = -1;
-    private static final byte TYPE_INTEGER = 0;
-    private static final byte TYPE_STRING = 1;
-    private static final byte TYPE_LONG = 2;
-    private static final byte TYPE_DOUBLE = 3;
-    private static final byte TYPE_CUSTOM = 20;
 
     private final long start;
     private final long end;
     private final int attribute;
+    /*
+     * The value is kept as its type and bits, see HTIntervalColumns, so the
+     * numerical values do not need to be boxed. The object is only required
+     * for strings and custom values, it is null for the intervals created
+     * from primitive values.
+     */
+    private final byte fType;
+    private final long fBits;
     private final @Nullable Object sv;
 
     /** Number of bytes used by this interval when it is written to disk */
@@ -85,6 +77,68 @@ public final class HTInterval implements ITmfStateInterval {
         this.attribute = attribute;
         this.sv = (value instanceof TmfStateValue) ? ((ITmfStateValue) value).unboxValue() : value;
         this.fSizeOnDisk = computeSizeOnDisk(sv);
+        this.fType = HTIntervalColumns.typeOf(sv);
+        this.fBits = HTIntervalColumns.bitsOf(fType, sv, fSizeOnDisk);
+    }
+
+    /**
+     * Create an interval with an integer value, without boxing it
+     *
+     * @param intervalStart
+     *            Start time of the interval
+     * @param intervalEnd
+     *            End time of the interval
+     * @param attribute
+     *            Attribute (quark) of the interval
+     * @param value
+     *            The value of the interval
+     * @return The interval
+     * @throws TimeRangeException
+     *             If the start time or end time are invalid
+     */
+    static HTInterval ofInt(long intervalStart, long intervalEnd, int attribute, int value) throws TimeRangeException {
+        return new HTInterval(intervalStart, intervalEnd, attribute, HTIntervalColumns.TYPE_INTEGER, value,
+                null, HTIntervalColumns.FIXED_MIN_SIZE + Integer.BYTES);
+    }
+
+    /**
+     * Create an interval with a long value, without boxing it
+     *
+     * @param intervalStart
+     *            Start time of the interval
+     * @param intervalEnd
+     *            End time of the interval
+     * @param attribute
+     *            Attribute (quark) of the interval
+     * @param value
+     *            The value of the interval
+     * @return The interval
+     * @throws TimeRangeException
+     *             If the start time or end time are invalid
+     */
+    static HTInterval ofLong(long intervalStart, long intervalEnd, int attribute, long value) throws TimeRangeException {
+        return new HTInterval(intervalStart, intervalEnd, attribute, HTIntervalColumns.TYPE_LONG, value,
+                null, HTIntervalColumns.FIXED_MIN_SIZE + Long.BYTES);
+    }
+
+    /**
+     * Create an interval with a double value, without boxing it
+     *
+     * @param intervalStart
+     *            Start time of the interval
+     * @param intervalEnd
+     *            End time of the interval
+     * @param attribute
+     *            Attribute (quark) of the interval
+     * @param value
+     *            The value of the interval
+     * @return The interval
+     * @throws TimeRangeException
+     *             If the start time or end time are invalid
+     */
+    static HTInterval ofDouble(long intervalStart, long intervalEnd, int attribute, double value) throws TimeRangeException {
+        return new HTInterval(intervalStart, intervalEnd, attribute, HTIntervalColumns.TYPE_DOUBLE, Double.doubleToRawLongBits(value),
+                null, HTIntervalColumns.FIXED_MIN_SIZE + Double.BYTES);
     }
 
     /**
@@ -96,7 +150,7 @@ public final class HTInterval implements ITmfStateInterval {
          * Minimum size is 2x long (start and end), 1x int (attribute) and 1x
          * byte (value type).
          */
-        int minSize = Long.BYTES + Long.BYTES + Integer.BYTES + Byte.BYTES;
+        int minSize = HTIntervalColumns.FIXED_MIN_SIZE;
 
         if (sv == null) {
             return minSize;
@@ -108,7 +162,7 @@ public final class HTInterval implements ITmfStateInterval {
             return (minSize + Double.BYTES);
         } else if (sv instanceof String) {
             String str = (String) sv;
-            int strLength = str.getBytes(CHARSET).length;
+            int strLength = str.getBytes(HTIntervalColumns.CHARSET).length;
 
             if (strLength > Short.MAX_VALUE) {
                 throw new IllegalArgumentException("String is too long to be stored in state system: " + str); //$NON-NLS-1$
@@ -130,13 +184,13 @@ public final class HTInterval implements ITmfStateInterval {
     }
 
     /**
-     * "Faster" constructor for inner use only. When we build an interval when
-     * reading it from disk (with {@link #readFrom}), we already know the size
-     * of the strings entry, so there is no need to call
-     * {@link #computeStringsEntrySize()} and do an extra copy.
+     * "Faster" constructor for inner use only. When we build an interval from
+     * the columns of a node (see {@link HTIntervalColumns}), we already know
+     * the type, bits and size of the entry, so there is no need to call
+     * {@link #computeSizeOnDisk(Object)} nor to box the numerical values.
      */
-    private HTInterval(long intervalStart, long intervalEnd, int attribute,
-            Object value, int size) throws TimeRangeException {
+    HTInterval(long intervalStart, long intervalEnd, int attribute,
+            byte type, long bits, @Nullable Object object, int size) throws TimeRangeException {
         if (intervalStart > intervalEnd) {
             throw new TimeRangeException("Start:" + intervalStart + ", End:" + intervalEnd); //$NON-NLS-1$ //$NON-NLS-2$
         }
@@ -144,7 +198,9 @@ public final class HTInterval implements ITmfStateInterval {
         this.start = intervalStart;
         this.end = intervalEnd;
         this.attribute = attribute;
-        this.sv = value;
+        this.fType = type;
+        this.fBits = bits;
+        this.sv = object;
         this.fSizeOnDisk = size;
     }
 
@@ -170,68 +226,9 @@ public final class HTInterval implements ITmfStateInterval {
      *             If there was an error reading from the buffer
      */
     public static final HTInterval readFrom(ByteBuffer buffer) throws IOException {
-        Object value;
-
-        int posStart = buffer.position();
-        /* Read the Data Section entry */
-        long intervalStart = buffer.getLong();
-        long intervalEnd = buffer.getLong();
-        int attribute = buffer.getInt();
-
-        /* Read the 'type' of the value, then react accordingly */
-        byte valueType = buffer.get();
-        switch (valueType) {
-
-        case TYPE_NULL:
-            value = null;
-            break;
-
-        case TYPE_INTEGER:
-            value = buffer.getInt();
-            break;
-
-        case TYPE_STRING: {
-            /* the first short = the size to read */
-            int valueSize = buffer.getShort();
-
-            byte[] array = new byte[valueSize];
-            buffer.get(array);
-            value = new String(array, CHARSET);
-
-            /* Confirm the 0'ed byte at the end */
-            byte res = buffer.get();
-            if (res != 0) {
-                throw new IOException(errMsg);
-            }
-            break;
-        }
-
-        case TYPE_LONG:
-            /* Go read the matching entry in the Strings section of the block */
-            value = buffer.getLong();
-            break;
-
-        case TYPE_DOUBLE:
-            /* Go read the matching entry in the Strings section of the block */
-            value = buffer.getDouble();
-            break;
-
-        case TYPE_CUSTOM: {
-            short valueSize = buffer.getShort();
-            ISafeByteBufferReader safeBuffer = SafeByteBufferFactory.wrapReader(buffer, valueSize);
-            value = CustomStateValue.readSerializedValue(safeBuffer);
-            break;
-        }
-        default:
-            /* Unknown data, better to not make anything up... */
-            throw new IOException(errMsg);
-        }
-
-        try {
-            return new HTInterval(intervalStart, intervalEnd, attribute, value, buffer.position() - posStart);
-        } catch (TimeRangeException e) {
-            throw new IOException(errMsg);
-        }
+        HTIntervalColumns columns = new HTIntervalColumns(1);
+        columns.read(buffer, false, null, 0);
+        return columns.get(0);
     }
 
     /**
@@ -254,45 +251,83 @@ public final class HTInterval implements ITmfStateInterval {
      *            The already-allocated ByteBuffer corresponding to a SHT Node
      */
     public void writeInterval(ByteBuffer buffer) {
-        buffer.putLong(start);
-        buffer.putLong(end);
-        buffer.putInt(attribute);
+        HTIntervalColumns.writeInterval(buffer, start, end, attribute, fType,
+                fBits, sv, false, null, 0);
+    }
 
-        if (sv != null) {
-            @NonNull Object value = sv;
-            if (value instanceof Integer) {
-                buffer.put(TYPE_INTEGER);
-                buffer.putInt((int) value);
-            } else if (value instanceof Long) {
-                buffer.put(TYPE_LONG);
-                buffer.putLong((long) value);
-            } else if (value instanceof Double) {
-                buffer.put(TYPE_DOUBLE);
-                buffer.putDouble((double) value);
-            } else if (value instanceof String) {
-                buffer.put(TYPE_STRING);
-                String string = (String) value;
-                byte[] strArray = string.getBytes(CHARSET);
-
-                /*
-                 * Write the Strings entry (1st byte = size, then the bytes, then the 0). We
-                 * have checked the string length at the constructor.
-                 */
-                buffer.putShort((short) strArray.length);
-                buffer.put(strArray);
-                buffer.put((byte) 0);
-            } else if (value instanceof CustomStateValue) {
-                buffer.put(TYPE_CUSTOM);
-                int size = ((CustomStateValue) value).getSerializedSize();
-                buffer.putShort((short) size);
-                ISafeByteBufferWriter safeBuffer = SafeByteBufferFactory.wrapWriter(buffer, size);
-                ((CustomStateValue) value).serialize(safeBuffer);
-            } else {
-                throw new IllegalStateException("Type: " + value.getClass() + " is not implemented in the state system"); //$NON-NLS-1$ //$NON-NLS-2$
-            }
-        } else {
-            buffer.put(TYPE_NULL);
-        }
+    /**
+     * Reader factory method for the compact format. Builds the interval using
+     * an already-allocated ByteBuffer, which normally comes from a NIO
+     * FileChannel.
+     *
+     * This is the layout of the HTInterval in the compact format, where varint
+     * means an unsigned LEB128 variable-length integer, and zigzag varint a
+     * signed value mapped to a varint
+     * <ul>
+     * <li>start - node start (varint)</li>
+     * <li>end - start (varint)</li>
+     * <li>attribute (varint)</li>
+     * <li>sv type (1 byte)</li>
+     * <li>sv (0 bytes for null, zigzag varint for int and long, 8 for double,
+     * and varint length followed by the bytes for strings and custom
+     * values)</li>
+     * </ul>
+     *
+     * @param buffer
+     *            The ByteBuffer from which to read the information
+     * @param nodeStart
+     *            The start time of the node containing this interval
+     * @return The interval object
+     * @throws IOException
+     *             If there was an error reading from the buffer
+     */
+    public static final HTInterval readCompactFrom(ByteBuffer buffer, long nodeStart) throws IOException {
+        HTIntervalColumns columns = new HTIntervalColumns(1);
+        columns.read(buffer, true, null, nodeStart);
+        return columns.get(0);
+    }
+
+    /**
+     * Write this interval in a ByteBuffer using the compact format. See
+     * {@link #readCompactFrom(ByteBuffer, long)} for the layout.
+     *
+     * @param buffer
+     *            The already-allocated ByteBuffer corresponding to a SHT Node
+     * @param nodeStart
+     *            The start time of the node containing this interval
+     */
+    public void writeCompactInterval(ByteBuffer buffer, long nodeStart) {
+        HTIntervalColumns.writeInterval(buffer, start, end, attribute, fType,
+                fBits, sv, true, null, nodeStart);
+    }
+
+    /**
+     * Serialized size of this interval in the compact format. It depends on
+     * the start time of the node the interval is in.
+     *
+     * @param nodeStart
+     *            The start time of the node containing this interval
+     * @return The interval size
+     */
+    public int getCompactSizeOnDisk(long nodeStart) {
+        return getCompactSizeOnDisk(nodeStart, null);
+    }
+
+    /**
+     * Serialized size of this interval in the compact format, with the string
+     * values written as their ID in a dictionary. A string value is added to
+     * the dictionary if it is not there yet.
+     *
+     * @param nodeStart
+     *            The start time of the node containing this interval
+     * @param dictionary
+     *            The dictionary of the string values, or <code>null</code> if
+     *            the strings are written in the interval
+     * @return The interval size
+     */
+    public int getCompactSizeOnDisk(long nodeStart, @Nullable HTStringDictionary dictionary) {
+        return HTIntervalColumns.compactSize(start, end, attribute, fType,
+                fBits, sv, dictionary, nodeStart);
     }
 
     @Override
@@ -312,11 +347,52 @@ public final class HTInterval implements ITmfStateInterval {
 
     @Override
     public ITmfStateValue getStateValue() {
-        return TmfStateValue.newValue(sv);
+        return TmfStateValue.newValue(getValue());
     }
 
     @Override
     public Object getValue() {
+        if (sv != null) {
+            return sv;
+        }
+        switch (fType) {
+        case HTIntervalColumns.TYPE_INTEGER:
+            return (int) fBits;
+        case HTIntervalColumns.TYPE_LONG:
+            return fBits;
+        case HTIntervalColumns.TYPE_DOUBLE:
+            return Double.longBitsToDouble(fBits);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Get the type byte of the value, see {@link HTIntervalColumns}
+     *
+     * @return The type of the value
+     */
+    byte getValueType() {
+        return fType;
+    }
+
+    /**
+     * Get the bits of a numerical value, or the size of the interval for the
+     * other types, see {@link HTIntervalColumns}
+     *
+     * @return The bits of the value
+     */
+    long getValueBits() {
+        return fBits;
+    }
+
+    /**
+     * Get the value if it is a string or custom value
+     *
+     * @return The object value, or null for the other types if they were not
+     *         created from an object
+     */
+    @Nullable Object getObjectValue() {
         return sv;
     }
 
@@ -326,7 +402,7 @@ public final class HTInterval implements ITmfStateInterval {
     }
 
     /**
-     * Total serialized size of this interval
+     * Total serialized size of this interval, in the fixed-size format
      *
      * @return The interval size
      */
@@ -349,12 +425,12 @@ public final class HTInterval implements ITmfStateInterval {
         return (start == other.start &&
                 end == other.end &&
                 attribute == other.attribute &&
-                Objects.equals(sv, other.sv));
+                Objects.equals(getValue(), other.getValue()));
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(start, end, attribute, sv);
+        return Objects.hash(start, end, attribute, getValue());
     }
 
     @Override
@@ -371,7 +447,7 @@ public final class HTInterval implements ITmfStateInterval {
         sb.append(attribute);
 
         sb.append(", value = "); //$NON-NLS-1$
-        sb.append(String.valueOf(sv));
+        sb.append(String.valueOf(getValue()));
 
         return sb.toString();
     }
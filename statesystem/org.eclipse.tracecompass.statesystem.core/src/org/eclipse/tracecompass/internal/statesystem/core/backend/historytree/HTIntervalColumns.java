@@ -0,0 +1,641 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.datastore.core.serialization.ISafeByteBufferReader;
+import org.eclipse.tracecompass.datastore.core.serialization.ISafeByteBufferWriter;
+import org.eclipse.tracecompass.datastore.core.serialization.SafeByteBufferFactory;
+import org.eclipse.tracecompass.internal.provisional.statesystem.core.statevalue.CustomStateValue;
+
+/**
+ * Columnar storage of the intervals of a {@link HTNode}. The fields of the
+ * intervals are kept in parallel primitive arrays, sorted by end time, then
+ * start time, then quark. {@link HTInterval} objects are only created when an
+ * interval is returned to the caller, so reading a node from disk and looking
+ * for a few attributes does not allocate one object per interval.
+ *
+ * This class also contains the serialization of the intervals, for the
+ * fixed-size and the compact file formats, with or without a
+ * {@link HTStringDictionary} for the string values.
+ *
+ * This class is not thread-safe, the node owning it is responsible for the
+ * locking.
+ */
+final class HTIntervalColumns {
+
+    static final Charset CHARSET = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    /* 'Byte' equivalent for state values types */
+    static final byte TYPE_NULL = -1;
+    static final byte TYPE_INTEGER = 0;
+    static final byte TYPE_STRING = 1;
+    static final byte TYPE_LONG = 2;
+    static final byte TYPE_DOUBLE = 3;
+    static final byte TYPE_CUSTOM = 20;
+
+    /* Size of the fixed-size fields of an interval: start, end, quark, type */
+    static final int FIXED_MIN_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES + Byte.BYTES;
+
+    private static final String ERR_MSG = "Invalid interval data. Maybe your file is corrupt?"; //$NON-NLS-1$
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] fStarts;
+    private long[] fEnds;
+    private int[] fQuarks;
+    private byte[] fTypes;
+    /*
+     * The bits of the int, long and double values. For string and custom
+     * values, the size of the interval in the fixed-size format, so it does
+     * not need to be computed again.
+     */
+    private long[] fBits;
+    /* The string and custom values, allocated only if the node has some */
+    private @Nullable Object @Nullable [] fObjects = null;
+    private int fSize = 0;
+
+    /**
+     * Constructor
+     */
+    HTIntervalColumns() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param capacity
+     *            The initial number of intervals that can be stored
+     */
+    HTIntervalColumns(int capacity) {
+        int initial = Math.max(1, capacity);
+        fStarts = new long[initial];
+        fEnds = new long[initial];
+        fQuarks = new int[initial];
+        fTypes = new byte[initial];
+        fBits = new long[initial];
+    }
+
+    // ------------------------------------------------------------------------
+    // Accessors
+    // ------------------------------------------------------------------------
+
+    int size() {
+        return fSize;
+    }
+
+    boolean isEmpty() {
+        return fSize == 0;
+    }
+
+    long getStart(int index) {
+        return fStarts[index];
+    }
+
+    long getEnd(int index) {
+        return fEnds[index];
+    }
+
+    int getQuark(int index) {
+        return fQuarks[index];
+    }
+
+    /**
+     * Create the interval object for an index
+     *
+     * @param index
+     *            The index of the interval
+     * @return The interval
+     */
+    HTInterval get(int index) {
+        byte type = fTypes[index];
+        long bits = fBits[index];
+        Object object = null;
+        int size;
+        switch (type) {
+        case TYPE_INTEGER:
+            size = FIXED_MIN_SIZE + Integer.BYTES;
+            break;
+        case TYPE_LONG:
+            size = FIXED_MIN_SIZE + Long.BYTES;
+            break;
+        case TYPE_DOUBLE:
+            size = FIXED_MIN_SIZE + Double.BYTES;
+            break;
+        case TYPE_STRING:
+        case TYPE_CUSTOM:
+            object = getObjects()[index];
+            size = (int) bits;
+            break;
+        case TYPE_NULL:
+        default:
+            size = FIXED_MIN_SIZE;
+            break;
+        }
+        /* The numerical values are boxed only if the caller asks for them */
+        return new HTInterval(fStarts[index], fEnds[index], fQuarks[index], type, bits, object, size);
+    }
+
+    // ------------------------------------------------------------------------
+    // Search and insertion
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the index of the first interval whose end time is greater than or
+     * equal to a timestamp.
+     *
+     * @param t
+     *            The timestamp
+     * @return The index of the first interval ending at or after t, or the
+     *         size if there is none
+     */
+    int getStartIndexFor(long t) {
+        int low = 0;
+        int high = fSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (fEnds[mid] < t) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Insert an interval, keeping the intervals sorted by end time, then start
+     * time, then quark.
+     *
+     * @param interval
+     *            The interval to insert
+     */
+    void insert(HTInterval interval) {
+        long start = interval.getStartTime();
+        long end = interval.getEndTime();
+        int quark = interval.getAttribute();
+
+        /* Find the first interval that comes after this one */
+        int low = 0;
+        int high = fSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(mid, start, end, quark) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int index = low;
+
+        ensureCapacity(fSize + 1);
+        int toMove = fSize - index;
+        if (toMove > 0) {
+            System.arraycopy(fStarts, index, fStarts, index + 1, toMove);
+            System.arraycopy(fEnds, index, fEnds, index + 1, toMove);
+            System.arraycopy(fQuarks, index, fQuarks, index + 1, toMove);
+            System.arraycopy(fTypes, index, fTypes, index + 1, toMove);
+            System.arraycopy(fBits, index, fBits, index + 1, toMove);
+            Object[] objects = fObjects;
+            if (objects != null) {
+                System.arraycopy(objects, index, objects, index + 1, toMove);
+                objects[index] = null;
+            }
+        }
+        fSize++;
+
+        byte type = interval.getValueType();
+        fStarts[index] = start;
+        fEnds[index] = end;
+        fQuarks[index] = quark;
+        fTypes[index] = type;
+        fBits[index] = interval.getValueBits();
+        if (type == TYPE_STRING || type == TYPE_CUSTOM) {
+            getObjects()[index] = interval.getObjectValue();
+        }
+    }
+
+    private int compare(int index, long start, long end, int quark) {
+        int cmp = Long.compare(fEnds[index], end);
+        if (cmp != 0) {
+            return cmp;
+        }
+        cmp = Long.compare(fStarts[index], start);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return Integer.compare(fQuarks[index], quark);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= fStarts.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, fStarts.length + (fStarts.length >> 1) + 1);
+        fStarts = Arrays.copyOf(fStarts, newCapacity);
+        fEnds = Arrays.copyOf(fEnds, newCapacity);
+        fQuarks = Arrays.copyOf(fQuarks, newCapacity);
+        fTypes = Arrays.copyOf(fTypes, newCapacity);
+        fBits = Arrays.copyOf(fBits, newCapacity);
+        Object[] objects = fObjects;
+        if (objects != null) {
+            fObjects = Arrays.copyOf(objects, newCapacity);
+        }
+    }
+
+    private @Nullable Object[] getObjects() {
+        Object[] objects = fObjects;
+        if (objects == null) {
+            objects = new Object[fStarts.length];
+            fObjects = objects;
+        }
+        return objects;
+    }
+
+    // ------------------------------------------------------------------------
+    // Serialization
+    // ------------------------------------------------------------------------
+
+    /**
+     * Read an interval from a buffer and append it at the end of the columns.
+     * The intervals must be read in the order in which they were written.
+     *
+     * @param buffer
+     *            The buffer, positioned at the start of the interval
+     * @param compact
+     *            Whether the interval is in the compact format
+     * @param dictionary
+     *            The dictionary of the string values, if they are written as
+     *            IDs, <code>null</code> otherwise
+     * @param nodeStart
+     *            The start time of the node containing the interval, used by
+     *            the compact format
+     * @throws IOException
+     *             If the data is invalid
+     */
+    void read(ByteBuffer buffer, boolean compact, @Nullable HTStringDictionary dictionary, long nodeStart) throws IOException {
+        long start;
+        long end;
+        int quark;
+        if (compact) {
+            start = nodeStart + readVarLong(buffer);
+            end = start + readVarLong(buffer);
+            quark = (int) readVarLong(buffer);
+        } else {
+            start = buffer.getLong();
+            end = buffer.getLong();
+            quark = buffer.getInt();
+        }
+        if (start > end) {
+            throw new IOException(ERR_MSG);
+        }
+
+        long bits;
+        Object object = null;
+        /* Read the 'type' of the value, then react accordingly */
+        byte type = buffer.get();
+        switch (type) {
+        case TYPE_NULL:
+            bits = 0;
+            break;
+
+        case TYPE_INTEGER:
+            bits = compact ? decodeZigZag(readVarLong(buffer)) : buffer.getInt();
+            break;
+
+        case TYPE_LONG:
+            bits = compact ? decodeZigZag(readVarLong(buffer)) : buffer.getLong();
+            break;
+
+        case TYPE_DOUBLE:
+            bits = Double.doubleToRawLongBits(buffer.getDouble());
+            break;
+
+        case TYPE_STRING: {
+            if (dictionary != null) {
+                int id = (int) readVarLong(buffer);
+                object = dictionary.get(id);
+                bits = FIXED_MIN_SIZE + dictionary.getEncodedLength(id) + 3;
+                break;
+            }
+            /* The first short or varint is the size to read */
+            int length = compact ? (int) readVarLong(buffer) : buffer.getShort();
+            byte[] array = new byte[length];
+            buffer.get(array);
+            object = new String(array, CHARSET);
+            if (!compact && buffer.get() != 0) {
+                /* Confirm the 0'ed byte at the end */
+                throw new IOException(ERR_MSG);
+            }
+            /* Short length, bytes and 0 in the fixed-size format */
+            bits = FIXED_MIN_SIZE + length + 3;
+            break;
+        }
+
+        case TYPE_CUSTOM: {
+            int length = compact ? (int) readVarLong(buffer) : buffer.getShort();
+            ISafeByteBufferReader safeBuffer = SafeByteBufferFactory.wrapReader(buffer, length);
+            object = CustomStateValue.readSerializedValue(safeBuffer);
+            bits = FIXED_MIN_SIZE + Short.BYTES + length;
+            break;
+        }
+
+        default:
+            /* Unknown data, better to not make anything up... */
+            throw new IOException(ERR_MSG);
+        }
+
+        ensureCapacity(fSize + 1);
+        int index = fSize;
+        fStarts[index] = start;
+        fEnds[index] = end;
+        fQuarks[index] = quark;
+        fTypes[index] = type;
+        fBits[index] = bits;
+        if (object != null) {
+            getObjects()[index] = object;
+        }
+        fSize++;
+    }
+
+    /**
+     * Write an interval to a buffer
+     *
+     * @param buffer
+     *            The buffer to write to
+     * @param index
+     *            The index of the interval to write
+     * @param compact
+     *            Whether to use the compact format
+     * @param dictionary
+     *            The dictionary of the string values to write them as IDs,
+     *            <code>null</code> to write the strings themselves
+     * @param nodeStart
+     *            The start time of the node containing the interval, used by
+     *            the compact format
+     */
+    void write(ByteBuffer buffer, int index, boolean compact, @Nullable HTStringDictionary dictionary, long nodeStart) {
+        Object[] objects = fObjects;
+        writeInterval(buffer, fStarts[index], fEnds[index], fQuarks[index], fTypes[index], fBits[index],
+                objects == null ? null : objects[index], compact, dictionary, nodeStart);
+    }
+
+    /**
+     * Write the fields of an interval to a buffer
+     *
+     * @param buffer
+     *            The buffer to write to
+     * @param start
+     *            The start time of the interval
+     * @param end
+     *            The end time of the interval
+     * @param quark
+     *            The quark of the interval
+     * @param type
+     *            The type of value, as returned by {@link #typeOf(Object)}
+     * @param bits
+     *            The bits of the value, as returned by
+     *            {@link #bitsOf(byte, Object, int)}
+     * @param object
+     *            The string or custom value, <code>null</code> for other types
+     * @param compact
+     *            Whether to use the compact format
+     * @param dictionary
+     *            The dictionary of the string values to write them as IDs,
+     *            <code>null</code> to write the strings themselves. The string
+     *            must already be in the dictionary.
+     * @param nodeStart
+     *            The start time of the node containing the interval, used by
+     *            the compact format
+     */
+    static void writeInterval(ByteBuffer buffer, long start, long end, int quark, byte type, long bits,
+            @Nullable Object object, boolean compact, @Nullable HTStringDictionary dictionary, long nodeStart) {
+        if (compact) {
+            writeVarLong(buffer, start - nodeStart);
+            writeVarLong(buffer, end - start);
+            writeVarLong(buffer, Integer.toUnsignedLong(quark));
+        } else {
+            buffer.putLong(start);
+            buffer.putLong(end);
+            buffer.putInt(quark);
+        }
+
+        buffer.put(type);
+        switch (type) {
+        case TYPE_INTEGER:
+            if (compact) {
+                writeVarLong(buffer, encodeZigZag(bits));
+            } else {
+                buffer.putInt((int) bits);
+            }
+            break;
+        case TYPE_LONG:
+            if (compact) {
+                writeVarLong(buffer, encodeZigZag(bits));
+            } else {
+                buffer.putLong(bits);
+            }
+            break;
+        case TYPE_DOUBLE:
+            buffer.putLong(bits);
+            break;
+        case TYPE_STRING: {
+            if (dictionary != null) {
+                int id = dictionary.getId((String) object);
+                if (id < 0) {
+                    throw new IllegalStateException("String value not in the dictionary: " + object); //$NON-NLS-1$
+                }
+                writeVarLong(buffer, id);
+                break;
+            }
+            byte[] strArray = ((String) object).getBytes(CHARSET);
+            /*
+             * Write the Strings entry (size, then the bytes, then the 0 in
+             * the fixed-size format). We have checked the string length at the
+             * interval constructor.
+             */
+            if (compact) {
+                writeVarLong(buffer, strArray.length);
+                buffer.put(strArray);
+            } else {
+                buffer.putShort((short) strArray.length);
+                buffer.put(strArray);
+                buffer.put((byte) 0);
+            }
+            break;
+        }
+        case TYPE_CUSTOM: {
+            CustomStateValue value = (CustomStateValue) object;
+            int size = value.getSerializedSize();
+            if (compact) {
+                writeVarLong(buffer, size);
+            } else {
+                buffer.putShort((short) size);
+            }
+            ISafeByteBufferWriter safeBuffer = SafeByteBufferFactory.wrapWriter(buffer, size);
+            value.serialize(safeBuffer);
+            break;
+        }
+        case TYPE_NULL:
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Compute the size of an interval in the compact format
+     *
+     * @param start
+     *            The start time of the interval
+     * @param end
+     *            The end time of the interval
+     * @param quark
+     *            The quark of the interval
+     * @param type
+     *            The type of value, as returned by {@link #typeOf(Object)}
+     * @param bits
+     *            The bits of the value, as returned by
+     *            {@link #bitsOf(byte, Object, int)}
+     * @param object
+     *            The string or custom value, <code>null</code> for other types
+     * @param dictionary
+     *            The dictionary of the string values if they are written as
+     *            IDs, <code>null</code> otherwise. A string value is added to
+     *            the dictionary if it is not there yet, so it can be written
+     *            afterwards.
+     * @param nodeStart
+     *            The start time of the node containing the interval
+     * @return The size of the interval, in bytes
+     */
+    static int compactSize(long start, long end, int quark, byte type, long bits,
+            @Nullable Object object, @Nullable HTStringDictionary dictionary, long nodeStart) {
+        int size = varLongSize(start - nodeStart)
+                + varLongSize(end - start)
+                + varLongSize(Integer.toUnsignedLong(quark))
+                + Byte.BYTES;
+
+        switch (type) {
+        case TYPE_INTEGER:
+        case TYPE_LONG:
+            return size + varLongSize(encodeZigZag(bits));
+        case TYPE_DOUBLE:
+            return size + Double.BYTES;
+        case TYPE_STRING: {
+            if (dictionary != null) {
+                return size + varLongSize(dictionary.getOrAdd((String) object));
+            }
+            /* Remove the short length and the final 0 */
+            int length = (int) bits - FIXED_MIN_SIZE - 3;
+            return size + varLongSize(length) + length;
+        }
+        case TYPE_CUSTOM: {
+            int length = (int) bits - FIXED_MIN_SIZE - Short.BYTES;
+            return size + varLongSize(length) + length;
+        }
+        case TYPE_NULL:
+        default:
+            return size;
+        }
+    }
+
+    /**
+     * Get the type byte of a state value
+     *
+     * @param value
+     *            The unboxed state value
+     * @return The type byte
+     */
+    static byte typeOf(@Nullable Object value) {
+        if (value == null) {
+            return TYPE_NULL;
+        } else if (value instanceof Integer) {
+            return TYPE_INTEGER;
+        } else if (value instanceof Long) {
+            return TYPE_LONG;
+        } else if (value instanceof Double) {
+            return TYPE_DOUBLE;
+        } else if (value instanceof String) {
+            return TYPE_STRING;
+        } else if (value instanceof CustomStateValue) {
+            return TYPE_CUSTOM;
+        }
+        throw new IllegalStateException("Type: " + value.getClass() + " is not implemented in the state system"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * Get the bits to store for a state value
+     *
+     * @param type
+     *            The type of the value
+     * @param value
+     *            The unboxed state value
+     * @param sizeOnDisk
+     *            The size of the interval in the fixed-size format
+     * @return The bits of numerical values, or the size of the interval for
+     *         other types
+     */
+    static long bitsOf(byte type, @Nullable Object value, int sizeOnDisk) {
+        switch (type) {
+        case TYPE_INTEGER:
+            return (Integer) value;
+        case TYPE_LONG:
+            return (Long) value;
+        case TYPE_DOUBLE:
+            return Double.doubleToRawLongBits((Double) value);
+        case TYPE_STRING:
+        case TYPE_CUSTOM:
+            return sizeOnDisk;
+        case TYPE_NULL:
+        default:
+            return 0;
+        }
+    }
+
+    private static long encodeZigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long decodeZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int varLongSize(long value) {
+        /* 7 bits per byte, at least one byte */
+        int bits = Long.SIZE - Long.numberOfLeadingZeros(value);
+        return Math.max(1, (bits + 6) / 7);
+    }
+
+    private static void writeVarLong(ByteBuffer buffer, long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte) remaining);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException(ERR_MSG);
+    }
+}
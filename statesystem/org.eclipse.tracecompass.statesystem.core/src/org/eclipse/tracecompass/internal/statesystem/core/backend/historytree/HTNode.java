@@ -21,7 +21,6 @@ import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -133,18 +132,12 @@ public abstract class HTNode {
     /* True if this node was read from disk (meaning its end time is now fixed) */
     private volatile boolean fIsOnDisk;
 
-    /* Vector containing all the intervals contained in this node */
-    private final List<HTInterval> fIntervals;
+    /* Columns containing all the intervals contained in this node */
+    private final HTIntervalColumns fIntervals;
 
     /* Lock used to protect the accesses to intervals, nodeEnd and such */
     private final ReentrantReadWriteLock fRwl = new ReentrantReadWriteLock(false);
 
-    /** Order of intervals in a HTNode: sorted by end times, then by start times. */
-    private static final Comparator<ITmfStateInterval> NODE_ORDER = Comparator
-            .comparingLong(ITmfStateInterval::getEndTime)
-            .thenComparingLong(ITmfStateInterval::getStartTime)
-            .thenComparingInt(ITmfStateInterval::getAttribute);
-
     /**
      * Constructor
      *
@@ -166,7 +159,7 @@ public abstract class HTNode {
 
         fSizeOfIntervalSection = 0;
         fIsOnDisk = false;
-        fIntervals = new ArrayList<>();
+        fIntervals = new HTIntervalColumns();
     }
 
     /**
@@ -186,8 +179,6 @@ public abstract class HTNode {
      */
     public static final @NonNull HTNode readNode(HTConfig config, FileChannel fc, IHistoryTree.IHTNodeFactory nodeFactory)
             throws IOException {
-        HTNode newNode = null;
-
         ByteBuffer buffer = ByteBuffer.allocate(config.getBlockSize());
         buffer.order(ByteOrder.LITTLE_ENDIAN);
         buffer.clear();
@@ -195,6 +186,28 @@ public abstract class HTNode {
         assert (res == config.getBlockSize());
         buffer.flip();
 
+        return readNode(config, buffer, nodeFactory);
+    }
+
+    /**
+     * Reader factory method. Build a Node object (of the right type) from a
+     * buffer containing a whole block of the file.
+     *
+     * @param config
+     *            Configuration of the History Tree
+     * @param buffer
+     *            The little-endian buffer containing the node's block,
+     *            positioned at the start of the node
+     * @param nodeFactory
+     *            The factory to create the nodes for this tree
+     * @return The node object
+     * @throws IOException
+     *             If the buffer does not contain a valid node
+     */
+    public static final @NonNull HTNode readNode(HTConfig config, ByteBuffer buffer, IHistoryTree.IHTNodeFactory nodeFactory)
+            throws IOException {
+        HTNode newNode = null;
+
         /* Read the common header part */
         byte typeByte = buffer.get();
         NodeType type = NodeType.fromByte(typeByte);
@@ -230,11 +243,14 @@ public abstract class HTNode {
          * At this point, we should be done reading the header and 'buffer'
          * should only have the intervals left
          */
+        boolean compact = config.isCompactIntervals();
+        HTStringDictionary dictionary = config.getStringDictionary();
+        int intervalStart = buffer.position();
+        HTIntervalColumns intervals = newNode.fIntervals;
         for (int i = 0; i < intervalCount; i++) {
-            HTInterval interval = HTInterval.readFrom(buffer);
-            newNode.fIntervals.add(interval);
-            newNode.fSizeOfIntervalSection += interval.getSizeOnDisk();
+            intervals.read(buffer, compact, dictionary, start);
         }
+        newNode.fSizeOfIntervalSection = buffer.position() - intervalStart;
 
         /* Assign the node's other information we have read previously */
         newNode.fNodeEnd = end;
@@ -245,6 +261,30 @@ public abstract class HTNode {
         return newNode;
     }
 
+    /**
+     * Reader factory method for a node that was not closed when it was
+     * serialized, like the nodes of the latest branch saved in a checkpoint.
+     * Unlike the nodes read from the history file, that node can still
+     * receive intervals.
+     *
+     * @param config
+     *            Configuration of the History Tree
+     * @param buffer
+     *            The little-endian buffer containing the node's block,
+     *            positioned at the start of the node
+     * @param nodeFactory
+     *            The factory to create the nodes for this tree
+     * @return The node object
+     * @throws IOException
+     *             If the buffer does not contain a valid node
+     */
+    public static final @NonNull HTNode readOpenNode(HTConfig config, ByteBuffer buffer, IHistoryTree.IHTNodeFactory nodeFactory)
+            throws IOException {
+        HTNode node = readNode(config, buffer, nodeFactory);
+        node.fIsOnDisk = false;
+        return node;
+    }
+
     /**
      * Write this node to the given file channel.
      *
@@ -255,6 +295,46 @@ public abstract class HTNode {
      *             If there was an error writing
      */
     public final void writeSelf(FileChannel fc) throws IOException {
+        final int blockSize = fConfig.getBlockSize();
+        ByteBuffer buffer = serialize();
+
+        /* Finally, write everything in the Buffer to disk */
+        int res = fc.write(buffer);
+        if (res != blockSize) {
+            throw new IllegalStateException("Wrong size of block written: Actual: " + res + ", Expected: " + blockSize); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        fIsOnDisk = true;
+    }
+
+    /**
+     * Write this node to the given file channel, at the given position. This
+     * does not modify the position of the channel, so many nodes can be
+     * written concurrently to the same channel.
+     *
+     * @param fc
+     *            The file channel to write to
+     * @param position
+     *            The position in the file at which to write the node
+     * @throws IOException
+     *             If there was an error writing
+     */
+    public final void writeSelf(FileChannel fc, long position) throws IOException {
+        ByteBuffer buffer = serialize();
+        while (buffer.hasRemaining()) {
+            fc.write(buffer, position + buffer.position());
+        }
+        fIsOnDisk = true;
+    }
+
+    /**
+     * Serialize this node in a new buffer of the size of a block. This is the
+     * content written to the history file, but the node can still be
+     * modified afterwards, for example to save the latest branch of a tree
+     * being built.
+     *
+     * @return The buffer, flipped and ready to be written
+     */
+    public ByteBuffer serialize() {
         /*
          * Yes, we are taking the *read* lock here, because we are reading the
          * information in the node to write it to disk.
@@ -282,7 +362,11 @@ public abstract class HTNode {
             writeSpecificHeader(buffer);
 
             /* Back to us, we write the intervals */
-            fIntervals.forEach(i -> i.writeInterval(buffer));
+            boolean compact = fConfig.isCompactIntervals();
+            HTStringDictionary dictionary = fConfig.getStringDictionary();
+            for (int i = 0; i < fIntervals.size(); i++) {
+                fIntervals.write(buffer, i, compact, dictionary, fNodeStart);
+            }
             if (blockSize - buffer.position() != getNodeFreeSpace()) {
                 throw new IllegalStateException("Wrong free space: Actual: " + (blockSize - buffer.position()) + ", Expected: " + getNodeFreeSpace()); //$NON-NLS-1$ //$NON-NLS-2$
             }
@@ -293,17 +377,11 @@ public abstract class HTNode {
                 buffer.put((byte) 0);
             }
 
-            /* Finally, write everything in the Buffer to disk */
             buffer.flip();
-            int res = fc.write(buffer);
-            if (res != blockSize) {
-                throw new IllegalStateException("Wrong size of block written: Actual: " + res + ", Expected: " + blockSize); //$NON-NLS-1$ //$NON-NLS-2$
-            }
-
+            return buffer;
         } finally {
             fRwl.readLock().unlock();
         }
-        fIsOnDisk = true;
     }
 
     // ------------------------------------------------------------------------
@@ -389,31 +467,40 @@ public abstract class HTNode {
     public void addInterval(HTInterval newInterval) {
         fRwl.writeLock().lock();
         try {
-            /* Just in case, should be checked before even calling this function */
-            assert (newInterval.getSizeOnDisk() <= getNodeFreeSpace());
+            int intervalSize = getIntervalSize(newInterval);
 
-            /* Find the insert position to keep the list sorted */
-            int index = 0;
-            if (!fIntervals.isEmpty()) {
-                index = Collections.binarySearch(fIntervals, newInterval, NODE_ORDER);
-                /*
-                 * Interval should not already be in the node, binarySearch will
-                 * return (-insertionPoint - 1).
-                 */
-                index = -index - 1;
-            }
+            /* Just in case, should be checked before even calling this function */
+            assert (intervalSize <= getNodeFreeSpace());
 
-            fIntervals.add(index, newInterval);
+            /* Insert at the right position to keep the intervals sorted */
+            fIntervals.insert(newInterval);
             fNodeEnd = Long.max(fNodeEnd, newInterval.getEndTime());
             fMinQuark = Integer.min(fMinQuark, newInterval.getAttribute());
             fMaxQuark = Integer.max(fMaxQuark, newInterval.getAttribute());
-            fSizeOfIntervalSection += newInterval.getSizeOnDisk();
+            fSizeOfIntervalSection += intervalSize;
 
         } finally {
             fRwl.writeLock().unlock();
         }
     }
 
+    /**
+     * Get the number of bytes an interval would take in this node. It depends
+     * on the file format version, and on the start time of the node for the
+     * compact format. With a string dictionary, a string value is added to the
+     * dictionary here if it is not there yet.
+     *
+     * @param interval
+     *            The interval
+     * @return The size of the interval once written in this node
+     */
+    public int getIntervalSize(HTInterval interval) {
+        if (fConfig.isCompactIntervals()) {
+            return interval.getCompactSizeOnDisk(fNodeStart, fConfig.getStringDictionary());
+        }
+        return interval.getSizeOnDisk();
+    }
+
     /**
      * We've received word from the containerTree that newest nodes now exist to
      * our right. (Puts isDone = true and sets the endtime)
@@ -465,10 +552,9 @@ public abstract class HTNode {
                  * been created after stateInfo was instantiated (they would be
                  * null anyway).
                  */
-                ITmfStateInterval interval = fIntervals.get(i);
-                if (t >= interval.getStartTime() &&
-                        interval.getAttribute() < stateInfo.size()) {
-                    stateInfo.set(interval.getAttribute(), interval);
+                int quark = fIntervals.getQuark(i);
+                if (t >= fIntervals.getStart(i) && quark < stateInfo.size()) {
+                    stateInfo.set(quark, fIntervals.get(i));
                 }
             }
         } finally {
@@ -493,10 +579,9 @@ public abstract class HTNode {
         fRwl.readLock().lock();
         try {
             for (int i = getStartIndexFor(t); i < fIntervals.size(); i++) {
-                HTInterval curInterval = fIntervals.get(i);
-                if (curInterval.getAttribute() == key
-                        && curInterval.getStartTime() <= t) {
-                    return curInterval;
+                if (fIntervals.getQuark(i) == key
+                        && fIntervals.getStart(i) <= t) {
+                    return fIntervals.get(i);
                 }
             }
 
@@ -535,10 +620,10 @@ public abstract class HTNode {
             }
             long start = subTimes.min();
             List<HTInterval> intervals = new ArrayList<>();
-            for (HTInterval interval : fIntervals.subList(getStartIndexFor(start), fIntervals.size())) {
-                if (subQuarks.test(interval.getAttribute())
-                        && subTimes.intersects(interval.getStartTime(), interval.getEndTime())) {
-                    intervals.add(interval);
+            for (int i = getStartIndexFor(start); i < fIntervals.size(); i++) {
+                if (subQuarks.test(fIntervals.getQuark(i))
+                        && subTimes.intersects(fIntervals.getStart(i), fIntervals.getEnd(i))) {
+                    intervals.add(fIntervals.get(i));
                 }
             }
             return intervals;
@@ -547,24 +632,15 @@ public abstract class HTNode {
         }
     }
 
-    private int getStartIndexFor(long t) throws TimeRangeException {
+    private int getStartIndexFor(long t) {
         /* Should only be called by methods with the readLock taken */
 
-        if (fIntervals.isEmpty()) {
-            return 0;
-        }
-
         /*
          * Since the intervals are sorted by end time then by start time, we can
          * skip all the ones at the beginning whose end times are smaller than
-         * 't'. We search for a dummy interval from [Long.MIN_VALUE, t], which
-         * will return the first interval that ends with a time >= t.
+         * 't'.
          */
-        HTInterval dummy = new HTInterval(Long.MIN_VALUE, t, 0, null);
-        int index = Collections.binarySearch(fIntervals, dummy, NODE_ORDER);
-
-        /* Handle negative binarySearch return */
-        return (index >= 0 ? index : -index - 1);
+        return fIntervals.getStartIndexFor(t);
     }
 
     /**
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.datastore.core.historytree.HistoryTreeExecutor;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
+import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+
+/**
+ * Spliterator over the intervals of a history tree matching a 2D query. The
+ * nodes are visited breadth-first, while the next nodes to visit are read
+ * asynchronously so that the disk reads overlap with the consumption of the
+ * intervals. Splitting hands over half of the sub-trees left to visit, so the
+ * query can be processed by a parallel stream.
+ *
+ * The intervals are not returned in any particular order. The reads ahead are
+ * cancelled when the iteration is over, a spliterator that is abandoned before
+ * that should be closed with {@link #close()}.
+ */
+public class HTQuery2DSpliterator implements Spliterator<@NonNull ITmfStateInterval>, AutoCloseable {
+
+    /* Number of queued nodes read ahead of the node being iterated */
+    private static final int PREFETCH_DEPTH = 4;
+
+    /*
+     * Rough number of intervals of a node matching a query, the size estimate
+     * is only used to compare the spliterators with each other
+     */
+    private static final long ESTIMATED_INTERVALS_PER_NODE = 100;
+
+    private final IHistoryTree fTree;
+    private final IntegerRangeCondition fQuarks;
+    private final TimeRangeCondition fTimes;
+
+    /* Sequence numbers of the nodes left to visit, and those being read */
+    private final Deque<Integer> fPendingNodes;
+    private final Map<Integer, CompletableFuture<HTNode>> fPrefetched = new HashMap<>();
+
+    private Iterator<@NonNull HTInterval> fIntervals = Collections.emptyIterator();
+
+    /* Estimated number of nodes left to visit, including the queued sub-trees */
+    private long fEstimatedNodes;
+
+    /**
+     * Constructor for a query starting at the root of the tree
+     *
+     * @param tree
+     *            The history tree to query
+     * @param quarks
+     *            The condition on the quarks of the intervals
+     * @param times
+     *            The condition on the times of the intervals
+     */
+    public HTQuery2DSpliterator(IHistoryTree tree, IntegerRangeCondition quarks, TimeRangeCondition times) {
+        this(tree, quarks, times, new ArrayDeque<>(Collections.singleton(tree.getRootNode().getSequenceNumber())), tree.getNodeCount());
+    }
+
+    private HTQuery2DSpliterator(IHistoryTree tree, IntegerRangeCondition quarks, TimeRangeCondition times, Deque<Integer> pendingNodes, long estimatedNodes) {
+        fTree = tree;
+        fQuarks = quarks;
+        fTimes = times;
+        fPendingNodes = pendingNodes;
+        fEstimatedNodes = estimatedNodes;
+    }
+
+    @Override
+    public boolean tryAdvance(@Nullable Consumer<? super @NonNull ITmfStateInterval> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        while (!fIntervals.hasNext()) {
+            if (!visitNextNode()) {
+                return false;
+            }
+        }
+        action.accept(fIntervals.next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(@Nullable Consumer<? super @NonNull ITmfStateInterval> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        do {
+            fIntervals.forEachRemaining(action);
+        } while (visitNextNode());
+    }
+
+    @Override
+    public @Nullable Spliterator<@NonNull ITmfStateInterval> trySplit() {
+        /* Open the single sub-tree left until there are some to hand over */
+        while (fPendingNodes.size() == 1 && !fIntervals.hasNext()) {
+            if (!visitNextNode()) {
+                return null;
+            }
+        }
+        int size = fPendingNodes.size();
+        int nbSplit = fIntervals.hasNext() ? (size + 1) / 2 : size / 2;
+        if (nbSplit == 0) {
+            return null;
+        }
+        Deque<Integer> splitNodes = new ArrayDeque<>(nbSplit);
+        for (int i = 0; i < nbSplit; i++) {
+            splitNodes.addFirst(fPendingNodes.removeLast());
+        }
+        /* The sub-trees handed over take their share of the nodes left */
+        long splitEstimate = fEstimatedNodes * nbSplit / size;
+        fEstimatedNodes -= splitEstimate;
+        HTQuery2DSpliterator split = new HTQuery2DSpliterator(fTree, fQuarks, fTimes, splitNodes, splitEstimate);
+        for (Integer seq : splitNodes) {
+            CompletableFuture<HTNode> future = fPrefetched.remove(seq);
+            if (future != null) {
+                split.fPrefetched.put(seq, future);
+            }
+        }
+        return split;
+    }
+
+    @Override
+    public long estimateSize() {
+        /*
+         * The number of intervals in a sub-tree is not known without reading
+         * it, estimate it from the number of nodes left
+         */
+        if (fPendingNodes.isEmpty() && !fIntervals.hasNext()) {
+            return 0;
+        }
+        long nbNodes = Math.max(fEstimatedNodes, fPendingNodes.size() + (fIntervals.hasNext() ? 1 : 0));
+        return nbNodes * ESTIMATED_INTERVALS_PER_NODE;
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL;
+    }
+
+    /**
+     * Stop the iteration and cancel the reads ahead that are not started yet.
+     */
+    @Override
+    public void close() {
+        fPendingNodes.clear();
+        fPrefetched.values().forEach(future -> future.cancel(false));
+        fPrefetched.clear();
+        fIntervals = Collections.emptyIterator();
+        fEstimatedNodes = 0;
+    }
+
+    /**
+     * Read the next node to visit, queue its children that match the query and
+     * start iterating on its intervals.
+     *
+     * @return false if there are no more nodes to visit
+     */
+    private boolean visitNextNode() {
+        while (!fPendingNodes.isEmpty()) {
+            HTNode node;
+            try {
+                node = readNextNode();
+            } catch (ClosedChannelException e) {
+                /* The tree was closed, stop the query */
+                close();
+                return false;
+            }
+            fEstimatedNodes = Math.max(0, fEstimatedNodes - 1);
+            /* Compute reduced conditions here to reduce complexity in queuing operations. */
+            IntegerRangeCondition subQuarks = fQuarks.subCondition(node.getMinQuark(), node.getMaxQuark());
+            TimeRangeCondition subTimes = fTimes.subCondition(node.getNodeStart(), node.getNodeEnd());
+            /*
+             * During the SHT construction, the bounds of the children are not
+             * final, so we may have queued some nodes which don't overlap the
+             * query.
+             */
+            if (subQuarks != null && subTimes != null) {
+                if (node.getNodeType() == HTNode.NodeType.CORE) {
+                    // Queue the relevant children nodes for BFS.
+                    fPendingNodes.addAll(((ParentNode) node).selectNextChildren2D(subQuarks, subTimes));
+                    prefetch();
+                }
+                fIntervals = node.iterable2D(subQuarks, subTimes).iterator();
+                return true;
+            }
+        }
+        /* The iteration is over, cancel what is left of the reads ahead */
+        close();
+        return false;
+    }
+
+    private HTNode readNextNode() throws ClosedChannelException {
+        Integer head = fPendingNodes.getFirst();
+        CompletableFuture<HTNode> future = fPrefetched.remove(head);
+        if (future == null) {
+            /* Nothing read ahead, prioritize the nodes in the cache */
+            HTNode node = fTree.readNode(fPendingNodes);
+            future = fPrefetched.remove(node.getSequenceNumber());
+            if (future != null) {
+                future.cancel(false);
+            }
+            return node;
+        }
+        fPendingNodes.removeFirst();
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ClosedChannelException) {
+                throw (ClosedChannelException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Start reading the first queued nodes in the background, the nodes read
+     * go to the tree's cache whether or not this query still needs them.
+     */
+    private void prefetch() {
+        ExecutorService pool = HistoryTreeExecutor.getExecutor();
+        if (pool == null) {
+            return;
+        }
+        Iterator<Integer> it = fPendingNodes.iterator();
+        for (int i = 0; i < PREFETCH_DEPTH && it.hasNext(); i++) {
+            Integer seq = it.next();
+            try {
+                fPrefetched.computeIfAbsent(seq, s -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return fTree.readNode(s);
+                    } catch (ClosedChannelException e) {
+                        throw new CompletionException(e);
+                    }
+                }, pool));
+            } catch (RejectedExecutionException e) {
+                /* The pool was shut down, the nodes will be read on demand */
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of the string values of a history tree. Each distinct string is
+ * given an ID, in the order in which they are added, and the intervals of the
+ * nodes reference their string value by this ID. State systems typically use
+ * a small set of string values (process names, states, etc.) for many
+ * intervals, so this makes the nodes smaller, and the intervals read from disk
+ * all share the same string instances.
+ *
+ * The dictionary is saved in the history file after the nodes, see
+ * {@link #writeTo(DataOutput)}.
+ *
+ * Strings are added by the thread building the history, while any thread can
+ * look up the strings by ID.
+ */
+public final class HTStringDictionary {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<String, Integer> fIds = new ConcurrentHashMap<>();
+
+    /*
+     * The strings by ID, and the length of their UTF-8 encoding. New arrays
+     * are published when they grow, before the size, so a reader that sees a
+     * size also sees the strings below it.
+     */
+    private volatile String[] fStrings = new String[INITIAL_CAPACITY];
+    private volatile int[] fLengths = new int[INITIAL_CAPACITY];
+    private volatile int fSize = 0;
+
+    /**
+     * Get the ID of a string, adding it to the dictionary if it is not there
+     * yet
+     *
+     * @param string
+     *            The string
+     * @return The ID of the string
+     */
+    public int getOrAdd(String string) {
+        Integer id = fIds.get(string);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = fIds.get(string);
+            if (id == null) {
+                id = add(string, string.getBytes(HTIntervalColumns.CHARSET).length);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Get the ID of a string already in the dictionary
+     *
+     * @param string
+     *            The string
+     * @return The ID of the string, or -1 if it is not in the dictionary
+     */
+    public int getId(String string) {
+        Integer id = fIds.get(string);
+        return (id == null ? -1 : id);
+    }
+
+    /**
+     * Get the string of an ID. The same instance is returned for every call
+     * with the same ID.
+     *
+     * @param id
+     *            The ID of the string
+     * @return The string
+     * @throws IOException
+     *             If no string has this ID, which means the data referencing
+     *             it is corrupt
+     */
+    public String get(int id) throws IOException {
+        int size = fSize;
+        String[] strings = fStrings;
+        if (id < 0 || id >= size) {
+            throw new IOException("Invalid string ID: " + id); //$NON-NLS-1$
+        }
+        return strings[id];
+    }
+
+    /**
+     * Get the length in bytes of the UTF-8 encoding of the string of an ID
+     *
+     * @param id
+     *            The ID of the string
+     * @return The encoded length
+     * @throws IOException
+     *             If no string has this ID
+     */
+    public int getEncodedLength(int id) throws IOException {
+        int size = fSize;
+        int[] lengths = fLengths;
+        if (id < 0 || id >= size) {
+            throw new IOException("Invalid string ID: " + id); //$NON-NLS-1$
+        }
+        return lengths[id];
+    }
+
+    /**
+     * Get the number of strings in the dictionary
+     *
+     * @return The number of strings
+     */
+    public int size() {
+        return fSize;
+    }
+
+    /**
+     * Write the strings of the dictionary. The layout is the number of
+     * strings, followed by the length in bytes and the UTF-8 bytes of each
+     * string, in the order of their IDs.
+     *
+     * @param out
+     *            The output to write to
+     * @return The number of bytes written
+     * @throws IOException
+     *             If there was an error writing
+     */
+    public long writeTo(DataOutput out) throws IOException {
+        int size = fSize;
+        String[] strings = fStrings;
+        out.writeInt(size);
+        long written = Integer.BYTES;
+        for (int i = 0; i < size; i++) {
+            byte[] bytes = strings[i].getBytes(HTIntervalColumns.CHARSET);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            written += Integer.BYTES + bytes.length;
+        }
+        return written;
+    }
+
+    /**
+     * Read the strings written by {@link #writeTo(DataOutput)} and add them to
+     * this dictionary, which must be empty.
+     *
+     * @param in
+     *            The input to read from
+     * @return The number of bytes read
+     * @throws IOException
+     *             If there was an error reading, or if the data is invalid
+     */
+    public synchronized long readFrom(DataInput in) throws IOException {
+        if (fSize != 0) {
+            throw new IllegalStateException("The dictionary already has strings"); //$NON-NLS-1$
+        }
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid string dictionary size: " + size); //$NON-NLS-1$
+        }
+        long read = Integer.BYTES;
+        for (int i = 0; i < size; i++) {
+            int length = in.readInt();
+            if (length < 0) {
+                throw new IOException("Invalid string length in the dictionary: " + length); //$NON-NLS-1$
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            String string = new String(bytes, HTIntervalColumns.CHARSET);
+            if (fIds.containsKey(string)) {
+                throw new IOException("Duplicate string in the dictionary: " + string); //$NON-NLS-1$
+            }
+            add(string, length);
+            read += Integer.BYTES + length;
+        }
+        return read;
+    }
+
+    /* Must be called while holding the lock on this */
+    private int add(String string, int encodedLength) {
+        int id = fSize;
+        String[] strings = fStrings;
+        int[] lengths = fLengths;
+        if (id == strings.length) {
+            strings = Arrays.copyOf(strings, strings.length * 2);
+            lengths = Arrays.copyOf(lengths, lengths.length * 2);
+        }
+        strings[id] = string;
+        lengths[id] = encodedLength;
+        fStrings = strings;
+        fLengths = lengths;
+        fSize = id + 1;
+        fIds.put(string, id);
+        return id;
+    }
+}
@@ -14,28 +14,25 @@ package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.Deque;
 import java.util.Iterator;
-import java.util.Objects;
-import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.jdt.annotation.NonNull;
-import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils;
+import org.eclipse.tracecompass.internal.datastore.core.historytree.HtNodeCache;
+import org.eclipse.tracecompass.internal.datastore.core.historytree.HtNodeWriter;
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.IHistoryTree.IHTNodeFactory;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-
 /**
  * This class abstracts inputs/outputs of the HistoryTree nodes.
  *
@@ -51,63 +48,6 @@ public class HT_IO {
 
     private static final @NonNull Logger LOGGER = TraceCompassLog.getLogger(HT_IO.class);
 
-    // ------------------------------------------------------------------------
-    // Global cache of nodes
-    // ------------------------------------------------------------------------
-
-    private static final class CacheKey {
-
-        public final HT_IO fStateHistory;
-        public final int fSeqNumber;
-
-        public CacheKey(HT_IO stateHistory,  int seqNumber) {
-            fStateHistory = stateHistory;
-            fSeqNumber = seqNumber;
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(fStateHistory, fSeqNumber);
-        }
-
-        @Override
-        public boolean equals(@Nullable Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            CacheKey other = (CacheKey) obj;
-            return (fStateHistory.equals(other.fStateHistory) &&
-                    fSeqNumber == other.fSeqNumber);
-        }
-    }
-
-    private static final int CACHE_SIZE = 256;
-
-    private static final CacheLoader<CacheKey, HTNode> NODE_LOADER = new CacheLoader<CacheKey, HTNode>() {
-        @Override
-        public HTNode load(CacheKey key) throws IOException {
-            HT_IO io = key.fStateHistory;
-            int seqNb = key.fSeqNumber;
-
-            TraceCompassLogUtils.traceInstant(LOGGER, Level.FINEST, "Ht_Io:CacheMiss", "seqNum", seqNb); //$NON-NLS-1$ //$NON-NLS-2$
-
-            synchronized (io) {
-                io.seekFCToNodePos(io.fFileChannelIn, seqNb);
-                return HTNode.readNode(io.fConfig, io.fFileChannelIn, key.fStateHistory.fNodeFactory);
-            }
-        }
-    };
-
-    private static final LoadingCache<CacheKey, HTNode> NODE_CACHE = CacheBuilder.newBuilder()
-            .maximumSize(CACHE_SIZE).build(NODE_LOADER);
-
-
     // ------------------------------------------------------------------------
     // Instance fields
     // ------------------------------------------------------------------------
@@ -117,12 +57,18 @@ public class HT_IO {
 
     /* Fields related to the file I/O */
     private final FileInputStream fFileInputStream;
-    private final FileOutputStream fFileOutputStream;
+    private final RandomAccessFile fFileOutput;
     private final FileChannel fFileChannelIn;
     private final FileChannel fFileChannelOut;
 
     private final IHTNodeFactory fNodeFactory;
 
+    /* This tree's part of the global node cache */
+    private final HtNodeCache.Partition<@NonNull HTNode> fNodeCache;
+
+    /* Writes the closed nodes, in the background */
+    private final HtNodeWriter<@NonNull HTNode> fNodeWriter;
+
     // ------------------------------------------------------------------------
     // Methods
     // ------------------------------------------------------------------------
@@ -158,19 +104,23 @@ public class HT_IO {
                 throw new IOException("Cannot create new file at " + //$NON-NLS-1$
                         historyTreeFile.getName());
             }
-            fFileInputStream = new FileInputStream(historyTreeFile);
-            fFileOutputStream = new FileOutputStream(historyTreeFile, false);
-        } else {
-            /*
-             * We want to open an existing file, make sure we don't squash the
-             * existing content when opening the fos!
-             */
-            fFileInputStream = new FileInputStream(historyTreeFile);
-            fFileOutputStream = new FileOutputStream(historyTreeFile, true);
         }
+        /*
+         * We may be opening an existing file, make sure we don't squash the
+         * existing content. The file is not opened in append mode either,
+         * since the nodes are written at their own position and a resumed
+         * tree rewrites the nodes of its latest branch.
+         */
+        fFileInputStream = new FileInputStream(historyTreeFile);
+        fFileOutput = new RandomAccessFile(historyTreeFile, "rw"); //$NON-NLS-1$
         fFileChannelIn = fFileInputStream.getChannel();
-        fFileChannelOut = fFileOutputStream.getChannel();
+        fFileChannelOut = fFileOutput.getChannel();
         fNodeFactory = nodeFactory;
+        fNodeWriter = new HtNodeWriter<>(node -> node.writeSelf(fFileChannelOut, getNodePosition(node.getSequenceNumber())), true);
+
+        /* Core nodes are visited by most queries, keep them in memory */
+        fNodeCache = HtNodeCache.getInstance().createPartition(historyTreeFile.getAbsolutePath(), config.getBlockSize(),
+                node -> node.getNodeType() == HTNode.NodeType.CORE);
     }
 
     /**
@@ -187,16 +137,12 @@ public class HT_IO {
     public @NonNull HTNode readNode(int seqNumber) throws ClosedChannelException {
         /* Do a cache lookup. If it's not present it will be loaded from disk */
         TraceCompassLogUtils.traceInstant(LOGGER, Level.FINEST, "Ht_Io:CacheLookup", "seqNum", seqNumber); //$NON-NLS-1$ //$NON-NLS-2$
-        CacheKey key = new CacheKey(this, seqNumber);
         try {
-            return Objects.requireNonNull(NODE_CACHE.get(key));
+            return fNodeCache.get(seqNumber, this::loadNode);
 
-        } catch (ExecutionException e) {
-            /* Get the inner exception that was generated */
-            Throwable cause = e.getCause();
-            if (cause instanceof ClosedChannelException) {
-                throw (ClosedChannelException) cause;
-            }
+        } catch (ClosedChannelException e) {
+            throw e;
+        } catch (IOException e) {
             /*
              * Other types of IOExceptions shouldn't happen at this point though.
              */
@@ -205,6 +151,24 @@ public class HT_IO {
         }
     }
 
+    private @NonNull HTNode loadNode(int seqNumber) throws IOException {
+        TraceCompassLogUtils.traceInstant(LOGGER, Level.FINEST, "Ht_Io:CacheMiss", "seqNum", seqNumber); //$NON-NLS-1$ //$NON-NLS-2$
+
+        /* The node may have been evicted before it was written */
+        HTNode pending = fNodeWriter.getPending(seqNumber);
+        if (pending != null) {
+            return pending;
+        }
+
+        /*
+         * Use a positional read, which does not modify the position of the
+         * channel, so concurrent cache misses on the same file do not need to
+         * be serialized.
+         */
+        ByteBuffer buffer = readBlock(seqNumber);
+        return HTNode.readNode(fConfig, buffer, fNodeFactory);
+    }
+
     /**
      * Read a node from a file on disk
      *
@@ -224,8 +188,7 @@ public class HT_IO {
         Iterator<Integer> iterator = queue.iterator();
         while (iterator.hasNext()) {
             Integer seqNumber = iterator.next();
-            CacheKey key = new CacheKey(this, seqNumber);
-            HTNode node = NODE_CACHE.getIfPresent(key);
+            HTNode node = fNodeCache.getIfPresent(seqNumber);
             if (node != null) {
                 iterator.remove();
                 return node;
@@ -236,28 +199,62 @@ public class HT_IO {
     }
 
     /**
-     * Write the given node to disk.
+     * Write the given node to disk. The node must not be modified afterwards.
+     *
+     * The node is serialized and written asynchronously by the history tree
+     * I/O threads, so the thread building the tree can continue inserting
+     * intervals. Use {@link #flush()} to wait until all the nodes are on disk.
      *
      * @param node
      *            The node to write.
      */
-    public void writeNode(HTNode node) {
-        try {
-            int seqNumber = node.getSequenceNumber();
+    public void writeNode(@NonNull HTNode node) {
+        int seqNumber = node.getSequenceNumber();
 
-            /* "Write-back" the node into the cache */
-            CacheKey key = new CacheKey(this, seqNumber);
-            NODE_CACHE.put(key, node);
+        /*
+         * The node must be pending before it is in the cache: if it is evicted
+         * before it is written, it must not be read from the file.
+         */
+        fNodeWriter.reserve(seqNumber, node);
 
-            /* Position ourselves at the start of the node and write it */
-            synchronized (this) {
-                seekFCToNodePos(fFileChannelOut, seqNumber);
-                node.writeSelf(fFileChannelOut);
-            }
-        } catch (IOException e) {
-            /* If we were able to open the file, we should be fine now... */
-            Activator.getDefault().logError(e.getMessage(), e);
-        }
+        /* "Write-back" the node into the cache */
+        fNodeCache.put(seqNumber, node);
+
+        fNodeWriter.write(seqNumber, node);
+    }
+
+    /**
+     * Wait until all the nodes passed to {@link #writeNode(HTNode)} are
+     * written to disk.
+     *
+     * @throws IOException
+     *             If a node could not be written
+     */
+    public void flush() throws IOException {
+        fNodeWriter.flush();
+    }
+
+    /**
+     * Wait until all the nodes passed to {@link #writeNode(HTNode)} are
+     * written, and force them to the storage device, so that they survive a
+     * crash of the application.
+     *
+     * @throws IOException
+     *             If a node could not be written or the file could not be
+     *             synced
+     */
+    public void sync() throws IOException {
+        flush();
+        fFileChannelOut.force(false);
+    }
+
+    /**
+     * Get the statistics of this tree's node cache
+     *
+     * @return The cache statistics
+     */
+    public HtNodeCache.Statistics getCacheStatistics() {
+        return fNodeCache.getStatistics();
     }
 
     /**
@@ -294,9 +291,15 @@ public class HT_IO {
      * Close all file channels and streams.
      */
     public synchronized void closeFile() {
+        try {
+            flush();
+        } catch (IOException e) {
+            Activator.getDefault().logError(e.getMessage(), e);
+        }
+        fNodeCache.dispose();
         try {
             fFileInputStream.close();
-            fFileOutputStream.close();
+            fFileOutput.close();
         } catch (IOException e) {
             Activator.getDefault().logError(e.getMessage(), e);
         }
@@ -315,6 +318,35 @@ public class HT_IO {
         }
     }
 
+    /**
+     * Read the whole block of the node that has seqNumber, without changing the
+     * position of the input channel. This method can be called concurrently by
+     * many threads.
+     *
+     * @param seqNumber
+     *            the node sequence number of the block to read
+     * @return The little-endian buffer containing the block, flipped and ready
+     *         to be read
+     * @throws IOException
+     *             If the block could not be read completely, or if the channel
+     *             was closed
+     */
+    private ByteBuffer readBlock(long seqNumber) throws IOException {
+        final int blockSize = fConfig.getBlockSize();
+        ByteBuffer buffer = ByteBuffer.allocate(blockSize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        long position = getNodePosition(seqNumber);
+        while (buffer.hasRemaining()) {
+            int res = fFileChannelIn.read(buffer, position + buffer.position());
+            if (res < 0) {
+                throw new IOException("Unexpected end of file while reading node " + seqNumber); //$NON-NLS-1$
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
     /**
      * Seek the given FileChannel to the position corresponding to the node that has
      * seqNumber
@@ -328,8 +360,11 @@ public class HT_IO {
      */
     private void seekFCToNodePos(FileChannel fc, long seqNumber)
             throws IOException {
-        fc.position(IHistoryTree.TREE_HEADER_SIZE
-                + seqNumber * fConfig.getBlockSize());
+        fc.position(getNodePosition(seqNumber));
+    }
+
+    private long getNodePosition(long seqNumber) {
+        return IHistoryTree.TREE_HEADER_SIZE + seqNumber * fConfig.getBlockSize();
     }
 
 }
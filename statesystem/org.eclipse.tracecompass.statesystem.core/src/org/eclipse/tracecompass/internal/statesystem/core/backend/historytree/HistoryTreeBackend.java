@@ -15,21 +15,25 @@
 
 package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
-import java.util.Collections;
+import java.nio.file.Files;
 import java.util.Deque;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils;
+import org.eclipse.tracecompass.internal.datastore.core.historytree.HtNodeCache;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.IntegerRangeCondition;
 import org.eclipse.tracecompass.internal.provisional.datastore.core.condition.TimeRangeCondition;
 import org.eclipse.tracecompass.internal.statesystem.core.Activator;
@@ -51,6 +55,9 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
 
     private static final @NonNull Logger LOGGER = TraceCompassLog.getLogger(HistoryTreeBackend.class);
 
+    /** Extension added to the name of the history file for its checkpoint */
+    private static final @NonNull String CHECKPOINT_EXTENSION = ".ckpt"; //$NON-NLS-1$
+
     private final @NonNull String fSsid;
 
     /**
@@ -113,6 +120,8 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         final HTConfig conf = new HTConfig(newStateFile, blockSize, maxChildren,
                 providerVersion, startTime);
         fSht = initializeSHT(conf);
+        /* A checkpoint of a previous construction does not apply anymore */
+        Files.deleteIfExists(getCheckpointFile(newStateFile).toPath());
     }
 
     /**
@@ -161,6 +170,29 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         fFinishedBuilding = true;
     }
 
+    /**
+     * Resume constructor. Use this to continue the construction of a history
+     * from a checkpoint saved with {@link #writeCheckpoint(DataOutput)}.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param stateFile
+     *            Filename/location of the history being built
+     * @param providerVersion
+     *            Expected version of of the state provider plugin.
+     * @param checkpoint
+     *            The input from which to read the checkpoint of the tree
+     * @throws IOException
+     *             If we can't read the checkpoint or the file, or if the
+     *             version of the checkpoint does not match the expected
+     *             providerVersion.
+     */
+    public HistoryTreeBackend(@NonNull String ssid, @NonNull File stateFile, int providerVersion, @NonNull DataInput checkpoint)
+            throws IOException {
+        fSsid = ssid;
+        fSht = HistoryTreeFactory.createFromCheckpoint(stateFile, providerVersion, checkpoint);
+    }
+
     /**
      * New-tree initializer for the History Tree wrapped by this backend. Can be
      * overriden to use different implementations.
@@ -239,6 +271,24 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         getSHT().insertInterval(interval);
     }
 
+    @Override
+    public void insertPastStateInt(long stateStartTime, long stateEndTime,
+            int quark, int value) throws TimeRangeException {
+        getSHT().insertInterval(HTInterval.ofInt(stateStartTime, stateEndTime, quark, value));
+    }
+
+    @Override
+    public void insertPastStateLong(long stateStartTime, long stateEndTime,
+            int quark, long value) throws TimeRangeException {
+        getSHT().insertInterval(HTInterval.ofLong(stateStartTime, stateEndTime, quark, value));
+    }
+
+    @Override
+    public void insertPastStateDouble(long stateStartTime, long stateEndTime,
+            int quark, double value) throws TimeRangeException {
+        getSHT().insertInterval(HTInterval.ofDouble(stateStartTime, stateEndTime, quark, value));
+    }
+
     @Override
     public void finishedBuilding(long endTime) {
         getSHT().closeTree(endTime);
@@ -263,6 +313,7 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
     @Override
     public void removeFiles() {
         getSHT().deleteFile();
+        removeCheckpoint();
     }
 
     @Override
@@ -271,6 +322,12 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
             TraceCompassLogUtils.traceInstant(LOGGER, Level.FINE, "HistoryTreeBackend:ClosingFile", "size", getSHT().getFileSize()); //$NON-NLS-1$ //$NON-NLS-2$
             TraceCompassLogUtils.traceObjectDestruction(LOGGER, Level.FINER, this);
             getSHT().closeFile();
+        } else if (getCheckpointFile().exists()) {
+            /*
+             * The build is being interrupted, but it can be resumed from its
+             * last checkpoint, keep the file.
+             */
+            getSHT().closeFile();
         } else {
             /*
              * The build is being interrupted, delete the file we partially
@@ -281,6 +338,58 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         }
     }
 
+    // ------------------------------------------------------------------------
+    // Checkpoint methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the file where the checkpoints of the history built in the given
+     * file are saved.
+     *
+     * @param stateFile
+     *            The history file
+     * @return The checkpoint file, which may not exist
+     */
+    public static @NonNull File getCheckpointFile(@NonNull File stateFile) {
+        return new File(stateFile.getPath() + CHECKPOINT_EXTENSION);
+    }
+
+    /**
+     * Get the file where the checkpoints of this history are saved.
+     *
+     * @return The checkpoint file, which may not exist
+     */
+    public @NonNull File getCheckpointFile() {
+        return getCheckpointFile(getSHT().supplyATWriterFile());
+    }
+
+    /**
+     * Write a checkpoint of the history tree being built, from which the
+     * construction can be resumed with the
+     * {@link #HistoryTreeBackend(String, File, int, DataInput)} constructor.
+     * The caller must make sure no state is inserted while the checkpoint is
+     * being written.
+     *
+     * @param out
+     *            The output where to write the checkpoint of the tree
+     * @throws IOException
+     *             If there was a problem writing the checkpoint
+     */
+    public void writeCheckpoint(@NonNull DataOutput out) throws IOException {
+        getSHT().writeCheckpoint(out);
+    }
+
+    /**
+     * Delete the checkpoint file of this history, once the construction does
+     * not need to be resumed anymore.
+     */
+    public void removeCheckpoint() {
+        File checkpointFile = getCheckpointFile();
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            Activator.getDefault().logError("Failed to delete " + checkpointFile.getName()); //$NON-NLS-1$
+        }
+    }
+
     @Override
     public void doQuery(List<ITmfStateInterval> stateInfo, long t)
             throws TimeRangeException, StateSystemDisposedException {
@@ -357,41 +466,12 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
 
     @Override
     public Iterable<@NonNull ITmfStateInterval> query2D(IntegerRangeCondition quarks, TimeRangeCondition times) {
-        return () -> new Iterator<@NonNull ITmfStateInterval>() {
-            private final Deque<Integer> seqNumberQueue = new LinkedList<>(Collections.singleton(getSHT().getRootNode().getSequenceNumber()));
-            private Iterator<@NonNull HTInterval> intervalQueue = Collections.emptyIterator();
-
-            @Override
-            public boolean hasNext() {
-                while (!intervalQueue.hasNext() && !seqNumberQueue.isEmpty()) {
-                    try {
-                        HTNode currentNode = getSHT().readNode(seqNumberQueue);
-                        /* Compute reduced conditions here to reduce complexity in queuing operations. */
-                        IntegerRangeCondition subQuarks = quarks.subCondition(currentNode.getMinQuark(), currentNode.getMaxQuark());
-                        TimeRangeCondition subTimes = times.subCondition(currentNode.getNodeStart(), currentNode.getNodeEnd());
-                        /*
-                         * During the SHT construction, the bounds of the children are not final, so we
-                         * may have queued some nodes which don't overlap the query.
-                         */
-                        if (subQuarks != null && subTimes != null) {
-                            if (currentNode.getNodeType() == HTNode.NodeType.CORE) {
-                                // Queue the relevant children nodes for BFS.
-                                seqNumberQueue.addAll(((ParentNode) currentNode).selectNextChildren2D(subQuarks, subTimes));
-                            }
-                            intervalQueue = currentNode.iterable2D(subQuarks, subTimes).iterator();
-                        }
-                    } catch (ClosedChannelException e) {
-                        return false;
-                    }
-                }
-                return intervalQueue.hasNext();
-            }
+        return () -> Spliterators.iterator(query2DSpliterator(quarks, times));
+    }
 
-            @Override
-            public ITmfStateInterval next() {
-                return intervalQueue.next();
-            }
-        };
+    @Override
+    public Spliterator<@NonNull ITmfStateInterval> query2DSpliterator(IntegerRangeCondition quarks, TimeRangeCondition times) {
+        return new HTQuery2DSpliterator(getSHT(), quarks, times);
     }
 
     /**
@@ -403,6 +483,16 @@ public class HistoryTreeBackend implements IStateHistoryBackend {
         return getSHT().getFileSize();
     }
 
+    /**
+     * Return the statistics of the node cache of this state system's history
+     * tree, to help tune the cache budget.
+     *
+     * @return The node cache statistics
+     */
+    public HtNodeCache.Statistics getNodeCacheStatistics() {
+        return getSHT().getNodeCacheStatistics();
+    }
+
     /**
      * Return the average node usage as a percentage (between 0 and 100)
      *
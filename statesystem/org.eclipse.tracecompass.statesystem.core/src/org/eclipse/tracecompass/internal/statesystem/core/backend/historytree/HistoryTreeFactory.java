@@ -9,6 +9,8 @@
 
 package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
+import java.io.DataInput;
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -90,4 +92,22 @@ public final class HistoryTreeFactory {
             throw new IOException("Not a known history tree file"); //$NON-NLS-1$
         }
     }
+
+    /**
+     * "Resume" factory : continue building a SHTree from a checkpoint saved
+     * with {@link IHistoryTree#writeCheckpoint}
+     *
+     * @param stateFile
+     *            Path/filename of the history-file being built
+     * @param expectedProviderVersion
+     *            The expected version of the state provider
+     * @param checkpoint
+     *            The input from which to read the checkpoint of the tree
+     * @return The history tree
+     * @throws IOException
+     *             If an error happens reading the checkpoint or the file
+     */
+    public static IHistoryTree createFromCheckpoint(File stateFile, int expectedProviderVersion, DataInput checkpoint) throws IOException {
+        return new HistoryTreeClassic(stateFile, expectedProviderVersion, checkpoint);
+    }
 }
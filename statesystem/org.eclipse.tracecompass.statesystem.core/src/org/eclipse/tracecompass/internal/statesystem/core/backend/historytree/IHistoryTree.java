@@ -9,12 +9,14 @@
 
 package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.channels.ClosedChannelException;
 import java.util.Deque;
 
+import org.eclipse.tracecompass.internal.datastore.core.historytree.HtNodeCache;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 
 /**
@@ -88,6 +90,20 @@ public interface IHistoryTree {
      */
     void closeTree(long requestedEndTime);
 
+    /**
+     * Save a checkpoint of the tree being built. All the closed nodes are
+     * synced to disk and the information needed to continue the construction
+     * (configuration, node count and content of the latest branch) is
+     * written to the given output. No interval must be inserted while the
+     * checkpoint is written.
+     *
+     * @param out
+     *            The output where to write the checkpoint of the tree
+     * @throws IOException
+     *             If the nodes could not be synced or the checkpoint written
+     */
+    void writeCheckpoint(DataOutput out) throws IOException;
+
     // ------------------------------------------------------------------------
     // Accessors
     // ------------------------------------------------------------------------
@@ -209,4 +225,11 @@ public interface IHistoryTree {
      */
     long getFileSize();
 
+    /**
+     * Get the statistics of the node cache of this tree.
+     *
+     * @return The node cache statistics
+     */
+    HtNodeCache.Statistics getNodeCacheStatistics();
+
 }
@@ -14,9 +14,17 @@
 
 package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.List;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.common.core.collect.BufferedBlockingQueue;
@@ -41,8 +49,17 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         implements Runnable {
 
     private static final int CHUNK_SIZE = 127;
+    /* Attribute of the intervals queued to mark a checkpoint */
+    private static final int CHECKPOINT_ATTRIBUTE = -2;
+
     private final @NonNull BufferedBlockingQueue<HTInterval> intervalQueue;
     private final @NonNull Thread shtThread;
+    /*
+     * One future per checkpoint marker in the queue, completed by the tree
+     * thread when it reaches the marker
+     */
+    private final Queue<CompletableFuture<Void>> fCheckpoints = new ConcurrentLinkedQueue<>();
+    private volatile boolean fThreadStopped = false;
     /**
      * The backend tracks its end time separately from the tree, to take into
      * consideration intervals in the queue.
@@ -127,6 +144,40 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         shtThread.start();
     }
 
+    /**
+     * Resume constructor, to continue building a history from a checkpoint
+     * saved with {@link #writeCheckpoint(DataOutput)}.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param stateFile
+     *            Filename/location of the history being built
+     * @param providerVersion
+     *            Expected version of of the state provider plugin.
+     * @param checkpoint
+     *            The input from which to read the checkpoint of the tree
+     * @param queueSize
+     *            The size of the interval insertion queue. 2000 - 10000 usually
+     *            works well
+     * @throws IOException
+     *             If we can't read the checkpoint or the file, or if the
+     *             version of the checkpoint does not match the expected
+     *             providerVersion.
+     */
+    public ThreadedHistoryTreeBackend(@NonNull String ssid,
+            @NonNull File stateFile,
+            int providerVersion,
+            @NonNull DataInput checkpoint,
+            int queueSize)
+                    throws IOException {
+        super(ssid, stateFile, providerVersion, checkpoint);
+        fEndTime = getSHT().getTreeEnd();
+
+        intervalQueue = new BufferedBlockingQueue<>(queueSize / CHUNK_SIZE, CHUNK_SIZE);
+        shtThread = new Thread(this, "History Tree Thread"); //$NON-NLS-1$
+        shtThread.start();
+    }
+
     /*
      * The Threaded version does not specify an "existing file" constructor,
      * since the history is already built (and we only use the other thread
@@ -161,6 +212,27 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         fEndTime = Math.max(fEndTime, stateEndTime);
     }
 
+    @Override
+    public void insertPastStateInt(long stateStartTime, long stateEndTime,
+            int quark, int value) throws TimeRangeException {
+        intervalQueue.put(HTInterval.ofInt(stateStartTime, stateEndTime, quark, value));
+        fEndTime = Math.max(fEndTime, stateEndTime);
+    }
+
+    @Override
+    public void insertPastStateLong(long stateStartTime, long stateEndTime,
+            int quark, long value) throws TimeRangeException {
+        intervalQueue.put(HTInterval.ofLong(stateStartTime, stateEndTime, quark, value));
+        fEndTime = Math.max(fEndTime, stateEndTime);
+    }
+
+    @Override
+    public void insertPastStateDouble(long stateStartTime, long stateEndTime,
+            int quark, double value) throws TimeRangeException {
+        intervalQueue.put(HTInterval.ofDouble(stateStartTime, stateEndTime, quark, value));
+        fEndTime = Math.max(fEndTime, stateEndTime);
+    }
+
     @Override
     public long getEndTime() {
         return fEndTime;
@@ -180,6 +252,31 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         return;
     }
 
+    @Override
+    public void writeCheckpoint(DataOutput out) throws IOException {
+        /*
+         * The checkpoint must contain all the intervals inserted so far, send
+         * a marker through the queue and wait until the tree thread reaches
+         * it.
+         */
+        CompletableFuture<Void> checkpointReached = new CompletableFuture<>();
+        fCheckpoints.add(checkpointReached);
+        if (fThreadStopped) {
+            throw new IOException("The history tree thread is not running"); //$NON-NLS-1$
+        }
+        try {
+            intervalQueue.put(new HTInterval(Long.MIN_VALUE, Long.MIN_VALUE, CHECKPOINT_ATTRIBUTE, TmfStateValue.nullValue()));
+            intervalQueue.flushInputBuffer();
+            checkpointReached.get();
+        } catch (ExecutionException e) {
+            throw new IOException("The history tree thread stopped before the checkpoint", e); //$NON-NLS-1$
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the interval queue"); //$NON-NLS-1$
+        }
+        super.writeCheckpoint(out);
+    }
+
     @Override
     public void dispose() {
         if (!isFinishedBuilding()) {
@@ -217,7 +314,18 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
     public void run() {
         try {
             HTInterval currentInterval = intervalQueue.blockingPeek();
-            while (currentInterval.getStartTime() != Long.MIN_VALUE) {
+            while (currentInterval.getStartTime() != Long.MIN_VALUE
+                    || currentInterval.getAttribute() == CHECKPOINT_ATTRIBUTE) {
+                if (currentInterval.getAttribute() == CHECKPOINT_ATTRIBUTE) {
+                    /* All the intervals before the marker are in the tree */
+                    intervalQueue.take();
+                    CompletableFuture<Void> checkpoint = fCheckpoints.poll();
+                    if (checkpoint != null) {
+                        checkpoint.complete(null);
+                    }
+                    currentInterval = intervalQueue.blockingPeek();
+                    continue;
+                }
                 /* Send the interval to the History Tree */
                 getSHT().insertInterval(currentInterval);
                 /* Actually remove the interval from the queue */
@@ -237,6 +345,14 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
         } catch (TimeRangeException e) {
             /* This should not happen */
             Activator.getDefault().logError("Error starting the state system", e); //$NON-NLS-1$
+        } finally {
+            /* Release the checkpoints that will never be reached */
+            fThreadStopped = true;
+            CompletableFuture<Void> checkpoint = fCheckpoints.poll();
+            while (checkpoint != null) {
+                checkpoint.completeExceptionally(new IllegalStateException("The history tree thread stopped")); //$NON-NLS-1$
+                checkpoint = fCheckpoints.poll();
+            }
         }
     }
 
@@ -318,4 +434,14 @@ public final class ThreadedHistoryTreeBackend extends HistoryTreeBackend
                         && times.intersects(interval.getStartTime(), interval.getEndTime()));
         return Iterables.concat(super.query2D(quarks, times), queuedIntervals);
     }
+
+    @Override
+    public Spliterator<@NonNull ITmfStateInterval> query2DSpliterator(IntegerRangeCondition quarks, TimeRangeCondition times)
+            throws TimeRangeException {
+        if (isFinishedBuilding()) {
+            return super.query2DSpliterator(quarks, times);
+        }
+        /* The queued intervals must also be returned, after the tree's */
+        return query2D(quarks, times).spliterator();
+    }
 }
@@ -14,22 +14,33 @@
 
 package org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.classic;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.datastore.core.historytree.HtNodeCache;
+import org.eclipse.tracecompass.internal.statesystem.core.Activator;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTConfig;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTInterval;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTNode;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HTStringDictionary;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HT_IO;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.IHistoryTree;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.LeafNode;
@@ -53,8 +64,6 @@ public class HistoryTreeClassic implements IHistoryTree {
      */
     public static final int HISTORY_FILE_MAGIC_NUMBER = 0x05FFA900;
 
-    /** File format version. Increment when breaking compatibility. */
-    private static final int FILE_VERSION = 9;
 
     private static final IHTNodeFactory CLASSIC_NODE_FACTORY = new IHTNodeFactory() {
 
@@ -90,6 +99,12 @@ public class HistoryTreeClassic implements IHistoryTree {
     /** The total number of nodes that exists in this tree */
     private int fNodeCount;
 
+    /**
+     * Size of the string dictionary section, between the nodes and the
+     * attribute tree in the file. Only known once the tree is closed.
+     */
+    private long fDictionarySectionSize = 0;
+
     /** "Cache" to keep the active nodes in memory */
     private final @NonNull List<@NonNull HTNode> fLatestBranch;
 
@@ -180,8 +195,15 @@ public class HistoryTreeClassic implements IHistoryTree {
                 throw new IOException("Wrong magic number"); //$NON-NLS-1$
             }
 
-            res = buffer.getInt(); /* File format version number */
-            if (res != FILE_VERSION) {
+            /*
+             * File format version number, the versions with fixed-size and
+             * compact intervals, and with the string dictionary can all be
+             * read
+             */
+            int fileVersion = buffer.getInt();
+            if (fileVersion != HTConfig.FILE_VERSION_FIXED_INTERVALS &&
+                    fileVersion != HTConfig.FILE_VERSION_COMPACT_INTERVALS &&
+                    fileVersion != HTConfig.FILE_VERSION_DICTIONARY_STRINGS) {
                 throw new IOException("Mismatching History Tree file format versions"); //$NON-NLS-1$
             }
 
@@ -205,7 +227,15 @@ public class HistoryTreeClassic implements IHistoryTree {
             rootNodeSeqNb = buffer.getInt();
             startTime = buffer.getLong();
 
-            fConfig = new HTConfig(existingStateFile, bs, maxc, expProviderVersion, startTime);
+            fConfig = new HTConfig(existingStateFile, bs, maxc, expProviderVersion, startTime, fileVersion);
+
+            /* The string dictionary is needed to read the nodes */
+            HTStringDictionary dictionary = fConfig.getStringDictionary();
+            if (dictionary != null) {
+                fc.position(TREE_HEADER_SIZE + (long) fNodeCount * bs);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(fc)));
+                fDictionarySectionSize = dictionary.readFrom(in);
+            }
         }
 
         /*
@@ -228,6 +258,73 @@ public class HistoryTreeClassic implements IHistoryTree {
         }
     }
 
+    /**
+     * "Resume" constructor : continue building a SHTree from a checkpoint
+     * saved with {@link #writeCheckpoint(DataOutput)}. The nodes written to
+     * the file after the checkpoint are discarded.
+     *
+     * @param stateFile
+     *            Path/filename of the history-file being built
+     * @param expProviderVersion
+     *            The expected version of the state provider
+     * @param checkpoint
+     *            The input from which to read the checkpoint of the tree
+     * @throws IOException
+     *             If an error happens reading the checkpoint or the file
+     */
+    public HistoryTreeClassic(File stateFile, int expProviderVersion, DataInput checkpoint) throws IOException {
+        if (!stateFile.exists()) {
+            throw new IOException("Selected state file does not exist"); //$NON-NLS-1$
+        }
+
+        int fileVersion = checkpoint.readInt();
+        int providerVersion = checkpoint.readInt();
+        if (providerVersion != expProviderVersion &&
+                expProviderVersion != ITmfStateSystemBuilder.IGNORE_PROVIDER_VERSION) {
+            throw new IOException("Mismatching event handler versions"); //$NON-NLS-1$
+        }
+        int bs = checkpoint.readInt();
+        int maxc = checkpoint.readInt();
+        long startTime = checkpoint.readLong();
+        fConfig = new HTConfig(stateFile, bs, maxc, providerVersion, startTime, fileVersion);
+        fTreeEnd = checkpoint.readLong();
+        fNodeCount = checkpoint.readInt();
+        HTStringDictionary dictionary = fConfig.getStringDictionary();
+        if (dictionary != null) {
+            dictionary.readFrom(checkpoint);
+        }
+
+        /*
+         * Drop the nodes created after the checkpoint, and clear the header
+         * so the file is not mistaken for a complete history until the tree
+         * is closed again.
+         */
+        try (FileChannel fc = FileChannel.open(stateFile.toPath(), StandardOpenOption.WRITE)) {
+            fc.truncate(IHistoryTree.TREE_HEADER_SIZE + (long) fNodeCount * bs);
+            ByteBuffer header = ByteBuffer.allocate(TREE_HEADER_SIZE);
+            while (header.hasRemaining()) {
+                fc.write(header, header.position());
+            }
+        }
+
+        fTreeIO = new HT_IO(fConfig, false, CLASSIC_NODE_FACTORY);
+
+        /* The latest branch is not closed yet, it is read from the checkpoint */
+        int branchSize = checkpoint.readInt();
+        List<@NonNull HTNode> latestBranch = new ArrayList<>(branchSize);
+        byte[] block = new byte[bs];
+        for (int i = 0; i < branchSize; i++) {
+            checkpoint.readFully(block);
+            ByteBuffer buffer = ByteBuffer.wrap(block);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            latestBranch.add(HTNode.readOpenNode(fConfig, buffer, CLASSIC_NODE_FACTORY));
+        }
+        if (latestBranch.isEmpty() || latestBranch.get(0).getNodeStart() != startTime) {
+            throw new IOException("Inconsistent history tree checkpoint"); //$NON-NLS-1$
+        }
+        fLatestBranch = Collections.synchronizedList(latestBranch);
+    }
+
     /**
      * Rebuild the latestBranch "cache" object by reading the nodes from disk
      * (When we are opening an existing file on disk and want to append to it,
@@ -269,6 +366,22 @@ public class HistoryTreeClassic implements IHistoryTree {
             closeBranch(0, requestedEndTime);
 
             try (FileChannel fc = fTreeIO.getFcOut();) {
+                /*
+                 * The nodes must all be on disk before the channel is closed.
+                 * If one of them could not be written, the header is not
+                 * written, so the incomplete file will not be opened.
+                 */
+                fTreeIO.flush();
+
+                /* Save the string dictionary right after the nodes */
+                HTStringDictionary dictionary = fConfig.getStringDictionary();
+                if (dictionary != null) {
+                    fc.position(TREE_HEADER_SIZE + (long) fNodeCount * fConfig.getBlockSize());
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(fc)));
+                    fDictionarySectionSize = dictionary.writeTo(out);
+                    out.flush();
+                }
+
                 ByteBuffer buffer = ByteBuffer.allocate(TREE_HEADER_SIZE);
                 buffer.order(ByteOrder.LITTLE_ENDIAN);
                 buffer.clear();
@@ -278,7 +391,7 @@ public class HistoryTreeClassic implements IHistoryTree {
 
                 buffer.putInt(HISTORY_FILE_MAGIC_NUMBER);
 
-                buffer.putInt(FILE_VERSION);
+                buffer.putInt(fConfig.getFileVersion());
                 buffer.putInt(fConfig.getProviderVersion());
 
                 buffer.putInt(fConfig.getBlockSize());
@@ -307,6 +420,41 @@ public class HistoryTreeClassic implements IHistoryTree {
         }
     }
 
+    @Override
+    public void writeCheckpoint(DataOutput out) throws IOException {
+        synchronized (fLatestBranch) {
+            /* The closed nodes must be on disk for the checkpoint to be valid */
+            fTreeIO.sync();
+
+            out.writeInt(fConfig.getFileVersion());
+            out.writeInt(fConfig.getProviderVersion());
+            out.writeInt(fConfig.getBlockSize());
+            out.writeInt(fConfig.getMaxChildren());
+            out.writeLong(fConfig.getTreeStart());
+            out.writeLong(fTreeEnd);
+            out.writeInt(fNodeCount);
+
+            /*
+             * The nodes of the latest branch will still receive intervals and
+             * be rewritten in the file, save their current content here.
+             * They are serialized before the string dictionary, so that all
+             * the strings they use are in the dictionary that is saved.
+             */
+            List<ByteBuffer> buffers = new ArrayList<>(fLatestBranch.size());
+            for (HTNode node : fLatestBranch) {
+                buffers.add(node.serialize());
+            }
+            HTStringDictionary dictionary = fConfig.getStringDictionary();
+            if (dictionary != null) {
+                dictionary.writeTo(out);
+            }
+            out.writeInt(buffers.size());
+            for (ByteBuffer buffer : buffers) {
+                out.write(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+            }
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Accessors
     // ------------------------------------------------------------------------
@@ -378,7 +526,16 @@ public class HistoryTreeClassic implements IHistoryTree {
 
     @Override
     public FileInputStream supplyATReader() {
-        return fTreeIO.supplyATReader(getNodeCount());
+        FileInputStream reader = fTreeIO.supplyATReader(getNodeCount());
+        if (fDictionarySectionSize > 0) {
+            /* Skip the string dictionary, the attribute tree comes after */
+            try {
+                reader.getChannel().position(supplyATWriterFilePos());
+            } catch (IOException e) {
+                Activator.getDefault().logError(e.getMessage(), e);
+            }
+        }
+        return reader;
     }
 
     @Override
@@ -389,7 +546,8 @@ public class HistoryTreeClassic implements IHistoryTree {
     @Override
     public long supplyATWriterFilePos() {
         return IHistoryTree.TREE_HEADER_SIZE
-                + ((long) getNodeCount() * fConfig.getBlockSize());
+                + ((long) getNodeCount() * fConfig.getBlockSize())
+                + fDictionarySectionSize;
     }
 
     @Override
@@ -462,7 +620,7 @@ public class HistoryTreeClassic implements IHistoryTree {
         HTNode targetNode = fLatestBranch.get(indexOfNode);
 
         /* Verify if there is enough room in this node to store this interval */
-        if (interval.getSizeOnDisk() > targetNode.getNodeFreeSpace()) {
+        if (targetNode.getIntervalSize(interval) > targetNode.getNodeFreeSpace()) {
             /* Nope, not enough room. Insert in a new sibling instead. */
             addSiblingNode(indexOfNode, interval.getStartTime());
             tryInsertAtNode(interval, fLatestBranch.size() - 1);
@@ -646,6 +804,11 @@ public class HistoryTreeClassic implements IHistoryTree {
         return fConfig.getStateFile().length();
     }
 
+    @Override
+    public HtNodeCache.Statistics getNodeCacheStatistics() {
+        return fTreeIO.getCacheStatistics();
+    }
+
     // ------------------------------------------------------------------------
     // Test/debugging methods
     // ------------------------------------------------------------------------
@@ -12,9 +12,13 @@
 
 package org.eclipse.tracecompass.statesystem.core;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.function.ObjIntConsumer;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
@@ -433,6 +437,85 @@ public interface ITmfStateSystem {
     @NonNull List<@NonNull ITmfStateInterval> queryFullState(long t)
             throws StateSystemDisposedException;
 
+    /**
+     * Batched version of {@link #queryFullState(long)}. Load the complete state
+     * information at each of the requested timestamps.
+     *
+     * This should be preferred to calling queryFullState() in a loop, for
+     * example once per pixel of a view, since the state history is swept
+     * once for all the timestamps instead of being traversed once per
+     * timestamp.
+     *
+     * @param times
+     *            The timestamps at which we want the states, sorted in
+     *            ascending order. Duplicates are allowed.
+     * @return One List of intervals per timestamp, in the same order as the
+     *         timestamps, where the offset in each List = the quark
+     * @throws TimeRangeException
+     *             If one of the timestamps is outside of the range of the
+     *             state history.
+     * @throws IllegalArgumentException
+     *             If the timestamps are not sorted
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @since 3.2
+     */
+    default @NonNull List<@NonNull List<@NonNull ITmfStateInterval>> queryFullStates(long @NonNull [] times)
+            throws StateSystemDisposedException {
+        List<@NonNull List<@NonNull ITmfStateInterval>> states = new ArrayList<>(times.length);
+        for (long t : times) {
+            states.add(queryFullState(t));
+        }
+        return states;
+    }
+
+    /**
+     * Sweep query method. Get the states of a set of attributes at each of the
+     * requested timestamps and send them to a consumer, without building the
+     * full state at each timestamp.
+     *
+     * The consumer receives each interval along with the index, in the times
+     * array, of the timestamp it is for. It is called exactly once per
+     * timestamp and per quark, by increasing timestamp index. The same
+     * interval may be sent for many timestamps.
+     *
+     * If the monitor is cancelled, the sweep is stopped and the consumer is
+     * not called anymore, so the caller must check the monitor before using
+     * what it received.
+     *
+     * @param quarks
+     *            The quarks of the attributes we want the states of
+     * @param times
+     *            The timestamps at which we want the states, sorted in
+     *            ascending order. Duplicates are allowed.
+     * @param consumer
+     *            The consumer of the intervals and of their timestamp index
+     * @param monitor
+     *            The progress monitor to cancel the query, can be
+     *            <code>null</code>
+     * @throws TimeRangeException
+     *             If one of the timestamps is outside of the range of the
+     *             state history.
+     * @throws IndexOutOfBoundsException
+     *             If one of the quarks is out of range
+     * @throws IllegalArgumentException
+     *             If the timestamps are not sorted
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @since 3.2
+     */
+    default void queryStates(@NonNull Collection<Integer> quarks, long @NonNull [] times,
+            @NonNull ObjIntConsumer<@NonNull ITmfStateInterval> consumer, @Nullable IProgressMonitor monitor) throws StateSystemDisposedException {
+        for (int i = 0; i < times.length; i++) {
+            if (monitor != null && monitor.isCanceled()) {
+                return;
+            }
+            for (Integer quark : quarks) {
+                consumer.accept(querySingleState(times[i], quark), i);
+            }
+        }
+    }
+
     /**
      * Singular query method. This one does not update the whole stateInfo
      * vector, like queryFullState() does. It only searches for one specific
@@ -505,4 +588,32 @@ public interface ITmfStateSystem {
      */
     Iterable<@NonNull ITmfStateInterval> query2D(@NonNull Collection<Integer> quarks,
             long start, long end) throws StateSystemDisposedException, IndexOutOfBoundsException, TimeRangeException;
-}
\ No newline at end of file
+
+    /**
+     * Same as {@link #query2D(Collection, long, long)}, but returns a
+     * {@link Spliterator} over the intervals. Depending on the backend, it can
+     * be split to process the intervals in parallel, for example with
+     * {@link java.util.stream.StreamSupport#stream(Spliterator, boolean)}.
+     *
+     * @param quarks
+     *            a collection of quarks for which we want information
+     * @param start
+     *            lower bound for the query
+     * @param end
+     *            upper bound for the query
+     * @return a lazily evaluated un-ordered spliterator over the queried
+     *         intervals
+     * @throws StateSystemDisposedException
+     *             If the query is sent after the state system has been disposed
+     * @throws IndexOutOfBoundsException
+     *             If the smallest attribute is <0 or if the largest is >= to
+     *             the number of attributes.
+     * @throws TimeRangeException
+     *             If the smallest time is before the state system start time.
+     * @since 3.2
+     */
+    default Spliterator<@NonNull ITmfStateInterval> query2DSpliterator(@NonNull Collection<Integer> quarks,
+            long start, long end) throws StateSystemDisposedException, IndexOutOfBoundsException, TimeRangeException {
+        return query2D(quarks, start, end).spliterator();
+    }
+}
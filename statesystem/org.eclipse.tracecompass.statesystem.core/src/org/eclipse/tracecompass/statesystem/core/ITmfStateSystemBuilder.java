@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.statesystem.core;
 
+import java.io.IOException;
+
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
@@ -85,6 +87,30 @@ public interface ITmfStateSystemBuilder extends ITmfStateSystem {
      */
     int getQuarkRelativeAndAdd(int startingNodeQuark, String... subPath);
 
+    /**
+     * Compile an attribute path where one element varies, to resolve the
+     * quarks of the attributes with that path for many values of the variable
+     * element. For example, a template for "Threads/*&#47;Status" gets the
+     * status attribute of a thread from its TID. The quarks are cached by the
+     * template, so state providers should keep it rather than create one for
+     * each event.
+     *
+     * @param startingNodeQuark
+     *            The quark of the attribute from which 'pathTemplate'
+     *            originates. Use {@link #ROOT_ATTRIBUTE} to start at the root
+     *            node.
+     * @param pathTemplate
+     *            The path to the attributes, where exactly one element is
+     *            {@link QuarkTemplate#VARIABLE}
+     * @return The compiled template
+     * @throws IllegalArgumentException
+     *             If the path does not contain exactly one variable element
+     * @since 3.2
+     */
+    default QuarkTemplate createQuarkTemplate(int startingNodeQuark, @NonNull String... pathTemplate) {
+        return new QuarkTemplate(this, startingNodeQuark, pathTemplate);
+    }
+
     /**
      * @name State-changing methods
      */
@@ -157,6 +183,84 @@ public interface ITmfStateSystemBuilder extends ITmfStateSystem {
         modifyAttribute(t, TmfStateValue.newValue(value), attributeQuark);
     }
 
+    /**
+     * Modify an attribute with an integer value. This is equivalent to
+     * {@link #modifyAttribute(long, Object, int)} with an {@link Integer}, but
+     * the state system implementation does not box the value, neither in the
+     * ongoing state nor in the intervals written to its backend.
+     *
+     * @param t
+     *            Timestamp of the state change
+     * @param value
+     *            The integer value to assign to the attribute
+     * @param attributeQuark
+     *            Integer value of the quark corresponding to the attribute we
+     *            want to modify
+     * @throws TimeRangeException
+     *             If the requested time is outside of the trace's range
+     * @throws IndexOutOfBoundsException
+     *             If the attribute quark is out of range
+     * @throws StateValueTypeException
+     *             If the attribute already has values of another type
+     * @since 3.2
+     */
+    default void modifyAttributeInt(long t, int value, int attributeQuark)
+            throws StateValueTypeException {
+        modifyAttribute(t, Integer.valueOf(value), attributeQuark);
+    }
+
+    /**
+     * Modify an attribute with a long value. This is equivalent to
+     * {@link #modifyAttribute(long, Object, int)} with a {@link Long}, but the
+     * state system implementation does not box the value, neither in the
+     * ongoing state nor in the intervals written to its backend.
+     *
+     * @param t
+     *            Timestamp of the state change
+     * @param value
+     *            The long value to assign to the attribute
+     * @param attributeQuark
+     *            Integer value of the quark corresponding to the attribute we
+     *            want to modify
+     * @throws TimeRangeException
+     *             If the requested time is outside of the trace's range
+     * @throws IndexOutOfBoundsException
+     *             If the attribute quark is out of range
+     * @throws StateValueTypeException
+     *             If the attribute already has values of another type
+     * @since 3.2
+     */
+    default void modifyAttributeLong(long t, long value, int attributeQuark)
+            throws StateValueTypeException {
+        modifyAttribute(t, Long.valueOf(value), attributeQuark);
+    }
+
+    /**
+     * Modify an attribute with a double value. This is equivalent to
+     * {@link #modifyAttribute(long, Object, int)} with a {@link Double}, but
+     * the state system implementation does not box the value, neither in the
+     * ongoing state nor in the intervals written to its backend.
+     *
+     * @param t
+     *            Timestamp of the state change
+     * @param value
+     *            The double value to assign to the attribute
+     * @param attributeQuark
+     *            Integer value of the quark corresponding to the attribute we
+     *            want to modify
+     * @throws TimeRangeException
+     *             If the requested time is outside of the trace's range
+     * @throws IndexOutOfBoundsException
+     *             If the attribute quark is out of range
+     * @throws StateValueTypeException
+     *             If the attribute already has values of another type
+     * @since 3.2
+     */
+    default void modifyAttributeDouble(long t, double value, int attributeQuark)
+            throws StateValueTypeException {
+        modifyAttribute(t, Double.valueOf(value), attributeQuark);
+    }
+
     /**
      * "Push" helper method. This uses the given integer attribute as a stack:
      * The value of that attribute will represent the stack depth (always >= 1).
@@ -309,4 +413,49 @@ public interface ITmfStateSystemBuilder extends ITmfStateSystem {
     default void removeFiles() {
         // FIXME Change to abstract for 3.0
     }
+
+    /**
+     * Save a checkpoint of the history being built, from which the
+     * construction can be resumed later with
+     * {@link StateSystemFactory#resumeStateSystem}, for example after it was
+     * cancelled or the application was stopped. The checkpoint replaces the
+     * previous one.
+     *
+     * The caller must make sure that all the state changes happening before
+     * the given location were made, and that none is made while the
+     * checkpoint is being saved.
+     *
+     * @param location
+     *            The location in the trace where the construction would
+     *            resume, for example the rank of the next event to read
+     * @return Whether the checkpoint was saved. Only the history tree backends
+     *         support checkpoints.
+     * @throws IOException
+     *             If there was a problem writing the checkpoint
+     * @since 3.2
+     */
+    default boolean saveCheckpoint(long location) throws IOException {
+        return false;
+    }
+
+    /**
+     * Get the location of the last checkpoint saved by this state system, or
+     * of the checkpoint its construction was resumed from.
+     *
+     * @return The location of the checkpoint, or -1 if there is none
+     * @since 3.2
+     */
+    default long getCheckpointLocation() {
+        return -1;
+    }
+
+    /**
+     * Delete the checkpoint of this history, once its construction does not
+     * need to be resumed anymore.
+     *
+     * @since 3.2
+     */
+    default void removeCheckpoint() {
+        // Nothing to remove by default
+    }
 }
@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2017 École Polytechnique de Montréal
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNull;
+
+/**
+ * Precompiled attribute path where one element varies, like the thread ID in
+ * "Threads/&lt;tid&gt;/Status". State providers can keep a template and resolve
+ * the attribute of a given key with a lookup in a table of quarks, instead of
+ * walking the attribute tree path at every event.
+ *
+ * The resolved quarks are cached by key, which is valid since attributes are
+ * never removed from a state system. Templates are not thread-safe, they are
+ * meant to be used by the thread building the state system.
+ *
+ * @since 3.2
+ * @see ITmfStateSystemBuilder#createQuarkTemplate(int, String...)
+ */
+public final class QuarkTemplate {
+
+    /** Element of a template path that is replaced by the key */
+    public static final String VARIABLE = "*"; //$NON-NLS-1$
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ITmfStateSystemBuilder fStateSystem;
+    private final int fStartingNodeQuark;
+    private final @NonNull String[] fPrefix;
+    private final @NonNull String[] fSuffix;
+
+    /* Quark of the prefix path, resolved the first time it is needed */
+    private int fPrefixQuark = ITmfStateSystem.INVALID_ATTRIBUTE;
+
+    /*
+     * Open addressing table of the quarks of integer keys. The quarks are
+     * stored + 1, so that 0 marks the empty slots.
+     */
+    private int[] fIntKeys = new int[INITIAL_CAPACITY];
+    private int[] fIntQuarks = new int[INITIAL_CAPACITY];
+    private int fIntSize = 0;
+
+    private final Map<String, Integer> fStringQuarks = new HashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param ss
+     *            The state system in which to resolve the attributes
+     * @param startingNodeQuark
+     *            The quark of the attribute from which the path starts. Use
+     *            {@link ITmfStateSystem#ROOT_ATTRIBUTE} to start at the root
+     *            node.
+     * @param pathTemplate
+     *            The path relative to the starting node, where exactly one
+     *            element is {@link #VARIABLE}
+     * @throws IllegalArgumentException
+     *             If the path does not contain exactly one variable element
+     */
+    QuarkTemplate(ITmfStateSystemBuilder ss, int startingNodeQuark, @NonNull String... pathTemplate) {
+        int variable = -1;
+        for (int i = 0; i < pathTemplate.length; i++) {
+            if (VARIABLE.equals(pathTemplate[i])) {
+                if (variable >= 0) {
+                    throw new IllegalArgumentException("Only one element of the path can be variable: " + Arrays.toString(pathTemplate)); //$NON-NLS-1$
+                }
+                variable = i;
+            }
+        }
+        if (variable < 0) {
+            throw new IllegalArgumentException("The path has no variable element: " + Arrays.toString(pathTemplate)); //$NON-NLS-1$
+        }
+        fStateSystem = ss;
+        fStartingNodeQuark = startingNodeQuark;
+        fPrefix = Arrays.copyOfRange(pathTemplate, 0, variable);
+        fSuffix = Arrays.copyOfRange(pathTemplate, variable + 1, pathTemplate.length);
+    }
+
+    /**
+     * Get the quark of the attribute for an integer key, which is the key's
+     * decimal representation in the path. The attribute is created if it does
+     * not exist.
+     *
+     * @param key
+     *            The value of the variable element of the path
+     * @return The quark of the attribute
+     */
+    public int getQuarkAndAdd(int key) {
+        int index = indexOf(key);
+        if (fIntQuarks[index] != 0) {
+            return fIntQuarks[index] - 1;
+        }
+        int quark = resolveAndAdd(String.valueOf(key));
+        put(index, key, quark);
+        return quark;
+    }
+
+    /**
+     * Get the quark of the attribute for a key. The attribute is created if it
+     * does not exist.
+     *
+     * @param key
+     *            The value of the variable element of the path
+     * @return The quark of the attribute
+     */
+    public int getQuarkAndAdd(@NonNull String key) {
+        Integer quark = fStringQuarks.get(key);
+        if (quark == null) {
+            quark = resolveAndAdd(key);
+            fStringQuarks.put(key, quark);
+        }
+        return quark;
+    }
+
+    /**
+     * Get the quark of the attribute for an integer key, which is the key's
+     * decimal representation in the path, if it exists.
+     *
+     * @param key
+     *            The value of the variable element of the path
+     * @return The quark of the attribute, or
+     *         {@link ITmfStateSystem#INVALID_ATTRIBUTE} if it does not exist
+     */
+    public int optQuark(int key) {
+        int index = indexOf(key);
+        if (fIntQuarks[index] != 0) {
+            return fIntQuarks[index] - 1;
+        }
+        int quark = resolve(String.valueOf(key));
+        if (quark != ITmfStateSystem.INVALID_ATTRIBUTE) {
+            put(index, key, quark);
+        }
+        return quark;
+    }
+
+    /**
+     * Get the quark of the attribute for a key, if it exists.
+     *
+     * @param key
+     *            The value of the variable element of the path
+     * @return The quark of the attribute, or
+     *         {@link ITmfStateSystem#INVALID_ATTRIBUTE} if it does not exist
+     */
+    public int optQuark(@NonNull String key) {
+        Integer quark = fStringQuarks.get(key);
+        if (quark != null) {
+            return quark;
+        }
+        int resolved = resolve(key);
+        if (resolved != ITmfStateSystem.INVALID_ATTRIBUTE) {
+            fStringQuarks.put(key, resolved);
+        }
+        return resolved;
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+    // ------------------------------------------------------------------------
+
+    private int resolveAndAdd(@NonNull String key) {
+        if (fPrefixQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
+            fPrefixQuark = (fPrefix.length == 0 ? fStartingNodeQuark : fStateSystem.getQuarkRelativeAndAdd(fStartingNodeQuark, fPrefix));
+        }
+        return fStateSystem.getQuarkRelativeAndAdd(fPrefixQuark, buildSubPath(key));
+    }
+
+    private int resolve(@NonNull String key) {
+        if (fPrefixQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
+            int prefixQuark = fStateSystem.optQuarkRelative(fStartingNodeQuark, fPrefix);
+            if (prefixQuark == ITmfStateSystem.INVALID_ATTRIBUTE) {
+                return ITmfStateSystem.INVALID_ATTRIBUTE;
+            }
+            fPrefixQuark = prefixQuark;
+        }
+        return fStateSystem.optQuarkRelative(fPrefixQuark, buildSubPath(key));
+    }
+
+    private @NonNull String[] buildSubPath(@NonNull String key) {
+        @NonNull String[] subPath = new @NonNull String[fSuffix.length + 1];
+        subPath[0] = key;
+        System.arraycopy(fSuffix, 0, subPath, 1, fSuffix.length);
+        return subPath;
+    }
+
+    /**
+     * Get the slot of a key in the table, or the empty slot where it should be
+     * inserted
+     */
+    private int indexOf(int key) {
+        int mask = fIntKeys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int index = (hash ^ (hash >>> 16)) & mask;
+        while (fIntQuarks[index] != 0 && fIntKeys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void put(int index, int key, int quark) {
+        fIntKeys[index] = key;
+        fIntQuarks[index] = quark + 1;
+        fIntSize++;
+        /* Keep the table at most half full */
+        if (fIntSize * 2 > fIntKeys.length) {
+            int[] keys = fIntKeys;
+            int[] quarks = fIntQuarks;
+            fIntKeys = new int[keys.length * 2];
+            fIntQuarks = new int[quarks.length * 2];
+            for (int i = 0; i < keys.length; i++) {
+                if (quarks[i] != 0) {
+                    int newIndex = indexOf(keys[i]);
+                    fIntKeys[newIndex] = keys[i];
+                    fIntQuarks[newIndex] = quarks[i];
+                }
+            }
+        }
+    }
+}
@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.statesystem.core;
 
+import java.io.File;
 import java.io.IOException;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -64,4 +65,32 @@ public final class StateSystemFactory {
         return new StateSystem(backend, newFile);
     }
 
+    /**
+     * Resume factory method. Continue building a history tree from the last
+     * checkpoint saved with {@link ITmfStateSystemBuilder#saveCheckpoint}. The
+     * construction should continue from the location returned by
+     * {@link ITmfStateSystemBuilder#getCheckpointLocation()}.
+     *
+     * @param ssid
+     *            The state system's id
+     * @param stateFile
+     *            The history file being built
+     * @param providerVersion
+     *            Expected version of the state provider. The checkpoint is
+     *            discarded if the versions do not match.
+     * @param queueSize
+     *            The size of the interval insertion queue of the history tree,
+     *            or 0 to insert the intervals in the same thread
+     * @return The state system, ready to continue the construction
+     * @throws IOException
+     *             If there is no valid checkpoint for this history file. If
+     *             the checkpoint exists but cannot be used, it is deleted
+     *             along with the history file, which is not complete.
+     * @since 3.2
+     */
+    public static ITmfStateSystemBuilder resumeStateSystem(String ssid, File stateFile,
+            int providerVersion, int queueSize) throws IOException {
+        return new StateSystem(ssid, stateFile, providerVersion, queueSize);
+    }
+
 }
@@ -15,6 +15,7 @@ package org.eclipse.tracecompass.statesystem.core.backend;
 import java.io.File;
 import java.io.FileInputStream;
 import java.util.List;
+import java.util.Spliterator;
 
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
@@ -104,6 +105,75 @@ public interface IStateHistoryBackend {
         insertPastState(stateStartTime, stateEndTime, quark, TmfStateValue.newValue(value));
     }
 
+    /**
+     * Insert a state interval with an integer value. Backends that store the
+     * values as primitives should override this method to avoid boxing the
+     * value, the default implementation calls
+     * {@link #insertPastState(long, long, int, Object)}.
+     *
+     * @param stateStartTime
+     *            The start time of the interval
+     * @param stateEndTime
+     *            The end time of the interval
+     * @param quark
+     *            The quark of the attribute this interval refers to
+     * @param value
+     *            The integer value of the interval
+     * @throws TimeRangeException
+     *             If the start or end time are invalid
+     * @since 3.2
+     */
+    default void insertPastStateInt(long stateStartTime, long stateEndTime,
+            int quark, int value) throws TimeRangeException {
+        insertPastState(stateStartTime, stateEndTime, quark, Integer.valueOf(value));
+    }
+
+    /**
+     * Insert a state interval with a long value. Backends that store the
+     * values as primitives should override this method to avoid boxing the
+     * value, the default implementation calls
+     * {@link #insertPastState(long, long, int, Object)}.
+     *
+     * @param stateStartTime
+     *            The start time of the interval
+     * @param stateEndTime
+     *            The end time of the interval
+     * @param quark
+     *            The quark of the attribute this interval refers to
+     * @param value
+     *            The long value of the interval
+     * @throws TimeRangeException
+     *             If the start or end time are invalid
+     * @since 3.2
+     */
+    default void insertPastStateLong(long stateStartTime, long stateEndTime,
+            int quark, long value) throws TimeRangeException {
+        insertPastState(stateStartTime, stateEndTime, quark, Long.valueOf(value));
+    }
+
+    /**
+     * Insert a state interval with a double value. Backends that store the
+     * values as primitives should override this method to avoid boxing the
+     * value, the default implementation calls
+     * {@link #insertPastState(long, long, int, Object)}.
+     *
+     * @param stateStartTime
+     *            The start time of the interval
+     * @param stateEndTime
+     *            The end time of the interval
+     * @param quark
+     *            The quark of the attribute this interval refers to
+     * @param value
+     *            The double value of the interval
+     * @throws TimeRangeException
+     *             If the start or end time are invalid
+     * @since 3.2
+     */
+    default void insertPastStateDouble(long stateStartTime, long stateEndTime,
+            int quark, double value) throws TimeRangeException {
+        insertPastState(stateStartTime, stateEndTime, quark, Double.valueOf(value));
+    }
+
     /**
      * Indicate to the provider that we are done building the history (so it can
      * close off, stop threads, etc.)
@@ -222,4 +292,24 @@ public interface IStateHistoryBackend {
             throws TimeRangeException {
         throw new UnsupportedOperationException("This backend does not support 2D queries"); //$NON-NLS-1$
     }
+
+    /**
+     * Generalized 2D query method returning a {@link Spliterator} over the
+     * intervals that match the conditions on quarks and times, with no
+     * guaranteed order. Backends can override it to return a spliterator that
+     * can be split, so that the query is processed in parallel.
+     *
+     * @param quarkCondition
+     *            Condition on the quarks for returned intervals.
+     * @param timeCondition
+     *            Condition on the times for returned intervals
+     * @return An un-ordered spliterator over the queried intervals
+     * @throws TimeRangeException
+     *             if the time bounds are outside the range of the HistoryTree
+     * @since 3.2
+     */
+    default Spliterator<@NonNull ITmfStateInterval> query2DSpliterator(IntegerRangeCondition quarkCondition, TimeRangeCondition timeCondition)
+            throws TimeRangeException {
+        return query2D(quarkCondition, timeCondition).spliterator();
+    }
 }
@@ -16,6 +16,7 @@ import java.io.File;
 import java.io.IOException;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.tracecompass.internal.statesystem.core.backend.ColumnarInMemoryBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.InMemoryBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.NullBackend;
 import org.eclipse.tracecompass.internal.statesystem.core.backend.historytree.HistoryTreeBackend;
@@ -59,6 +60,49 @@ public final class StateHistoryBackendFactory {
         return new InMemoryBackend(ssid, startTime);
     }
 
+    /**
+     * Create a new in-memory backend that stores the history intervals in
+     * primitive columns per attribute. It uses a fraction of the memory of
+     * {@link #createInMemoryBackend(String, long)}, and queries an attribute
+     * with a binary search.
+     *
+     * @param ssid
+     *            The ID for this state system
+     * @param startTime
+     *            The start time of the state system and backend
+     * @return The state system backend
+     * @since 3.2
+     */
+    public static IStateHistoryBackend createColumnarInMemoryBackend(String ssid, long startTime) {
+        return new ColumnarInMemoryBackend(ssid, startTime);
+    }
+
+    /**
+     * Create a new in-memory backend that stores the history intervals in
+     * primitive columns per attribute, until their estimated size crosses a
+     * threshold. The intervals are then moved to a History Tree in the given
+     * file, which is used for the rest of the construction and the queries.
+     *
+     * @param ssid
+     *            The ID for this state system
+     * @param startTime
+     *            The start time of the state system and backend
+     * @param spillFile
+     *            The filename/location where to store the state history once
+     *            the threshold is crossed (Should end in .ht)
+     * @param providerVersion
+     *            Version of of the state provider, written in the History Tree
+     * @param maxMemory
+     *            The estimated memory usage, in bytes, above which the
+     *            intervals are moved to the History Tree
+     * @return The state system backend
+     * @since 3.2
+     */
+    public static IStateHistoryBackend createColumnarInMemoryBackend(String ssid, long startTime,
+            File spillFile, int providerVersion, long maxMemory) {
+        return new ColumnarInMemoryBackend(ssid, startTime, spillFile, providerVersion, maxMemory);
+    }
+
     /**
      * Create a new backend using a History Tree. This backend stores all its
      * intervals on disk.
@@ -30,6 +30,7 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLog;
 import org.eclipse.tracecompass.common.core.log.TraceCompassLogUtils.ScopeLog;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialHistoryBackend;
 import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
@@ -71,6 +72,9 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
 
     private static final String EXTENSION = ".ht"; //$NON-NLS-1$
 
+    /* Size of the blocking queue to use when building a state history */
+    private static final int QUEUE_SIZE = 10000;
+
     private final CountDownLatch fInitialized = new CountDownLatch(1);
     private final Object fRequestSyncObj = new Object();
 
@@ -146,6 +150,25 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         return StateSystemBackendType.FULL;
     }
 
+    /**
+     * Get the number of events between two checkpoints of the state system
+     * being built. When the build is cancelled or the application stops, it
+     * can then be resumed from the last checkpoint instead of reading the
+     * trace from the beginning. Only full histories are checkpointed.
+     *
+     * Saving a checkpoint waits for the state provider to handle all the
+     * events read so far, and only the state system is saved. Modules should
+     * only enable it if their state provider does not keep information
+     * outside the state system, and if they are expensive to build. The
+     * default is 0, which disables the checkpoints.
+     *
+     * @return The number of events between checkpoints, or 0 for none
+     * @since 3.3
+     */
+    protected int getCheckpointInterval() {
+        return 0;
+    }
+
     /**
      * Get the supplementary file name where to save this state system. The
      * default is the ID of the analysis followed by the extension.
@@ -316,6 +339,25 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
      */
     private void createFullHistory(String id, ITmfStateProvider provider, File htFile) throws TmfTraceException {
 
+        /*
+         * If the build of the history was interrupted after a checkpoint,
+         * continue it from there
+         */
+        try {
+            ITmfStateSystemBuilder stateSystem = StateSystemFactory.resumeStateSystem(
+                    id, htFile, provider.getVersion(), QUEUE_SIZE);
+            fStateSystem = stateSystem;
+            fNbRead = (int) stateSystem.getCheckpointLocation();
+            provider.assignTargetStateSystem(stateSystem);
+            build(provider);
+            return;
+        } catch (IOException e) {
+            /*
+             * There is no checkpoint, or it could not be used, in which case
+             * it was deleted with the partial history. Fall-through.
+             */
+        }
+
         /* If the target file already exists, do not rebuild it uselessly */
         // TODO for now we assume it's complete. Might be a good idea to check
         // at least if its range matches the trace's range.
@@ -338,9 +380,6 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
             }
         }
 
-        /* Size of the blocking queue to use when building a state history */
-        final int QUEUE_SIZE = 10000;
-
         try {
             IStateHistoryBackend backend = StateHistoryBackendFactory.createHistoryTreeBackendNewFile(
                     id, htFile, provider.getVersion(), provider.getStartTime(), QUEUE_SIZE);
@@ -386,9 +425,6 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
          * 7- Call HistoryBuilder(realProvider, realSS, partialBackend) to build the thing.
          */
 
-        /* Size of the blocking queue to use when building a state history */
-        final int QUEUE_SIZE = 10000;
-
         final long granularity = 50000;
 
         /* 2 */
@@ -440,12 +476,12 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
     }
 
     /*
-     * Create a new state system using in-memory interval storage. This should
-     * only be done for very small state system, and will be naturally limited
-     * to 2^31 intervals.
+     * Create a new state system using in-memory interval storage. The
+     * intervals are stored in primitive columns, but this should still only be
+     * done for small state systems.
      */
     private void createInMemoryHistory(String id, ITmfStateProvider provider) {
-        IStateHistoryBackend backend = StateHistoryBackendFactory.createInMemoryBackend(id, provider.getStartTime());
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createColumnarInMemoryBackend(id, provider.getStartTime());
         fStateSystem = StateSystemFactory.newStateSystem(backend);
         provider.assignTargetStateSystem(fStateSystem);
         build(provider);
@@ -472,6 +508,31 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         }
     }
 
+    /*
+     * Save a checkpoint of the state system, once the state provider handled
+     * all the events before the location.
+     */
+    private void saveCheckpoint(ITmfStateProvider provider, long location) {
+        ITmfStateSystemBuilder stateSystem = fStateSystem;
+        if (stateSystem == null || !(provider instanceof AbstractTmfStateProvider)) {
+            return;
+        }
+        ((AbstractTmfStateProvider) provider).waitForEmptyQueue();
+        try {
+            stateSystem.saveCheckpoint(location);
+        } catch (IOException e) {
+            Activator.logWarning("Could not save a checkpoint of the state system " + getId(), e); //$NON-NLS-1$
+        }
+    }
+
+    /*
+     * Whether the build of the state system can be resumed from a checkpoint
+     */
+    private boolean hasCheckpoint() {
+        ITmfStateSystemBuilder stateSystem = fStateSystem;
+        return stateSystem != null && stateSystem.getCheckpointLocation() >= 0;
+    }
+
     private void build(ITmfStateProvider provider) {
         if (fStateSystem == null) {
             throw new IllegalArgumentException();
@@ -530,6 +591,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
     protected class StateSystemEventRequest extends TmfEventRequest {
         private final ITmfStateProvider sci;
         private final ITmfTrace trace;
+        private final int fCheckpointInterval;
 
         /**
          * Constructor
@@ -550,6 +612,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
                     TmfStateSystemAnalysisModule.this.getDependencyLevel());
             this.sci = sp;
             trace = sci.getTrace();
+            fCheckpointInterval = (getBackendType() == StateSystemBackendType.FULL) ? getCheckpointInterval() : 0;
 
         }
 
@@ -569,6 +632,9 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
                     }
                 }
             }
+            if (fCheckpointInterval > 0 && getNbRead() % fCheckpointInterval == 0) {
+                saveCheckpoint(sci, (long) fNbRead + getNbRead());
+            }
         }
 
         @Override
@@ -576,6 +642,10 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
             super.handleSuccess();
             if (isCompleteTrace(trace)) {
                 disposeProvider(false);
+                ITmfStateSystemBuilder stateSystem = fStateSystem;
+                if (stateSystem != null) {
+                    stateSystem.removeCheckpoint();
+                }
             } else {
                 fNbRead += getNbRead();
                 synchronized (fRequestSyncObj) {
@@ -592,7 +662,8 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         @Override
         public void handleCancel() {
             super.handleCancel();
-            disposeProvider(true);
+            /* Keep the partial history if it can be resumed later */
+            disposeProvider(!hasCheckpoint());
         }
 
         @Override